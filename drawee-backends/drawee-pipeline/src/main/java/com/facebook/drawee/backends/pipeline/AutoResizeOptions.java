@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2015-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.drawee.backends.pipeline;
+
+import javax.annotation.Nullable;
+
+import com.facebook.imagepipeline.common.ResizeOptions;
+import com.facebook.imagepipeline.request.ImageRequest;
+import com.facebook.imagepipeline.request.ImageRequestBuilder;
+
+/**
+ * Resize options derived from the laid out size of a drawee.
+ *
+ * <p> The controller sets the size as reported by its view before it submits the request, and
+ * the data source suppliers and the cache key supplier built for the controller read the options
+ * when the request gets submitted. Sizes are rounded up to one of four buckets per power of two,
+ * so that views of slightly different sizes share the same images in the bitmap memory cache.
+ *
+ * <p> This class is not thread-safe and should only be used from the main thread (UI thread).
+ */
+public class AutoResizeOptions {
+
+  private @Nullable ResizeOptions mResizeOptions;
+
+  /**
+   * Sets the laid out size of the drawee. Empty sizes clear the resize options.
+   */
+  public void setSize(int width, int height) {
+    mResizeOptions = (width > 0 && height > 0)
+        ? new ResizeOptions(bucketSize(width), bucketSize(height))
+        : null;
+  }
+
+  /**
+   * Gets the resize options for the last size set, or null if no non-empty size has been set.
+   */
+  public @Nullable ResizeOptions getResizeOptions() {
+    return mResizeOptions;
+  }
+
+  /**
+   * Adds the resize options to the request, unless the request specifies its own.
+   */
+  public @Nullable ImageRequest apply(@Nullable ImageRequest imageRequest) {
+    if (mResizeOptions == null ||
+        imageRequest == null ||
+        imageRequest.getResizeOptions() != null) {
+      return imageRequest;
+    }
+    return ImageRequestBuilder.fromRequest(imageRequest)
+        .setResizeOptions(mResizeOptions)
+        .build();
+  }
+
+  /**
+   * Rounds the size up to a multiple of a quarter of its highest power of two, so that there are
+   * four buckets per power of two and a size gets rounded up by less than a quarter.
+   */
+  private static int bucketSize(int size) {
+    int step = Math.max(1, Integer.highestOneBit(size) / 4);
+    return (size + step - 1) / step * step;
+  }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2015-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.drawee.backends.pipeline;
+
+/**
+ * Counters for the bitmap memory cache fast path of {@link PipelineDraweeController}.
+ *
+ * <p> On a hit the image is set in the same frame in which the request is submitted, instead of
+ * after at least one more message through the pipeline and the UI thread executor. The lookup
+ * time is paid on every submit, hit or miss.
+ *
+ * <p> This class is not thread-safe and should only be used from the main thread (UI thread).
+ */
+public class MemoryCacheFastPathStats {
+
+  private long mHitCount;
+  private long mMissCount;
+  private long mLookupTimeNs;
+
+  void recordLookup(boolean isHit, long lookupTimeNs) {
+    if (isHit) {
+      mHitCount++;
+    } else {
+      mMissCount++;
+    }
+    mLookupTimeNs += lookupTimeNs;
+  }
+
+  /**
+   * Gets the number of images set directly from the memory cache.
+   */
+  public long getHitCount() {
+    return mHitCount;
+  }
+
+  /**
+   * Gets the number of images that had to be fetched through the pipeline.
+   */
+  public long getMissCount() {
+    return mMissCount;
+  }
+
+  /**
+   * Gets the total time spent looking up the memory cache, in nanoseconds.
+   */
+  public long getLookupTimeNs() {
+    return mLookupTimeNs;
+  }
+}
@@ -13,6 +13,7 @@ import android.content.res.Resources;
 import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
 
+import com.facebook.cache.common.CacheKey;
 import com.facebook.common.internal.Objects;
 import com.facebook.common.internal.Preconditions;
 import com.facebook.common.internal.Supplier;
@@ -23,7 +24,10 @@ import com.facebook.drawable.base.DrawableWithCaches;
 import com.facebook.drawee.components.DeferredReleaser;
 import com.facebook.drawee.controller.AbstractDraweeController;
 import com.facebook.drawee.drawable.OrientedDrawable;
+import com.facebook.drawee.interfaces.SizeAwareDraweeController;
+import com.facebook.imagepipeline.animated.base.AnimatedDrawableOptions;
 import com.facebook.imagepipeline.animated.factory.AnimatedDrawableFactory;
+import com.facebook.imagepipeline.cache.MemoryCache;
 import com.facebook.imagepipeline.image.CloseableAnimatedImage;
 import com.facebook.imagepipeline.image.CloseableImage;
 import com.facebook.imagepipeline.image.CloseableStaticBitmap;
@@ -39,18 +43,26 @@ import javax.annotation.Nullable;
  * <p>
  * The hierarchy's actual image is set to the image(s) obtained by the provided data source.
  * The data source is automatically obtained and closed based on attach / detach calls.
+ * <p>
+ * If the controller derives resize options from the size of the drawee, it needs the size before
+ * it gets attached. See {@link PipelineDraweeControllerBuilder#setAutoResizeEnabled}.
  */
 public class PipelineDraweeController
-    extends AbstractDraweeController<CloseableReference<CloseableImage>, ImageInfo> {
+    extends AbstractDraweeController<CloseableReference<CloseableImage>, ImageInfo>
+    implements SizeAwareDraweeController {
 
   private static final Class<?> TAG = PipelineDraweeController.class;
 
   // Components
   private final Resources mResources;
   private final AnimatedDrawableFactory mAnimatedDrawableFactory;
+  private final @Nullable MemoryCache<CacheKey, CloseableImage> mMemoryCache;
+  private final @Nullable MemoryCacheFastPathStats mMemoryCacheFastPathStats;
 
   // Constant state (non-final because controllers can be reused)
   private Supplier<DataSource<CloseableReference<CloseableImage>>> mDataSourceSupplier;
+  private @Nullable Supplier<CacheKey> mCacheKeySupplier;
+  private @Nullable AutoResizeOptions mAutoResizeOptions;
 
   public PipelineDraweeController(
       Resources resources,
@@ -60,10 +72,48 @@ public class PipelineDraweeController
       Supplier<DataSource<CloseableReference<CloseableImage>>> dataSourceSupplier,
       String id,
       Object callerContext) {
+    this(
+        resources,
+        deferredReleaser,
+        animatedDrawableFactory,
+        uiThreadExecutor,
+        dataSourceSupplier,
+        id,
+        callerContext,
+        null,
+        null,
+        null,
+        null);
+  }
+
+  /**
+   * Creates a controller that looks up the final image in the bitmap memory cache on submit, and
+   * only creates a data source on a miss.
+   * @param memoryCache bitmap memory cache of the pipeline
+   * @param memoryCacheFastPathStats counters for the lookups, or null
+   * @param cacheKeySupplier supplier of the bitmap memory cache key of the final image, or null
+   *     to skip the lookup
+   * @param autoResizeOptions resize options to update with the size of the drawee, or null if
+   *     the requests do not depend on the size
+   */
+  public PipelineDraweeController(
+      Resources resources,
+      DeferredReleaser deferredReleaser,
+      AnimatedDrawableFactory animatedDrawableFactory,
+      Executor uiThreadExecutor,
+      Supplier<DataSource<CloseableReference<CloseableImage>>> dataSourceSupplier,
+      String id,
+      Object callerContext,
+      @Nullable MemoryCache<CacheKey, CloseableImage> memoryCache,
+      @Nullable MemoryCacheFastPathStats memoryCacheFastPathStats,
+      @Nullable Supplier<CacheKey> cacheKeySupplier,
+      @Nullable AutoResizeOptions autoResizeOptions) {
       super(deferredReleaser, uiThreadExecutor, id, callerContext);
     mResources = resources;
     mAnimatedDrawableFactory = animatedDrawableFactory;
-    init(dataSourceSupplier);
+    mMemoryCache = memoryCache;
+    mMemoryCacheFastPathStats = memoryCacheFastPathStats;
+    init(dataSourceSupplier, cacheKeySupplier, autoResizeOptions);
   }
 
   /**
@@ -78,18 +128,61 @@ public class PipelineDraweeController
       Supplier<DataSource<CloseableReference<CloseableImage>>> dataSourceSupplier,
       String id,
       Object callerContext) {
+    initialize(dataSourceSupplier, id, callerContext, null, null);
+  }
+
+  /**
+   * Initializes this controller with the new data source supplier, id, caller context, bitmap
+   * memory cache key supplier and resize options.
+   * This method should be called when the controller is in detached state.
+   * @param cacheKeySupplier supplier of the bitmap memory cache key of the final image, or null
+   *     to skip the lookup
+   * @param autoResizeOptions resize options to update with the size of the drawee, or null if
+   *     the requests do not depend on the size
+   */
+  public void initialize(
+      Supplier<DataSource<CloseableReference<CloseableImage>>> dataSourceSupplier,
+      String id,
+      Object callerContext,
+      @Nullable Supplier<CacheKey> cacheKeySupplier,
+      @Nullable AutoResizeOptions autoResizeOptions) {
     super.initialize(id, callerContext);
-    init(dataSourceSupplier);
+    init(dataSourceSupplier, cacheKeySupplier, autoResizeOptions);
   }
 
-  private void init(Supplier<DataSource<CloseableReference<CloseableImage>>> dataSourceSupplier) {
+  private void init(
+      Supplier<DataSource<CloseableReference<CloseableImage>>> dataSourceSupplier,
+      @Nullable Supplier<CacheKey> cacheKeySupplier,
+      @Nullable AutoResizeOptions autoResizeOptions) {
     mDataSourceSupplier = dataSourceSupplier;
+    mCacheKeySupplier = cacheKeySupplier;
+    mAutoResizeOptions = autoResizeOptions;
   }
 
   protected Resources getResources() {
     return mResources;
   }
 
+  /**
+   * The size is needed if the resize options of the requests are derived from it, so that the
+   * first request of a view gets resized the same way as the later ones.
+   */
+  @Override
+  public boolean needsSize() {
+    return mAutoResizeOptions != null;
+  }
+
+  /**
+   * Updates the resize options for the next submit. An image that is already being fetched or
+   * shown is not fetched again.
+   */
+  @Override
+  public void onSizeChanged(int width, int height) {
+    if (mAutoResizeOptions != null) {
+      mAutoResizeOptions.setSize(width, height);
+    }
+  }
+
   @Override
   protected DataSource<CloseableReference<CloseableImage>> getDataSource() {
     if (FLog.isLoggable(FLog.VERBOSE)) {
@@ -98,6 +191,33 @@ public class PipelineDraweeController
     return mDataSourceSupplier.get();
   }
 
+  /**
+   * Looks up the final image in the bitmap memory cache. Only full quality images are used, as
+   * the pipeline would otherwise still fetch a better one.
+   */
+  @Override
+  protected @Nullable CloseableReference<CloseableImage> getCachedImage() {
+    if (mMemoryCache == null || mCacheKeySupplier == null) {
+      return null;
+    }
+    long startNs = System.nanoTime();
+    CacheKey cacheKey = mCacheKeySupplier.get();
+    if (cacheKey == null) {
+      return null;
+    }
+    CloseableReference<CloseableImage> closeableImage = mMemoryCache.get(cacheKey);
+    if (closeableImage != null && !closeableImage.get().getQualityInfo().isOfFullQuality()) {
+      closeableImage.close();
+      closeableImage = null;
+    }
+    if (mMemoryCacheFastPathStats != null) {
+      mMemoryCacheFastPathStats.recordLookup(
+          closeableImage != null,
+          System.nanoTime() - startNs);
+    }
+    return closeableImage;
+  }
+
   @Override
   protected Drawable createDrawable(CloseableReference<CloseableImage> image) {
     Preconditions.checkState(CloseableReference.isValid(image));
@@ -115,12 +235,34 @@ public class PipelineDraweeController
       }
     } else if (closeableImage instanceof CloseableAnimatedImage) {
       return mAnimatedDrawableFactory.create(
-          ((CloseableAnimatedImage) closeableImage).getImageResult());
+          ((CloseableAnimatedImage) closeableImage).getImageResult(),
+          AnimatedDrawableOptions.DEFAULTS,
+          getMemoryCacheKeyOf(closeableImage));
     } else {
       throw new UnsupportedOperationException("Unrecognized image class: " + closeableImage);
     }
   }
 
+  /**
+   * Gets the bitmap memory cache key of the final image if the image is the one cached under it,
+   * null otherwise, e.g. if the size of the drawee and so the key changed since the submit.
+   */
+  private @Nullable CacheKey getMemoryCacheKeyOf(CloseableImage closeableImage) {
+    if (mMemoryCache == null || mCacheKeySupplier == null) {
+      return null;
+    }
+    CacheKey cacheKey = mCacheKeySupplier.get();
+    if (cacheKey == null) {
+      return null;
+    }
+    CloseableReference<CloseableImage> cachedImage = mMemoryCache.get(cacheKey);
+    try {
+      return (cachedImage != null && cachedImage.get() == closeableImage) ? cacheKey : null;
+    } finally {
+      CloseableReference.closeSafely(cachedImage);
+    }
+  }
+
   @Override
   protected ImageInfo getImageInfo(CloseableReference<CloseableImage> image) {
     Preconditions.checkState(CloseableReference.isValid(image));
@@ -132,6 +274,19 @@ public class PipelineDraweeController
     return (image != null) ? image.getValueHash() : 0;
   }
 
+  @Override
+  protected int getImageSizeInBytes(CloseableReference<CloseableImage> image) {
+    return CloseableReference.isValid(image) ? image.get().getSizeInBytes() : 0;
+  }
+
+  /**
+   * Closing data sources and references is thread-safe in the pipeline.
+   */
+  @Override
+  protected boolean canReleaseFetchOffUiThread() {
+    return true;
+  }
+
   @Override
   protected void releaseImage(@Nullable CloseableReference<CloseableImage> image) {
     CloseableReference.closeSafely(image);
@@ -16,15 +16,23 @@ import java.util.Set;
 import android.content.Context;
 import android.net.Uri;
 
+import com.facebook.cache.common.CacheKey;
+import com.facebook.common.internal.Objects;
+import com.facebook.common.internal.Supplier;
+import com.facebook.common.internal.Suppliers;
 import com.facebook.common.references.CloseableReference;
 import com.facebook.datasource.DataSource;
 import com.facebook.drawee.controller.AbstractDraweeControllerBuilder;
 import com.facebook.drawee.controller.ControllerListener;
 import com.facebook.drawee.interfaces.DraweeController;
+import com.facebook.imagepipeline.cache.AnimatedFrameCacheKey;
+import com.facebook.imagepipeline.cache.CacheKeyFactory;
 import com.facebook.imagepipeline.core.ImagePipeline;
 import com.facebook.imagepipeline.image.CloseableImage;
 import com.facebook.imagepipeline.image.ImageInfo;
+import com.facebook.imagepipeline.listener.ResizeStatsRequestListener;
 import com.facebook.imagepipeline.request.ImageRequest;
+import com.facebook.imagepipeline.request.Postprocessor;
 
 /**
  * Concrete implementation of ImagePipeline Drawee controller builder.
@@ -39,6 +47,10 @@ public class PipelineDraweeControllerBuilder extends AbstractDraweeControllerBui
   private final ImagePipeline mImagePipeline;
   private final PipelineDraweeControllerFactory mPipelineDraweeControllerFactory;
 
+  private boolean mAutoResizeEnabled;
+  // resize options shared by the controller being built and its suppliers
+  private @Nullable AutoResizeOptions mAutoResizeOptions;
+
   public PipelineDraweeControllerBuilder(
       Context context,
       PipelineDraweeControllerFactory pipelineDraweeControllerFactory,
@@ -47,6 +59,37 @@ public class PipelineDraweeControllerBuilder extends AbstractDraweeControllerBui
     super(context, boundControllerListeners);
     mImagePipeline = imagePipeline;
     mPipelineDraweeControllerFactory = pipelineDraweeControllerFactory;
+    mAutoResizeEnabled = true;
+  }
+
+  @Override
+  public PipelineDraweeControllerBuilder reset() {
+    mAutoResizeEnabled = true;
+    return super.reset();
+  }
+
+  /**
+   * Sets whether to derive resize options from the size of the drawee, enabled by default.
+   *
+   * <p> The size is reported to the controller by {@link com.facebook.drawee.view.DraweeView}
+   * after every layout, and the controller only gets attached once the size is known. This way
+   * the first request of a view is resized the same way as the later ones, and all of them share
+   * the same cache keys. Custom views using a {@link com.facebook.drawee.view.DraweeHolder} have
+   * to report the size the same way, otherwise their requests are not resized. Sizes are rounded
+   * up to one of four sizes per power of two, see {@link AutoResizeOptions}. The resize options
+   * are only added to requests that do not specify any.
+   *
+   * <p> The bitmap bytes and decode time saved by resizing can be measured by adding a
+   * {@link ResizeStatsRequestListener} to the pipeline.
+   */
+  public PipelineDraweeControllerBuilder setAutoResizeEnabled(boolean enabled) {
+    mAutoResizeEnabled = enabled;
+    return this;
+  }
+
+  /** Gets whether to derive resize options from the size of the drawee. */
+  public boolean getAutoResizeEnabled() {
+    return mAutoResizeEnabled;
   }
 
   @Override
@@ -61,23 +104,103 @@ public class PipelineDraweeControllerBuilder extends AbstractDraweeControllerBui
 
   @Override
   protected PipelineDraweeController obtainController() {
-    DraweeController oldController = getOldController();
+    mAutoResizeOptions = mAutoResizeEnabled ? new AutoResizeOptions() : null;
+    try {
+      return obtainController(getOldController());
+    } finally {
+      mAutoResizeOptions = null;
+    }
+  }
+
+  private PipelineDraweeController obtainController(@Nullable DraweeController oldController) {
     PipelineDraweeController controller;
     if (oldController instanceof PipelineDraweeController) {
       controller = (PipelineDraweeController) oldController;
       controller.initialize(
           obtainDataSourceSupplier(),
           generateUniqueControllerId(),
-          getCallerContext());
+          getCallerContext(),
+          getCacheKeySupplier(),
+          mAutoResizeOptions);
     } else {
       controller = mPipelineDraweeControllerFactory.newController(
           obtainDataSourceSupplier(),
           generateUniqueControllerId(),
-          getCallerContext());
+          getCallerContext(),
+          getCacheKeySupplier(),
+          mAutoResizeOptions);
     }
     return controller;
   }
 
+  /**
+   * Gets the supplier of the bitmap memory cache key of the final image, if there is a single
+   * final request. With auto resizing, the key is only known once the size of the drawee is.
+   */
+  private @Nullable Supplier<CacheKey> getCacheKeySupplier() {
+    final ImageRequest imageRequest = getImageRequest();
+    if (imageRequest == null) {
+      return null;
+    }
+    final CacheKeyFactory cacheKeyFactory = mImagePipeline.getCacheKeyFactory();
+    final AutoResizeOptions autoResizeOptions = mAutoResizeOptions;
+    if (autoResizeOptions == null) {
+      CacheKey cacheKey = getCacheKey(cacheKeyFactory, imageRequest);
+      return (cacheKey != null) ? Suppliers.of(cacheKey) : null;
+    }
+    return new Supplier<CacheKey>() {
+      @Override
+      public CacheKey get() {
+        return getCacheKey(cacheKeyFactory, autoResizeOptions.apply(imageRequest));
+      }
+    };
+  }
+
+  private static @Nullable CacheKey getCacheKey(
+      CacheKeyFactory cacheKeyFactory,
+      ImageRequest imageRequest) {
+    Postprocessor postprocessor = imageRequest.getPostprocessor();
+    if (postprocessor == null) {
+      return AnimatedFrameCacheKey.forRequest(
+          cacheKeyFactory.getBitmapCacheKey(imageRequest),
+          imageRequest);
+    }
+    // postprocessed images without a cache key never get cached
+    return (postprocessor.getPostprocessorCacheKey() != null)
+        ? AnimatedFrameCacheKey.forRequest(
+            cacheKeyFactory.getPostprocessedBitmapCacheKey(imageRequest),
+            imageRequest)
+        : null;
+  }
+
+  @Override
+  protected Supplier<DataSource<CloseableReference<CloseableImage>>>
+      getDataSourceSupplierForRequest(
+          final ImageRequest imageRequest,
+          final boolean bitmapCacheOnly) {
+    final AutoResizeOptions autoResizeOptions = mAutoResizeOptions;
+    if (autoResizeOptions == null) {
+      return super.getDataSourceSupplierForRequest(imageRequest, bitmapCacheOnly);
+    }
+    final Object callerContext = getCallerContext();
+    return new Supplier<DataSource<CloseableReference<CloseableImage>>>() {
+      @Override
+      public DataSource<CloseableReference<CloseableImage>> get() {
+        return getDataSourceForRequest(
+            autoResizeOptions.apply(imageRequest),
+            callerContext,
+            bitmapCacheOnly);
+      }
+      @Override
+      public String toString() {
+        return Objects.toStringHelper(this)
+            .add("request", imageRequest.toString())
+            .add("autoResizeOptions", autoResizeOptions.getResizeOptions())
+            .toString();
+      }
+    };
+  }
+
   @Override
   protected DataSource<CloseableReference<CloseableImage>> getDataSourceForRequest(
       ImageRequest imageRequest,
@@ -19,6 +19,7 @@ import com.facebook.imagepipeline.core.ImagePipeline;
 import com.facebook.imagepipeline.core.ImagePipelineFactory;
 
 import java.util.Set;
+import java.util.concurrent.Executor;
 
 public class PipelineDraweeControllerBuilderSupplier implements
     Supplier<PipelineDraweeControllerBuilder> {
@@ -42,16 +43,43 @@ public class PipelineDraweeControllerBuilderSupplier implements
       Context context,
       ImagePipelineFactory imagePipelineFactory,
       Set<ControllerListener> boundControllerListeners) {
+    this(
+        context,
+        imagePipelineFactory,
+        boundControllerListeners,
+        UiThreadImmediateExecutorService.getInstance());
+  }
+
+  /**
+   * Creates a supplier whose controllers deliver the pipeline results on the given executor.
+   * Use {@link com.facebook.drawee.components.FrameBatchingExecutor} to deliver the results that
+   * complete within a frame all together.
+   */
+  public PipelineDraweeControllerBuilderSupplier(
+      Context context,
+      ImagePipelineFactory imagePipelineFactory,
+      Set<ControllerListener> boundControllerListeners,
+      Executor uiThreadExecutor) {
     mContext = context;
     mImagePipeline = imagePipelineFactory.getImagePipeline();
     mPipelineDraweeControllerFactory = new PipelineDraweeControllerFactory(
         context.getResources(),
-        DeferredReleaser.getInstance(),
+        new DeferredReleaser(
+            imagePipelineFactory.getExecutorSupplier().forLightweightBackgroundTasks(),
+            DeferredReleaser.DEFAULT_RELEASE_BUDGET_MS),
         imagePipelineFactory.getAnimatedDrawableFactory(),
-        UiThreadImmediateExecutorService.getInstance());
+        uiThreadExecutor,
+        imagePipelineFactory.getBitmapMemoryCache());
     mBoundControllerListeners = boundControllerListeners;
   }
 
+  /**
+   * Gets the counters for the bitmap memory cache lookups of the controllers built.
+   */
+  public MemoryCacheFastPathStats getMemoryCacheFastPathStats() {
+    return mPipelineDraweeControllerFactory.getMemoryCacheFastPathStats();
+  }
+
   @Override
   public PipelineDraweeControllerBuilder get() {
     return new PipelineDraweeControllerBuilder(
@@ -9,14 +9,18 @@
 
 package com.facebook.drawee.backends.pipeline;
 
+import javax.annotation.Nullable;
+
 import java.util.concurrent.Executor;
 
 import android.content.res.Resources;
 
+import com.facebook.cache.common.CacheKey;
 import com.facebook.common.internal.Supplier;
 import com.facebook.common.references.CloseableReference;
 import com.facebook.datasource.DataSource;
 import com.facebook.drawee.components.DeferredReleaser;
+import com.facebook.imagepipeline.cache.MemoryCache;
 import com.facebook.imagepipeline.image.CloseableImage;
 import com.facebook.imagepipeline.animated.factory.AnimatedDrawableFactory;
 
@@ -29,22 +33,48 @@ public class PipelineDraweeControllerFactory {
   private DeferredReleaser mDeferredReleaser;
   private AnimatedDrawableFactory mAnimatedDrawableFactory;
   private Executor mUiThreadExecutor;
+  private @Nullable MemoryCache<CacheKey, CloseableImage> mMemoryCache;
+  private final MemoryCacheFastPathStats mMemoryCacheFastPathStats;
 
   public PipelineDraweeControllerFactory(
       Resources resources,
       DeferredReleaser deferredReleaser,
       AnimatedDrawableFactory animatedDrawableFactory,
       Executor uiThreadExecutor) {
+    this(resources, deferredReleaser, animatedDrawableFactory, uiThreadExecutor, null);
+  }
+
+  /**
+   * @param memoryCache bitmap memory cache to look up final images in on submit, or null to always
+   *     go through the pipeline
+   */
+  public PipelineDraweeControllerFactory(
+      Resources resources,
+      DeferredReleaser deferredReleaser,
+      AnimatedDrawableFactory animatedDrawableFactory,
+      Executor uiThreadExecutor,
+      @Nullable MemoryCache<CacheKey, CloseableImage> memoryCache) {
     mResources = resources;
     mDeferredReleaser = deferredReleaser;
     mAnimatedDrawableFactory = animatedDrawableFactory;
     mUiThreadExecutor = uiThreadExecutor;
+    mMemoryCache = memoryCache;
+    mMemoryCacheFastPathStats = new MemoryCacheFastPathStats();
   }
 
   public PipelineDraweeController newController(
       Supplier<DataSource<CloseableReference<CloseableImage>>> dataSourceSupplier,
       String id,
       Object callerContext) {
+    return newController(dataSourceSupplier, id, callerContext, null, null);
+  }
+
+  public PipelineDraweeController newController(
+      Supplier<DataSource<CloseableReference<CloseableImage>>> dataSourceSupplier,
+      String id,
+      Object callerContext,
+      @Nullable Supplier<CacheKey> cacheKeySupplier,
+      @Nullable AutoResizeOptions autoResizeOptions) {
     return new PipelineDraweeController(
         mResources,
         mDeferredReleaser,
@@ -52,6 +82,17 @@ public class PipelineDraweeControllerFactory {
         mUiThreadExecutor,
         dataSourceSupplier,
         id,
-        callerContext);
+        callerContext,
+        mMemoryCache,
+        mMemoryCacheFastPathStats,
+        cacheKeySupplier,
+        autoResizeOptions);
+  }
+
+  /**
+   * Gets the counters for the bitmap memory cache lookups of the controllers of this factory.
+   */
+  public MemoryCacheFastPathStats getMemoryCacheFastPathStats() {
+    return mMemoryCacheFastPathStats;
   }
 }
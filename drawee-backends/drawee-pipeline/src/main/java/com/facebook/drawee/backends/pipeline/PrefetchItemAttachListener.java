@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2015-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.drawee.backends.pipeline;
+
+import com.facebook.common.internal.Preconditions;
+import com.facebook.drawee.view.DraweeHolder;
+import com.facebook.imagepipeline.core.PrefetchScheduler;
+
+/**
+ * Reports the drawee of a list item to a {@link PrefetchScheduler} as attached while its
+ * controller is attached, so that the prefetch of the item, if still in flight, gets promoted.
+ *
+ * <p> Opt-in: set one listener on the {@link DraweeHolder} or
+ * {@link com.facebook.drawee.view.DraweeView} of each item, and update its position whenever the
+ * item gets bound to another position.
+ *
+ * <p> This class is not thread-safe and should only be used from the main thread (UI thread).
+ */
+public class PrefetchItemAttachListener implements DraweeHolder.ControllerAttachListener {
+
+  private static final int NO_POSITION = -1;
+
+  private final PrefetchScheduler mPrefetchScheduler;
+  private int mPosition = NO_POSITION;
+  private boolean mIsAttached = false;
+
+  public PrefetchItemAttachListener(PrefetchScheduler prefetchScheduler) {
+    mPrefetchScheduler = Preconditions.checkNotNull(prefetchScheduler);
+  }
+
+  /**
+   * Sets the position of the item in the list, or a negative position if the item is not bound.
+   */
+  public void setPosition(int position) {
+    position = Math.max(position, NO_POSITION);
+    if (mPosition == position) {
+      return;
+    }
+    if (mIsAttached && mPosition != NO_POSITION) {
+      mPrefetchScheduler.onItemDetached(mPosition);
+    }
+    mPosition = position;
+    if (mIsAttached && mPosition != NO_POSITION) {
+      mPrefetchScheduler.onItemAttached(mPosition);
+    }
+  }
+
+  @Override
+  public void onControllerAttached() {
+    mIsAttached = true;
+    if (mPosition != NO_POSITION) {
+      mPrefetchScheduler.onItemAttached(mPosition);
+    }
+  }
+
+  @Override
+  public void onControllerDetached() {
+    mIsAttached = false;
+    if (mPosition != NO_POSITION) {
+      mPrefetchScheduler.onItemDetached(mPosition);
+    }
+  }
+}
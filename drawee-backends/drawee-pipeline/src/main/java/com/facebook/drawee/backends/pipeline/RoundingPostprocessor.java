@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2015-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.drawee.backends.pipeline;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapShader;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.RectF;
+import android.graphics.Shader;
+
+import com.facebook.cache.common.CacheKey;
+import com.facebook.cache.common.SimpleCacheKey;
+import com.facebook.common.references.CloseableReference;
+import com.facebook.drawee.generic.RoundingParams;
+import com.facebook.imagepipeline.bitmaps.PlatformBitmapFactory;
+import com.facebook.imagepipeline.request.BasePostprocessor;
+
+/**
+ * Postprocessor that rounds the image the same way a hierarchy with the given rounding params
+ * would, so that the rounded bitmap gets cached and the drawee can draw a plain bitmap.
+ *
+ * <p> Use it together with {@link RoundingParams#setRoundActualImageInPipeline}, otherwise the
+ * hierarchy rounds the already rounded image once more.
+ */
+public class RoundingPostprocessor extends BasePostprocessor {
+
+  private final boolean mRoundAsCircle;
+  private final float[] mCornersRadii = new float[8];
+  private final int mBorderColor;
+  private final float mBorderWidth;
+  private final float mPadding;
+  private final CacheKey mCacheKey;
+
+  public RoundingPostprocessor(RoundingParams roundingParams) {
+    mRoundAsCircle = roundingParams.getRoundAsCircle();
+    if (roundingParams.getCornersRadii() != null) {
+      System.arraycopy(roundingParams.getCornersRadii(), 0, mCornersRadii, 0, 8);
+    }
+    mBorderColor = roundingParams.getBorderColor();
+    mBorderWidth = roundingParams.getBorderWidth();
+    mPadding = roundingParams.getPadding();
+    mCacheKey = new SimpleCacheKey(
+        String.format(
+            (Locale) null,
+            "%s:circle=%b;radii=%s;border=%d/%f;padding=%f",
+            getName(),
+            mRoundAsCircle,
+            Arrays.toString(mCornersRadii),
+            mBorderColor,
+            mBorderWidth,
+            mPadding));
+  }
+
+  @Override
+  public String getName() {
+    return "RoundingPostprocessor";
+  }
+
+  /**
+   * The rounded bitmap needs an alpha channel even if the source bitmap has none.
+   */
+  @Override
+  public CloseableReference<Bitmap> process(
+      Bitmap sourceBitmap,
+      PlatformBitmapFactory bitmapFactory) {
+    CloseableReference<Bitmap> destBitmapRef =
+        bitmapFactory.createBitmap(
+            sourceBitmap.getWidth(),
+            sourceBitmap.getHeight(),
+            Bitmap.Config.ARGB_8888);
+    try {
+      process(destBitmapRef.get(), sourceBitmap);
+      return CloseableReference.cloneOrNull(destBitmapRef);
+    } finally {
+      CloseableReference.closeSafely(destBitmapRef);
+    }
+  }
+
+  @Override
+  public void process(Bitmap destBitmap, Bitmap sourceBitmap) {
+    destBitmap.eraseColor(Color.TRANSPARENT);
+    Canvas canvas = new Canvas(destBitmap);
+    RectF bounds = new RectF(0, 0, sourceBitmap.getWidth(), sourceBitmap.getHeight());
+
+    Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    paint.setShader(new BitmapShader(sourceBitmap, Shader.TileMode.CLAMP, Shader.TileMode.CLAMP));
+    bounds.inset(mPadding, mPadding);
+    canvas.drawPath(createPath(bounds, mCornersRadii), paint);
+    bounds.inset(-mPadding, -mPadding);
+
+    if (mBorderWidth > 0) {
+      Paint borderPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+      borderPaint.setStyle(Paint.Style.STROKE);
+      borderPaint.setStrokeWidth(mBorderWidth);
+      borderPaint.setColor(mBorderColor);
+      float[] borderRadii = new float[8];
+      for (int i = 0; i < borderRadii.length; i++) {
+        borderRadii[i] = mCornersRadii[i] + mPadding - mBorderWidth / 2;
+      }
+      bounds.inset(mBorderWidth / 2, mBorderWidth / 2);
+      canvas.drawPath(createPath(bounds, borderRadii), borderPaint);
+    }
+  }
+
+  private Path createPath(RectF bounds, float[] radii) {
+    Path path = new Path();
+    if (mRoundAsCircle) {
+      path.addCircle(
+          bounds.centerX(),
+          bounds.centerY(),
+          Math.min(bounds.width(), bounds.height()) / 2,
+          Path.Direction.CW);
+    } else {
+      path.addRoundRect(bounds, radii, Path.Direction.CW);
+    }
+    return path;
+  }
+
+  @Override
+  public CacheKey getPostprocessorCacheKey() {
+    return mCacheKey;
+  }
+}
@@ -9,13 +9,25 @@
 
 package com.facebook.drawee.components;
 
-import java.util.HashSet;
+import javax.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
+import android.annotation.TargetApi;
+import android.os.Build;
 import android.os.Handler;
 import android.os.Looper;
+import android.view.Choreographer;
 
 import com.facebook.common.internal.Preconditions;
+import com.facebook.common.internal.VisibleForTesting;
 
 /**
  * Component that defers {@code release} until after the main Looper has completed its current
@@ -30,10 +42,18 @@ import com.facebook.common.internal.Preconditions;
  * resource release / acquire cycle. If onAttach doesn't happen before the deferred message gets
  * executed, the resources will be released.
  * <p>
+ * Releasing is time-sliced: at most {@code releaseBudgetMs} are spent releasing per frame, and
+ * whatever is left gets released with the next frames. {@link SizedReleasable}s holding the most
+ * memory are released first. Releasables may also hand off the thread-safe parts of their release
+ * to the {@link #getBackgroundExecutor background executor}, if there is one.
+ * <p>
  * This class is not thread-safe and should only be used from the main thread (UI thread).
  */
 public class DeferredReleaser {
 
+  /** Time spent releasing per frame, if not specified otherwise. */
+  public static final long DEFAULT_RELEASE_BUDGET_MS = 4;
+
   private static DeferredReleaser sInstance = null;
 
   public static synchronized DeferredReleaser getInstance() {
@@ -47,26 +67,61 @@ public class DeferredReleaser {
     public void release();
   }
 
+  /**
+   * Releasable that knows how much memory it holds.
+   */
+  public interface SizedReleasable extends Releasable {
+    /** Gets the size in bytes of the memory that {@code release} frees up. */
+    public int getReleasableSizeInBytes();
+  }
+
+  private static final Comparator<Releasable> LARGEST_FIRST = new Comparator<Releasable>() {
+    @Override
+    public int compare(Releasable lhs, Releasable rhs) {
+      int lhsSize = getSizeInBytes(lhs);
+      int rhsSize = getSizeInBytes(rhs);
+      return lhsSize > rhsSize ? -1 : (lhsSize == rhsSize ? 0 : 1);
+    }
+  };
+
   private final Set<Releasable> mPendingReleasables;
+  private final List<Releasable> mReleaseOrder;
   private final Handler mUiHandler;
+  private final @Nullable Executor mBackgroundExecutor;
+  private final long mReleaseBudgetNs;
+  private @Nullable Object mFrameCallback;
+
+  // Instrumentation
+  private long mSliceCount;
+  private long mReleasedCount;
+  private long mReleaseTimeNs;
+  private long mMaxSliceTimeNs;
 
   public DeferredReleaser() {
-    mPendingReleasables =  new HashSet<Releasable>();
+    this(null, DEFAULT_RELEASE_BUDGET_MS);
+  }
+
+  /**
+   * @param backgroundExecutor executor for the parts of releasing that are safe to do off the UI
+   *     thread, or null to do everything on the UI thread
+   * @param releaseBudgetMs time to spend releasing per frame
+   */
+  public DeferredReleaser(@Nullable Executor backgroundExecutor, long releaseBudgetMs) {
+    mPendingReleasables = new LinkedHashSet<Releasable>();
+    mReleaseOrder = new ArrayList<Releasable>();
     mUiHandler = new Handler(Looper.getMainLooper());
+    mBackgroundExecutor = backgroundExecutor;
+    mReleaseBudgetNs = TimeUnit.MILLISECONDS.toNanos(releaseBudgetMs);
   }
 
   /*
-   * Walks through the set of pending releasables, and calls release on them.
-   * Resets the pending list to an empty list when done.
+   * Walks through the set of pending releasables, and calls release on them until the budget is
+   * used up. Schedules another slice for the next frame if any are left.
    */
   private final Runnable releaseRunnable = new Runnable() {
     @Override
     public void run() {
-      ensureOnUiThread();
-      for (Releasable releasable : mPendingReleasables) {
-        releasable.release();
-      }
-      mPendingReleasables.clear();
+      releaseSlice();
     }
   };
 
@@ -86,7 +141,7 @@ public class DeferredReleaser {
     // Posting to the UI queue is an O(n) operation, so we only do it once.
     // The one runnable does all the releases.
     if (mPendingReleasables.size() == 1) {
-      mUiHandler.post(releaseRunnable);
+      scheduleSlice(/* nextFrame */ false);
     }
   }
 
@@ -99,6 +154,115 @@ public class DeferredReleaser {
     mPendingReleasables.remove(releasable);
   }
 
+  /**
+   * Gets the executor for the parts of releasing that are safe to do off the UI thread.
+   * @return the executor, or null if everything should be released on the UI thread
+   */
+  public @Nullable Executor getBackgroundExecutor() {
+    return mBackgroundExecutor;
+  }
+
+  /**
+   * Releases the pending releasables holding the most memory, until the budget is used up.
+   */
+  @VisibleForTesting
+  void releaseSlice() {
+    ensureOnUiThread();
+    if (mPendingReleasables.isEmpty()) {
+      return;
+    }
+    mReleaseOrder.addAll(mPendingReleasables);
+    Collections.sort(mReleaseOrder, LARGEST_FIRST);
+    long startNs = getCurrentTimeNs();
+    long elapsedNs = 0;
+    int released = 0;
+    try {
+      for (int i = 0; i < mReleaseOrder.size() && elapsedNs < mReleaseBudgetNs; i++) {
+        Releasable releasable = mReleaseOrder.get(i);
+        // a release might cancel some other pending release
+        if (mPendingReleasables.remove(releasable)) {
+          releasable.release();
+          released++;
+        }
+        elapsedNs = getCurrentTimeNs() - startNs;
+      }
+    } finally {
+      mReleaseOrder.clear();
+      mSliceCount++;
+      mReleasedCount += released;
+      mReleaseTimeNs += elapsedNs;
+      mMaxSliceTimeNs = Math.max(mMaxSliceTimeNs, elapsedNs);
+    }
+    if (!mPendingReleasables.isEmpty()) {
+      scheduleSlice(/* nextFrame */ true);
+    }
+  }
+
+  /**
+   * Schedules {@link #releaseSlice}.
+   * @param nextFrame whether to wait for the next frame, or just for the current message
+   */
+  @VisibleForTesting
+  protected void scheduleSlice(boolean nextFrame) {
+    if (nextFrame && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+      postFrameCallback();
+    } else {
+      mUiHandler.post(releaseRunnable);
+    }
+  }
+
+  @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+  private void postFrameCallback() {
+    if (mFrameCallback == null) {
+      mFrameCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+          releaseSlice();
+        }
+      };
+    }
+    Choreographer.getInstance().postFrameCallback((Choreographer.FrameCallback) mFrameCallback);
+  }
+
+  @VisibleForTesting
+  protected long getCurrentTimeNs() {
+    return System.nanoTime();
+  }
+
+  /**
+   * Gets the number of release slices run so far.
+   */
+  public long getSliceCount() {
+    return mSliceCount;
+  }
+
+  /**
+   * Gets the number of releasables released so far.
+   */
+  public long getReleasedCount() {
+    return mReleasedCount;
+  }
+
+  /**
+   * Gets the total time spent releasing on the UI thread, in nanoseconds.
+   */
+  public long getReleaseTimeNs() {
+    return mReleaseTimeNs;
+  }
+
+  /**
+   * Gets the longest time spent releasing within a single frame, in nanoseconds.
+   */
+  public long getMaxSliceTimeNs() {
+    return mMaxSliceTimeNs;
+  }
+
+  private static int getSizeInBytes(Releasable releasable) {
+    return (releasable instanceof SizedReleasable)
+        ? ((SizedReleasable) releasable).getReleasableSizeInBytes()
+        : 0;
+  }
+
   private static void ensureOnUiThread() {
     Preconditions.checkState(Looper.getMainLooper().getThread() == Thread.currentThread());
   }
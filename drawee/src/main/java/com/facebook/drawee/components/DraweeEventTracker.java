@@ -31,6 +31,7 @@ public class DraweeEventTracker {
     ON_DETACH_CONTROLLER,
     ON_RELEASE_CONTROLLER,
     ON_DATASOURCE_SUBMIT,
+    ON_SUBMIT_CACHE_HIT,
     ON_DATASOURCE_RESULT,
     ON_DATASOURCE_RESULT_INT,
     ON_DATASOURCE_FAILURE,
@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2015-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.drawee.components;
+
+import javax.annotation.concurrent.GuardedBy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+
+import com.facebook.common.internal.VisibleForTesting;
+import com.facebook.common.logging.FLog;
+
+/**
+ * Executor that delivers pipeline callbacks to drawees in batches aligned with frames.
+ *
+ * <p> Commands executed from a background thread are not posted to the main Looper one by one.
+ * Instead they are collected, and all the commands collected until the next frame are run
+ * together in a single frame callback, right before the frame gets drawn. When a whole grid of
+ * images finishes loading at once, the main Looper then handles one message instead of one per
+ * image, and the images all show up in the same frame.
+ *
+ * <p> Commands executed from the UI thread are run immediately, as with
+ * {@link com.facebook.common.executors.UiThreadImmediateExecutorService}, so that images already
+ * in the memory cache are not delayed by one frame.
+ *
+ * <p> Below Jelly Bean, where there is no {@link Choreographer}, a batch is just posted to the
+ * main Looper.
+ *
+ * <p> The executor also keeps track of how much time the UI thread spends running the commands.
+ */
+public class FrameBatchingExecutor implements Executor {
+
+  private static final Class<?> TAG = FrameBatchingExecutor.class;
+
+  private static FrameBatchingExecutor sInstance = null;
+
+  public static synchronized FrameBatchingExecutor getInstance() {
+    if (sInstance == null) {
+      sInstance = new FrameBatchingExecutor();
+    }
+    return sInstance;
+  }
+
+  private final Handler mUiHandler;
+
+  @GuardedBy("this")
+  private List<Runnable> mPendingCommands;
+  @GuardedBy("this")
+  private boolean mIsBatchScheduled;
+
+  // Used on the UI thread only
+  private List<Runnable> mRunningCommands;
+
+  // Written on the UI thread, but may be read from any thread
+  @GuardedBy("this")
+  private long mBatchCount;
+  @GuardedBy("this")
+  private long mCommandCount;
+  @GuardedBy("this")
+  private long mUiThreadTimeNs;
+  @GuardedBy("this")
+  private long mMaxBatchTimeNs;
+
+  private final Runnable mRunBatchRunnable = new Runnable() {
+    @Override
+    public void run() {
+      runBatch();
+    }
+  };
+
+  private Object mFrameCallback;
+
+  public FrameBatchingExecutor() {
+    mUiHandler = new Handler(Looper.getMainLooper());
+    mPendingCommands = new ArrayList<>();
+    mRunningCommands = new ArrayList<>();
+  }
+
+  @Override
+  public void execute(Runnable command) {
+    if (isUiThread()) {
+      long startNs = System.nanoTime();
+      command.run();
+      recordUiThreadTime(1, System.nanoTime() - startNs);
+      return;
+    }
+    synchronized (this) {
+      mPendingCommands.add(command);
+      if (mIsBatchScheduled) {
+        return;
+      }
+      mIsBatchScheduled = true;
+    }
+    scheduleBatch();
+  }
+
+  /**
+   * Schedules {@link #runBatch} to be run on the UI thread with the next frame.
+   */
+  @VisibleForTesting
+  protected void scheduleBatch() {
+    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+      // The Choreographer is per Looper, so it has to be obtained on the UI thread.
+      mUiHandler.post(
+          new Runnable() {
+            @Override
+            public void run() {
+              postFrameCallback();
+            }
+          });
+    } else {
+      mUiHandler.post(mRunBatchRunnable);
+    }
+  }
+
+  @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+  private void postFrameCallback() {
+    if (mFrameCallback == null) {
+      mFrameCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+          runBatch();
+        }
+      };
+    }
+    Choreographer.getInstance().postFrameCallback((Choreographer.FrameCallback) mFrameCallback);
+  }
+
+  /**
+   * Runs all the commands collected so far. Must be called on the UI thread.
+   */
+  @VisibleForTesting
+  void runBatch() {
+    List<Runnable> commands;
+    synchronized (this) {
+      commands = mPendingCommands;
+      mPendingCommands = mRunningCommands;
+      mIsBatchScheduled = false;
+    }
+    mRunningCommands = commands;
+    long startNs = System.nanoTime();
+    try {
+      for (int i = 0; i < commands.size(); i++) {
+        try {
+          commands.get(i).run();
+        } catch (RuntimeException e) {
+          FLog.e(TAG, e, "Command in batch failed");
+        }
+      }
+    } finally {
+      recordUiThreadTime(commands.size(), System.nanoTime() - startNs);
+      commands.clear();
+    }
+  }
+
+  private synchronized void recordUiThreadTime(int commandCount, long timeNs) {
+    mBatchCount++;
+    mCommandCount += commandCount;
+    mUiThreadTimeNs += timeNs;
+    mMaxBatchTimeNs = Math.max(mMaxBatchTimeNs, timeNs);
+  }
+
+  /**
+   * Gets the number of batches run so far. A command run immediately counts as a batch.
+   */
+  public synchronized long getBatchCount() {
+    return mBatchCount;
+  }
+
+  /**
+   * Gets the number of commands run so far.
+   */
+  public synchronized long getCommandCount() {
+    return mCommandCount;
+  }
+
+  /**
+   * Gets the total time the UI thread spent running commands, in nanoseconds.
+   */
+  public synchronized long getUiThreadTimeNs() {
+    return mUiThreadTimeNs;
+  }
+
+  /**
+   * Gets the longest time the UI thread spent running a single batch, in nanoseconds.
+   */
+  public synchronized long getMaxBatchTimeNs() {
+    return mMaxBatchTimeNs;
+  }
+
+  @VisibleForTesting
+  protected boolean isUiThread() {
+    return Looper.getMainLooper().getThread() == Thread.currentThread();
+  }
+}
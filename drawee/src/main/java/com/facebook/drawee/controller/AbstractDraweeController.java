@@ -46,7 +46,7 @@ import static com.facebook.drawee.components.DraweeEventTracker.Event;
 @NotThreadSafe
 public abstract class AbstractDraweeController<T, INFO> implements
     DraweeController,
-    DeferredReleaser.Releasable,
+    DeferredReleaser.SizedReleasable,
     GestureDetector.ClickListener {
 
   /**
@@ -92,6 +92,7 @@ public abstract class AbstractDraweeController<T, INFO> implements
   private @Nullable DataSource<T> mDataSource;
   private @Nullable T mFetchedImage;
   private @Nullable Drawable mDrawable;
+  private float mLastProgress;
 
   public AbstractDraweeController(
       DeferredReleaser deferredReleaser,
@@ -171,24 +172,54 @@ public abstract class AbstractDraweeController<T, INFO> implements
     boolean wasRequestSubmitted = mIsRequestSubmitted;
     mIsRequestSubmitted = false;
     mHasFetchFailed = false;
-    if (mDataSource != null) {
-      mDataSource.close();
-      mDataSource = null;
-    }
+    final DataSource<T> dataSource = mDataSource;
+    mDataSource = null;
     if (mDrawable != null) {
       releaseDrawable(mDrawable);
     }
     mDrawable = null;
-    if (mFetchedImage != null) {
-      logMessageAndImage("release", mFetchedImage);
-      releaseImage(mFetchedImage);
-      mFetchedImage = null;
+    final T image = mFetchedImage;
+    mFetchedImage = null;
+    if (image != null) {
+      logMessageAndImage("release", image);
+    }
+    Executor backgroundExecutor = (mDeferredReleaser != null && canReleaseFetchOffUiThread())
+        ? mDeferredReleaser.getBackgroundExecutor()
+        : null;
+    if (backgroundExecutor != null && (dataSource != null || image != null)) {
+      backgroundExecutor.execute(
+          new Runnable() {
+            @Override
+            public void run() {
+              closeFetch(dataSource, image);
+            }
+          });
+    } else {
+      closeFetch(dataSource, image);
     }
     if (wasRequestSubmitted) {
       getControllerListener().onRelease(mId);
     }
   }
 
+  private void closeFetch(@Nullable DataSource<T> dataSource, @Nullable T image) {
+    if (dataSource != null) {
+      dataSource.close();
+    }
+    if (image != null) {
+      releaseImage(image);
+    }
+  }
+
+  /**
+   * Gets the size in bytes of the fetched image, so that the controllers holding the most memory
+   * get released first.
+   */
+  @Override
+  public int getReleasableSizeInBytes() {
+    return (mFetchedImage != null) ? getImageSizeInBytes(mFetchedImage) : 0;
+  }
+
   /** Gets the controller id. */
   public String getId() {
     return mId;
@@ -391,9 +422,27 @@ public abstract class AbstractDraweeController<T, INFO> implements
   }
 
   protected void submitRequest() {
+    final T cachedImage = getCachedImage();
+    if (cachedImage != null) {
+      // the image is set right away, without creating a data source
+      mDataSource = null;
+      mIsRequestSubmitted = true;
+      mHasFetchFailed = false;
+      mEventTracker.recordEvent(Event.ON_SUBMIT_CACHE_HIT);
+      getControllerListener().onSubmit(mId, mCallerContext);
+      onNewResultInternal(
+          mId,
+          mDataSource,
+          cachedImage,
+          1f,
+          /* isFinished */ true,
+          /* wasImmediate */ true);
+      return;
+    }
     mEventTracker.recordEvent(Event.ON_DATASOURCE_SUBMIT);
     getControllerListener().onSubmit(mId, mCallerContext);
     mSettableDraweeHierarchy.setProgress(0, true);
+    mLastProgress = 0;
     mIsRequestSubmitted = true;
     mHasFetchFailed = false;
     mDataSource = getDataSource();
@@ -466,17 +515,20 @@ public abstract class AbstractDraweeController<T, INFO> implements
     Drawable previousDrawable = mDrawable;
     mFetchedImage = image;
     mDrawable = drawable;
+    maybeContinueAnimation(previousDrawable, drawable);
     try {
       // set the new image
       if (isFinished) {
         logMessageAndImage("set_final_result @ onNewResult", image);
         mDataSource = null;
         mSettableDraweeHierarchy.setImage(drawable, 1f, wasImmediate);
+        mLastProgress = 1f;
         getControllerListener().onFinalImageSet(id, getImageInfo(image), getAnimatable());
         // IMPORTANT: do not execute any instance-specific code after this point
       } else {
         logMessageAndImage("set_intermediate_result @ onNewResult", image);
         mSettableDraweeHierarchy.setImage(drawable, progress, wasImmediate);
+        mLastProgress = progress;
         getControllerListener().onIntermediateImageSet(id, getImageInfo(image));
         // IMPORTANT: do not execute any instance-specific code after this point
       }
@@ -491,6 +543,21 @@ public abstract class AbstractDraweeController<T, INFO> implements
     }
   }
 
+  /**
+   * Starts the animation of the new drawable if it replaces a running animation, for example when
+   * an animated image is decoded progressively and more of its frames have been received.
+   */
+  private static void maybeContinueAnimation(
+      @Nullable Drawable previousDrawable,
+      Drawable drawable) {
+    if (drawable != previousDrawable &&
+        drawable instanceof Animatable &&
+        previousDrawable instanceof Animatable &&
+        ((Animatable) previousDrawable).isRunning()) {
+      ((Animatable) drawable).start();
+    }
+  }
+
   private void onFailureInternal(
       String id,
       DataSource<T> dataSource,
@@ -512,6 +579,7 @@ public abstract class AbstractDraweeController<T, INFO> implements
       // Set the previously available image if available.
       if (mRetainImageOnFailure && mDrawable != null) {
         mSettableDraweeHierarchy.setImage(mDrawable, 1f, true);
+        mLastProgress = 1f;
       } else if (shouldRetryOnTap()) {
         mSettableDraweeHierarchy.setRetry(throwable);
       } else {
@@ -537,7 +605,12 @@ public abstract class AbstractDraweeController<T, INFO> implements
       dataSource.close();
       return;
     }
-    if (!isFinished) {
+    // Every progress update of the data source executes a separate callback, but they all see
+    // the latest progress. When the callbacks pile up, e.g. within a frame batch, only the first
+    // one needs to update the hierarchy. Setting an image also sets the progress, so mLastProgress
+    // is updated wherever the hierarchy gets a new progress.
+    if (!isFinished && progress != mLastProgress) {
+      mLastProgress = progress;
       mSettableDraweeHierarchy.setProgress(progress, false);
     }
   }
@@ -582,6 +655,15 @@ public abstract class AbstractDraweeController<T, INFO> implements
 
   protected abstract Drawable createDrawable(T image);
 
+  /**
+   * Gets the final image synchronously if it is cheaply available, e.g. from a memory cache.
+   * If so, it gets set right away, on submit, and no data source is created.
+   * @return the image, or null if it has to be fetched through the data source
+   */
+  protected @Nullable T getCachedImage() {
+    return null;
+  }
+
   protected abstract @Nullable INFO getImageInfo(T image);
 
   protected String getImageClass(@Nullable T image) {
@@ -592,6 +674,18 @@ public abstract class AbstractDraweeController<T, INFO> implements
     return System.identityHashCode(image);
   }
 
+  protected int getImageSizeInBytes(T image) {
+    return 0;
+  }
+
+  /**
+   * Whether closing the data source and releasing the image are safe to do off the UI thread.
+   * If so, they are done on the background executor of the {@link DeferredReleaser}, if any.
+   */
+  protected boolean canReleaseFetchOffUiThread() {
+    return false;
+  }
+
   protected abstract void releaseImage(@Nullable T image);
 
   protected abstract void releaseDrawable(@Nullable Drawable drawable);
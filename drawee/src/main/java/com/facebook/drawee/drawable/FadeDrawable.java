@@ -9,6 +9,8 @@
 
 package com.facebook.drawee.drawable;
 
+import javax.annotation.Nullable;
+
 import java.util.Arrays;
 
 import android.graphics.Canvas;
@@ -30,6 +32,9 @@ import com.facebook.common.internal.VisibleForTesting;
  * fadeUpToLayer fades in all layers up to specified layer to full opacity and
  * fades out all other layers to zero opacity.
  *
+ * <p> Layers below a fully visible layer that is known to be opaque are not drawn, see
+ * {@link #setLayerOpaque}. If a {@link FadeLimiter} is set, transitions that would exceed its
+ * limit finish immediately.
  */
 public class FadeDrawable extends ArrayDrawable {
 
@@ -72,6 +77,14 @@ public class FadeDrawable extends ArrayDrawable {
    */
   @VisibleForTesting boolean[] mIsLayerOn;
 
+  /**
+   * Whether the layer covers the bounds with opaque pixels, and hides the layers below it once it
+   * is fully visible.
+   */
+  @VisibleForTesting boolean[] mIsLayerOpaque;
+
+  private @Nullable FadeLimiter mFadeLimiter;
+
   /**
    * When in batch mode, drawable won't invalidate self until batch mode finishes.
    */
@@ -90,6 +103,7 @@ public class FadeDrawable extends ArrayDrawable {
     mAlphas = new int[layers.length];
     mAlpha = 255;
     mIsLayerOn = new boolean[layers.length];
+    mIsLayerOpaque = new boolean[layers.length];
     mPreventInvalidateCount = 0;
     resetInternal();
   }
@@ -135,6 +149,32 @@ public class FadeDrawable extends ArrayDrawable {
     return mDurationMs;
   }
 
+  /**
+   * Sets the limiter for the number of concurrent fades.
+   * @param fadeLimiter the limiter, or null to always fade
+   */
+  public void setFadeLimiter(@Nullable FadeLimiter fadeLimiter) {
+    mFadeLimiter = fadeLimiter;
+  }
+
+  @Nullable
+  public FadeLimiter getFadeLimiter() {
+    return mFadeLimiter;
+  }
+
+  /**
+   * Sets whether the specified layer covers the bounds with opaque pixels. Once such a layer is
+   * fully visible, the layers below it are not drawn.
+   * @param index the index of the layer
+   * @param isOpaque whether the layer is opaque
+   */
+  public void setLayerOpaque(int index, boolean isOpaque) {
+    if (mIsLayerOpaque[index] != isOpaque) {
+      mIsLayerOpaque[index] = isOpaque;
+      invalidateSelf();
+    }
+  }
+
   /**
    * Resets internal state to the initial state.
    */
@@ -261,14 +301,19 @@ public class FadeDrawable extends ArrayDrawable {
   public void draw(Canvas canvas) {
     boolean done = true;
     float ratio;
+    boolean isFading = mTransitionState != TRANSITION_NONE && mFadeLimiter != null;
+    long startNs = isFading ? System.nanoTime() : 0;
 
     switch (mTransitionState) {
       case TRANSITION_STARTING:
         // initialize start alphas and start time
         System.arraycopy(mAlphas, 0, mStartAlphas, 0, mLayers.length);
         mStartTimeMs = getCurrentTimeMs();
-        // if the duration is 0, update alphas to the target opacities immediately
-        ratio = (mDurationMs == 0) ? 1.0f : 0.0f;
+        // if the duration is 0, or too many drawables are fading already, update alphas to the
+        // target opacities immediately
+        ratio = (mDurationMs == 0 || (mFadeLimiter != null && !mFadeLimiter.tryStartFade()))
+            ? 1.0f
+            : 0.0f;
         // if all the layers have reached their target opacity, transition is done
         done = updateAlphas(ratio);
         mTransitionState = done ? TRANSITION_NONE : TRANSITION_RUNNING;
@@ -276,6 +321,9 @@ public class FadeDrawable extends ArrayDrawable {
 
       case TRANSITION_RUNNING:
         Preconditions.checkState(mDurationMs > 0);
+        if (mFadeLimiter != null) {
+          mFadeLimiter.onFadeFrame();
+        }
         // determine ratio based on the elapsed time
         ratio = (float) (getCurrentTimeMs() - mStartTimeMs) / mDurationMs;
         // if all the layers have reached their target opacity, transition is done
@@ -289,8 +337,25 @@ public class FadeDrawable extends ArrayDrawable {
         break;
     }
 
-    for (int i = 0; i < mLayers.length; i++) {
-      drawDrawableWithAlpha(canvas, mLayers[i], mAlphas[i] * mAlpha / 255);
+    int firstLayer = getTopmostOpaqueLayer();
+    int drawnLayers = 0;
+    for (int i = firstLayer; i < mLayers.length; i++) {
+      if (drawDrawableWithAlpha(canvas, mLayers[i], mAlphas[i] * mAlpha / 255)) {
+        drawnLayers++;
+      }
+    }
+
+    if (mFadeLimiter != null) {
+      int coveredLayers = 0;
+      for (int i = 0; i < firstLayer; i++) {
+        if (mLayers[i] != null && mAlphas[i] > 0) {
+          coveredLayers++;
+        }
+      }
+      mFadeLimiter.onDraw(drawnLayers, coveredLayers);
+      if (isFading) {
+        mFadeLimiter.onFadeDraw(System.nanoTime() - startNs);
+      }
     }
 
     if (!done) {
@@ -298,13 +363,30 @@ public class FadeDrawable extends ArrayDrawable {
     }
   }
 
-  private void drawDrawableWithAlpha(Canvas canvas, Drawable drawable, int alpha) {
+  /**
+   * Gets the index of the topmost layer that is opaque and fully visible, or 0 if there is none.
+   */
+  private int getTopmostOpaqueLayer() {
+    if (mAlpha < 255) {
+      return 0;
+    }
+    for (int i = mLayers.length - 1; i > 0; i--) {
+      if (mIsLayerOpaque[i] && mLayers[i] != null && mAlphas[i] == 255) {
+        return i;
+      }
+    }
+    return 0;
+  }
+
+  private boolean drawDrawableWithAlpha(Canvas canvas, Drawable drawable, int alpha) {
     if (drawable != null && alpha > 0) {
       mPreventInvalidateCount++;
       drawable.mutate().setAlpha(alpha);
       mPreventInvalidateCount--;
       drawable.draw(canvas);
+      return true;
     }
+    return false;
   }
 
   @Override
@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2015-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.drawee.drawable;
+
+import android.view.animation.AnimationUtils;
+
+import com.facebook.common.internal.VisibleForTesting;
+
+/**
+ * Caps the number of {@link FadeDrawable}s fading within the same frame, and counts what drawing
+ * them costs.
+ *
+ * <p> A fading drawable draws each of its visible layers with partial alpha on every frame until
+ * the fade is done. Once the cap is reached within a frame, fades that are about to start get
+ * finished immediately instead, whereas fades that are already running keep going. Frames are
+ * told apart by their animation time.
+ *
+ * <p> This class is not thread-safe and should only be used from the main thread (UI thread).
+ */
+public class FadeLimiter {
+
+  /** Number of drawables fading per frame, if not specified otherwise. */
+  public static final int DEFAULT_MAX_FADES_PER_FRAME = 8;
+
+  private static FadeLimiter sInstance = null;
+
+  public static synchronized FadeLimiter getInstance() {
+    if (sInstance == null) {
+      sInstance = new FadeLimiter(DEFAULT_MAX_FADES_PER_FRAME);
+    }
+    return sInstance;
+  }
+
+  private final int mMaxFadesPerFrame;
+  private long mFrameTimeMs = -1;
+  private int mFadesInFrame;
+
+  // Instrumentation
+  private long mStartedFadeCount;
+  private long mSkippedFadeCount;
+  private long mDrawnLayerCount;
+  private long mCoveredLayerCount;
+  private long mFadeDrawTimeNs;
+  private long mMaxFadeDrawTimeNs;
+
+  /**
+   * @param maxFadesPerFrame number of drawables that may be fading within the same frame
+   */
+  public FadeLimiter(int maxFadesPerFrame) {
+    mMaxFadesPerFrame = maxFadesPerFrame;
+  }
+
+  /**
+   * Called by a drawable that is about to start fading.
+   * @return whether it may fade, or should finish the transition immediately otherwise
+   */
+  boolean tryStartFade() {
+    updateFrame();
+    if (mFadesInFrame >= mMaxFadesPerFrame) {
+      mSkippedFadeCount++;
+      return false;
+    }
+    mFadesInFrame++;
+    mStartedFadeCount++;
+    return true;
+  }
+
+  /**
+   * Called by a drawable for every further frame of its fade.
+   */
+  void onFadeFrame() {
+    updateFrame();
+    mFadesInFrame++;
+  }
+
+  /**
+   * Called by a drawable after drawing its layers.
+   * @param drawnLayers number of layers drawn
+   * @param coveredLayers number of visible layers skipped because an opaque layer covers them
+   */
+  void onDraw(int drawnLayers, int coveredLayers) {
+    mDrawnLayerCount += drawnLayers;
+    mCoveredLayerCount += coveredLayers;
+  }
+
+  /**
+   * Called by a drawable after drawing a frame of its fade.
+   * @param drawTimeNs time spent drawing, in nanoseconds
+   */
+  void onFadeDraw(long drawTimeNs) {
+    mFadeDrawTimeNs += drawTimeNs;
+    mMaxFadeDrawTimeNs = Math.max(mMaxFadeDrawTimeNs, drawTimeNs);
+  }
+
+  private void updateFrame() {
+    long frameTimeMs = getFrameTimeMs();
+    if (frameTimeMs != mFrameTimeMs) {
+      mFrameTimeMs = frameTimeMs;
+      mFadesInFrame = 0;
+    }
+  }
+
+  /**
+   * Gets the animation time of the frame being drawn, which is the same for all drawables drawn
+   * within that frame.
+   */
+  @VisibleForTesting
+  protected long getFrameTimeMs() {
+    return AnimationUtils.currentAnimationTimeMillis();
+  }
+
+  /**
+   * Gets the number of fades started so far.
+   */
+  public long getStartedFadeCount() {
+    return mStartedFadeCount;
+  }
+
+  /**
+   * Gets the number of fades finished immediately because too many drawables were fading.
+   */
+  public long getSkippedFadeCount() {
+    return mSkippedFadeCount;
+  }
+
+  /**
+   * Gets the number of layers drawn so far.
+   */
+  public long getDrawnLayerCount() {
+    return mDrawnLayerCount;
+  }
+
+  /**
+   * Gets the number of visible layers not drawn so far because an opaque layer covered them.
+   */
+  public long getCoveredLayerCount() {
+    return mCoveredLayerCount;
+  }
+
+  /**
+   * Gets the total time spent drawing fading drawables, in nanoseconds.
+   */
+  public long getFadeDrawTimeNs() {
+    return mFadeDrawTimeNs;
+  }
+
+  /**
+   * Gets the longest time spent drawing a single frame of a fade, in nanoseconds.
+   */
+  public long getMaxFadeDrawTimeNs() {
+    return mMaxFadeDrawTimeNs;
+  }
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) 2015-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.drawee.drawable;
+
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.RectF;
+import android.graphics.drawable.Drawable;
+import android.os.SystemClock;
+
+import com.facebook.common.internal.Preconditions;
+import com.facebook.common.internal.VisibleForTesting;
+
+/**
+ * A {@link ScaleTypeDrawable} that also fades its underlying drawable in and out.
+ *
+ * <p> This is meant for drawees that only ever show a single image. Scaling and fading are then
+ * both applied inline, without a {@link FadeDrawable} and the forwarding drawables of its layers.
+ * The transitions behave the same as the ones of a {@link FadeDrawable} layer.
+ */
+public class FadingScaleTypeDrawable extends ScaleTypeDrawable {
+
+  /**
+   * Matrix used to store temporary transform. Drawables should be accessed on UI thread only, and
+   * this matrix is used only as a temporary variable so it's safe to be static.
+   */
+  private static final Matrix sTempTransform = new Matrix();
+
+  @VisibleForTesting int mTransitionState;
+  @VisibleForTesting int mDurationMs;
+  @VisibleForTesting long mStartTimeMs;
+  @VisibleForTesting int mStartFadeAlpha;
+  @VisibleForTesting int mFadeAlpha;
+  @VisibleForTesting int mAlpha;
+
+  /**
+   * Determines whether to fade-out the drawable to zero opacity (false) or to fade-in to the full
+   * opacity (true)
+   */
+  @VisibleForTesting boolean mIsShown;
+
+  /**
+   * Set while the alpha gets applied on the underlying drawable, so that this doesn't cause
+   * another invalidation.
+   */
+  private boolean mIsApplyingAlpha;
+
+  /**
+   * Creates a new fading ScaleType drawable. The underlying drawable is not shown initially.
+   * @param drawable underlying drawable to apply scale type on
+   * @param scaleType scale type to be applied
+   */
+  public FadingScaleTypeDrawable(Drawable drawable, ScalingUtils.ScaleType scaleType) {
+    super(drawable, scaleType);
+    mTransitionState = FadeDrawable.TRANSITION_NONE;
+    mAlpha = 255;
+  }
+
+  /**
+   * Sets the duration of the transitions in milliseconds.
+   */
+  public void setTransitionDuration(int durationMs) {
+    mDurationMs = durationMs;
+    // re-initialize transition if it's running
+    if (mTransitionState == FadeDrawable.TRANSITION_RUNNING) {
+      mTransitionState = FadeDrawable.TRANSITION_STARTING;
+    }
+  }
+
+  /**
+   * Gets the transition duration.
+   * @return transition duration in milliseconds.
+   */
+  public int getTransitionDuration() {
+    return mDurationMs;
+  }
+
+  /**
+   * Starts fading in the underlying drawable.
+   */
+  public void fadeIn() {
+    mTransitionState = FadeDrawable.TRANSITION_STARTING;
+    mIsShown = true;
+    invalidateSelf();
+  }
+
+  /**
+   * Starts fading out the underlying drawable.
+   */
+  public void fadeOut() {
+    mTransitionState = FadeDrawable.TRANSITION_STARTING;
+    mIsShown = false;
+    invalidateSelf();
+  }
+
+  /**
+   * Finishes transition immediately.
+   */
+  public void finishTransitionImmediately() {
+    mTransitionState = FadeDrawable.TRANSITION_NONE;
+    mFadeAlpha = mIsShown ? 255 : 0;
+    invalidateSelf();
+  }
+
+  /**
+   * Updates the current fade alpha based on the ratio of the elapsed time and duration.
+   * @return whether the drawable has reached its target opacity
+   */
+  private boolean updateFadeAlpha(float ratio) {
+    int dir = mIsShown ? +1 : -1;
+    // determines alpha value and clamps it to [0, 255]
+    mFadeAlpha = Math.max(0, Math.min(255, (int) (mStartFadeAlpha + dir * 255 * ratio)));
+    return mIsShown ? (mFadeAlpha == 255) : (mFadeAlpha == 0);
+  }
+
+  @Override
+  public void draw(Canvas canvas) {
+    boolean done = true;
+    float ratio;
+
+    switch (mTransitionState) {
+      case FadeDrawable.TRANSITION_STARTING:
+        mStartFadeAlpha = mFadeAlpha;
+        mStartTimeMs = getCurrentTimeMs();
+        // if the duration is 0, update alpha to the target opacity immediately
+        ratio = (mDurationMs == 0) ? 1.0f : 0.0f;
+        done = updateFadeAlpha(ratio);
+        mTransitionState = done ? FadeDrawable.TRANSITION_NONE : FadeDrawable.TRANSITION_RUNNING;
+        break;
+
+      case FadeDrawable.TRANSITION_RUNNING:
+        Preconditions.checkState(mDurationMs > 0);
+        ratio = (float) (getCurrentTimeMs() - mStartTimeMs) / mDurationMs;
+        done = updateFadeAlpha(ratio);
+        mTransitionState = done ? FadeDrawable.TRANSITION_NONE : FadeDrawable.TRANSITION_RUNNING;
+        break;
+
+      case FadeDrawable.TRANSITION_NONE:
+        done = true;
+        break;
+    }
+
+    int alpha = mFadeAlpha * mAlpha / 255;
+    if (alpha > 0) {
+      mIsApplyingAlpha = true;
+      getCurrent().mutate().setAlpha(alpha);
+      mIsApplyingAlpha = false;
+      super.draw(canvas);
+    }
+
+    if (!done) {
+      invalidateSelf();
+    }
+  }
+
+  @Override
+  public void invalidateSelf() {
+    if (!mIsApplyingAlpha) {
+      super.invalidateSelf();
+    }
+  }
+
+  @Override
+  public void setAlpha(int alpha) {
+    if (mAlpha != alpha) {
+      mAlpha = alpha;
+      invalidateSelf();
+    }
+  }
+
+  public int getAlpha() {
+    return mAlpha;
+  }
+
+  /**
+   * Returns current time. Absolute reference is not important as only time deltas are used.
+   * Extracting this to a separate method allows better testing.
+   * @return current time in milliseconds
+   */
+  protected long getCurrentTimeMs() {
+    return SystemClock.uptimeMillis();
+  }
+
+  /**
+   * Gets the transition state (STARTING, RUNNING, NONE) as defined by {@link FadeDrawable}.
+   * @return transition state
+   */
+  @VisibleForTesting
+  public int getTransitionState() {
+    return mTransitionState;
+  }
+
+  /**
+   * Gets the transformed bounds of the underlying drawable, the same as a forwarding drawable
+   * wrapping it would report with {@link ForwardingDrawable#getTransformedBounds}.
+   * @param outBounds rect to fill with bounds
+   */
+  public void getTransformedChildBounds(RectF outBounds) {
+    // IMPORTANT: the bounds of the underlying drawable should be read after {@code getTransform},
+    // because it may have to configure them.
+    getTransform(sTempTransform);
+    outBounds.set(getCurrent().getBounds());
+    sTempTransform.mapRect(outBounds);
+  }
+
+  /**
+   * Gets whether the underlying drawable is shown, or being faded in.
+   */
+  public boolean isShown() {
+    return mIsShown;
+  }
+}
@@ -15,6 +15,7 @@ import android.content.res.Resources;
 import android.graphics.Color;
 import android.graphics.ColorFilter;
 import android.graphics.Matrix;
+import android.graphics.PixelFormat;
 import android.graphics.PointF;
 import android.graphics.RectF;
 import android.graphics.drawable.Animatable;
@@ -24,6 +25,8 @@ import android.graphics.drawable.Drawable;
 import com.facebook.common.internal.Preconditions;
 import com.facebook.drawee.drawable.DrawableParent;
 import com.facebook.drawee.drawable.FadeDrawable;
+import com.facebook.drawee.drawable.FadeLimiter;
+import com.facebook.drawee.drawable.FadingScaleTypeDrawable;
 import com.facebook.drawee.drawable.ForwardingDrawable;
 import com.facebook.drawee.drawable.MatrixDrawable;
 import com.facebook.drawee.drawable.ScaleTypeDrawable;
@@ -81,7 +84,24 @@ import static com.facebook.drawee.drawable.ScalingUtils.ScaleType;
  * FadeDrawable, or if leaf rounding is specified, each leaf drawable will be rounded separately.
  * <li> A particular drawable instance should be used by only one DH. If more than one DH is being
  * built with the same builder, different drawable instances must be specified for each DH.
+ * <li> If lazy layers are enabled, the progress bar, retry and failure branches are built only
+ * when they are about to be shown, until then their layers are null. See
+ * {@link GenericDraweeHierarchyBuilder#setLazyLayersEnabled}.
  * </ul>
+ *
+ * <p>
+ * If the lightweight hierarchy is enabled and only the actual image is specified, a lightweight
+ * hierarchy gets built instead, where the scale type and the fade are applied by a single
+ * drawable:
+ *  <pre>
+ *  o RootDrawable (top level drawable)
+ *  |
+ *  +--o FadingScaleTypeDrawable
+ *     |
+ *     +--o Drawable (actual image)
+ *  </pre>
+ * It gets expanded to the full hierarchy as soon as some other branch or rounding is set. See
+ * {@link GenericDraweeHierarchyBuilder#setLightweightHierarchyEnabled}.
  */
 public class GenericDraweeHierarchy implements SettableDraweeHierarchy {
 
@@ -91,8 +111,19 @@ public class GenericDraweeHierarchy implements SettableDraweeHierarchy {
   private RoundingParams mRoundingParams;
 
   private final RootDrawable mTopLevelDrawable;
-  private final FadeDrawable mFadeDrawable;
-  private final ForwardingDrawable mActualImageWrapper;
+  private @Nullable ColorFilter mActualImageColorFilter;
+  private final @Nullable FadeLimiter mFadeLimiter;
+
+  // lightweight hierarchy only
+  private @Nullable FadingScaleTypeDrawable mLightweightDrawable;
+
+  // full hierarchy only
+  private FadeDrawable mFadeDrawable;
+  private ForwardingDrawable mActualImageWrapper;
+  private boolean mIsActualImageOpaque;
+  // images and scale types of the branches not built yet, by layer index
+  private @Nullable Drawable[] mPendingLayerImages;
+  private @Nullable ScaleType[] mPendingLayerScaleTypes;
 
   private final int mPlaceholderImageIndex;
   private final int mProgressBarImageIndex;
@@ -103,8 +134,8 @@ public class GenericDraweeHierarchy implements SettableDraweeHierarchy {
   GenericDraweeHierarchy(GenericDraweeHierarchyBuilder builder) {
     mResources = builder.getResources();
     mRoundingParams = builder.getRoundingParams();
-
-    mActualImageWrapper = new ForwardingDrawable(mEmptyActualImageDrawable);
+    mActualImageColorFilter = builder.getActualImageColorFilter();
+    mFadeLimiter = builder.getFadeLimiter();
 
     int numBackgrounds = (builder.getBackgrounds() != null) ? builder.getBackgrounds().size() : 0;
     int numOverlays = (builder.getOverlays() != null) ? builder.getOverlays().size() : 0;
@@ -122,9 +153,52 @@ public class GenericDraweeHierarchy implements SettableDraweeHierarchy {
     int overlaysIndex = numLayers;
     numLayers += numOverlays;
 
+    Drawable drawable;
+    if (builder.canBuildLightweightHierarchy()) {
+      mLightweightDrawable = buildLightweightDrawable(builder);
+      drawable = mLightweightDrawable;
+    } else {
+      drawable = buildLayeredDrawable(
+          builder,
+          numLayers,
+          backgroundsIndex,
+          overlaysIndex,
+          mEmptyActualImageDrawable);
+    }
+
+    // top-level drawable
+    mTopLevelDrawable = new RootDrawable(drawable);
+    mTopLevelDrawable.mutate();
+
+    resetFade();
+  }
+
+  private FadingScaleTypeDrawable buildLightweightDrawable(GenericDraweeHierarchyBuilder builder) {
+    FadingScaleTypeDrawable drawable = new FadingScaleTypeDrawable(
+        mEmptyActualImageDrawable,
+        builder.getActualImageScaleType());
+    if (builder.getActualImageFocusPoint() != null) {
+      drawable.setFocusPoint(builder.getActualImageFocusPoint());
+    }
+    drawable.setColorFilter(builder.getActualImageColorFilter());
+    drawable.setTransitionDuration(builder.getFadeDuration());
+    return drawable;
+  }
+
+  /**
+   * Builds the fade drawable with all the layers, wrapped with a rounded drawable if needed.
+   */
+  private Drawable buildLayeredDrawable(
+      GenericDraweeHierarchyBuilder builder,
+      int numLayers,
+      int backgroundsIndex,
+      int overlaysIndex,
+      Drawable actualImage) {
+    mActualImageWrapper = new ForwardingDrawable(actualImage);
+
     // array of layers
     Drawable[] layers = new Drawable[numLayers];
-    if (numBackgrounds > 0) {
+    if (builder.getBackgrounds() != null) {
       int index = 0;
       for (Drawable background : builder.getBackgrounds()) {
         layers[backgroundsIndex + index++] = buildBranch(background, null);
@@ -139,16 +213,29 @@ public class GenericDraweeHierarchy implements SettableDraweeHierarchy {
         builder.getActualImageFocusPoint(),
         builder.getActualImageMatrix(),
         builder.getActualImageColorFilter());
-    layers[mProgressBarImageIndex] = buildBranch(
-        builder.getProgressBarImage(),
-        builder.getProgressBarImageScaleType());
-    layers[mRetryImageIndex] = buildBranch(
-        builder.getRetryImage(),
-        builder.getRetryImageScaleType());
-    layers[mFailureImageIndex] = buildBranch(
-        builder.getFailureImage(),
-        builder.getFailureImageScaleType());
-    if (numOverlays > 0) {
+    if (builder.getLazyLayersEnabled()) {
+      mPendingLayerImages = new Drawable[numLayers];
+      mPendingLayerScaleTypes = new ScaleType[numLayers];
+      mPendingLayerImages[mProgressBarImageIndex] = builder.getProgressBarImage();
+      mPendingLayerScaleTypes[mProgressBarImageIndex] = builder.getProgressBarImageScaleType();
+      mPendingLayerImages[mRetryImageIndex] = builder.getRetryImage();
+      mPendingLayerScaleTypes[mRetryImageIndex] = builder.getRetryImageScaleType();
+      mPendingLayerImages[mFailureImageIndex] = builder.getFailureImage();
+      mPendingLayerScaleTypes[mFailureImageIndex] = builder.getFailureImageScaleType();
+    } else {
+      mPendingLayerImages = null;
+      mPendingLayerScaleTypes = null;
+      layers[mProgressBarImageIndex] = buildBranch(
+          builder.getProgressBarImage(),
+          builder.getProgressBarImageScaleType());
+      layers[mRetryImageIndex] = buildBranch(
+          builder.getRetryImage(),
+          builder.getRetryImageScaleType());
+      layers[mFailureImageIndex] = buildBranch(
+          builder.getFailureImage(),
+          builder.getFailureImageScaleType());
+    }
+    if (builder.getOverlays() != null || builder.getPressedStateOverlay() != null) {
       int index = 0;
       if (builder.getOverlays() != null) {
         for (Drawable overlay : builder.getOverlays()) {
@@ -163,16 +250,46 @@ public class GenericDraweeHierarchy implements SettableDraweeHierarchy {
     // fade drawable composed of layers
     mFadeDrawable = new FadeDrawable(layers);
     mFadeDrawable.setTransitionDuration(builder.getFadeDuration());
+    mFadeDrawable.setFadeLimiter(builder.getFadeLimiter());
 
     // rounded corners drawable (optional)
-    Drawable maybeRoundedDrawable =
-        WrappingUtils.maybeWrapWithRoundedOverlayColor(mFadeDrawable, mRoundingParams);
-
-    // top-level drawable
-    mTopLevelDrawable = new RootDrawable(maybeRoundedDrawable);
-    mTopLevelDrawable.mutate();
+    return WrappingUtils.maybeWrapWithRoundedOverlayColor(mFadeDrawable, mRoundingParams);
+  }
 
+  /**
+   * Replaces the lightweight hierarchy, if any, with the full one. The current actual image and
+   * its visibility are kept.
+   */
+  private void expandLightweightHierarchy() {
+    if (mLightweightDrawable == null) {
+      return;
+    }
+    FadingScaleTypeDrawable lightweightDrawable = mLightweightDrawable;
+    mLightweightDrawable = null;
+    Drawable actualImage = lightweightDrawable.setCurrent(mEmptyActualImageDrawable);
+    GenericDraweeHierarchyBuilder builder = new GenericDraweeHierarchyBuilder(mResources)
+        .setFadeDuration(lightweightDrawable.getTransitionDuration())
+        .setActualImageScaleType(lightweightDrawable.getScaleType())
+        .setActualImageFocusPoint(lightweightDrawable.getFocusPoint())
+        .setActualImageColorFilter(mActualImageColorFilter)
+        .setFadeLimiter(mFadeLimiter);
+    mTopLevelDrawable.setCurrent(
+        buildLayeredDrawable(
+            builder,
+            mFailureImageIndex + 1,
+            /* backgroundsIndex */ 0,
+            mFailureImageIndex + 1,
+            actualImage));
+    mIsActualImageOpaque = actualImage.getOpacity() == PixelFormat.OPAQUE;
+    updateActualImageOpaque();
     resetFade();
+    if (lightweightDrawable.isShown()) {
+      mFadeDrawable.beginBatchMode();
+      fadeOutBranches();
+      fadeInLayer(mActualImageIndex);
+      mFadeDrawable.finishTransitionImmediately();
+      mFadeDrawable.endBatchMode();
+    }
   }
 
   @Nullable
@@ -196,12 +313,82 @@ public class GenericDraweeHierarchy implements SettableDraweeHierarchy {
     return drawable;
   }
 
+  private boolean isLayerPending(int index) {
+    return mPendingLayerImages != null && mPendingLayerImages[index] != null;
+  }
+
+  /**
+   * Builds the branch at the specified index, if it has not been built yet. The rounding params
+   * that are current at this time are applied.
+   */
+  private void materializeLayer(int index) {
+    if (!isLayerPending(index)) {
+      return;
+    }
+    Drawable drawable = mPendingLayerImages[index];
+    ScaleType scaleType = mPendingLayerScaleTypes[index];
+    mPendingLayerImages[index] = null;
+    mPendingLayerScaleTypes[index] = null;
+    mFadeDrawable.setDrawable(index, buildBranch(drawable, scaleType));
+  }
+
+  private boolean hasLayer(int index) {
+    return mFadeDrawable.getDrawable(index) != null || isLayerPending(index);
+  }
+
+  /**
+   * Gets the rounding params to apply on the actual image, null if the image pipeline already
+   * rounded it.
+   */
+  @Nullable
+  private RoundingParams getActualImageRoundingParams() {
+    if (mRoundingParams != null && mRoundingParams.getRoundActualImageInPipeline()) {
+      return null;
+    }
+    return mRoundingParams;
+  }
+
   private void resetActualImages() {
+    if (mLightweightDrawable != null) {
+      mLightweightDrawable.setCurrent(mEmptyActualImageDrawable);
+      return;
+    }
     mActualImageWrapper.setDrawable(mEmptyActualImageDrawable);
+    mIsActualImageOpaque = false;
+    updateActualImageOpaque();
+  }
+
+  /**
+   * Lets the fade drawable skip the placeholder and backgrounds once the actual image is fully
+   * shown, if the image is opaque and its branch fills the bounds.
+   */
+  private void updateActualImageOpaque() {
+    boolean isOpaque = mIsActualImageOpaque &&
+        (mRoundingParams == null ||
+            mRoundingParams.getRoundingMethod() == RoundingParams.RoundingMethod.OVERLAY_COLOR) &&
+        fillsBounds(mFadeDrawable.getDrawable(mActualImageIndex));
+    mFadeDrawable.setLayerOpaque(mActualImageIndex, isOpaque);
+  }
+
+  private boolean fillsBounds(Drawable actualImageBranch) {
+    if (actualImageBranch == mActualImageWrapper) {
+      return true;
+    }
+    if (!(actualImageBranch instanceof ScaleTypeDrawable)) {
+      // a matrix may leave some of the bounds uncovered
+      return false;
+    }
+    ScaleType scaleType = ((ScaleTypeDrawable) actualImageBranch).getScaleType();
+    return scaleType == ScaleType.FIT_XY ||
+        scaleType == ScaleType.CENTER_CROP ||
+        scaleType == ScaleType.FOCUS_CROP;
   }
 
   private void resetFade() {
-    if (mFadeDrawable != null) {
+    if (mLightweightDrawable != null) {
+      mLightweightDrawable.fadeOut();
+      mLightweightDrawable.finishTransitionImmediately();
+    } else if (mFadeDrawable != null) {
       mFadeDrawable.beginBatchMode();
       // turn on all layers (backgrounds, branches, overlays)
       mFadeDrawable.fadeInAllLayers();
@@ -224,6 +411,7 @@ public class GenericDraweeHierarchy implements SettableDraweeHierarchy {
 
   private void fadeInLayer(int index) {
     if (index >= 0) {
+      materializeLayer(index);
       mFadeDrawable.fadeInLayer(index);
     }
   }
@@ -235,6 +423,13 @@ public class GenericDraweeHierarchy implements SettableDraweeHierarchy {
   }
 
   private void setProgress(float progress) {
+    if (isLayerPending(mProgressBarImageIndex)) {
+      if (progress >= 0.999f) {
+        // the progress bar has never been shown, and there is nothing to hide
+        return;
+      }
+      materializeLayer(mProgressBarImageIndex);
+    }
     Drawable progressBarDrawable = getLayerParentDrawable(mProgressBarImageIndex).getDrawable();
     if (progressBarDrawable == null) {
       return;
@@ -271,7 +466,21 @@ public class GenericDraweeHierarchy implements SettableDraweeHierarchy {
 
   @Override
   public void setImage(Drawable drawable, float progress, boolean immediate) {
-    drawable = WrappingUtils.maybeApplyLeafRounding(drawable, mRoundingParams, mResources);
+    if (mLightweightDrawable != null) {
+      drawable.mutate();
+      mLightweightDrawable.setCurrent(drawable);
+      mLightweightDrawable.fadeIn();
+      if (immediate) {
+        mLightweightDrawable.finishTransitionImmediately();
+      }
+      return;
+    }
+    mIsActualImageOpaque = drawable.getOpacity() == PixelFormat.OPAQUE;
+    updateActualImageOpaque();
+    drawable = WrappingUtils.maybeApplyLeafRounding(
+        drawable,
+        getActualImageRoundingParams(),
+        mResources);
     drawable.mutate();
     mActualImageWrapper.setDrawable(drawable);
     mFadeDrawable.beginBatchMode();
@@ -286,6 +495,13 @@ public class GenericDraweeHierarchy implements SettableDraweeHierarchy {
 
   @Override
   public void setProgress(float progress, boolean immediate) {
+    if (mLightweightDrawable != null) {
+      // there is no progress bar to show
+      if (immediate) {
+        mLightweightDrawable.finishTransitionImmediately();
+      }
+      return;
+    }
     mFadeDrawable.beginBatchMode();
     setProgress(progress);
     if (immediate) {
@@ -296,9 +512,14 @@ public class GenericDraweeHierarchy implements SettableDraweeHierarchy {
 
   @Override
   public void setFailure(Throwable throwable) {
+    if (mLightweightDrawable != null) {
+      // there is neither a failure image nor a placeholder to show
+      mLightweightDrawable.fadeOut();
+      return;
+    }
     mFadeDrawable.beginBatchMode();
     fadeOutBranches();
-    if (mFadeDrawable.getDrawable(mFailureImageIndex) != null) {
+    if (hasLayer(mFailureImageIndex)) {
       fadeInLayer(mFailureImageIndex);
     } else {
       fadeInLayer(mPlaceholderImageIndex);
@@ -308,9 +529,14 @@ public class GenericDraweeHierarchy implements SettableDraweeHierarchy {
 
   @Override
   public void setRetry(Throwable throwable) {
+    if (mLightweightDrawable != null) {
+      // there is neither a retry image nor a placeholder to show
+      mLightweightDrawable.fadeOut();
+      return;
+    }
     mFadeDrawable.beginBatchMode();
     fadeOutBranches();
-    if (mFadeDrawable.getDrawable(mRetryImageIndex) != null) {
+    if (hasLayer(mRetryImageIndex)) {
       fadeInLayer(mRetryImageIndex);
     } else {
       fadeInLayer(mPlaceholderImageIndex);
@@ -349,6 +575,19 @@ public class GenericDraweeHierarchy implements SettableDraweeHierarchy {
    * In case the given drawable is null, scale type gets cleared too.
    */
   private void setLayerChildDrawable(int index, @Nullable Drawable drawable) {
+    if (drawable == null && mLightweightDrawable != null) {
+      // a lightweight hierarchy has no such layer to clear
+      return;
+    }
+    expandLightweightHierarchy();
+    if (isLayerPending(index)) {
+      // keep the pending scale type, the branch gets built on first use
+      mPendingLayerImages[index] = drawable;
+      if (drawable == null) {
+        mPendingLayerScaleTypes[index] = null;
+      }
+      return;
+    }
     if (drawable == null) {
       mFadeDrawable.setDrawable(index, null);
       return;
@@ -364,6 +603,11 @@ public class GenericDraweeHierarchy implements SettableDraweeHierarchy {
    * the child will be wrapped with a new ScaleTypeDrawable.
    */
   private ScaleTypeDrawable getLayerScaleTypeDrawable(int index) {
+    if (index == mActualImageIndex && mLightweightDrawable != null) {
+      return mLightweightDrawable;
+    }
+    expandLightweightHierarchy();
+    materializeLayer(index);
     DrawableParent parent = getLayerParentDrawable(index);
     if (parent instanceof ScaleTypeDrawable) {
       return (ScaleTypeDrawable) parent;
@@ -372,10 +616,25 @@ public class GenericDraweeHierarchy implements SettableDraweeHierarchy {
     }
   }
 
+  /**
+   * Sets the scale type at the specified index. The branch is not built if it is still pending.
+   */
+  private void setLayerScaleType(int index, ScaleType scaleType) {
+    if (isLayerPending(index)) {
+      mPendingLayerScaleTypes[index] = scaleType;
+      return;
+    }
+    getLayerScaleTypeDrawable(index).setScaleType(scaleType);
+  }
+
   // Mutability
 
   /** Sets the fade duration. */
   public void setFadeDuration(int durationMs) {
+    if (mLightweightDrawable != null) {
+      mLightweightDrawable.setTransitionDuration(durationMs);
+      return;
+    }
     mFadeDrawable.setTransitionDuration(durationMs);
   }
 
@@ -389,15 +648,27 @@ public class GenericDraweeHierarchy implements SettableDraweeHierarchy {
   public void setActualImageScaleType(ScaleType scaleType) {
     Preconditions.checkNotNull(scaleType);
     getLayerScaleTypeDrawable(mActualImageIndex).setScaleType(scaleType);
+    if (mLightweightDrawable == null) {
+      updateActualImageOpaque();
+    }
   }
 
   /** Sets the color filter to be applied on the actual image. */
   public void setActualImageColorFilter(ColorFilter colorfilter) {
+    mActualImageColorFilter = colorfilter;
+    if (mLightweightDrawable != null) {
+      mLightweightDrawable.setColorFilter(colorfilter);
+      return;
+    }
     mActualImageWrapper.setColorFilter(colorfilter);
   }
 
   /** Gets the non-cropped post-scaling bounds of the actual image. */
   public void getActualImageBounds(RectF outBounds) {
+    if (mLightweightDrawable != null) {
+      mLightweightDrawable.getTransformedChildBounds(outBounds);
+      return;
+    }
     mActualImageWrapper.getTransformedBounds(outBounds);
   }
 
@@ -436,7 +707,7 @@ public class GenericDraweeHierarchy implements SettableDraweeHierarchy {
   /** Sets a new failure drawable with scale type. */
   public void setFailureImage(Drawable drawable, ScaleType scaleType) {
     setLayerChildDrawable(mFailureImageIndex, drawable);
-    getLayerScaleTypeDrawable(mFailureImageIndex).setScaleType(scaleType);
+    setLayerScaleType(mFailureImageIndex, scaleType);
   }
 
   /** Sets a new retry drawable with old scale type. */
@@ -447,7 +718,7 @@ public class GenericDraweeHierarchy implements SettableDraweeHierarchy {
   /** Sets a new retry drawable with scale type. */
   public void setRetryImage(Drawable drawable, ScaleType scaleType) {
     setLayerChildDrawable(mRetryImageIndex, drawable);
-    getLayerScaleTypeDrawable(mRetryImageIndex).setScaleType(scaleType);
+    setLayerScaleType(mRetryImageIndex, scaleType);
   }
 
   /** Sets a new progress bar drawable with old scale type. */
@@ -458,16 +729,26 @@ public class GenericDraweeHierarchy implements SettableDraweeHierarchy {
   /** Sets a new progress bar drawable with scale type. */
   public void setProgressBarImage(Drawable drawable, ScaleType scaleType) {
     setLayerChildDrawable(mProgressBarImageIndex, drawable);
-    getLayerScaleTypeDrawable(mProgressBarImageIndex).setScaleType(scaleType);
+    setLayerScaleType(mProgressBarImageIndex, scaleType);
   }
 
   /** Sets the rounding params. */
   public void setRoundingParams(RoundingParams roundingParams) {
     mRoundingParams = roundingParams;
+    if (mLightweightDrawable != null &&
+        !GenericDraweeHierarchyBuilder.needsRounding(roundingParams)) {
+      return;
+    }
+    expandLightweightHierarchy();
     WrappingUtils.updateOverlayColorRounding(mTopLevelDrawable, mRoundingParams);
+    // pending branches get rounded when built
     for (int i = 0; i < mFadeDrawable.getNumberOfLayers(); i++) {
-      WrappingUtils.updateLeafRounding(getLayerParentDrawable(i), mRoundingParams, mResources);
+      WrappingUtils.updateLeafRounding(
+          getLayerParentDrawable(i),
+          (i == mActualImageIndex) ? getActualImageRoundingParams() : mRoundingParams,
+          mResources);
     }
+    updateActualImageOpaque();
   }
 
   /** Gets the rounding params. */
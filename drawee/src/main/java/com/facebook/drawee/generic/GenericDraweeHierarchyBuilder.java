@@ -22,6 +22,7 @@ import android.graphics.drawable.Drawable;
 import android.graphics.drawable.StateListDrawable;
 
 import com.facebook.common.internal.Preconditions;
+import com.facebook.drawee.drawable.FadeLimiter;
 
 import static com.facebook.drawee.drawable.ScalingUtils.ScaleType;
 
@@ -40,6 +41,7 @@ public class GenericDraweeHierarchyBuilder {
   private Resources mResources;
 
   private int mFadeDuration;
+  private @Nullable FadeLimiter mFadeLimiter;
 
   private Drawable mPlaceholderImage;
   private @Nullable ScaleType mPlaceholderImageScaleType;
@@ -64,6 +66,9 @@ public class GenericDraweeHierarchyBuilder {
 
   private RoundingParams mRoundingParams;
 
+  private boolean mLightweightHierarchyEnabled;
+  private boolean mLazyLayersEnabled;
+
   public GenericDraweeHierarchyBuilder(Resources resources) {
     mResources = resources;
     init();
@@ -78,6 +83,7 @@ public class GenericDraweeHierarchyBuilder {
    */
   private void init() {
     mFadeDuration = DEFAULT_FADE_DURATION;
+    mFadeLimiter = null;
 
     mPlaceholderImage = null;
     mPlaceholderImageScaleType = null;
@@ -102,6 +108,9 @@ public class GenericDraweeHierarchyBuilder {
     mRoundingParams = null;
 
     mActualImageColorFilter = null;
+
+    mLightweightHierarchyEnabled = false;
+    mLazyLayersEnabled = false;
   }
 
   /**
@@ -136,6 +145,23 @@ public class GenericDraweeHierarchyBuilder {
     return mFadeDuration;
   }
 
+  /**
+   * Sets the limiter for the number of drawees fading within the same frame. Fades exceeding the
+   * limit finish immediately. If not set, fades are not limited; use the shared
+   * {@link FadeLimiter#getInstance} to limit fades across all drawees of the process.
+   * @param fadeLimiter the limiter, or null to always fade
+   * @return modified instance of this builder
+   */
+  public GenericDraweeHierarchyBuilder setFadeLimiter(@Nullable FadeLimiter fadeLimiter) {
+    mFadeLimiter = fadeLimiter;
+    return this;
+  }
+
+  @Nullable
+  public FadeLimiter getFadeLimiter() {
+    return mFadeLimiter;
+  }
+
   /**
    * Sets the placeholder image, with default scale type CENTER_INSIDE. If no placeholder is set,
    * a transparent ColorDrawable will be used.
@@ -412,6 +438,75 @@ public class GenericDraweeHierarchyBuilder {
     return mRoundingParams;
   }
 
+  /**
+   * Sets whether a lightweight hierarchy may be built when only the actual image is specified.
+   *
+   * <p> A lightweight hierarchy draws the actual image through a single drawable that applies the
+   * scale type and the fade inline. It gets expanded to the full hierarchy as soon as a
+   * placeholder, retry, failure or progress bar image, or rounding of the actual image is set.
+   * The drawable tree of a lightweight hierarchy differs from the full one, so this is disabled
+   * by default.
+   *
+   * @param lightweightHierarchyEnabled whether a lightweight hierarchy may be built
+   * @return modified instance of this builder
+   */
+  public GenericDraweeHierarchyBuilder setLightweightHierarchyEnabled(
+      boolean lightweightHierarchyEnabled) {
+    mLightweightHierarchyEnabled = lightweightHierarchyEnabled;
+    return this;
+  }
+
+  public boolean getLightweightHierarchyEnabled() {
+    return mLightweightHierarchyEnabled;
+  }
+
+  /**
+   * Sets whether the progress bar, retry and failure branches may be built on first use.
+   *
+   * <p> Most drawees never show a retry or failure image, and many never show a progress bar
+   * because the image comes from the memory cache. With lazy layers those branches are only
+   * scaled and rounded when they are about to be shown. Disabled by default.
+   *
+   * @param lazyLayersEnabled whether the rarely shown branches may be built on first use
+   * @return modified instance of this builder
+   */
+  public GenericDraweeHierarchyBuilder setLazyLayersEnabled(boolean lazyLayersEnabled) {
+    mLazyLayersEnabled = lazyLayersEnabled;
+    return this;
+  }
+
+  public boolean getLazyLayersEnabled() {
+    return mLazyLayersEnabled;
+  }
+
+  /**
+   * Gets whether the hierarchy to build only needs the actual image branch, so that it can be a
+   * lightweight one.
+   */
+  boolean canBuildLightweightHierarchy() {
+    return mLightweightHierarchyEnabled &&
+        mPlaceholderImage == null &&
+        mRetryImage == null &&
+        mFailureImage == null &&
+        mProgressBarImage == null &&
+        mActualImageScaleType != null &&
+        mActualImageMatrix == null &&
+        (mBackgrounds == null || mBackgrounds.isEmpty()) &&
+        (mOverlays == null || mOverlays.isEmpty()) &&
+        mPressedStateOverlay == null &&
+        !needsRounding(mRoundingParams);
+  }
+
+  /**
+   * Gets whether the hierarchy has to round anything with the given rounding params, assuming
+   * it only shows the actual image.
+   */
+  static boolean needsRounding(@Nullable RoundingParams roundingParams) {
+    return roundingParams != null &&
+        (roundingParams.getRoundingMethod() != RoundingParams.RoundingMethod.BITMAP_ONLY ||
+            !roundingParams.getRoundActualImageInPipeline());
+  }
+
   private void validate() {
     if (mOverlays != null) {
       for (Drawable overlay : mOverlays) {
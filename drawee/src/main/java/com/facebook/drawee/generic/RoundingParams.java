@@ -44,6 +44,7 @@ public class RoundingParams {
   private float mBorderWidth = 0;
   private int mBorderColor = Color.TRANSPARENT;
   private float mPadding = 0;
+  private boolean mRoundActualImageInPipeline = false;
 
   /**
    *  Sets whether to round as circle.
@@ -219,6 +220,32 @@ public class RoundingParams {
     return mPadding;
   }
 
+  /**
+   * Sets whether the actual image is rounded by the image pipeline. Works only with
+   * {@code RoundingMethod.BITMAP_ONLY}.
+   *
+   * <p> If set, the hierarchy draws the actual image as is, instead of rounding it with a
+   * {@code BitmapShader} on every draw. The image request has to round the image with a
+   * postprocessor that uses the same rounding params then, so that the rounded bitmap gets cached.
+   * The placeholder and the other images are still rounded by the hierarchy.
+   *
+   * <p> Note that the pipeline rounds the bitmap itself, so the radii, border and padding are in
+   * bitmap pixels rather than in view pixels. This works best with a circle, or with an image that
+   * is resized to the view size.
+   *
+   * @param roundActualImageInPipeline whether the actual image is rounded by the pipeline
+   * @return modified instance
+   */
+  public RoundingParams setRoundActualImageInPipeline(boolean roundActualImageInPipeline) {
+    mRoundActualImageInPipeline = roundActualImageInPipeline;
+    return this;
+  }
+
+  /** Gets whether the actual image is rounded by the image pipeline */
+  public boolean getRoundActualImageInPipeline() {
+    return mRoundActualImageInPipeline;
+  }
+
   @Override
   public boolean equals(Object o) {
     if (this == o) {
@@ -254,6 +281,10 @@ public class RoundingParams {
       return false;
     }
 
+    if (mRoundActualImageInPipeline != that.mRoundActualImageInPipeline) {
+      return false;
+    }
+
     return Arrays.equals(mCornersRadii, that.mCornersRadii);
 
   }
@@ -267,6 +298,7 @@ public class RoundingParams {
     result = 31 * result + (mBorderWidth != +0.0f ? Float.floatToIntBits(mBorderWidth) : 0);
     result = 31 * result + mBorderColor;
     result = 31 * result + (mPadding != +0.0f ? Float.floatToIntBits(mPadding) : 0);
+    result = 31 * result + (mRoundActualImageInPipeline ? 1 : 0);
 
     return result;
   }
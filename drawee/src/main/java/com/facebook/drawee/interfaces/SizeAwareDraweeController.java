@@ -0,0 +1,33 @@
+/*
+ * Copyright (c) 2015-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.drawee.interfaces;
+
+/**
+ * Interface for Drawee controllers that use the laid out size of the drawee to fetch the image,
+ * e.g. to decode it no larger than it is shown.
+ *
+ * <p> The size is reported by {@link com.facebook.drawee.view.DraweeHolder}. If the containing
+ * view reports sizes, controllers that need the size only get attached once it is known.
+ */
+public interface SizeAwareDraweeController extends DraweeController {
+
+  /**
+   * Whether the controller needs the size of the drawee before it gets attached.
+   */
+  boolean needsSize();
+
+  /**
+   * Called with the laid out size of the drawee, before the controller gets attached if the size
+   * is known by then, and whenever the size changes.
+   * @param width width of the drawee in pixels
+   * @param height height of the drawee in pixels
+   */
+  void onSizeChanged(int width, int height);
+}
@@ -26,6 +26,8 @@ import com.facebook.drawee.drawable.VisibilityAwareDrawable;
 import com.facebook.drawee.drawable.VisibilityCallback;
 import com.facebook.drawee.interfaces.DraweeController;
 import com.facebook.drawee.interfaces.DraweeHierarchy;
+import com.facebook.drawee.interfaces.SimpleDraweeControllerBuilder;
+import com.facebook.drawee.interfaces.SizeAwareDraweeController;
 
 import javax.annotation.Nullable;
 
@@ -47,17 +49,40 @@ import static com.facebook.drawee.components.DraweeEventTracker.Event;
  * {@link View#onStartTemporaryDetach()} and {@link View#onDetachedFromWindow()} methods. It must
  * call {@link #onAttach} from its {@link View#onFinishTemporaryDetach()} and
  * {@link View#onAttachedToWindow()} methods.
+ *
+ * <p>The containing view may also report the laid out size of the drawee through
+ * {@link #onSizeChanged}, see {@link #setReportsSize}.
  */
 public class DraweeHolder<DH extends DraweeHierarchy> implements VisibilityCallback {
 
+  /**
+   * Listener notified when the controller gets attached or detached, i.e. when the holder starts
+   * or stops showing the image, as decided by {@link #onAttach}, {@link #onDetach} and
+   * {@link #onVisibilityChange}.
+   */
+  public interface ControllerAttachListener {
+
+    /** Called after the controller got attached. */
+    void onControllerAttached();
+
+    /** Called after the controller got detached. */
+    void onControllerDetached();
+  }
+
+  private static final int SIZE_UNKNOWN = -1;
+
   private boolean mIsControllerAttached = false;
   private boolean mIsHolderAttached = false;
   private boolean mIsVisible = true;
   private boolean mIsActivityStarted = true;
+  private boolean mReportsSize = false;
+  private int mWidth = SIZE_UNKNOWN;
+  private int mHeight = SIZE_UNKNOWN;
   private DH mHierarchy;
   private DraweeController mController = null;
   private final ActivityListener mActivityListener;
   private final DraweeEventTracker mEventTracker = new DraweeEventTracker();
+  private @Nullable ControllerAttachListener mControllerAttachListener = null;
 
   /**
    * Creates a new instance of DraweeHolder that detaches / attaches controller whenever context
@@ -129,6 +154,47 @@ public class DraweeHolder<DH extends DraweeHierarchy> implements VisibilityCallb
     attachOrDetachController();
   }
 
+  /**
+   * Sets whether the containing view reports the size of the drawee through
+   * {@link #onSizeChanged}.
+   *
+   * <p>If so, a {@link SizeAwareDraweeController} that needs the size only gets attached once the
+   * size has been reported, e.g. after the first layout of the view.
+   */
+  public void setReportsSize(boolean reportsSize) {
+    mReportsSize = reportsSize;
+    attachOrDetachController();
+  }
+
+  /**
+   * Sets the laid out size of the drawee and forwards it to the controller.
+   *
+   * <p>Views that report sizes should call this method after every layout, even if the size is
+   * empty, so that controllers waiting for the size get attached.
+   * @param width width of the drawee in pixels
+   * @param height height of the drawee in pixels
+   */
+  public void onSizeChanged(int width, int height) {
+    if (mWidth == width && mHeight == height) {
+      return;
+    }
+    mWidth = width;
+    mHeight = height;
+    if (mController instanceof SizeAwareDraweeController) {
+      ((SizeAwareDraweeController) mController).onSizeChanged(width, height);
+    }
+    attachOrDetachController();
+  }
+
+  /**
+   * Sets the listener to notify when the controller gets attached or detached, e.g. to prioritize
+   * the prefetches of the items of a list that get shown. Not set by default.
+   */
+  public void setControllerAttachListener(
+      @Nullable ControllerAttachListener controllerAttachListener) {
+    mControllerAttachListener = controllerAttachListener;
+  }
+
   /**
    * Forwards the touch event to the controller.
    * @param event touch event to handle
@@ -214,6 +280,9 @@ public class DraweeHolder<DH extends DraweeHierarchy> implements VisibilityCallb
     if (mController != null) {
       mEventTracker.recordEvent(Event.ON_SET_CONTROLLER);
       mController.setHierarchy(mHierarchy);
+      if (mController instanceof SizeAwareDraweeController && isSizeKnown()) {
+        ((SizeAwareDraweeController) mController).onSizeChanged(mWidth, mHeight);
+      }
     } else {
       mEventTracker.recordEvent(Event.ON_CLEAR_CONTROLLER);
     }
@@ -223,6 +292,30 @@ public class DraweeHolder<DH extends DraweeHierarchy> implements VisibilityCallb
     }
   }
 
+  /**
+   * Builds a new controller with the given builder and sets it, reusing the current controller.
+   *
+   * <p> This is meant for rebinding recycled list cells. The current controller gets detached,
+   * reinitialized by the builder and attached again, so that rebinding the holder to another
+   * image allocates neither a new controller nor its components. The hierarchy is kept and gets
+   * reset by the controller.
+   *
+   * <p> The old controller of the builder is cleared afterwards.
+   */
+  public void buildAndSetController(SimpleDraweeControllerBuilder builder) {
+    boolean wasAttached = mIsControllerAttached;
+    if (wasAttached) {
+      detachController();
+    }
+    builder.setOldController(mController);
+    DraweeController draweeController = builder.build();
+    builder.setOldController(null);
+    setController(draweeController);
+    if (wasAttached) {
+      attachController();
+    }
+  }
+
   /**
    * Gets the controller if set, null otherwise.
    */
@@ -266,7 +359,7 @@ public class DraweeHolder<DH extends DraweeHierarchy> implements VisibilityCallb
   }
 
   private void attachController() {
-    if (mIsControllerAttached) {
+    if (mIsControllerAttached || isWaitingForSize()) {
       return;
     }
     mEventTracker.recordEvent(Event.ON_ATTACH_CONTROLLER);
@@ -275,6 +368,9 @@ public class DraweeHolder<DH extends DraweeHierarchy> implements VisibilityCallb
         mController.getHierarchy() != null) {
       mController.onAttach();
     }
+    if (mControllerAttachListener != null) {
+      mControllerAttachListener.onControllerAttached();
+    }
   }
 
   private void detachController() {
@@ -286,6 +382,23 @@ public class DraweeHolder<DH extends DraweeHierarchy> implements VisibilityCallb
     if (mController != null) {
       mController.onDetach();
     }
+    if (mControllerAttachListener != null) {
+      mControllerAttachListener.onControllerDetached();
+    }
+  }
+
+  private boolean isSizeKnown() {
+    return mWidth != SIZE_UNKNOWN;
+  }
+
+  /**
+   * Whether the controller must not be attached yet, as it needs the size of the drawee.
+   */
+  private boolean isWaitingForSize() {
+    return mReportsSize &&
+        !isSizeKnown() &&
+        mController instanceof SizeAwareDraweeController &&
+        ((SizeAwareDraweeController) mController).needsSize();
   }
 
   private void attachOrDetachController() {
@@ -303,6 +416,7 @@ public class DraweeHolder<DH extends DraweeHierarchy> implements VisibilityCallb
         .add("holderAttached", mIsHolderAttached)
         .add("drawableVisible", mIsVisible)
         .add("activityStarted", mIsActivityStarted)
+        .add("size", isSizeKnown() ? mWidth + "x" + mHeight : "unknown")
         .add("events", mEventTracker.toString())
         .toString();
   }
@@ -24,6 +24,7 @@ import android.widget.ImageView;
 
 import com.facebook.common.internal.Objects;
 import com.facebook.drawee.interfaces.DraweeHierarchy;
+import com.facebook.drawee.interfaces.SimpleDraweeControllerBuilder;
 import com.facebook.drawee.interfaces.DraweeController;
 
 /**
@@ -76,6 +77,7 @@ public class DraweeView<DH extends DraweeHierarchy> extends ImageView {
     }
     mInitialised = true;
     mDraweeHolder = DraweeHolder.create(null, context);
+    mDraweeHolder.setReportsSize(true);
     if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
       ColorStateList imageTintList = getImageTintList();
       if (imageTintList == null) {
@@ -112,6 +114,15 @@ public class DraweeView<DH extends DraweeHierarchy> extends ImageView {
     super.setImageDrawable(mDraweeHolder.getTopLevelDrawable());
   }
 
+  /**
+   * Builds a new controller with the given builder and sets it, reusing the current controller.
+   * See {@link DraweeHolder#buildAndSetController}.
+   */
+  public void buildAndSetController(SimpleDraweeControllerBuilder builder) {
+    mDraweeHolder.buildAndSetController(builder);
+    super.setImageDrawable(mDraweeHolder.getTopLevelDrawable());
+  }
+
   /** Gets the controller if set, null otherwise. */
   @Nullable public DraweeController getController() {
     return mDraweeHolder.getController();
@@ -122,6 +133,15 @@ public class DraweeView<DH extends DraweeHierarchy> extends ImageView {
     return mDraweeHolder.getController() != null;
   }
 
+  /**
+   * Sets the listener to notify when the controller gets attached or detached.
+   * See {@link DraweeHolder#setControllerAttachListener}.
+   */
+  public void setControllerAttachListener(
+      @Nullable DraweeHolder.ControllerAttachListener controllerAttachListener) {
+    mDraweeHolder.setControllerAttachListener(controllerAttachListener);
+  }
+
   @Override
   protected void onAttachedToWindow() {
     super.onAttachedToWindow();
@@ -146,6 +166,14 @@ public class DraweeView<DH extends DraweeHierarchy> extends ImageView {
     mDraweeHolder.onAttach();
   }
 
+  @Override
+  protected void onLayout(boolean changed, int left, int top, int right, int bottom) {
+    super.onLayout(changed, left, top, right, bottom);
+    mDraweeHolder.onSizeChanged(
+        getWidth() - getPaddingLeft() - getPaddingRight(),
+        getHeight() - getPaddingTop() - getPaddingBottom());
+  }
+
   @Override
   public boolean onTouchEvent(MotionEvent event) {
     if (mDraweeHolder.onTouchEvent(event)) {
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2015-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.drawee.components;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InOrder;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+@RunWith(RobolectricTestRunner.class)
+public class DeferredReleaserTest {
+
+  private TestDeferredReleaser mDeferredReleaser;
+
+  @Before
+  public void setUp() {
+    mDeferredReleaser = new TestDeferredReleaser();
+  }
+
+  @Test
+  public void testScheduleAndCancel() {
+    DeferredReleaser.Releasable releasable1 = mock(DeferredReleaser.Releasable.class);
+    DeferredReleaser.Releasable releasable2 = mock(DeferredReleaser.Releasable.class);
+    mDeferredReleaser.scheduleDeferredRelease(releasable1);
+    mDeferredReleaser.scheduleDeferredRelease(releasable2);
+    mDeferredReleaser.scheduleDeferredRelease(releasable1);
+    assertEquals(1, mDeferredReleaser.mScheduleCount);
+    assertFalse(mDeferredReleaser.mScheduledForNextFrame);
+
+    mDeferredReleaser.cancelDeferredRelease(releasable2);
+    mDeferredReleaser.releaseSlice();
+    verify(releasable1).release();
+    verify(releasable2, never()).release();
+    assertEquals(1, mDeferredReleaser.mScheduleCount);
+    assertEquals(1, mDeferredReleaser.getReleasedCount());
+  }
+
+  @Test
+  public void testReleasesLargestFirstWithinBudget() {
+    DeferredReleaser.Releasable releasable = mock(DeferredReleaser.Releasable.class);
+    DeferredReleaser.SizedReleasable small = mockSizedReleasable(100);
+    DeferredReleaser.SizedReleasable large = mockSizedReleasable(10000);
+    DeferredReleaser.SizedReleasable medium = mockSizedReleasable(1000);
+    mDeferredReleaser.scheduleDeferredRelease(releasable);
+    mDeferredReleaser.scheduleDeferredRelease(small);
+    mDeferredReleaser.scheduleDeferredRelease(large);
+    mDeferredReleaser.scheduleDeferredRelease(medium);
+
+    // each release takes 1 ms of the 2 ms budget
+    mDeferredReleaser.releaseSlice();
+    InOrder inOrder = inOrder(large, medium);
+    inOrder.verify(large).release();
+    inOrder.verify(medium).release();
+    verify(small, never()).release();
+    verify(releasable, never()).release();
+    assertEquals(2, mDeferredReleaser.mScheduleCount);
+    assertTrue(mDeferredReleaser.mScheduledForNextFrame);
+
+    mDeferredReleaser.releaseSlice();
+    verify(small).release();
+    verify(releasable).release();
+    assertEquals(2, mDeferredReleaser.mScheduleCount);
+
+    assertEquals(2, mDeferredReleaser.getSliceCount());
+    assertEquals(4, mDeferredReleaser.getReleasedCount());
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(4), mDeferredReleaser.getReleaseTimeNs());
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(2), mDeferredReleaser.getMaxSliceTimeNs());
+  }
+
+  private static DeferredReleaser.SizedReleasable mockSizedReleasable(int sizeInBytes) {
+    DeferredReleaser.SizedReleasable releasable = mock(DeferredReleaser.SizedReleasable.class);
+    when(releasable.getReleasableSizeInBytes()).thenReturn(sizeInBytes);
+    return releasable;
+  }
+
+  private static class TestDeferredReleaser extends DeferredReleaser {
+    int mScheduleCount;
+    boolean mScheduledForNextFrame;
+    long mCurrentTimeNs;
+
+    TestDeferredReleaser() {
+      super(null, 2);
+    }
+
+    @Override
+    protected void scheduleSlice(boolean nextFrame) {
+      mScheduleCount++;
+      mScheduledForNextFrame = nextFrame;
+    }
+
+    @Override
+    protected long getCurrentTimeNs() {
+      // every call is one release later
+      long currentTimeNs = mCurrentTimeNs;
+      mCurrentTimeNs += TimeUnit.MILLISECONDS.toNanos(1);
+      return currentTimeNs;
+    }
+  }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2015-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.drawee.components;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+@RunWith(RobolectricTestRunner.class)
+public class FrameBatchingExecutorTest {
+
+  private TestFrameBatchingExecutor mExecutor;
+
+  @Before
+  public void setUp() {
+    mExecutor = new TestFrameBatchingExecutor();
+  }
+
+  @Test
+  public void testExecute_OnUiThread() {
+    mExecutor.mIsUiThread = true;
+    Runnable command = mock(Runnable.class);
+    mExecutor.execute(command);
+    verify(command).run();
+    assertEquals(0, mExecutor.mScheduleCount);
+    assertEquals(1, mExecutor.getBatchCount());
+    assertEquals(1, mExecutor.getCommandCount());
+  }
+
+  @Test
+  public void testExecute_Batched() {
+    Runnable command1 = mock(Runnable.class);
+    Runnable command2 = mock(Runnable.class);
+    Runnable command3 = mock(Runnable.class);
+    mExecutor.execute(command1);
+    mExecutor.execute(command2);
+    mExecutor.execute(command3);
+    assertEquals(1, mExecutor.mScheduleCount);
+    verifyZeroInteractions(command1, command2, command3);
+
+    mExecutor.runBatch();
+    verify(command1).run();
+    verify(command2).run();
+    verify(command3).run();
+    assertEquals(1, mExecutor.getBatchCount());
+    assertEquals(3, mExecutor.getCommandCount());
+    assertTrue(mExecutor.getUiThreadTimeNs() >= mExecutor.getMaxBatchTimeNs());
+
+    // the next command schedules a new batch
+    Runnable command4 = mock(Runnable.class);
+    mExecutor.execute(command4);
+    assertEquals(2, mExecutor.mScheduleCount);
+    mExecutor.runBatch();
+    verify(command4).run();
+    verify(command1).run();
+    assertEquals(2, mExecutor.getBatchCount());
+    assertEquals(4, mExecutor.getCommandCount());
+  }
+
+  @Test
+  public void testRunBatch_FailingCommand() {
+    Runnable command1 = mock(Runnable.class);
+    doThrow(new RuntimeException()).when(command1).run();
+    Runnable command2 = mock(Runnable.class);
+    mExecutor.execute(command1);
+    mExecutor.execute(command2);
+    mExecutor.runBatch();
+    verify(command2).run();
+    assertEquals(2, mExecutor.getCommandCount());
+  }
+
+  private static class TestFrameBatchingExecutor extends FrameBatchingExecutor {
+    boolean mIsUiThread;
+    int mScheduleCount;
+
+    @Override
+    protected void scheduleBatch() {
+      mScheduleCount++;
+    }
+
+    @Override
+    protected boolean isUiThread() {
+      return mIsUiThread;
+    }
+  }
+}
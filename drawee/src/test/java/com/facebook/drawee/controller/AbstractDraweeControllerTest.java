@@ -54,6 +54,7 @@ import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
 
 /** * Tests for AbstractDraweeController */
 @RunWith(RobolectricTestRunner.class)
@@ -114,6 +115,7 @@ public class AbstractDraweeControllerTest {
 
     private Supplier<DataSource<FakeImage>> mDataSourceSupplier;
     public boolean mIsAttached = false;
+    public @Nullable FakeImage mCachedImage;
 
     public FakeDraweeController(
         DeferredReleaser deferredReleaser,
@@ -146,6 +148,11 @@ public class AbstractDraweeControllerTest {
       return mDataSourceSupplier.get();
     }
 
+    @Override
+    protected @Nullable FakeImage getCachedImage() {
+      return mCachedImage;
+    }
+
     @Override
     protected Drawable createDrawable(FakeImage image) {
       return image.getDrawable();
@@ -210,6 +217,19 @@ public class AbstractDraweeControllerTest {
     verify(mDataSourceSupplier).get();
   }
 
+  @Test
+  public void testOnAttach_WithCachedImage() {
+    Drawable drawable = mock(Drawable.class);
+    FakeImage image = FakeImage.create(drawable);
+    mController.mCachedImage = image;
+    mController.setHierarchy(mDraweeHierarchy);
+    mController.onAttach();
+    verify(mDataSourceSupplier, never()).get();
+    verify(mDraweeHierarchy).setImage(drawable, 1f, true);
+    mController.onDetach();
+    assertTrue(image.isClosed());
+  }
+
   @Test
   public void testOnAttach_ThrowsWithoutHierarchy() {
     try {
@@ -320,6 +340,23 @@ public class AbstractDraweeControllerTest {
     inOrder.verify(listener2, never()).onRelease(anyString());
   }
 
+  @Test
+  public void testRunningAnimationContinues() {
+    SimpleDataSource<FakeImage> dataSource = SimpleDataSource.create();
+    when(mDataSourceSupplier.get()).thenReturn(dataSource);
+    Drawable drawable1 = mock(Drawable.class, withSettings().extraInterfaces(Animatable.class));
+    Drawable drawable2 = mock(Drawable.class, withSettings().extraInterfaces(Animatable.class));
+    mController.setHierarchy(mDraweeHierarchy);
+    mController.onAttach();
+
+    dataSource.setResult(FakeImage.create(drawable1), false);
+    verify((Animatable) drawable1, never()).start();
+    when(((Animatable) drawable1).isRunning()).thenReturn(true);
+
+    dataSource.setResult(FakeImage.create(drawable2), true);
+    verify((Animatable) drawable2).start();
+  }
+
   @Test
   public void testListenerReentrancy_AfterIntermediateSet() {
     testListenerReentrancy(INTERMEDIATE_FAILURE);
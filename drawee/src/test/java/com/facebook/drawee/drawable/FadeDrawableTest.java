@@ -392,6 +392,86 @@ public class FadeDrawableTest {
     Assert.assertEquals(false, mFadeDrawable.mIsLayerOn[2]);
   }
 
+  @Test
+  public void testFadeLimiter() {
+    FakeFadeLimiter fadeLimiter = new FakeFadeLimiter(1);
+    FakeFadeDrawable otherFadeDrawable = new FakeFadeDrawable(new Drawable[] {
+        DrawableTestUtils.mockDrawable(),
+        DrawableTestUtils.mockDrawable(),
+    });
+    mFadeDrawable.setFadeLimiter(fadeLimiter);
+    otherFadeDrawable.setFadeLimiter(fadeLimiter);
+    mFadeDrawable.setTransitionDuration(100);
+    otherFadeDrawable.setTransitionDuration(100);
+
+    // the second fade within the same frame is finished immediately
+    mFadeDrawable.fadeToLayer(1);
+    otherFadeDrawable.fadeToLayer(1);
+    mFadeDrawable.draw(mCanvas);
+    otherFadeDrawable.draw(mCanvas);
+    Assert.assertEquals(FadeDrawable.TRANSITION_RUNNING, mFadeDrawable.mTransitionState);
+    Assert.assertEquals(FadeDrawable.TRANSITION_NONE, otherFadeDrawable.mTransitionState);
+    Assert.assertEquals(0, otherFadeDrawable.mAlphas[0]);
+    Assert.assertEquals(255, otherFadeDrawable.mAlphas[1]);
+
+    // the running fade keeps its slot in the next frame
+    fadeLimiter.mFrameTimeMs += 17;
+    otherFadeDrawable.fadeToLayer(0);
+    mFadeDrawable.incrementCurrentTimeMs(17);
+    mFadeDrawable.draw(mCanvas);
+    otherFadeDrawable.draw(mCanvas);
+    Assert.assertEquals(FadeDrawable.TRANSITION_RUNNING, mFadeDrawable.mTransitionState);
+    Assert.assertEquals(FadeDrawable.TRANSITION_NONE, otherFadeDrawable.mTransitionState);
+
+    Assert.assertEquals(1, fadeLimiter.getStartedFadeCount());
+    Assert.assertEquals(2, fadeLimiter.getSkippedFadeCount());
+  }
+
+  @Test
+  public void testOpaqueLayerCoversLayersBelow() {
+    FakeFadeLimiter fadeLimiter = new FakeFadeLimiter(FadeLimiter.DEFAULT_MAX_FADES_PER_FRAME);
+    mFadeDrawable.setFadeLimiter(fadeLimiter);
+    mFadeDrawable.setTransitionDuration(100);
+    mFadeDrawable.setLayerOpaque(1, true);
+    mFadeDrawable.fadeInAllLayers();
+    mFadeDrawable.finishTransitionImmediately();
+
+    resetInteractions();
+    mFadeDrawable.draw(mCanvas);
+    verify(mLayers[0], never()).draw(mCanvas);
+    verify(mLayers[1]).draw(mCanvas);
+    verify(mLayers[2]).draw(mCanvas);
+    Assert.assertEquals(2, fadeLimiter.getDrawnLayerCount());
+    Assert.assertEquals(1, fadeLimiter.getCoveredLayerCount());
+
+    // the layers below are drawn while the opaque layer is not fully visible
+    mFadeDrawable.setAlpha(128);
+    resetInteractions();
+    mFadeDrawable.draw(mCanvas);
+    verify(mLayers[0]).draw(mCanvas);
+    mFadeDrawable.setAlpha(255);
+    mFadeDrawable.fadeOutLayer(1);
+    mFadeDrawable.draw(mCanvas);
+    mFadeDrawable.incrementCurrentTimeMs(50);
+    resetInteractions();
+    mFadeDrawable.draw(mCanvas);
+    verify(mLayers[0]).draw(mCanvas);
+    verify(mLayers[1]).draw(mCanvas);
+  }
+
+  private static class FakeFadeLimiter extends FadeLimiter {
+    long mFrameTimeMs;
+
+    FakeFadeLimiter(int maxFadesPerFrame) {
+      super(maxFadesPerFrame);
+    }
+
+    @Override
+    protected long getFrameTimeMs() {
+      return mFrameTimeMs;
+    }
+  }
+
   private static class FakeFadeDrawable extends FadeDrawable {
 
     private long mCurrentTimeMs;
@@ -63,6 +63,9 @@ public class GenericDraweeHierarchyBuilderTest {
     assertEquals(null, builder.getBackgrounds());
     assertEquals(null, builder.getOverlays());
     assertEquals(null, builder.getRoundingParams());
+    assertEquals(false, builder.getLightweightHierarchyEnabled());
+    assertEquals(false, builder.getLazyLayersEnabled());
+    assertEquals(null, builder.getFadeLimiter());
   }
 
   @Test
@@ -23,6 +23,7 @@ import android.graphics.drawable.StateListDrawable;
 import com.facebook.drawee.drawable.AndroidGraphicsTestUtils;
 import com.facebook.drawee.drawable.DrawableTestUtils;
 import com.facebook.drawee.drawable.FadeDrawable;
+import com.facebook.drawee.drawable.FadingScaleTypeDrawable;
 import com.facebook.drawee.drawable.ForwardingDrawable;
 import com.facebook.drawee.drawable.MatrixDrawable;
 import com.facebook.drawee.drawable.Rounded;
@@ -159,6 +160,136 @@ public class GenericDraweeHierarchyTest {
     verifyCallback(rootDrawable, fadeDrawable);
   }
 
+  @Test
+  public void testHierarchy_Lightweight() throws Exception {
+    GenericDraweeHierarchy dh = mBuilder
+        .setLightweightHierarchyEnabled(true)
+        .setActualImageScaleType(ScaleType.FIT_CENTER)
+        .setFadeDuration(250)
+        .build();
+    RootDrawable rootDrawable = (RootDrawable) dh.getTopLevelDrawable();
+    FadingScaleTypeDrawable lightweightDrawable =
+        (FadingScaleTypeDrawable) rootDrawable.getCurrent();
+    assertEquals(ScaleType.FIT_CENTER, lightweightDrawable.getScaleType());
+    assertEquals(250, lightweightDrawable.getTransitionDuration());
+    assertFalse(lightweightDrawable.isShown());
+
+    // set temporary image
+    dh.setImage(mActualImage1, 0.5f, true);
+    assertSame(mActualImage1, lightweightDrawable.getCurrent());
+    assertTrue(lightweightDrawable.isShown());
+    assertEquals(FadeDrawable.TRANSITION_NONE, lightweightDrawable.getTransitionState());
+    verifyCallback(rootDrawable, mActualImage1);
+
+    // set final image
+    dh.setImage(mActualImage2, 1f, false);
+    assertSame(mActualImage2, lightweightDrawable.getCurrent());
+    assertEquals(FadeDrawable.TRANSITION_STARTING, lightweightDrawable.getTransitionState());
+
+    // fail
+    dh.setFailure(mock(Throwable.class));
+    assertFalse(lightweightDrawable.isShown());
+
+    // reset
+    dh.reset();
+    assertNotSame(mActualImage2, lightweightDrawable.getCurrent());
+    assertEquals(FadeDrawable.TRANSITION_NONE, lightweightDrawable.getTransitionState());
+  }
+
+  @Test
+  public void testHierarchy_LightweightExpanded() throws Exception {
+    GenericDraweeHierarchy dh = mBuilder
+        .setLightweightHierarchyEnabled(true)
+        .setActualImageScaleType(ScaleType.FIT_CENTER)
+        .setFadeDuration(250)
+        .build();
+    RootDrawable rootDrawable = (RootDrawable) dh.getTopLevelDrawable();
+    dh.setImage(mActualImage1, 1f, true);
+
+    dh.setPlaceholderImage(mPlaceholderImage);
+    FadeDrawable fadeDrawable = (FadeDrawable) rootDrawable.getCurrent();
+    assertEquals(5, fadeDrawable.getNumberOfLayers());
+    assertEquals(250, fadeDrawable.getTransitionDuration());
+    assertSame(mPlaceholderImage, fadeDrawable.getDrawable(0));
+    assertActualImageScaleType(ScaleType.FIT_CENTER, null, fadeDrawable.getDrawable(1));
+    assertSame(mActualImage1, fadeDrawable.getDrawable(1).getCurrent().getCurrent());
+    assertFalse(fadeDrawable.isLayerOn(0));
+    assertTrue(fadeDrawable.isLayerOn(1));
+    verifyCallback(rootDrawable, mActualImage1);
+    verifyCallback(rootDrawable, mPlaceholderImage);
+  }
+
+  @Test
+  public void testHierarchy_LazyLayers() throws Exception {
+    GenericDraweeHierarchy dh = mBuilder
+        .setLazyLayersEnabled(true)
+        .setPlaceholderImage(mPlaceholderImage, null)
+        .setProgressBarImage(mProgressBarImage, ScaleType.CENTER)
+        .setRetryImage(mRetryImage, null)
+        .setFailureImage(mFailureImage, ScaleType.CENTER_INSIDE)
+        .build();
+    RootDrawable rootDrawable = (RootDrawable) dh.getTopLevelDrawable();
+    FadeDrawable fadeDrawable = (FadeDrawable) rootDrawable.getCurrent();
+    assertSame(mPlaceholderImage, fadeDrawable.getDrawable(0));
+    assertNull(fadeDrawable.getDrawable(2));
+    assertNull(fadeDrawable.getDrawable(3));
+    assertNull(fadeDrawable.getDrawable(4));
+
+    // an image from the memory cache never needs the progress bar
+    dh.setImage(mActualImage1, 1f, true);
+    assertNull(fadeDrawable.getDrawable(2));
+
+    dh.reset();
+    dh.setProgress(0.5f, false);
+    assertScaleTypeAndDrawable(mProgressBarImage, ScaleType.CENTER, fadeDrawable.getDrawable(2));
+    assertTrue(fadeDrawable.isLayerOn(2));
+    verifyCallback(rootDrawable, mProgressBarImage);
+    assertNull(fadeDrawable.getDrawable(3));
+    assertNull(fadeDrawable.getDrawable(4));
+
+    dh.setRetry(new RuntimeException());
+    assertSame(mRetryImage, fadeDrawable.getDrawable(3));
+    assertTrue(fadeDrawable.isLayerOn(3));
+    assertNull(fadeDrawable.getDrawable(4));
+
+    dh.setFailure(new RuntimeException());
+    assertScaleTypeAndDrawable(
+        mFailureImage,
+        ScaleType.CENTER_INSIDE,
+        fadeDrawable.getDrawable(4));
+    assertTrue(fadeDrawable.isLayerOn(4));
+    assertFalse(fadeDrawable.isLayerOn(3));
+  }
+
+  @Test
+  public void testHierarchy_LazyLayersSetBeforeUse() throws Exception {
+    GenericDraweeHierarchy dh = mBuilder
+        .setLazyLayersEnabled(true)
+        .setPlaceholderImage(mPlaceholderImage, null)
+        .setFailureImage(mFailureImage, null)
+        .setRetryImage(mRetryImage, null)
+        .build();
+    FadeDrawable fadeDrawable = (FadeDrawable) dh.getTopLevelDrawable().getCurrent();
+    dh.setFailureImage(DrawableTestUtils.mockBitmapDrawable(), ScaleType.FIT_CENTER);
+    dh.setRetryImage(null);
+    RoundingParams roundingParams = RoundingParams.asCircle();
+    dh.setRoundingParams(roundingParams);
+    assertNull(fadeDrawable.getDrawable(3));
+    assertNull(fadeDrawable.getDrawable(4));
+
+    // the retry image is gone, so the placeholder is shown instead
+    dh.setRetry(new RuntimeException());
+    assertNull(fadeDrawable.getDrawable(3));
+    assertTrue(fadeDrawable.isLayerOn(0));
+
+    // the failure branch is built with the current image, scale type and rounding
+    dh.setFailure(new RuntimeException());
+    ScaleTypeDrawable failureBranch = (ScaleTypeDrawable) fadeDrawable.getDrawable(4);
+    assertSame(ScaleType.FIT_CENTER, failureBranch.getScaleType());
+    assertRoundingParams(roundingParams, (Rounded) failureBranch.getCurrent());
+    assertTrue(fadeDrawable.isLayerOn(4));
+  }
+
   @Test
   public void testHierarchy_WithPlaceholderImage() throws Exception {
     GenericDraweeHierarchy dh = mBuilder
@@ -729,6 +860,35 @@ public class GenericDraweeHierarchyTest {
     verifyCallback(dh.getTopLevelDrawable(), settableDrawable.getCurrent());
   }
 
+  @Test
+  public void testControlling_WithRoundingInPipeline() throws Exception {
+    GenericDraweeHierarchy dh = mBuilder
+        .setPlaceholderImage(mPlaceholderImage, null)
+        .setActualImageScaleType(null)
+        .setRoundingParams(RoundingParams.asCircle().setRoundActualImageInPipeline(true))
+        .build();
+
+    // image indexes in DH tree
+    final int placeholderImageIndex = 0;
+    final int imageIndex = 1;
+
+    FadeDrawable fadeDrawable = (FadeDrawable) dh.getTopLevelDrawable().getCurrent();
+    ForwardingDrawable settableDrawable = (ForwardingDrawable) fadeDrawable.getDrawable(imageIndex);
+
+    // the placeholder is still rounded by the hierarchy
+    assertEquals(
+        RoundedBitmapDrawable.class,
+        fadeDrawable.getDrawable(placeholderImageIndex).getClass());
+
+    // the actual image is already rounded by the pipeline
+    dh.setImage(mActualImage1, 1f, true);
+    assertSame(mActualImage1, settableDrawable.getCurrent());
+    assertEquals(true, fadeDrawable.isLayerOn(imageIndex));
+
+    dh.setRoundingParams(RoundingParams.asCircle());
+    assertEquals(RoundedBitmapDrawable.class, settableDrawable.getCurrent().getClass());
+  }
+
   @Test
   public void testControlling_WithControllerOverlay() {
     GenericDraweeHierarchy dh = mBuilder
@@ -82,6 +82,14 @@ public class RoundingParamsTest {
     assertEquals(borderWidth, mRoundingParams.getBorderWidth(), 0);
   }
 
+  @Test
+  public void testSetRoundActualImageInPipeline() {
+    assertFalse(mRoundingParams.getRoundActualImageInPipeline());
+    assertSame(mRoundingParams, mRoundingParams.setRoundActualImageInPipeline(true));
+    assertTrue(mRoundingParams.getRoundActualImageInPipeline());
+    assertFalse(mRoundingParams.equals(new RoundingParams()));
+  }
+
   @Test
   public void testFactoryMethods() {
     RoundingParams params1 = RoundingParams.asCircle();
@@ -14,6 +14,8 @@ import android.graphics.drawable.Drawable;
 import com.facebook.drawee.drawable.DrawableTestUtils;
 import com.facebook.drawee.interfaces.DraweeHierarchy;
 import com.facebook.drawee.interfaces.DraweeController;
+import com.facebook.drawee.interfaces.SimpleDraweeControllerBuilder;
+import com.facebook.drawee.interfaces.SizeAwareDraweeController;
 import com.facebook.drawee.testing.DraweeMocks;
 import org.robolectric.RobolectricTestRunner;
 
@@ -26,8 +28,10 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 @RunWith(RobolectricTestRunner.class)
 public class DraweeHolderTest {
@@ -107,6 +111,25 @@ public class DraweeHolderTest {
     verify(mController).onDetach();
   }
 
+  @Test
+  public void testBuildAndSetControllerReusesController() {
+    SimpleDraweeControllerBuilder builder = mock(SimpleDraweeControllerBuilder.class);
+    when(builder.build()).thenReturn(mController);
+    mDraweeHolder.setController(mController);
+    mDraweeHolder.onAttach();
+
+    mDraweeHolder.buildAndSetController(builder);
+    InOrder inOrder = inOrder(mController, builder);
+    inOrder.verify(mController).onAttach();
+    inOrder.verify(mController).onDetach();
+    inOrder.verify(builder).setOldController(mController);
+    inOrder.verify(builder).build();
+    inOrder.verify(builder).setOldController(null);
+    inOrder.verify(mController).onAttach();
+    assertSame(mController, mDraweeHolder.getController());
+    assertSame(mDraweeHierarchy, mController.getHierarchy());
+  }
+
   @Test
   public void testSetNullController() {
     mDraweeHolder.setController(null);
@@ -115,6 +138,84 @@ public class DraweeHolderTest {
     mDraweeHolder.onAttach();
   }
 
+  @Test
+  public void testControllerAttachListener() {
+    DraweeHolder.ControllerAttachListener listener =
+        mock(DraweeHolder.ControllerAttachListener.class);
+    InOrder inOrderVerifier = inOrder(mController, listener);
+    mDraweeHolder.setControllerAttachListener(listener);
+    mDraweeHolder.setController(mController);
+    mDraweeHolder.onAttach();
+    inOrderVerifier.verify(mController).onAttach();
+    inOrderVerifier.verify(listener).onControllerAttached();
+
+    mDraweeHolder.onVisibilityChange(false);
+    inOrderVerifier.verify(mController).onDetach();
+    inOrderVerifier.verify(listener).onControllerDetached();
+
+    mDraweeHolder.onVisibilityChange(true);
+    mDraweeHolder.onDetach();
+    verify(listener, times(2)).onControllerAttached();
+    verify(listener, times(2)).onControllerDetached();
+
+    mDraweeHolder.setControllerAttachListener(null);
+    mDraweeHolder.onAttach();
+    verify(listener, times(2)).onControllerAttached();
+  }
+
+  @Test
+  public void testSizeAwareControllerWaitsForSize() {
+    SizeAwareDraweeController controller = mockSizeAwareController(true);
+    mDraweeHolder.setReportsSize(true);
+    mDraweeHolder.setController(controller);
+    mDraweeHolder.onAttach();
+    verify(controller, never()).onAttach();
+
+    mDraweeHolder.onSizeChanged(100, 50);
+    InOrder inOrder = inOrder(controller);
+    inOrder.verify(controller).onSizeChanged(100, 50);
+    inOrder.verify(controller).onAttach();
+
+    mDraweeHolder.onSizeChanged(100, 50);
+    verify(controller).onSizeChanged(100, 50);
+  }
+
+  @Test
+  public void testSizeAwareControllerGetsKnownSizeBeforeAttach() {
+    SizeAwareDraweeController controller = mockSizeAwareController(true);
+    mDraweeHolder.setReportsSize(true);
+    mDraweeHolder.onSizeChanged(100, 50);
+    mDraweeHolder.onAttach();
+    mDraweeHolder.setController(controller);
+    InOrder inOrder = inOrder(controller);
+    inOrder.verify(controller).onSizeChanged(100, 50);
+    inOrder.verify(controller).onAttach();
+  }
+
+  @Test
+  public void testSizeAwareControllerDoesNotWaitIfSizeIsNotReported() {
+    SizeAwareDraweeController controller = mockSizeAwareController(true);
+    mDraweeHolder.setController(controller);
+    mDraweeHolder.onAttach();
+    verify(controller).onAttach();
+  }
+
+  @Test
+  public void testSizeAwareControllerDoesNotWaitIfSizeIsNotNeeded() {
+    SizeAwareDraweeController controller = mockSizeAwareController(false);
+    mDraweeHolder.setReportsSize(true);
+    mDraweeHolder.setController(controller);
+    mDraweeHolder.onAttach();
+    verify(controller).onAttach();
+  }
+
+  private static SizeAwareDraweeController mockSizeAwareController(boolean needsSize) {
+    SizeAwareDraweeController controller = mock(SizeAwareDraweeController.class);
+    DraweeMocks.stubGetAndSetHierarchy(controller);
+    when(controller.needsSize()).thenReturn(needsSize);
+    return controller;
+  }
+
   /** There are 8 possible state transitions with two variables
    * 1. (visible, unattached)   -> (visible, attached)
    * 2. (visible, attached)     -> (invisible, attached)
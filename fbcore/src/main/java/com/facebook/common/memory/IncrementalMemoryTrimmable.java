@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2015-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.common.memory;
+
+/**
+ * A {@link MemoryTrimmable} that can also free its memory in small steps.
+ *
+ * <p>A registry that supports it can then spread a trim over time instead of freeing everything
+ * at once on the thread that received the memory event.
+ */
+public interface IncrementalMemoryTrimmable extends MemoryTrimmable {
+
+  /** Trim cost of memory that is just kept for reuse, e.g. the free values of a pool. */
+  int TRIM_COST_POOLED = 1;
+
+  /** Trim cost of memory that has to be fetched or decoded again when needed, e.g. a cache. */
+  int TRIM_COST_CACHED = 10;
+
+  /**
+   * Gets the number of bytes that {@link #trim} would free for the given trim type.
+   */
+  int getTrimmableSizeInBytes(MemoryTrimType trimType);
+
+  /**
+   * Gets the relative cost of getting a trimmed byte back. Memory with the lowest cost is trimmed
+   * first.
+   */
+  int getTrimCost();
+
+  /**
+   * Frees about the given number of bytes, the least valuable first.
+   *
+   * @return the number of bytes actually freed, 0 if there is nothing left to free
+   */
+  int trimIncrementally(int maxBytes);
+}
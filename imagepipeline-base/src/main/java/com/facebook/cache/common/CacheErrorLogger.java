@@ -38,6 +38,7 @@ public interface CacheErrorLogger {
     DELETE_FILE,
 
     EVICTION,
+    COMPACTION,
     GENERIC_IO,
     OTHER
   }
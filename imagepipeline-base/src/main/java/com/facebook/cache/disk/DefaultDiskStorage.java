@@ -244,7 +244,7 @@ public class DefaultDiskStorage implements DiskStorage {
     public void visitFile(File file) {
       FileInfo info = getShardFileInfo(file);
       if (info != null && info.type == FileType.CONTENT) {
-        result.add(new EntryImpl(file));
+        result.add(new EntryImpl(info.resourceId, file));
       }
     }
 
@@ -535,17 +535,24 @@ public class DefaultDiskStorage implements DiskStorage {
    */
   @VisibleForTesting
   class EntryImpl implements Entry {
+    private final String id;
     private final FileBinaryResource resource;
     private long size;
     private long timestamp;
 
-    private EntryImpl(File cachedFile) {
+    private EntryImpl(String id, File cachedFile) {
       Preconditions.checkNotNull(cachedFile);
+      this.id = Preconditions.checkNotNull(id);
       this.resource = FileBinaryResource.createOrNull(cachedFile);
       this.size = -1;
       this.timestamp = -1;
     }
 
+    @Override
+    public String getId() {
+      return id;
+    }
+
     @Override
     public long getTimestamp() {
       if (timestamp < 0) {
@@ -42,6 +42,9 @@ public class DiskCacheConfig {
   private final CacheErrorLogger mCacheErrorLogger;
   private final CacheEventListener mCacheEventListener;
   private final DiskTrimmableRegistry mDiskTrimmableRegistry;
+  private final @Nullable EntryCompactor mEntryCompactor;
+  private final long mCompactionColdThresholdMs;
+  private final @Nullable EntryFetchCostIndex mEntryFetchCostIndex;
 
   private DiskCacheConfig(Builder builder) {
     mVersion = builder.mVersion;
@@ -50,8 +53,15 @@ public class DiskCacheConfig {
     mDefaultSizeLimit = builder.mMaxCacheSize;
     mLowDiskSpaceSizeLimit = builder.mMaxCacheSizeOnLowDiskSpace;
     mMinimumSizeLimit = builder.mMaxCacheSizeOnVeryLowDiskSpace;
-    mEntryEvictionComparatorSupplier =
-        Preconditions.checkNotNull(builder.mEntryEvictionComparatorSupplier);
+    if (builder.mCostAwareEvictionEnabled) {
+      mEntryFetchCostIndex = new EntryFetchCostIndex();
+      mEntryEvictionComparatorSupplier =
+          new GreedyDualSizeEntryEvictionComparatorSupplier(mEntryFetchCostIndex);
+    } else {
+      mEntryFetchCostIndex = null;
+      mEntryEvictionComparatorSupplier =
+          Preconditions.checkNotNull(builder.mEntryEvictionComparatorSupplier);
+    }
     mCacheErrorLogger =
         builder.mCacheErrorLogger == null ?
             NoOpCacheErrorLogger.getInstance() :
@@ -64,6 +74,8 @@ public class DiskCacheConfig {
         builder.mDiskTrimmableRegistry == null ?
             NoOpDiskTrimmableRegistry.getInstance() :
             builder.mDiskTrimmableRegistry;
+    mEntryCompactor = builder.mEntryCompactor;
+    mCompactionColdThresholdMs = builder.mCompactionColdThresholdMs;
   }
 
   public int getVersion() {
@@ -106,6 +118,18 @@ public class DiskCacheConfig {
     return mDiskTrimmableRegistry;
   }
 
+  public @Nullable EntryCompactor getEntryCompactor() {
+    return mEntryCompactor;
+  }
+
+  public long getCompactionColdThresholdMs() {
+    return mCompactionColdThresholdMs;
+  }
+
+  public @Nullable EntryFetchCostIndex getEntryFetchCostIndex() {
+    return mEntryFetchCostIndex;
+  }
+
   /**
    * Create a new builder.
    *
@@ -132,6 +156,9 @@ public class DiskCacheConfig {
     private CacheErrorLogger mCacheErrorLogger;
     private CacheEventListener mCacheEventListener;
     private DiskTrimmableRegistry mDiskTrimmableRegistry;
+    private EntryCompactor mEntryCompactor;
+    private long mCompactionColdThresholdMs = DiskStorageCache.DEFAULT_COMPACTION_COLD_THRESHOLD_MS;
+    private boolean mCostAwareEvictionEnabled = false;
 
     private final @Nullable Context mContext;
 
@@ -235,6 +262,42 @@ public class DiskCacheConfig {
       return this;
     }
 
+    /**
+     * The compactor used to rewrite cold entries into a more compact form. If not set, entries
+     * are never compacted.
+     *
+     * <p>See {@link FileCache#compactColdEntries()}.
+     */
+    public Builder setEntryCompactor(EntryCompactor entryCompactor) {
+      mEntryCompactor = entryCompactor;
+      return this;
+    }
+
+    /**
+     * Entries that have not been accessed for this long are considered cold and get compacted.
+     */
+    public Builder setCompactionColdThresholdMs(long compactionColdThresholdMs) {
+      mCompactionColdThresholdMs = compactionColdThresholdMs;
+      return this;
+    }
+
+    /**
+     * If enabled, the cost of fetching each entry is recorded and entries are evicted following
+     * the GreedyDual-Size policy, which overrides any comparator set with
+     * {@link #setEntryEvictionComparatorSupplier(EntryEvictionComparatorSupplier)}. Each config
+     * built gets its own {@link EntryFetchCostIndex}.
+     *
+     * <p>The costs are only kept in memory. After a restart, the entries already on disk have no
+     * recorded cost and are sorted by last access time only, until they are fetched again. Until
+     * then they are evicted before entries fetched since the restart, whatever their cost was.
+     *
+     * <p>See {@link GreedyDualSizeEntryEvictionComparatorSupplier}.
+     */
+    public Builder setCostAwareEvictionEnabled(boolean costAwareEvictionEnabled) {
+      mCostAwareEvictionEnabled = costAwareEvictionEnabled;
+      return this;
+    }
+
     public DiskCacheConfig build() {
       Preconditions.checkState(
           mBaseDirectoryPathSupplier != null || mContext != null,
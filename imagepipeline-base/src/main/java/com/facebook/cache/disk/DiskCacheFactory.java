@@ -22,14 +22,17 @@ public class DiskCacheFactory {
     DiskStorageCache.Params params = new DiskStorageCache.Params(
         diskCacheConfig.getMinimumSizeLimit(),
         diskCacheConfig.getLowDiskSpaceSizeLimit(),
-        diskCacheConfig.getDefaultSizeLimit());
+        diskCacheConfig.getDefaultSizeLimit(),
+        diskCacheConfig.getCompactionColdThresholdMs());
     return new DiskStorageCache(
         diskStorageSupplier,
         diskCacheConfig.getEntryEvictionComparatorSupplier(),
         params,
         diskCacheConfig.getCacheEventListener(),
         diskCacheConfig.getCacheErrorLogger(),
-        diskCacheConfig.getDiskTrimmableRegistry());
+        diskCacheConfig.getDiskTrimmableRegistry(),
+        diskCacheConfig.getEntryCompactor(),
+        diskCacheConfig.getEntryFetchCostIndex());
   }
 
   private static DiskStorageSupplier newDiskStorageSupplier(DiskCacheConfig diskCacheConfig) {
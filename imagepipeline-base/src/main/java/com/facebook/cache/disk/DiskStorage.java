@@ -169,6 +169,8 @@ public interface DiskStorage {
   DiskDumpInfo getDumpInfo() throws IOException;
 
   interface Entry {
+    /** the id representing the resource */
+    String getId();
     /** calculated on first time and never changes so it can be used as immutable **/
     long getTimestamp();
     /** calculated on first time and never changes so it can be used as immutable **/
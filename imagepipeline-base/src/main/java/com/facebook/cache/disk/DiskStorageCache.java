@@ -19,6 +19,11 @@ import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 import android.os.SystemClock;
@@ -55,6 +60,8 @@ public class DiskStorageCache implements FileCache, DiskTrimmable {
   private static final long FILECACHE_SIZE_UPDATE_PERIOD_MS = TimeUnit.MINUTES.toMillis(30);
   private static final double TRIMMING_LOWER_BOUND = 0.02;
   private static final long UNINITIALIZED = -1;
+  // Entries not accessed for this long are considered cold and may be compacted
+  public static final long DEFAULT_COMPACTION_COLD_THRESHOLD_MS = TimeUnit.DAYS.toMillis(3);
 
   private final long mLowDiskSpaceCacheSizeLimit;
   private final long mDefaultCacheSizeLimit;
@@ -73,7 +80,18 @@ public class DiskStorageCache implements FileCache, DiskTrimmable {
   private final EntryEvictionComparatorSupplier mEntryEvictionComparatorSupplier;
   private final CacheErrorLogger mCacheErrorLogger;
 
+  private final @Nullable EntryCompactor mEntryCompactor;
+  private final long mCompactionColdThresholdMs;
+
+  // Sizes of entries that compaction left unchanged, keyed by resource id. An entry is only
+  // considered again once its contents, and hence very likely its size, have changed.
+  @GuardedBy("mLock")
+  private final Map<String, Long> mIncompressibleEntrySizes = new HashMap<>();
+
+  private final @Nullable EntryFetchCostIndex mEntryFetchCostIndex;
+
   private final CacheStats mCacheStats;
+  private final CompactionStats mCompactionStats;
 
   private final Clock mClock;
 
@@ -123,18 +141,87 @@ public class DiskStorageCache implements FileCache, DiskTrimmable {
     }
   }
 
+  /**
+   * Stats about compaction of cold entries - number of entries rewritten, bytes reclaimed, and
+   * the hit ratio of the cache before and after the first compaction pass.
+   */
+  public static class CompactionStats {
+
+    private boolean mHasCompacted = false;
+    private long mCompactedCount = 0;
+    private long mReclaimedSize = 0;
+    private long mHitsBeforeCompaction = 0;
+    private long mRequestsBeforeCompaction = 0;
+    private long mHitsAfterCompaction = 0;
+    private long mRequestsAfterCompaction = 0;
+
+    synchronized void onRequest(boolean hit) {
+      if (mHasCompacted) {
+        mRequestsAfterCompaction++;
+        mHitsAfterCompaction += hit ? 1 : 0;
+      } else {
+        mRequestsBeforeCompaction++;
+        mHitsBeforeCompaction += hit ? 1 : 0;
+      }
+    }
+
+    synchronized void onCompaction(int compactedCount, long reclaimedSize) {
+      mHasCompacted = true;
+      mCompactedCount += compactedCount;
+      mReclaimedSize += reclaimedSize;
+    }
+
+    /** @return number of entries rewritten by compaction */
+    public synchronized long getCompactedCount() {
+      return mCompactedCount;
+    }
+
+    /** @return number of bytes reclaimed by compaction */
+    public synchronized long getReclaimedSize() {
+      return mReclaimedSize;
+    }
+
+    /** @return hit ratio of the cache until the first compaction pass, or -1 if unknown */
+    public synchronized float getHitRatioBeforeCompaction() {
+      return getRatio(mHitsBeforeCompaction, mRequestsBeforeCompaction);
+    }
+
+    /** @return hit ratio of the cache since the first compaction pass, or -1 if unknown */
+    public synchronized float getHitRatioAfterCompaction() {
+      return getRatio(mHitsAfterCompaction, mRequestsAfterCompaction);
+    }
+
+    private static float getRatio(long hits, long requests) {
+      return requests == 0 ? -1 : (float) hits / requests;
+    }
+  }
+
   public static class Params {
     public final long mCacheSizeLimitMinimum;
     public final long mLowDiskSpaceCacheSizeLimit;
     public final long mDefaultCacheSizeLimit;
+    public final long mCompactionColdThresholdMs;
 
     public Params(
         long cacheSizeLimitMinimum,
         long lowDiskSpaceCacheSizeLimit,
         long defaultCacheSizeLimit) {
+      this(
+          cacheSizeLimitMinimum,
+          lowDiskSpaceCacheSizeLimit,
+          defaultCacheSizeLimit,
+          DEFAULT_COMPACTION_COLD_THRESHOLD_MS);
+    }
+
+    public Params(
+        long cacheSizeLimitMinimum,
+        long lowDiskSpaceCacheSizeLimit,
+        long defaultCacheSizeLimit,
+        long compactionColdThresholdMs) {
       mCacheSizeLimitMinimum = cacheSizeLimitMinimum;
       mLowDiskSpaceCacheSizeLimit = lowDiskSpaceCacheSizeLimit;
       mDefaultCacheSizeLimit = defaultCacheSizeLimit;
+      mCompactionColdThresholdMs = compactionColdThresholdMs;
     }
   }
 
@@ -145,6 +232,26 @@ public class DiskStorageCache implements FileCache, DiskTrimmable {
       CacheEventListener cacheEventListener,
       CacheErrorLogger cacheErrorLogger,
       @Nullable DiskTrimmableRegistry diskTrimmableRegistry) {
+    this(
+        diskStorageSupplier,
+        entryEvictionComparatorSupplier,
+        params,
+        cacheEventListener,
+        cacheErrorLogger,
+        diskTrimmableRegistry,
+        null,
+        null);
+  }
+
+  public DiskStorageCache(
+      DiskStorageSupplier diskStorageSupplier,
+      EntryEvictionComparatorSupplier entryEvictionComparatorSupplier,
+      Params params,
+      CacheEventListener cacheEventListener,
+      CacheErrorLogger cacheErrorLogger,
+      @Nullable DiskTrimmableRegistry diskTrimmableRegistry,
+      @Nullable EntryCompactor entryCompactor,
+      @Nullable EntryFetchCostIndex entryFetchCostIndex) {
     this.mLowDiskSpaceCacheSizeLimit = params.mLowDiskSpaceCacheSizeLimit;
     this.mDefaultCacheSizeLimit = params.mDefaultCacheSizeLimit;
     this.mCacheSizeLimit = params.mDefaultCacheSizeLimit;
@@ -161,7 +268,13 @@ public class DiskStorageCache implements FileCache, DiskTrimmable {
 
     this.mCacheErrorLogger = cacheErrorLogger;
 
+    this.mEntryCompactor = entryCompactor;
+    this.mCompactionColdThresholdMs = params.mCompactionColdThresholdMs;
+
+    this.mEntryFetchCostIndex = entryFetchCostIndex;
+
     this.mCacheStats = new CacheStats();
+    this.mCompactionStats = new CompactionStats();
     if (diskTrimmableRegistry != null) {
       diskTrimmableRegistry.registerDiskTrimmable(this);
     }
@@ -202,6 +315,7 @@ public class DiskStorageCache implements FileCache, DiskTrimmable {
         } else {
           mCacheEventListener.onHit();
         }
+        mCompactionStats.onRequest(resource != null);
         return resource;
       }
     } catch (IOException ioe) {
@@ -297,11 +411,22 @@ public class DiskStorageCache implements FileCache, DiskTrimmable {
     }
   }
 
+  @Override
+  public void recordFetchCost(CacheKey key, long fetchCostMs) {
+    if (mEntryFetchCostIndex != null) {
+      mEntryFetchCostIndex.put(getResourceId(key), fetchCostMs);
+    }
+  }
+
   @Override
   public void remove(CacheKey key) {
     synchronized (mLock) {
       try {
-        mStorageSupplier.get().remove(getResourceId(key));
+        String resourceId = getResourceId(key);
+        mStorageSupplier.get().remove(resourceId);
+        if (mEntryFetchCostIndex != null) {
+          mEntryFetchCostIndex.remove(resourceId);
+        }
       } catch (IOException e) {
         mCacheErrorLogger.logError(
             CacheErrorLogger.CacheErrorCategory.DELETE_FILE,
@@ -360,6 +485,118 @@ public class DiskStorageCache implements FileCache, DiskTrimmable {
     return oldestRemainingEntryAgeMs;
   }
 
+  /**
+   * Rewrites entries that have not been accessed for the configured cold threshold into a more
+   * compact form, using the {@link EntryCompactor} this cache was created with. Entries keep
+   * their last access time, so compaction does not affect the eviction order. Entries that could
+   * not be made smaller are not considered again until their contents change.
+   * <p>
+   * Compaction is expensive and should NOT be called on the UI thread.
+   *
+   * @return the number of bytes reclaimed
+   */
+  @Override
+  public long compactColdEntries() {
+    if (mEntryCompactor == null) {
+      return 0;
+    }
+    DiskStorage storage;
+    List<DiskStorage.Entry> coldEntries = new ArrayList<>();
+    synchronized (mLock) {
+      try {
+        storage = mStorageSupplier.get();
+        long now = mClock.now();
+        Set<String> entryIds = new HashSet<>();
+        for (DiskStorage.Entry entry : storage.getEntries()) {
+          entryIds.add(entry.getId());
+          Long incompressibleSize = mIncompressibleEntrySizes.get(entry.getId());
+          if (incompressibleSize != null && incompressibleSize == entry.getSize()) {
+            continue;
+          }
+          if (now - entry.getTimestamp() >= mCompactionColdThresholdMs) {
+            coldEntries.add(entry);
+          }
+        }
+        // forget about entries that are no longer in the cache
+        mIncompressibleEntrySizes.keySet().retainAll(entryIds);
+      } catch (IOException ioe) {
+        mCacheErrorLogger.logError(
+            CacheErrorLogger.CacheErrorCategory.COMPACTION,
+            TAG,
+            "compactColdEntries: " + ioe.getMessage(),
+            ioe);
+        return 0;
+      }
+    }
+
+    // Compacting is done outside of the lock, only the final commit is synchronized
+    int itemCount = 0;
+    long reclaimedSize = 0L;
+    for (DiskStorage.Entry entry : coldEntries) {
+      long entryReclaimedSize = compactEntry(storage, entry);
+      if (entryReclaimedSize > 0) {
+        itemCount++;
+        reclaimedSize += entryReclaimedSize;
+      }
+    }
+    mCacheStats.increment(-reclaimedSize, 0);
+    mCompactionStats.onCompaction(itemCount, reclaimedSize);
+    return reclaimedSize;
+  }
+
+  /**
+   * @return the number of bytes reclaimed by compacting the entry, 0 if it was left unchanged
+   */
+  private long compactEntry(DiskStorage storage, DiskStorage.Entry entry) {
+    FileBinaryResource temporary = null;
+    try {
+      WriterCallback writer = mEntryCompactor.getCompactingWriter(entry.getResource());
+      if (writer == null) {
+        markIncompressible(entry);
+        return 0;
+      }
+      temporary = storage.createTemporary(entry.getId(), entry);
+      storage.updateResource(entry.getId(), temporary, writer, entry);
+      long compactedSize = temporary.size();
+      if (compactedSize <= 0 || compactedSize >= entry.getSize()) {
+        markIncompressible(entry);
+        return 0;
+      }
+      synchronized (mLock) {
+        // The entry may have been accessed, rewritten or evicted in the meantime
+        File contentFile = entry.getResource().getFile();
+        if (contentFile.lastModified() != entry.getTimestamp() ||
+            contentFile.length() != entry.getSize()) {
+          return 0;
+        }
+        FileBinaryResource resource = storage.commit(entry.getId(), temporary, entry);
+        resource.getFile().setLastModified(entry.getTimestamp());
+        return entry.getSize() - compactedSize;
+      }
+    } catch (IOException ioe) {
+      mCacheErrorLogger.logError(
+          CacheErrorLogger.CacheErrorCategory.COMPACTION,
+          TAG,
+          "compactEntry: " + ioe.getMessage(),
+          ioe);
+      return 0;
+    } finally {
+      if (temporary != null && temporary.getFile().exists()) {
+        temporary.getFile().delete();
+      }
+    }
+  }
+
+  private void markIncompressible(DiskStorage.Entry entry) {
+    synchronized (mLock) {
+      mIncompressibleEntrySizes.put(entry.getId(), entry.getSize());
+    }
+  }
+
+  public CompactionStats getCompactionStats() {
+    return mCompactionStats;
+  }
+
   private void reportEviction(
       CacheEventListener.EvictionReason reason,
       int itemCount,
@@ -491,6 +728,10 @@ public class DiskStorageCache implements FileCache, DiskTrimmable {
       }
 
       mCacheStats.reset();
+      mIncompressibleEntrySizes.clear();
+      if (mEntryFetchCostIndex != null) {
+        mEntryFetchCostIndex.clear();
+      }
     }
   }
 
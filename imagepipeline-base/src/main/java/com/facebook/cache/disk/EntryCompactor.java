@@ -0,0 +1,32 @@
+/*
+ * Copyright (c) 2015-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+package com.facebook.cache.disk;
+
+import javax.annotation.Nullable;
+
+import java.io.IOException;
+
+import com.facebook.binaryresource.BinaryResource;
+import com.facebook.cache.common.WriterCallback;
+
+/**
+ * Rewrites cold cache entries into a more compact form.
+ *
+ * <p>Implementations must recognize their own output, so that an entry that was already compacted
+ * is left alone on the next pass.
+ */
+public interface EntryCompactor {
+
+  /**
+   * Returns a writer that produces the compacted contents of the given resource, or null if the
+   * resource cannot or should not be compacted.
+   */
+  @Nullable
+  WriterCallback getCompactingWriter(BinaryResource resource) throws IOException;
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2015-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+package com.facebook.cache.disk;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.facebook.common.internal.Preconditions;
+
+/**
+ * In-memory index of the cost of fetching cache entries, keyed by resource id.
+ *
+ * <p>The cost is expressed in milliseconds of download time; the number of bytes fetched over a
+ * metered network is not taken into account. The index is bounded; the least recently recorded
+ * costs are dropped first. Entries without a recorded cost (for example after a process restart)
+ * are reported with a cost of zero.
+ */
+@ThreadSafe
+public class EntryFetchCostIndex {
+
+  public static final int DEFAULT_MAX_ENTRIES = 4096;
+
+  private final Map<String, Long> mCosts;
+
+  public EntryFetchCostIndex() {
+    this(DEFAULT_MAX_ENTRIES);
+  }
+
+  public EntryFetchCostIndex(final int maxEntries) {
+    Preconditions.checkArgument(maxEntries > 0);
+    mCosts = new LinkedHashMap<String, Long>() {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+        return size() > maxEntries;
+      }
+    };
+  }
+
+  public synchronized void put(String resourceId, long fetchCostMs) {
+    mCosts.remove(resourceId);
+    mCosts.put(resourceId, Math.max(0, fetchCostMs));
+  }
+
+  /**
+   * @return the recorded fetch cost of the resource in ms, or 0 if unknown
+   */
+  public synchronized long get(String resourceId) {
+    Long cost = mCosts.get(resourceId);
+    return cost == null ? 0 : cost;
+  }
+
+  /**
+   * @return a copy of the recorded fetch costs in ms, keyed by resource id
+   */
+  public synchronized Map<String, Long> snapshot() {
+    return new HashMap<>(mCosts);
+  }
+
+  public synchronized void remove(String resourceId) {
+    mCosts.remove(resourceId);
+  }
+
+  public synchronized void clear() {
+    mCosts.clear();
+  }
+
+  public synchronized int size() {
+    return mCosts.size();
+  }
+}
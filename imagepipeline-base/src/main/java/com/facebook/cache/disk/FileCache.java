@@ -65,5 +65,19 @@ public interface FileCache extends DiskTrimmable {
   long clearOldEntries(long cacheExpirationMs);
   void clearAll();
 
+  /**
+   * Rewrites cold entries into a more compact form.
+   * @return the number of bytes reclaimed.
+   */
+  long compactColdEntries();
+
+  /**
+   * Records how expensive it was to fetch the resource cached with key, so that eviction can
+   * take it into account.
+   * @param key cache key
+   * @param fetchCostMs time it took to fetch the resource
+   */
+  void recordFetchCost(CacheKey key, long fetchCostMs);
+
   DiskStorage.DiskDumpInfo getDumpInfo() throws IOException;
 }
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2015-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+package com.facebook.cache.disk;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.facebook.common.util.ByteConstants;
+
+/**
+ * Sorts entries following a GreedyDual-Size like policy, evicting entries with the lowest
+ * {@code timestamp + credit * cost / size} first.
+ *
+ * <p>The last access time plays the role of the inflation value of GreedyDual-Size: every access
+ * resets the entry's priority relative to the current time. On top of that, an entry is credited
+ * with {@code recencyCreditMs} of extra recency for each second it took to fetch a megabyte of
+ * it. Of two entries that took as long to fetch, the larger one is evicted first, as it frees
+ * more space for the same cost. Entries without a recorded cost are sorted by last access time
+ * only, as in {@link DefaultEntryEvictionComparatorSupplier}.
+ *
+ * <p>Costs are recorded from arbitrary threads while the cache sorts its entries, so each
+ * comparator returned by {@link #get()} works on a snapshot of the costs taken when it was
+ * created.
+ */
+public class GreedyDualSizeEntryEvictionComparatorSupplier
+    implements EntryEvictionComparatorSupplier {
+
+  public static final long DEFAULT_RECENCY_CREDIT_MS = TimeUnit.MINUTES.toMillis(1);
+
+  // size the fetch cost is normalized to
+  private static final long REFERENCE_SIZE = ByteConstants.MB;
+
+  private final EntryFetchCostIndex mFetchCostIndex;
+  private final long mRecencyCreditMs;
+
+  public GreedyDualSizeEntryEvictionComparatorSupplier(EntryFetchCostIndex fetchCostIndex) {
+    this(fetchCostIndex, DEFAULT_RECENCY_CREDIT_MS);
+  }
+
+  public GreedyDualSizeEntryEvictionComparatorSupplier(
+      EntryFetchCostIndex fetchCostIndex,
+      long recencyCreditMs) {
+    mFetchCostIndex = fetchCostIndex;
+    mRecencyCreditMs = recencyCreditMs;
+  }
+
+  public EntryFetchCostIndex getFetchCostIndex() {
+    return mFetchCostIndex;
+  }
+
+  @Override
+  public EntryEvictionComparator get() {
+    final Map<String, Long> fetchCosts = mFetchCostIndex.snapshot();
+    return new EntryEvictionComparator() {
+      @Override
+      public int compare(DiskStorage.Entry e1, DiskStorage.Entry e2) {
+        long score1 = getScore(e1, fetchCosts);
+        long score2 = getScore(e2, fetchCosts);
+        return score1 < score2 ? -1 : ((score2 == score1) ? 0 : 1);
+      }
+    };
+  }
+
+  private long getScore(DiskStorage.Entry entry, Map<String, Long> fetchCosts) {
+    Long fetchCostMs = fetchCosts.get(entry.getId());
+    if (fetchCostMs == null || fetchCostMs == 0) {
+      return entry.getTimestamp();
+    }
+    long size = Math.max(1, entry.getSize());
+    return entry.getTimestamp() +
+        mRecencyCreditMs * fetchCostMs * REFERENCE_SIZE / (TimeUnit.SECONDS.toMillis(1) * size);
+  }
+}
@@ -49,6 +49,7 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -364,6 +365,96 @@ public class DiskStorageCacheTest {
         .onEviction(CacheEventListener.EvictionReason.CONTENT_STALE, 2, value1size + value2size);
   }
 
+  @Test
+  public void testCompactColdEntries() throws IOException {
+    long coldThresholdMs = TimeUnit.DAYS.toMillis(3);
+    DiskStorageCache cache = new DiskStorageCache(
+        mStorageSupplier,
+        new DefaultEntryEvictionComparatorSupplier(),
+        new DiskStorageCache.Params(
+            0,
+            FILE_CACHE_MAX_SIZE_LOW_LIMIT,
+            FILE_CACHE_MAX_SIZE_HIGH_LIMIT,
+            coldThresholdMs),
+        mCacheEventListener,
+        mock(CacheErrorLogger.class),
+        mDiskTrimmableRegistry,
+        new EntryCompactor() {
+          @Override
+          public WriterCallback getCompactingWriter(BinaryResource resource) throws IOException {
+            final byte[] contents = resource.read();
+            return new WriterCallback() {
+              @Override
+              public void write(OutputStream os) throws IOException {
+                os.write(contents, 0, contents.length / 2);
+              }
+            };
+          }
+        },
+        null);
+
+    CacheKey key1 = new SimpleCacheKey("aaa");
+    byte[] value1 = new byte[40];
+    value1[10] = 'a';
+    cache.insert(key1, WriterCallbacks.from(value1));
+
+    when(mClock.now()).thenReturn(coldThresholdMs + TimeUnit.DAYS.toMillis(1));
+    CacheKey key2 = new SimpleCacheKey("bbb");
+    byte[] value2 = new byte[60];
+    value2[10] = 'b';
+    cache.insert(key2, WriterCallbacks.from(value2));
+
+    when(mClock.now()).thenReturn(coldThresholdMs + TimeUnit.DAYS.toMillis(2));
+    assertEquals(20, cache.compactColdEntries());
+
+    byte[] expected1 = new byte[20];
+    expected1[10] = 'a';
+    assertArrayEquals(expected1, getContents(cache.getResource(key1)));
+    assertArrayEquals(value2, getContents(cache.getResource(key2)));
+
+    DiskStorageCache.CompactionStats stats = cache.getCompactionStats();
+    assertEquals(1, stats.getCompactedCount());
+    assertEquals(20, stats.getReclaimedSize());
+    assertEquals(1f, stats.getHitRatioAfterCompaction(), 0f);
+  }
+
+  @Test
+  public void testCompactColdEntriesSkipsIncompressibleEntries() throws IOException {
+    long coldThresholdMs = TimeUnit.DAYS.toMillis(3);
+    EntryCompactor entryCompactor = mock(EntryCompactor.class);
+    when(entryCompactor.getCompactingWriter(any(BinaryResource.class))).thenReturn(
+        new WriterCallback() {
+          @Override
+          public void write(OutputStream os) throws IOException {
+            os.write(new byte[80]);
+          }
+        });
+    DiskStorageCache cache = new DiskStorageCache(
+        mStorageSupplier,
+        new DefaultEntryEvictionComparatorSupplier(),
+        new DiskStorageCache.Params(
+            0,
+            FILE_CACHE_MAX_SIZE_LOW_LIMIT,
+            FILE_CACHE_MAX_SIZE_HIGH_LIMIT,
+            coldThresholdMs),
+        mCacheEventListener,
+        mock(CacheErrorLogger.class),
+        mDiskTrimmableRegistry,
+        entryCompactor,
+        null);
+
+    CacheKey key = new SimpleCacheKey("aaa");
+    byte[] value = new byte[40];
+    cache.insert(key, WriterCallbacks.from(value));
+
+    when(mClock.now()).thenReturn(coldThresholdMs + TimeUnit.DAYS.toMillis(1));
+    assertEquals(0, cache.compactColdEntries());
+    assertEquals(0, cache.compactColdEntries());
+
+    verify(entryCompactor, times(1)).getCompactingWriter(any(BinaryResource.class));
+    assertArrayEquals(value, getContents(cache.getResource(key)));
+  }
+
   @Test
   public void testCleanOldCacheNoEntriesRemaining() throws IOException {
     long cacheExpirationMs = TimeUnit.DAYS.toMillis(5);
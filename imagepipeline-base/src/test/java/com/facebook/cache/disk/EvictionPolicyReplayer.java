@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2015-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+package com.facebook.cache.disk;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.facebook.binaryresource.FileBinaryResource;
+
+/**
+ * Replays a trace of cache requests against a simulated disk cache, to compare eviction policies
+ * by byte hit ratio and download time saved.
+ *
+ * <p>A recorded trace has one request per line: {@code timestampMs key sizeBytes fetchCostMs}.
+ * Eviction mimics {@link DiskStorageCache}: when the cache is over capacity, entries are sorted
+ * with the policy's comparator and removed until the cache is down to 90% of its capacity.
+ */
+public class EvictionPolicyReplayer {
+
+  public static class Request {
+    public final long timestampMs;
+    public final String key;
+    public final long size;
+    public final long fetchCostMs;
+
+    public Request(long timestampMs, String key, long size, long fetchCostMs) {
+      this.timestampMs = timestampMs;
+      this.key = key;
+      this.size = size;
+      this.fetchCostMs = fetchCostMs;
+    }
+  }
+
+  public static class Result {
+    public long requestedBytes;
+    public long hitBytes;
+    public long savedDownloadTimeMs;
+    public int hits;
+    public int misses;
+
+    public float getByteHitRatio() {
+      return requestedBytes == 0 ? 0 : (float) hitBytes / requestedBytes;
+    }
+  }
+
+  private static class SimulatedEntry implements DiskStorage.Entry {
+    private final String mId;
+    private final long mSize;
+    private long mTimestamp;
+
+    private SimulatedEntry(String id, long size, long timestamp) {
+      mId = id;
+      mSize = size;
+      mTimestamp = timestamp;
+    }
+
+    @Override
+    public String getId() {
+      return mId;
+    }
+
+    @Override
+    public long getTimestamp() {
+      return mTimestamp;
+    }
+
+    @Override
+    public long getSize() {
+      return mSize;
+    }
+
+    @Override
+    public FileBinaryResource getResource() {
+      return null;
+    }
+  }
+
+  public static List<Request> parseTrace(Reader reader) throws IOException {
+    BufferedReader bufferedReader = new BufferedReader(reader);
+    List<Request> requests = new ArrayList<>();
+    String line;
+    while ((line = bufferedReader.readLine()) != null) {
+      line = line.trim();
+      if (line.isEmpty() || line.startsWith("#")) {
+        continue;
+      }
+      String[] fields = line.split("\\s+");
+      requests.add(
+          new Request(
+              Long.parseLong(fields[0]),
+              fields[1],
+              Long.parseLong(fields[2]),
+              Long.parseLong(fields[3])));
+    }
+    return requests;
+  }
+
+  /**
+   * Replays the requests against a cache of the given capacity.
+   * @param costIndex the index the policy reads fetch costs from, or null if it does not use one
+   */
+  public static Result replay(
+      List<Request> requests,
+      long capacity,
+      EntryEvictionComparatorSupplier policy,
+      EntryFetchCostIndex costIndex) {
+    Result result = new Result();
+    Map<String, SimulatedEntry> entries = new HashMap<>();
+    long cacheSize = 0;
+    for (Request request : requests) {
+      result.requestedBytes += request.size;
+      SimulatedEntry entry = entries.get(request.key);
+      if (entry != null) {
+        result.hits++;
+        result.hitBytes += request.size;
+        result.savedDownloadTimeMs += request.fetchCostMs;
+        entry.mTimestamp = request.timestampMs;
+        continue;
+      }
+      result.misses++;
+      entries.put(
+          request.key,
+          new SimulatedEntry(request.key, request.size, request.timestampMs));
+      if (costIndex != null) {
+        costIndex.put(request.key, request.fetchCostMs);
+      }
+      cacheSize += request.size;
+      if (cacheSize > capacity) {
+        List<SimulatedEntry> sorted = new ArrayList<>(entries.values());
+        Collections.sort(sorted, policy.get());
+        for (SimulatedEntry evicted : sorted) {
+          if (cacheSize <= capacity * 9 / 10) {
+            break;
+          }
+          entries.remove(evicted.mId);
+          cacheSize -= evicted.mSize;
+        }
+      }
+    }
+    return result;
+  }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2015-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+package com.facebook.cache.disk;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.facebook.common.util.ByteConstants;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test for {@link GreedyDualSizeEntryEvictionComparatorSupplier}
+ */
+@RunWith(RobolectricTestRunner.class)
+public class GreedyDualSizeEntryEvictionComparatorSupplierTest {
+
+  private EntryFetchCostIndex mCostIndex;
+  private GreedyDualSizeEntryEvictionComparatorSupplier mSupplier;
+
+  @Before
+  public void setUp() {
+    mCostIndex = new EntryFetchCostIndex();
+    mSupplier = new GreedyDualSizeEntryEvictionComparatorSupplier(mCostIndex);
+  }
+
+  @Test
+  public void testSortsByTimestampWithoutCosts() {
+    List<DiskStorage.Entry> entries = new ArrayList<>();
+    for (int i = 10; i > 0; i--) {
+      entries.add(createEntry("id" + i, i, ByteConstants.KB));
+    }
+    Collections.sort(entries, mSupplier.get());
+
+    for (int i = 0; i < entries.size() - 1; i++) {
+      assertTrue(entries.get(i).getTimestamp() < entries.get(i + 1).getTimestamp());
+    }
+  }
+
+  @Test
+  public void testExpensiveEntryOutlivesCheapEntry() {
+    DiskStorage.Entry expensive = createEntry("expensive", 0, ByteConstants.KB);
+    DiskStorage.Entry cheap = createEntry("cheap", TimeUnit.MINUTES.toMillis(1), ByteConstants.KB);
+    mCostIndex.put("expensive", 2000);
+    mCostIndex.put("cheap", 100);
+    List<DiskStorage.Entry> entries = new ArrayList<>();
+    entries.add(expensive);
+    entries.add(cheap);
+    Collections.sort(entries, mSupplier.get());
+
+    assertSame(cheap, entries.get(0));
+    assertSame(expensive, entries.get(1));
+  }
+
+  @Test
+  public void testExpensiveLargeEntryOutlivesCheapSmallEntry() {
+    DiskStorage.Entry small = createEntry("small", 0, 3 * ByteConstants.KB);
+    DiskStorage.Entry large = createEntry("large", 0, 5 * ByteConstants.MB);
+    // the large entry cost more to fetch per byte
+    mCostIndex.put("small", 1);
+    mCostIndex.put("large", 4000);
+    List<DiskStorage.Entry> entries = new ArrayList<>();
+    entries.add(large);
+    entries.add(small);
+    Collections.sort(entries, mSupplier.get());
+
+    assertSame(small, entries.get(0));
+    assertSame(large, entries.get(1));
+  }
+
+  @Test
+  public void testLargeEntryIsEvictedBeforeSmallEntryOfSameCost() {
+    DiskStorage.Entry small = createEntry("small", 0, 100 * ByteConstants.KB);
+    DiskStorage.Entry large = createEntry("large", 0, 2 * ByteConstants.MB);
+    mCostIndex.put("small", 1000);
+    mCostIndex.put("large", 1000);
+    List<DiskStorage.Entry> entries = new ArrayList<>();
+    entries.add(small);
+    entries.add(large);
+    Collections.sort(entries, mSupplier.get());
+
+    assertSame(large, entries.get(0));
+    assertSame(small, entries.get(1));
+  }
+
+  @Test
+  public void testComparatorIgnoresCostsRecordedAfterItWasCreated() {
+    DiskStorage.Entry first = createEntry("first", 0, ByteConstants.KB);
+    DiskStorage.Entry second = createEntry("second", 1, ByteConstants.KB);
+    EntryEvictionComparator comparator = mSupplier.get();
+    assertTrue(comparator.compare(first, second) < 0);
+
+    mCostIndex.put("first", 10000);
+
+    assertTrue(comparator.compare(first, second) < 0);
+    assertTrue(mSupplier.get().compare(first, second) > 0);
+  }
+
+  @Test
+  public void testReplaySavesDownloadTime() {
+    List<EvictionPolicyReplayer.Request> requests = new ArrayList<>();
+    // a few photos from a slow origin are revisited regularly while a stream of photos from a
+    // fast origin is viewed once each
+    for (int i = 0; i < 2000; i++) {
+      long timestampMs = TimeUnit.SECONDS.toMillis(i);
+      if (i % 10 == 0) {
+        requests.add(
+            new EvictionPolicyReplayer.Request(
+                timestampMs,
+                "slow" + (i / 10) % 5,
+                500 * ByteConstants.KB,
+                4000));
+      } else {
+        requests.add(
+            new EvictionPolicyReplayer.Request(
+                timestampMs,
+                "fast" + i,
+                500 * ByteConstants.KB,
+                200));
+      }
+    }
+    long capacity = 5 * ByteConstants.MB;
+
+    EvictionPolicyReplayer.Result lru = EvictionPolicyReplayer.replay(
+        requests,
+        capacity,
+        new DefaultEntryEvictionComparatorSupplier(),
+        null);
+    EvictionPolicyReplayer.Result greedyDualSize = EvictionPolicyReplayer.replay(
+        requests,
+        capacity,
+        mSupplier,
+        mCostIndex);
+
+    assertEquals(0, lru.hits);
+    assertTrue(greedyDualSize.hits > 0);
+    assertTrue(greedyDualSize.savedDownloadTimeMs > lru.savedDownloadTimeMs);
+    assertTrue(greedyDualSize.getByteHitRatio() > lru.getByteHitRatio());
+  }
+
+  private static DiskStorage.Entry createEntry(String id, long time, long size) {
+    DiskStorage.Entry entry = mock(DiskStorage.Entry.class);
+    when(entry.getId()).thenReturn(id);
+    when(entry.getTimestamp()).thenReturn(time);
+    when(entry.getSize()).thenReturn(size);
+    return entry;
+  }
+}
@@ -9,6 +9,8 @@
 
 package com.facebook.imagepipeline.animated.base;
 
+import javax.annotation.Nullable;
+
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
@@ -36,6 +38,11 @@ import com.nineoldandroids.animation.ValueAnimator;
  * {@link AnimatedDrawableBackend} interface. The drawable can work either as an {@link Animatable}
  * where the client calls start/stop to animate it or it can work as a level-based drawable where
  * the client drives the animation by calling {@link Drawable#setLevel}.
+ *
+ * <p> Given an {@link AnimationClock}, a running drawable is advanced on the ticks of the clock,
+ * which it shares with the other animations, and is only invalidated when its frame changes. A
+ * drawable invalidated but not drawn since, like an offscreen one, is taken off the clock until it
+ * gets drawn again. Otherwise it posts its own messages for the next frames.
  */
 public class AnimatedDrawable extends Drawable implements AnimatableDrawable, DrawableWithCaches {
 
@@ -48,6 +55,7 @@ public class AnimatedDrawable extends Drawable implements AnimatableDrawable, Dr
   private static final int NO_FRAME = -1;
 
   private final ScheduledExecutorService mScheduledExecutorServiceForUiThread;
+  private final @Nullable AnimationClock mAnimationClock;
   private final AnimatedDrawableDiagnostics mAnimatedDrawableDiagnostics;
   private final MonotonicClock mMonotonicClock;
   private final int mDurationMs;
@@ -97,6 +105,13 @@ public class AnimatedDrawable extends Drawable implements AnimatableDrawable, Dr
   private boolean mApplyTransformation;
   private boolean mInvalidateTaskScheduled;
   private long mNextFrameTaskMs = -1;
+  private boolean mIsOnClock;
+  private boolean mStartPending;
+
+  // Instrumentation
+  private int mDrawnFrameCount;
+  private int mDroppedFrameCount;
+  private int mPostedTaskCount;
 
   private final Runnable mStartTask = new Runnable() {
     @Override
@@ -130,12 +145,38 @@ public class AnimatedDrawable extends Drawable implements AnimatableDrawable, Dr
     }
   };
 
+  private final AnimationClock.Listener mClockListener = new AnimationClock.Listener() {
+    @Override
+    public boolean onTick() {
+      return onClockTick();
+    }
+  };
+
   public AnimatedDrawable(
       ScheduledExecutorService scheduledExecutorServiceForUiThread,
       AnimatedDrawableCachingBackend animatedDrawableBackend,
       AnimatedDrawableDiagnostics animatedDrawableDiagnostics,
       MonotonicClock monotonicClock) {
+    this(
+        scheduledExecutorServiceForUiThread,
+        animatedDrawableBackend,
+        animatedDrawableDiagnostics,
+        monotonicClock,
+        null);
+  }
+
+  /**
+   * @param animationClock clock to advance the animation on, or null for the drawable to post its
+   *     own messages for the next frames
+   */
+  public AnimatedDrawable(
+      ScheduledExecutorService scheduledExecutorServiceForUiThread,
+      AnimatedDrawableCachingBackend animatedDrawableBackend,
+      AnimatedDrawableDiagnostics animatedDrawableDiagnostics,
+      MonotonicClock monotonicClock,
+      @Nullable AnimationClock animationClock) {
     mScheduledExecutorServiceForUiThread = scheduledExecutorServiceForUiThread;
+    mAnimationClock = animationClock;
     mAnimatedDrawableBackend = animatedDrawableBackend;
     mAnimatedDrawableDiagnostics = animatedDrawableDiagnostics;
     mMonotonicClock = monotonicClock;
@@ -225,9 +266,11 @@ public class AnimatedDrawable extends Drawable implements AnimatableDrawable, Dr
       mStartTimeMs = mMonotonicClock.now();
       mScheduledFrameNumber = 0;
       mScheduledFrameMonotonicNumber = 0;
-      long nextFrameMs = mStartTimeMs + mAnimatedDrawableBackend.getDurationMsForFrame(0);
-      scheduleSelf(mNextFrameTask, nextFrameMs);
-      mNextFrameTaskMs = nextFrameMs;
+      if (mAnimationClock == null) {
+        long nextFrameMs = mStartTimeMs + mAnimatedDrawableBackend.getDurationMsForFrame(0);
+        postTask(mNextFrameTask, nextFrameMs);
+        mNextFrameTaskMs = nextFrameMs;
+      }
       doInvalidateSelf();
     } finally {
       mAnimatedDrawableDiagnostics.onStartMethodEnd();
@@ -250,15 +293,21 @@ public class AnimatedDrawable extends Drawable implements AnimatableDrawable, Dr
     }
   }
 
-  private void computeAndScheduleNextFrame(boolean scheduleNextFrame) {
+  /**
+   * Computes the current frame, and unless about to draw, invalidates if it changed or else
+   * schedules the next frame.
+   *
+   * @return false if the animation has finished all of its loops
+   */
+  private boolean computeAndScheduleNextFrame(boolean scheduleNextFrame) {
     if (mDurationMs == 0) {
-      return;
+      return true;
     }
     long nowMs = mMonotonicClock.now();
     int loops = (int) ((nowMs - mStartTimeMs) / mDurationMs);
     if (mTotalLoops > 0 && loops >= mTotalLoops) {
       //we stop the animation if we have exceeded the total loop count
-      return;
+      return false;
     }
     int timestampMs = (int) ((nowMs - mStartTimeMs) % mDurationMs);
     int newCurrentFrameNumber = mAnimatedDrawableBackend.getFrameForTimestampMs(timestampMs);
@@ -269,12 +318,13 @@ public class AnimatedDrawable extends Drawable implements AnimatableDrawable, Dr
     if (!scheduleNextFrame) {
       // We're about to draw. We don't need to schedule anything because we're going to draw
       // that frame right now. the onDraw method just wants to make sure the current frame is set.
-      return;
+      return true;
     }
 
+    // With a clock, the next tick computes the frame again instead of a task for the next frame.
     if (changed) {
       doInvalidateSelf();
-    } else {
+    } else if (mAnimationClock == null) {
       int durationMs = mAnimatedDrawableBackend.getTimestampMsForFrame(mScheduledFrameNumber) +
           mAnimatedDrawableBackend.getDurationMsForFrame(mScheduledFrameNumber) -
           timestampMs;
@@ -283,10 +333,72 @@ public class AnimatedDrawable extends Drawable implements AnimatableDrawable, Dr
       if (mNextFrameTaskMs == -1 || mNextFrameTaskMs > nextFrameMs) {
         FLog.v(TAG, "(%s) Next frame (%d) in %d ms", mLogId, nextFrame, durationMs);
         unscheduleSelf(mNextFrameTask); // Cancel any existing task.
-        scheduleSelf(mNextFrameTask, nextFrameMs);
+        postTask(mNextFrameTask, nextFrameMs);
         mNextFrameTaskMs = nextFrameMs;
       }
     }
+    return true;
+  }
+
+  /**
+   * Advances the animation on a tick of the clock.
+   *
+   * @return whether the drawable invalidated itself
+   */
+  private boolean onClockTick() {
+    if (!mIsRunning) {
+      removeFromClock();
+      return false;
+    }
+    if (mStartPending) {
+      mStartPending = false;
+      onStart();
+      return true;
+    }
+    if (mWaitingForDraw) {
+      // Not drawn since the last invalidation, most likely because it is offscreen. Pause until
+      // the next draw rather than invalidating again on every frame.
+      removeFromClock();
+      return false;
+    }
+    if (mPendingRenderedFrameNumber != NO_FRAME) {
+      // Poll for the frame that was not rendered yet.
+      doInvalidateSelf();
+      return true;
+    }
+    if (!computeAndScheduleNextFrame(true /* schedule next frame */)) {
+      removeFromClock();
+      return false;
+    }
+    return mWaitingForDraw;
+  }
+
+  private void addToClock() {
+    if (mAnimationClock != null && !mIsOnClock) {
+      mIsOnClock = true;
+      mAnimationClock.addListener(mClockListener);
+    }
+  }
+
+  private void removeFromClock() {
+    if (mAnimationClock != null && mIsOnClock) {
+      mIsOnClock = false;
+      mAnimationClock.removeListener(mClockListener);
+    }
+  }
+
+  private void postTask(Runnable task, long whenMs) {
+    mPostedTaskCount++;
+    scheduleSelf(task, whenMs);
+  }
+
+  private void scheduleWatchdog() {
+    mPostedTaskCount++;
+    mScheduledExecutorServiceForUiThread.schedule(
+        mWatchdogTask,
+        WATCH_DOG_TIMER_POLL_INTERVAL_MS,
+        TimeUnit.MILLISECONDS);
+    mHaveWatchdogScheduled = true;
   }
 
   @Override
@@ -294,12 +406,11 @@ public class AnimatedDrawable extends Drawable implements AnimatableDrawable, Dr
     mAnimatedDrawableDiagnostics.onDrawMethodBegin();
     try {
       mWaitingForDraw = false;
+      if (mIsRunning) {
+        addToClock();
+      }
       if (mIsRunning && !mHaveWatchdogScheduled) {
-        mScheduledExecutorServiceForUiThread.schedule(
-            mWatchdogTask,
-            WATCH_DOG_TIMER_POLL_INTERVAL_MS,
-            TimeUnit.MILLISECONDS);
-        mHaveWatchdogScheduled = true;
+        scheduleWatchdog();
       }
 
       if (mApplyTransformation) {
@@ -308,6 +419,7 @@ public class AnimatedDrawable extends Drawable implements AnimatableDrawable, Dr
           AnimatedDrawableCachingBackend newBackend =
               mAnimatedDrawableBackend.forNewBounds(mDstRect);
           if (newBackend != mAnimatedDrawableBackend) {
+            mAnimatedDrawableBackend.setActive(false);
             mAnimatedDrawableBackend.dropCaches();
             mAnimatedDrawableBackend = newBackend;
             mAnimatedDrawableDiagnostics.setBackend(newBackend);
@@ -322,6 +434,7 @@ public class AnimatedDrawable extends Drawable implements AnimatableDrawable, Dr
         // Don't try to draw if the dest rect is empty.
         return;
       }
+      mAnimatedDrawableBackend.setActive(mIsRunning && isVisible());
 
       canvas.save();
       canvas.scale(mSx, mSy);
@@ -404,11 +517,12 @@ public class AnimatedDrawable extends Drawable implements AnimatableDrawable, Dr
    * Schedule a task to invalidate the drawable. Used to poll for a rendered frame.
    */
   private void scheduleInvalidatePoll() {
-    if (mInvalidateTaskScheduled) {
+    if (mInvalidateTaskScheduled || mIsOnClock) {
+      // The next tick of the clock polls.
       return;
     }
     mInvalidateTaskScheduled = true;
-    scheduleSelf(mInvalidateTask, POLL_FOR_RENDERED_FRAME_MS);
+    postTask(mInvalidateTask, POLL_FOR_RENDERED_FRAME_MS);
   }
 
   /**
@@ -420,6 +534,29 @@ public class AnimatedDrawable extends Drawable implements AnimatableDrawable, Dr
     return mLastDrawnFrame != null;
   }
 
+  /**
+   * Gets the number of frames drawn while the animation was running.
+   */
+  public int getDrawnFrameCount() {
+    return mDrawnFrameCount;
+  }
+
+  /**
+   * Gets the number of frames skipped while the animation was running, because they were not
+   * rendered in time.
+   */
+  public int getDroppedFrameCount() {
+    return mDroppedFrameCount;
+  }
+
+  /**
+   * Gets the number of messages the drawable posted to the UI thread itself, which does not include
+   * the ticks of the animation clock.
+   */
+  public int getPostedTaskCount() {
+    return mPostedTaskCount;
+  }
+
   /**
    * Renders the specified frame to the canvas.
    *
@@ -442,6 +579,8 @@ public class AnimatedDrawable extends Drawable implements AnimatableDrawable, Dr
 
       if (mIsRunning && frameMonotonicNumber > mLastDrawnFrameMonotonicNumber) {
         int droppedFrames = frameMonotonicNumber - mLastDrawnFrameMonotonicNumber - 1;
+        mDrawnFrameCount++;
+        mDroppedFrameCount += droppedFrames;
         mAnimatedDrawableDiagnostics.incrementDrawnFrames(1);
         mAnimatedDrawableDiagnostics.incrementDroppedFrames(droppedFrames);
         if (droppedFrames > 0) {
@@ -481,11 +620,7 @@ public class AnimatedDrawable extends Drawable implements AnimatableDrawable, Dr
       dropCaches();
       doInvalidateSelf();
     } else {
-      mScheduledExecutorServiceForUiThread.schedule(
-          mWatchdogTask,
-          WATCH_DOG_TIMER_POLL_INTERVAL_MS,
-          TimeUnit.MILLISECONDS);
-      mHaveWatchdogScheduled = true;
+      scheduleWatchdog();
     }
   }
 
@@ -505,6 +640,11 @@ public class AnimatedDrawable extends Drawable implements AnimatableDrawable, Dr
     return mNextFrameTaskMs != -1;
   }
 
+  @VisibleForTesting
+  boolean isOnClock() {
+    return mIsOnClock;
+  }
+
   @VisibleForTesting
   int getScheduledFrameNumber() {
     return mScheduledFrameNumber;
@@ -516,12 +656,32 @@ public class AnimatedDrawable extends Drawable implements AnimatableDrawable, Dr
       return;
     }
     mIsRunning = true;
-    scheduleSelf(mStartTask, mMonotonicClock.now());
+    if (mAnimationClock != null) {
+      mStartPending = true;
+      addToClock();
+    } else {
+      postTask(mStartTask, mMonotonicClock.now());
+    }
   }
 
   @Override
   public void stop() {
     mIsRunning = false;
+    mStartPending = false;
+    removeFromClock();
+    mAnimatedDrawableBackend.setActive(false);
+  }
+
+  @Override
+  public boolean setVisible(boolean visible, boolean restart) {
+    boolean changed = super.setVisible(visible, restart);
+    if (!visible) {
+      removeFromClock();
+      mAnimatedDrawableBackend.setActive(false);
+    } else if (mIsRunning) {
+      addToClock();
+    }
+    return changed;
   }
 
   @Override
@@ -592,6 +752,7 @@ public class AnimatedDrawable extends Drawable implements AnimatableDrawable, Dr
       mLastDrawnFrameNumber = -1;
       mLastDrawnFrameMonotonicNumber = -1;
     }
+    mAnimatedDrawableBackend.setActive(false);
     mAnimatedDrawableBackend.dropCaches();
   }
 }
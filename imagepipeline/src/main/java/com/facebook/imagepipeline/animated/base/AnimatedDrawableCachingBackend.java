@@ -46,6 +46,14 @@ public interface AnimatedDrawableCachingBackend extends AnimatedDrawableBackend
    */
   void appendDebugOptionString(StringBuilder sb);
 
+  /**
+   * Sets whether the animation is running and visible. Active animations are preferred when the
+   * memory for keeping rendered frames is shared with other animations.
+   *
+   * @param active whether the animation is active
+   */
+  void setActive(boolean active);
+
   // Overridden to restrict the return type.
   @Override
   AnimatedDrawableCachingBackend forNewBounds(Rect bounds);
@@ -17,6 +17,30 @@ import javax.annotation.concurrent.Immutable;
 @Immutable
 public class AnimatedDrawableOptions {
 
+  /**
+   * How the rendered frames are stored in memory.
+   */
+  public enum FrameStorage {
+    /**
+     * Frames are stored as ARGB_8888 bitmaps.
+     */
+    ARGB_8888,
+
+    /**
+     * Opaque frames are stored as RGB_565 bitmaps, which take half the memory but drop the low
+     * bits of each color. Frames with transparent pixels are stored as ARGB_8888 bitmaps.
+     */
+    RGB_565,
+
+    /**
+     * Frames of at most 256 colors, like most frames of GIFs, are stored as one byte per pixel
+     * indexing a palette of their colors, which takes about a quarter of the memory. Such frames
+     * are expanded into ARGB_8888 bitmaps each time they are drawn. Other frames are stored as
+     * with {@link #RGB_565}.
+     */
+    PALETTE_INDEXED
+  }
+
   /**
    * Default options.
    */
@@ -43,6 +67,17 @@ public class AnimatedDrawableOptions {
    */
   public final boolean enableDebugging;
 
+  /**
+   * How the rendered frames are stored in memory.
+   */
+  public final FrameStorage frameStorage;
+
+  /**
+   * Whether the drawable is advanced by the {@link AnimationClock} shared by all the animations
+   * rather than by its own messages.
+   */
+  public final boolean useAnimationClock;
+
   /**
    * Creates {@link AnimatedDrawableOptions} with default options.
    */
@@ -51,6 +86,8 @@ public class AnimatedDrawableOptions {
     this.allowPrefetching = builder.getAllowPrefetching();
     this.maximumBytes = builder.getMaximumBytes();
     this.enableDebugging = builder.getEnableDebugging();
+    this.frameStorage = builder.getFrameStorage();
+    this.useAnimationClock = builder.getUseAnimationClock();
   }
 
   /**
@@ -18,6 +18,9 @@ public class AnimatedDrawableOptionsBuilder {
   private boolean mAllowPrefetching = true;
   private int mMaximumBytes = -1;
   private boolean mEnableDebugging;
+  private AnimatedDrawableOptions.FrameStorage mFrameStorage =
+      AnimatedDrawableOptions.FrameStorage.ARGB_8888;
+  private boolean mUseAnimationClock;
 
   /**
    * Gets whether all the rendered frames should be held in memory disregarding other constraints.
@@ -102,6 +105,51 @@ public class AnimatedDrawableOptionsBuilder {
     return this;
   }
 
+  /**
+   * Gets how the rendered frames are stored in memory.
+   *
+   * @return how the rendered frames are stored in memory
+   */
+  public AnimatedDrawableOptions.FrameStorage getFrameStorage() {
+    return mFrameStorage;
+  }
+
+  /**
+   * Sets how the rendered frames are stored in memory. Storing frames in less memory lets more of
+   * them be kept within the maximum bytes, at the cost of converting them when they are rendered
+   * and, for palette-indexed frames, each time they are drawn.
+   *
+   * @param frameStorage how the rendered frames are stored in memory
+   * @return this builder
+   */
+  public AnimatedDrawableOptionsBuilder setFrameStorage(
+      AnimatedDrawableOptions.FrameStorage frameStorage) {
+    mFrameStorage = frameStorage;
+    return this;
+  }
+
+  /**
+   * Gets whether the drawable is advanced by the {@link AnimationClock} shared by all the
+   * animations.
+   *
+   * @return whether the drawable is advanced by the shared animation clock
+   */
+  public boolean getUseAnimationClock() {
+    return mUseAnimationClock;
+  }
+
+  /**
+   * Sets whether the drawable is advanced by the {@link AnimationClock} shared by all the
+   * animations, which ticks once per display frame, rather than by its own messages.
+   *
+   * @param useAnimationClock whether the drawable is advanced by the shared animation clock
+   * @return this builder
+   */
+  public AnimatedDrawableOptionsBuilder setUseAnimationClock(boolean useAnimationClock) {
+    mUseAnimationClock = useAnimationClock;
+    return this;
+  }
+
   /**
    * Builds the immutable options instance.
    *
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2015-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.imagepipeline.animated.base;
+
+/**
+ * The size, loop count, frame durations and frame infos of an {@link AnimatedImage}, read from the
+ * image once. Reading them goes to native code for every frame, so they are kept for as long as
+ * the image, instead of being read again by every backend created for it.
+ */
+public class AnimatedImageMetadata {
+
+  private final int mWidth;
+  private final int mHeight;
+  private final int mLoopCount;
+  private final int[] mFrameDurationsMs;
+  private final AnimatedDrawableFrameInfo[] mFrameInfos;
+  private final long mReadTimeNanos;
+
+  private AnimatedImageMetadata(
+      int width,
+      int height,
+      int loopCount,
+      int[] frameDurationsMs,
+      AnimatedDrawableFrameInfo[] frameInfos,
+      long readTimeNanos) {
+    mWidth = width;
+    mHeight = height;
+    mLoopCount = loopCount;
+    mFrameDurationsMs = frameDurationsMs;
+    mFrameInfos = frameInfos;
+    mReadTimeNanos = readTimeNanos;
+  }
+
+  /**
+   * Reads the metadata of an image.
+   *
+   * @param image the image
+   * @return the metadata of the image
+   */
+  public static AnimatedImageMetadata read(AnimatedImage image) {
+    long startNanos = System.nanoTime();
+    int frameCount = image.getFrameCount();
+    AnimatedDrawableFrameInfo[] frameInfos = new AnimatedDrawableFrameInfo[frameCount];
+    for (int i = 0; i < frameCount; i++) {
+      frameInfos[i] = image.getFrameInfo(i);
+    }
+    return new AnimatedImageMetadata(
+        image.getWidth(),
+        image.getHeight(),
+        image.getLoopCount(),
+        image.getFrameDurations(),
+        frameInfos,
+        System.nanoTime() - startNanos);
+  }
+
+  public int getWidth() {
+    return mWidth;
+  }
+
+  public int getHeight() {
+    return mHeight;
+  }
+
+  public int getFrameCount() {
+    return mFrameInfos.length;
+  }
+
+  public int getLoopCount() {
+    return mLoopCount;
+  }
+
+  /**
+   * Gets the duration of each frame.
+   *
+   * @return a new array of the durations of the frames, in milliseconds, which may be modified
+   */
+  public int[] getFrameDurations() {
+    return mFrameDurationsMs.clone();
+  }
+
+  public AnimatedDrawableFrameInfo getFrameInfo(int frameNumber) {
+    return mFrameInfos[frameNumber];
+  }
+
+  /**
+   * Gets the time it took to read the metadata from the image, which every reuse of the metadata
+   * saves.
+   */
+  public long getReadTimeNanos() {
+    return mReadTimeNanos;
+  }
+}
@@ -26,19 +26,32 @@ public class AnimatedImageResult {
 
   private final AnimatedImage mImage;
   private final int mFrameForPreview;
+  private final int mRenderedWidth;
+  private final int mRenderedHeight;
   private @Nullable CloseableReference<Bitmap> mPreviewBitmap;
   private @Nullable List<CloseableReference<Bitmap>> mDecodedFrames;
+  private @Nullable AnimatedImageMetadata mMetadata;
+
+  // Instrumentation
+  private int mMetadataReuseCount;
 
   AnimatedImageResult(AnimatedImageResultBuilder builder) {
     mImage = Preconditions.checkNotNull(builder.getImage());
     mFrameForPreview = builder.getFrameForPreview();
+    mRenderedWidth =
+        builder.getRenderedWidth() > 0 ? builder.getRenderedWidth() : mImage.getWidth();
+    mRenderedHeight =
+        builder.getRenderedHeight() > 0 ? builder.getRenderedHeight() : mImage.getHeight();
     mPreviewBitmap = builder.getPreviewBitmap();
     mDecodedFrames = builder.getDecodedFrames();
+    mMetadata = builder.getMetadata();
   }
 
   private AnimatedImageResult(AnimatedImage image) {
     mImage = Preconditions.checkNotNull(image);
     mFrameForPreview = 0;
+    mRenderedWidth = image.getWidth();
+    mRenderedHeight = image.getHeight();
   }
 
   /**
@@ -70,6 +83,34 @@ public class AnimatedImageResult {
     return mImage;
   }
 
+  /**
+   * Gets the metadata of the image, which is read from the image on the first call only.
+   *
+   * @return the metadata of the image
+   */
+  public synchronized AnimatedImageMetadata getMetadata() {
+    if (mMetadata == null) {
+      mMetadata = AnimatedImageMetadata.read(mImage);
+    } else {
+      mMetadataReuseCount++;
+    }
+    return mMetadata;
+  }
+
+  /**
+   * Gets the number of times the metadata was returned without being read from the image.
+   */
+  public synchronized int getMetadataReuseCount() {
+    return mMetadataReuseCount;
+  }
+
+  /**
+   * Gets the time saved by not reading the metadata from the image again.
+   */
+  public synchronized long getMetadataReadTimeSavedNanos() {
+    return mMetadata == null ? 0 : mMetadataReuseCount * mMetadata.getReadTimeNanos();
+  }
+
   /**
    * Gets the frame that should be used for the preview image. If the preview bitmap was fetched,
    * this is the frame that it's for.
@@ -80,6 +121,28 @@ public class AnimatedImageResult {
     return mFrameForPreview;
   }
 
+  /**
+   * Gets the width the frames of the image are rendered at, at most. This is the width of the
+   * preview bitmap and of the decoded frames, and the width of the image unless the image was
+   * decoded for a smaller size.
+   *
+   * @return the width the frames are rendered at, at most
+   */
+  public int getRenderedWidth() {
+    return mRenderedWidth;
+  }
+
+  /**
+   * Gets the height the frames of the image are rendered at, at most. This is the height of the
+   * preview bitmap and of the decoded frames, and the height of the image unless the image was
+   * decoded for a smaller size.
+   *
+   * @return the height the frames are rendered at, at most
+   */
+  public int getRenderedHeight() {
+    return mRenderedHeight;
+  }
+
   /**
    * Gets a decoded frame. This will only return non-null if the {@code ImageDecodeOptions}
    * were configured to decode all frames at decode time.
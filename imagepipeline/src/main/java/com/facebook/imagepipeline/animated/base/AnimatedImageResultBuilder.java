@@ -24,6 +24,9 @@ public class AnimatedImageResultBuilder {
   private CloseableReference<Bitmap> mPreviewBitmap;
   private List<CloseableReference<Bitmap>> mDecodedFrames;
   private int mFrameForPreview;
+  private int mRenderedWidth;
+  private int mRenderedHeight;
+  private AnimatedImageMetadata mMetadata;
 
   AnimatedImageResultBuilder(AnimatedImage image) {
     mImage = image;
@@ -80,6 +83,59 @@ public class AnimatedImageResultBuilder {
     return this;
   }
 
+  /**
+   * Gets the width the frames are rendered at, at most, or 0 for the width of the image.
+   *
+   * @return the width the frames are rendered at, at most
+   */
+  public int getRenderedWidth() {
+    return mRenderedWidth;
+  }
+
+  /**
+   * Gets the height the frames are rendered at, at most, or 0 for the height of the image.
+   *
+   * @return the height the frames are rendered at, at most
+   */
+  public int getRenderedHeight() {
+    return mRenderedHeight;
+  }
+
+  /**
+   * Sets the size the frames are rendered at, at most, when the image was decoded for a size
+   * smaller than its own. The preview bitmap and the decoded frames must be of this size.
+   *
+   * @param renderedWidth the width the frames are rendered at, at most
+   * @param renderedHeight the height the frames are rendered at, at most
+   * @return this builder
+   */
+  public AnimatedImageResultBuilder setRenderedSize(int renderedWidth, int renderedHeight) {
+    mRenderedWidth = renderedWidth;
+    mRenderedHeight = renderedHeight;
+    return this;
+  }
+
+  /**
+   * Gets the metadata of the image, if it was already read.
+   *
+   * @return the metadata or null if none was set
+   */
+  public AnimatedImageMetadata getMetadata() {
+    return mMetadata;
+  }
+
+  /**
+   * Sets the metadata of the image, when it was already read while decoding, so that the result
+   * does not read it again.
+   *
+   * @param metadata the metadata of the image
+   * @return this builder
+   */
+  public AnimatedImageResultBuilder setMetadata(AnimatedImageMetadata metadata) {
+    mMetadata = metadata;
+    return this;
+  }
+
   /**
    * Gets the decoded frames. Only used if the {@code ImageDecodeOptions} were configured to
    * decode all frames at decode time.
@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2015-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.imagepipeline.animated.base;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+
+import com.facebook.common.internal.VisibleForTesting;
+
+/**
+ * Clock that ticks once per display frame on the UI thread for as long as there are listeners,
+ * so that all the running animations get advanced together, right before the frame gets drawn,
+ * instead of each of them posting its own messages.
+ *
+ * <p> Below Jelly Bean, where there is no {@link Choreographer}, the clock ticks every
+ * {@link #FRAME_INTERVAL_MS} milliseconds.
+ *
+ * <p> All methods must be called on the UI thread.
+ */
+public class AnimationClock {
+
+  private static final int FRAME_INTERVAL_MS = 16;
+
+  private static AnimationClock sInstance = null;
+
+  public static synchronized AnimationClock getInstance() {
+    if (sInstance == null) {
+      sInstance = new AnimationClock();
+    }
+    return sInstance;
+  }
+
+  /**
+   * Listener ticked by the clock.
+   */
+  public interface Listener {
+
+    /**
+     * Called once per display frame while the listener is added to the clock.
+     *
+     * @return whether the listener invalidated itself
+     */
+    boolean onTick();
+  }
+
+  private final Handler mUiHandler;
+  private final List<Listener> mListeners;
+  private final List<Listener> mTickingListeners;
+  private boolean mIsTickScheduled;
+
+  // Instrumentation
+  private long mTickCount;
+  private long mInvalidationCount;
+  private int mMaxInvalidationsPerTick;
+
+  private final Runnable mTickRunnable = new Runnable() {
+    @Override
+    public void run() {
+      tick();
+    }
+  };
+
+  private Object mFrameCallback;
+
+  public AnimationClock() {
+    mUiHandler = new Handler(Looper.getMainLooper());
+    mListeners = new ArrayList<>();
+    mTickingListeners = new ArrayList<>();
+  }
+
+  /**
+   * Adds a listener to be ticked from the next display frame on, if it is not already added.
+   */
+  public void addListener(Listener listener) {
+    if (mListeners.contains(listener)) {
+      return;
+    }
+    mListeners.add(listener);
+    if (!mIsTickScheduled) {
+      mIsTickScheduled = true;
+      scheduleTick();
+    }
+  }
+
+  /**
+   * Removes a listener. The clock stops ticking once it has no listeners.
+   */
+  public void removeListener(Listener listener) {
+    mListeners.remove(listener);
+  }
+
+  /**
+   * Schedules {@link #tick} to be run on the UI thread with the next frame.
+   */
+  @VisibleForTesting
+  protected void scheduleTick() {
+    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+      postFrameCallback();
+    } else {
+      mUiHandler.postDelayed(mTickRunnable, FRAME_INTERVAL_MS);
+    }
+  }
+
+  @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+  private void postFrameCallback() {
+    if (mFrameCallback == null) {
+      mFrameCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+          tick();
+        }
+      };
+    }
+    Choreographer.getInstance().postFrameCallback((Choreographer.FrameCallback) mFrameCallback);
+  }
+
+  /**
+   * Ticks all the listeners, which may add or remove listeners while being ticked.
+   */
+  @VisibleForTesting
+  void tick() {
+    mIsTickScheduled = false;
+    mTickingListeners.addAll(mListeners);
+    int invalidations = 0;
+    try {
+      for (int i = 0; i < mTickingListeners.size(); i++) {
+        if (mTickingListeners.get(i).onTick()) {
+          invalidations++;
+        }
+      }
+    } finally {
+      mTickingListeners.clear();
+      mTickCount++;
+      mInvalidationCount += invalidations;
+      mMaxInvalidationsPerTick = Math.max(mMaxInvalidationsPerTick, invalidations);
+    }
+    if (!mListeners.isEmpty() && !mIsTickScheduled) {
+      mIsTickScheduled = true;
+      scheduleTick();
+    }
+  }
+
+  @VisibleForTesting
+  int getListenerCount() {
+    return mListeners.size();
+  }
+
+  /**
+   * Gets the number of ticks so far, each of which is one message handled by the UI thread.
+   */
+  public long getTickCount() {
+    return mTickCount;
+  }
+
+  /**
+   * Gets the number of times a listener invalidated itself when ticked.
+   */
+  public long getInvalidationCount() {
+    return mInvalidationCount;
+  }
+
+  /**
+   * Gets the most listeners that invalidated themselves in a single tick.
+   */
+  public int getMaxInvalidationsPerTick() {
+    return mMaxInvalidationsPerTick;
+  }
+}
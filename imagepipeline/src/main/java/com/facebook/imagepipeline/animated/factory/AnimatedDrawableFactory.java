@@ -9,6 +9,8 @@
 
 package com.facebook.imagepipeline.animated.factory;
 
+import javax.annotation.Nullable;
+
 import java.util.concurrent.ScheduledExecutorService;
 
 import android.content.res.Resources;
@@ -16,6 +18,7 @@ import android.graphics.Rect;
 import android.os.SystemClock;
 import android.util.DisplayMetrics;
 
+import com.facebook.cache.common.CacheKey;
 import com.facebook.common.time.MonotonicClock;
 import com.facebook.imagepipeline.animated.base.AnimatedDrawable;
 import com.facebook.imagepipeline.animated.base.AnimatedDrawableBackend;
@@ -24,6 +27,7 @@ import com.facebook.imagepipeline.animated.base.AnimatedDrawableDiagnostics;
 import com.facebook.imagepipeline.animated.base.AnimatedDrawableOptions;
 import com.facebook.imagepipeline.animated.base.AnimatedImage;
 import com.facebook.imagepipeline.animated.base.AnimatedImageResult;
+import com.facebook.imagepipeline.animated.base.AnimationClock;
 import com.facebook.imagepipeline.animated.impl.AnimatedDrawableBackendProvider;
 import com.facebook.imagepipeline.animated.impl.AnimatedDrawableCachingBackendImplProvider;
 import com.facebook.imagepipeline.animated.impl.AnimatedDrawableDiagnosticsImpl;
@@ -83,22 +87,41 @@ public class AnimatedDrawableFactory {
   public AnimatedDrawable create(
       AnimatedImageResult animatedImageResult,
       AnimatedDrawableOptions options) {
+    return create(animatedImageResult, options, null);
+  }
+
+  /**
+   * Creates an {@link AnimatedDrawable} based on an {@link AnimatedImage}.
+   *
+   * @param animatedImageResult the result of the code
+   * @param options additional options
+   * @param imageCacheKey the key of the image in the bitmap memory cache, or null if unknown. If
+   *     known, the frames rendered at the size of the image are cached under the same keys as
+   *     requests for single frames of the image
+   * @return a newly constructed {@link AnimatedDrawable}
+   */
+  public AnimatedDrawable create(
+      AnimatedImageResult animatedImageResult,
+      AnimatedDrawableOptions options,
+      @Nullable CacheKey imageCacheKey) {
     AnimatedImage animatedImage = animatedImageResult.getImage();
     Rect initialBounds = new Rect(0, 0, animatedImage.getWidth(), animatedImage.getHeight());
     AnimatedDrawableBackend animatedDrawableBackend =
         mAnimatedDrawableBackendProvider.get(animatedImageResult, initialBounds);
-    return createAnimatedDrawable(options, animatedDrawableBackend);
+    return createAnimatedDrawable(options, animatedDrawableBackend, imageCacheKey);
   }
 
   private AnimatedDrawable createAnimatedDrawable(
       AnimatedDrawableOptions options,
-      AnimatedDrawableBackend animatedDrawableBackend) {
+      AnimatedDrawableBackend animatedDrawableBackend,
+      @Nullable CacheKey imageCacheKey) {
     DisplayMetrics displayMetrics = mResources.getDisplayMetrics();
     AnimatedDrawableDiagnostics animatedDrawableDiagnostics;
     AnimatedDrawableCachingBackend animatedDrawableCachingBackend =
         mAnimatedDrawableCachingBackendProvider.get(
             animatedDrawableBackend,
-            options);
+            options,
+            imageCacheKey);
     if (options.enableDebugging) {
       animatedDrawableDiagnostics =
           new AnimatedDrawableDiagnosticsImpl(mAnimatedDrawableUtil, displayMetrics);
@@ -110,6 +133,7 @@ public class AnimatedDrawableFactory {
         mScheduledExecutorServiceForUiThread,
         animatedDrawableCachingBackend,
         animatedDrawableDiagnostics,
-        mMonotonicClock);
+        mMonotonicClock,
+        options.useAnimationClock ? AnimationClock.getInstance() : null);
   }
 }
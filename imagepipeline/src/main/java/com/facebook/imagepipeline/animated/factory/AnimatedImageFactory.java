@@ -12,17 +12,22 @@ package com.facebook.imagepipeline.animated.factory;
 import android.annotation.SuppressLint;
 import android.graphics.Bitmap;
 import android.graphics.Color;
+import android.graphics.Rect;
 import android.os.Build;
 
 import com.facebook.common.internal.Preconditions;
+import com.facebook.common.internal.VisibleForTesting;
 import com.facebook.common.references.CloseableReference;
 import com.facebook.imagepipeline.animated.base.AnimatedDrawableBackend;
 import com.facebook.imagepipeline.animated.base.AnimatedImage;
+import com.facebook.imagepipeline.animated.base.AnimatedImageMetadata;
 import com.facebook.imagepipeline.animated.base.AnimatedImageResult;
+import com.facebook.imagepipeline.animated.base.AnimatedImageResultBuilder;
 import com.facebook.imagepipeline.animated.impl.AnimatedDrawableBackendProvider;
 import com.facebook.imagepipeline.animated.impl.AnimatedImageCompositor;
 import com.facebook.imagepipeline.bitmaps.PlatformBitmapFactory;
 import com.facebook.imagepipeline.common.ImageDecodeOptions;
+import com.facebook.imagepipeline.common.ResizeOptions;
 import com.facebook.imagepipeline.gif.GifImage;
 import com.facebook.imagepipeline.image.CloseableAnimatedImage;
 import com.facebook.imagepipeline.image.CloseableImage;
@@ -30,6 +35,8 @@ import com.facebook.imagepipeline.image.EncodedImage;
 import com.facebook.imagepipeline.memory.PooledByteBuffer;
 import com.facebook.imagepipeline.webp.WebPImage;
 
+import javax.annotation.Nullable;
+
 import java.util.ArrayList;
 import java.util.List;
 
@@ -38,6 +45,8 @@ import java.util.List;
  */
 public class AnimatedImageFactory {
 
+  private static final byte GIF_TRAILER = 0x3B;
+
   private final AnimatedDrawableBackendProvider mAnimatedDrawableBackendProvider;
   private final PlatformBitmapFactory mBitmapFactory;
 
@@ -59,14 +68,51 @@ public class AnimatedImageFactory {
       final EncodedImage encodedImage,
       final ImageDecodeOptions options,
       final Bitmap.Config bitmapConfig) {
+    return decodeGif(encodedImage, encodedImage.getSize(), options, null, bitmapConfig);
+  }
+
+  /**
+   * Decodes the first bytes of a GIF, cut after its last complete frame, into a CloseableImage.
+   * @param encodedImage encoded image (native byte array holding the encoded bytes and meta data)
+   * @param length the number of bytes to decode
+   * @param options the options for the decode
+   * @param bitmapConfig the Bitmap.Config used to generate the output bitmaps
+   * @return a {@link CloseableImage} for the frames of the GIF image within length
+   */
+  public CloseableImage decodeGif(
+      final EncodedImage encodedImage,
+      final int length,
+      final ImageDecodeOptions options,
+      final Bitmap.Config bitmapConfig) {
+    return decodeGif(encodedImage, length, options, null, bitmapConfig);
+  }
+
+  /**
+   * Decodes the first bytes of a GIF, cut after its last complete frame, into a CloseableImage
+   * whose frames get rendered at the size of the resize options at most.
+   * @param encodedImage encoded image (native byte array holding the encoded bytes and meta data)
+   * @param length the number of bytes to decode
+   * @param options the options for the decode
+   * @param resizeOptions the size to render the frames at, or null for the size of the image
+   * @param bitmapConfig the Bitmap.Config used to generate the output bitmaps
+   * @return a {@link CloseableImage} for the frames of the GIF image within length
+   */
+  public CloseableImage decodeGif(
+      final EncodedImage encodedImage,
+      final int length,
+      final ImageDecodeOptions options,
+      final @Nullable ResizeOptions resizeOptions,
+      final Bitmap.Config bitmapConfig) {
     final CloseableReference<PooledByteBuffer> bytesRef = encodedImage.getByteBufferRef();
     Preconditions.checkNotNull(bytesRef);
     try {
       Preconditions.checkState(!options.forceOldAnimationCode);
       final PooledByteBuffer input = bytesRef.get();
-      GifImage gifImage = GifImage.create(input.getNativePtr(), input.size());
+      GifImage gifImage = length < input.size()
+          ? GifImage.create(getPartialGif(input, length))
+          : GifImage.create(input.getNativePtr(), input.size());
 
-      return getCloseableImage(options, gifImage, bitmapConfig);
+      return getCloseableImage(options, gifImage, resizeOptions, bitmapConfig);
     } finally {
       CloseableReference.closeSafely(bytesRef);
     }
@@ -83,39 +129,150 @@ public class AnimatedImageFactory {
       final EncodedImage encodedImage,
       final ImageDecodeOptions options,
       final Bitmap.Config bitmapConfig) {
+    return decodeWebP(encodedImage, encodedImage.getSize(), options, null, bitmapConfig);
+  }
+
+  /**
+   * Decodes the first bytes of a WebP, cut after its last complete frame, into a CloseableImage.
+   * @param encodedImage encoded image (native byte array holding the encoded bytes and meta data)
+   * @param length the number of bytes to decode
+   * @param options the options for the decode
+   * @param bitmapConfig the Bitmap.Config used to generate the output bitmaps
+   * @return a {@link CloseableImage} for the frames of the WebP image within length
+   */
+  public CloseableImage decodeWebP(
+      final EncodedImage encodedImage,
+      final int length,
+      final ImageDecodeOptions options,
+      final Bitmap.Config bitmapConfig) {
+    return decodeWebP(encodedImage, length, options, null, bitmapConfig);
+  }
+
+  /**
+   * Decodes the first bytes of a WebP, cut after its last complete frame, into a CloseableImage
+   * whose frames get rendered at the size of the resize options at most.
+   * @param encodedImage encoded image (native byte array holding the encoded bytes and meta data)
+   * @param length the number of bytes to decode
+   * @param options the options for the decode
+   * @param resizeOptions the size to render the frames at, or null for the size of the image
+   * @param bitmapConfig the Bitmap.Config used to generate the output bitmaps
+   * @return a {@link CloseableImage} for the frames of the WebP image within length
+   */
+  public CloseableImage decodeWebP(
+      final EncodedImage encodedImage,
+      final int length,
+      final ImageDecodeOptions options,
+      final @Nullable ResizeOptions resizeOptions,
+      final Bitmap.Config bitmapConfig) {
     final CloseableReference<PooledByteBuffer> bytesRef = encodedImage.getByteBufferRef();
     Preconditions.checkNotNull(bytesRef);
     try {
       Preconditions.checkArgument(!options.forceOldAnimationCode);
       final PooledByteBuffer input = bytesRef.get();
-      WebPImage webPImage = WebPImage.create(input.getNativePtr(), input.size());
-      return getCloseableImage(options, webPImage, bitmapConfig);
+      WebPImage webPImage = length < input.size()
+          ? WebPImage.create(getPartialWebP(input, length))
+          : WebPImage.create(input.getNativePtr(), input.size());
+      return getCloseableImage(options, webPImage, resizeOptions, bitmapConfig);
     } finally {
       CloseableReference.closeSafely(bytesRef);
     }
   }
 
+  /**
+   * Copies the first bytes of a GIF, and terminates the copy with a trailer so that it is a valid
+   * GIF of the frames within these bytes.
+   */
+  @VisibleForTesting
+  static byte[] getPartialGif(PooledByteBuffer input, int length) {
+    byte[] data = new byte[length + 1];
+    input.read(0, data, 0, length);
+    data[length] = GIF_TRAILER;
+    return data;
+  }
+
+  /**
+   * Copies the first bytes of a WebP, and updates the RIFF size of the copy so that it is a valid
+   * WebP of the frames within these bytes.
+   */
+  @VisibleForTesting
+  static byte[] getPartialWebP(PooledByteBuffer input, int length) {
+    byte[] data = new byte[length];
+    input.read(0, data, 0, length);
+    // the RIFF size does not include the RIFF fourcc and the size itself
+    int riffSize = length - 8;
+    data[4] = (byte) riffSize;
+    data[5] = (byte) (riffSize >> 8);
+    data[6] = (byte) (riffSize >> 16);
+    data[7] = (byte) (riffSize >> 24);
+    return data;
+  }
+
+  /**
+   * Gets the size to render the frames of an image at for resize options, keeping the aspect
+   * ratio of the image. Like for the resizing of JPEGs, the frames cover the size of the resize
+   * options, and are never larger than the image.
+   *
+   * @return the bounds to render the frames in, or null if they are the bounds of the image
+   */
+  @VisibleForTesting
+  static @Nullable Rect getRenderedBounds(
+      int width,
+      int height,
+      @Nullable ResizeOptions resizeOptions) {
+    if (resizeOptions == null || width <= 0 || height <= 0) {
+      return null;
+    }
+    float ratio = Math.max(
+        (float) resizeOptions.width / width,
+        (float) resizeOptions.height / height);
+    if (ratio >= 1) {
+      return null;
+    }
+    return new Rect(
+        0,
+        0,
+        Math.max(1, Math.round(width * ratio)),
+        Math.max(1, Math.round(height * ratio)));
+  }
+
   private CloseableAnimatedImage getCloseableImage(
       ImageDecodeOptions options,
       AnimatedImage image,
+      @Nullable ResizeOptions resizeOptions,
       Bitmap.Config bitmapConfig) {
     List<CloseableReference<Bitmap>> decodedFrames = null;
     CloseableReference<Bitmap> previewBitmap = null;
     try {
+      Rect renderedBounds =
+          getRenderedBounds(image.getWidth(), image.getHeight(), resizeOptions);
       int frameForPreview = options.useLastFrameForPreview ? image.getFrameCount() - 1 : 0;
+      AnimatedImageMetadata metadata = null;
+      if (options.decodeAllFrames || options.decodePreviewFrame) {
+        // read once for rendering frames here and for the result
+        metadata = AnimatedImageMetadata.read(image);
+      }
       if (options.decodeAllFrames) {
-        decodedFrames = decodeAllFrames(image, bitmapConfig);
+        decodedFrames = decodeAllFrames(image, metadata, renderedBounds, bitmapConfig);
         previewBitmap = CloseableReference.cloneOrNull(decodedFrames.get(frameForPreview));
       }
 
       if (options.decodePreviewFrame && previewBitmap == null) {
-        previewBitmap = createPreviewBitmap(image, bitmapConfig, frameForPreview);
+        previewBitmap = createPreviewBitmap(
+            image,
+            metadata,
+            renderedBounds,
+            bitmapConfig,
+            frameForPreview);
       }
-      AnimatedImageResult animatedImageResult = AnimatedImageResult.newBuilder(image)
+      AnimatedImageResultBuilder builder = AnimatedImageResult.newBuilder(image)
           .setPreviewBitmap(previewBitmap)
           .setFrameForPreview(frameForPreview)
           .setDecodedFrames(decodedFrames)
-          .build();
+          .setMetadata(metadata);
+      if (renderedBounds != null) {
+        builder.setRenderedSize(renderedBounds.width(), renderedBounds.height());
+      }
+      AnimatedImageResult animatedImageResult = builder.build();
       return new CloseableAnimatedImage(animatedImageResult);
     } finally {
       CloseableReference.closeSafely(previewBitmap);
@@ -125,15 +282,18 @@ public class AnimatedImageFactory {
 
   private CloseableReference<Bitmap> createPreviewBitmap(
       AnimatedImage image,
+      AnimatedImageMetadata metadata,
+      @Nullable Rect renderedBounds,
       Bitmap.Config bitmapConfig,
       int frameForPreview) {
+    AnimatedImageResult tempResult =
+        AnimatedImageResult.newBuilder(image).setMetadata(metadata).build();
+    AnimatedDrawableBackend drawableBackend =
+        mAnimatedDrawableBackendProvider.get(tempResult, renderedBounds);
     CloseableReference<Bitmap> bitmap = createBitmap(
-        image.getWidth(),
-        image.getHeight(),
+        drawableBackend.getRenderedWidth(),
+        drawableBackend.getRenderedHeight(),
         bitmapConfig);
-    AnimatedImageResult tempResult = AnimatedImageResult.forAnimatedImage(image);
-    AnimatedDrawableBackend drawableBackend =
-        mAnimatedDrawableBackendProvider.get(tempResult, null);
     AnimatedImageCompositor animatedImageCompositor = new AnimatedImageCompositor(
         drawableBackend,
         new AnimatedImageCompositor.Callback() {
@@ -153,11 +313,14 @@ public class AnimatedImageFactory {
 
   private List<CloseableReference<Bitmap>> decodeAllFrames(
       AnimatedImage image,
+      AnimatedImageMetadata metadata,
+      @Nullable Rect renderedBounds,
       Bitmap.Config bitmapConfig) {
     final List<CloseableReference<Bitmap>> bitmaps = new ArrayList<>();
-    AnimatedImageResult tempResult = AnimatedImageResult.forAnimatedImage(image);
+    AnimatedImageResult tempResult =
+        AnimatedImageResult.newBuilder(image).setMetadata(metadata).build();
     AnimatedDrawableBackend drawableBackend =
-        mAnimatedDrawableBackendProvider.get(tempResult, null);
+        mAnimatedDrawableBackendProvider.get(tempResult, renderedBounds);
     AnimatedImageCompositor animatedImageCompositor = new AnimatedImageCompositor(
         drawableBackend,
         new AnimatedImageCompositor.Callback() {
@@ -173,8 +336,8 @@ public class AnimatedImageFactory {
         });
     for (int i = 0; i < drawableBackend.getFrameCount(); i++) {
       CloseableReference<Bitmap> bitmap = createBitmap(
-          drawableBackend.getWidth(),
-          drawableBackend.getHeight(),
+          drawableBackend.getRenderedWidth(),
+          drawableBackend.getRenderedHeight(),
           bitmapConfig);
       animatedImageCompositor.renderFrame(i, bitmap.get());
       bitmaps.add(bitmap);
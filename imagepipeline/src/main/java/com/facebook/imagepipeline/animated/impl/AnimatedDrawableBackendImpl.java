@@ -14,6 +14,7 @@ import javax.annotation.concurrent.GuardedBy;
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
+import android.graphics.Paint;
 import android.graphics.Rect;
 
 import com.facebook.common.internal.Preconditions;
@@ -22,6 +23,7 @@ import com.facebook.imagepipeline.animated.base.AnimatedDrawableBackend;
 import com.facebook.imagepipeline.animated.base.AnimatedDrawableFrameInfo;
 import com.facebook.imagepipeline.animated.base.AnimatedImage;
 import com.facebook.imagepipeline.animated.base.AnimatedImageFrame;
+import com.facebook.imagepipeline.animated.base.AnimatedImageMetadata;
 import com.facebook.imagepipeline.animated.base.AnimatedImageResult;
 import com.facebook.imagepipeline.animated.util.AnimatedDrawableUtil;
 
@@ -34,11 +36,15 @@ public class AnimatedDrawableBackendImpl implements AnimatedDrawableBackend {
 
   private final AnimatedImageResult mAnimatedImageResult;
   private final AnimatedImage mAnimatedImage;
+  private final AnimatedImageMetadata mMetadata;
   private final Rect mRenderedBounds;
   private final int[] mFrameDurationsMs;
   private final int[] mFrameTimestampsMs;
   private final int mDurationMs;
-  private final AnimatedDrawableFrameInfo[] mFrameInfos;
+  private final boolean mUsePreDecodedFrames;
+  private final Rect mRenderSrcRect = new Rect();
+  private final Rect mRenderDstRect = new Rect();
+  private final Paint mRenderPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
 
   @GuardedBy("this")
   private Bitmap mTempBitmap;
@@ -50,26 +56,31 @@ public class AnimatedDrawableBackendImpl implements AnimatedDrawableBackend {
     mAnimatedDrawableUtil = animatedDrawableUtil;
     mAnimatedImageResult = animatedImageResult;
     mAnimatedImage = animatedImageResult.getImage();
-    mFrameDurationsMs = mAnimatedImage.getFrameDurations();
+    mMetadata = animatedImageResult.getMetadata();
+    mFrameDurationsMs = mMetadata.getFrameDurations();
     mAnimatedDrawableUtil.fixFrameDurations(mFrameDurationsMs);
     mDurationMs = mAnimatedDrawableUtil.getTotalDurationFromFrameDurations(mFrameDurationsMs);
     mFrameTimestampsMs = mAnimatedDrawableUtil.getFrameTimeStampsFromDurations(mFrameDurationsMs);
-    mRenderedBounds = getBoundsToUse(mAnimatedImage, bounds);
-    mFrameInfos = new AnimatedDrawableFrameInfo[mAnimatedImage.getFrameCount()];
-    for (int i = 0; i < mAnimatedImage.getFrameCount(); i++) {
-      mFrameInfos[i] = mAnimatedImage.getFrameInfo(i);
-    }
+    mRenderedBounds = getBoundsToUse(animatedImageResult, bounds);
+    // the decoded frames are only of use if they are of the size the frames are rendered at
+    mUsePreDecodedFrames =
+        mRenderedBounds.width() == animatedImageResult.getRenderedWidth() &&
+        mRenderedBounds.height() == animatedImageResult.getRenderedHeight();
   }
 
-  private static Rect getBoundsToUse(AnimatedImage image, Rect targetBounds) {
+  /**
+   * Gets the bounds to render the frames in: the target bounds, but never larger than the size the
+   * image was decoded for.
+   */
+  private static Rect getBoundsToUse(AnimatedImageResult imageResult, Rect targetBounds) {
     if (targetBounds == null) {
-      return new Rect(0, 0, image.getWidth(), image.getHeight());
+      return new Rect(0, 0, imageResult.getRenderedWidth(), imageResult.getRenderedHeight());
     }
     return new Rect(
         0,
         0,
-        Math.min(targetBounds.width(), image.getWidth()),
-        Math.min(targetBounds.height(), image.getHeight()));
+        Math.min(targetBounds.width(), imageResult.getRenderedWidth()),
+        Math.min(targetBounds.height(), imageResult.getRenderedHeight()));
   }
 
   @Override
@@ -84,22 +95,22 @@ public class AnimatedDrawableBackendImpl implements AnimatedDrawableBackend {
 
   @Override
   public int getFrameCount() {
-    return mAnimatedImage.getFrameCount();
+    return mMetadata.getFrameCount();
   }
 
   @Override
   public int getLoopCount() {
-    return mAnimatedImage.getLoopCount();
+    return mMetadata.getLoopCount();
   }
 
   @Override
   public int getWidth() {
-    return mAnimatedImage.getWidth();
+    return mMetadata.getWidth();
   }
 
   @Override
   public int getHeight() {
-    return mAnimatedImage.getHeight();
+    return mMetadata.getHeight();
   }
 
   @Override
@@ -114,7 +125,7 @@ public class AnimatedDrawableBackendImpl implements AnimatedDrawableBackend {
 
   @Override
   public AnimatedDrawableFrameInfo getFrameInfo(int frameNumber) {
-    return mFrameInfos[frameNumber];
+    return mMetadata.getFrameInfo(frameNumber);
   }
 
   @Override
@@ -140,7 +151,7 @@ public class AnimatedDrawableBackendImpl implements AnimatedDrawableBackend {
 
   @Override
   public AnimatedDrawableBackend forNewBounds(Rect bounds) {
-    Rect boundsToUse = getBoundsToUse(mAnimatedImage, bounds);
+    Rect boundsToUse = getBoundsToUse(mAnimatedImageResult, bounds);
     if (boundsToUse.equals(mRenderedBounds)) {
       // Actual bounds aren't changed.
       return this;
@@ -163,36 +174,41 @@ public class AnimatedDrawableBackendImpl implements AnimatedDrawableBackend {
 
   @Override
   public CloseableReference<Bitmap> getPreDecodedFrame(int frameNumber) {
-    return mAnimatedImageResult.getDecodedFrame(frameNumber);
+    return mUsePreDecodedFrames ? mAnimatedImageResult.getDecodedFrame(frameNumber) : null;
   }
 
   @Override
   public boolean hasPreDecodedFrame(int index) {
-    return mAnimatedImageResult.hasDecodedFrame(index);
+    return mUsePreDecodedFrames && mAnimatedImageResult.hasDecodedFrame(index);
   }
 
   @Override
   public void renderFrame(int frameNumber, Canvas canvas) {
     AnimatedImageFrame frame  = mAnimatedImage.getFrame(frameNumber);
+    // the geometry of the frame comes from the metadata rather than from the frame
+    AnimatedDrawableFrameInfo frameInfo = mMetadata.getFrameInfo(frameNumber);
     try {
       if (mAnimatedImage.doesRenderSupportScaling()) {
-        renderImageSupportsScaling(canvas, frame);
+        renderImageSupportsScaling(canvas, frame, frameInfo);
       } else {
-        renderImageDoesNotSupportScaling(canvas, frame);
+        renderImageDoesNotSupportScaling(canvas, frame, frameInfo);
       }
     } finally {
       frame.dispose();
     }
   }
 
-  private void renderImageSupportsScaling(Canvas canvas, AnimatedImageFrame frame) {
-    double xScale = (double) mRenderedBounds.width() / (double) mAnimatedImage.getWidth();
-    double yScale = (double) mRenderedBounds.height() / (double) mAnimatedImage.getHeight();
+  private void renderImageSupportsScaling(
+      Canvas canvas,
+      AnimatedImageFrame frame,
+      AnimatedDrawableFrameInfo frameInfo) {
+    double xScale = (double) mRenderedBounds.width() / (double) mMetadata.getWidth();
+    double yScale = (double) mRenderedBounds.height() / (double) mMetadata.getHeight();
 
-    int frameWidth = (int) Math.round(frame.getWidth() * xScale);
-    int frameHeight = (int) Math.round(frame.getHeight() * yScale);
-    int xOffset = (int) (frame.getXOffset() * xScale);
-    int yOffset = (int) (frame.getYOffset() * yScale);
+    int frameWidth = (int) Math.round(frameInfo.width * xScale);
+    int frameHeight = (int) Math.round(frameInfo.height * yScale);
+    int xOffset = (int) (frameInfo.xOffset * xScale);
+    int yOffset = (int) (frameInfo.yOffset * yScale);
 
     synchronized (this) {
       if (mTempBitmap == null) {
@@ -207,28 +223,35 @@ public class AnimatedDrawableBackendImpl implements AnimatedDrawableBackend {
     }
   }
 
-  public void renderImageDoesNotSupportScaling(Canvas canvas, AnimatedImageFrame frame) {
-    int frameWidth = frame.getWidth();
-    int frameHeight = frame.getHeight();
-    int xOffset = frame.getXOffset();
-    int yOffset = frame.getYOffset();
+  private void renderImageDoesNotSupportScaling(
+      Canvas canvas,
+      AnimatedImageFrame frame,
+      AnimatedDrawableFrameInfo frameInfo) {
+    int frameWidth = frameInfo.width;
+    int frameHeight = frameInfo.height;
+    int xOffset = frameInfo.xOffset;
+    int yOffset = frameInfo.yOffset;
     synchronized (this) {
       if (mTempBitmap == null) {
         mTempBitmap = Bitmap.createBitmap(
-            mAnimatedImage.getWidth(),
-            mAnimatedImage.getHeight(),
+            mMetadata.getWidth(),
+            mMetadata.getHeight(),
             Bitmap.Config.ARGB_8888);
       }
       mTempBitmap.eraseColor(Color.TRANSPARENT);
       frame.renderFrame(frameWidth, frameHeight, mTempBitmap);
 
-      float xScale = (float) mRenderedBounds.width() / (float) mAnimatedImage.getWidth();
-      float yScale = (float) mRenderedBounds.height() / (float) mAnimatedImage.getHeight();
-      canvas.save();
-      canvas.scale(xScale, yScale);
-      canvas.translate(xOffset, yOffset);
-      canvas.drawBitmap(mTempBitmap, 0, 0, null);
-      canvas.restore();
+      // Only the area of the frame gets scaled down into the rendered bounds, filtered so that
+      // downscaled frames do not alias.
+      double xScale = (double) mRenderedBounds.width() / (double) mMetadata.getWidth();
+      double yScale = (double) mRenderedBounds.height() / (double) mMetadata.getHeight();
+      mRenderSrcRect.set(0, 0, frameWidth, frameHeight);
+      mRenderDstRect.set(
+          (int) (xOffset * xScale),
+          (int) (yOffset * yScale),
+          (int) Math.round((xOffset + frameWidth) * xScale),
+          (int) Math.round((yOffset + frameHeight) * yScale));
+      canvas.drawBitmap(mTempBitmap, mRenderSrcRect, mRenderDstRect, mRenderPaint);
     }
   }
 
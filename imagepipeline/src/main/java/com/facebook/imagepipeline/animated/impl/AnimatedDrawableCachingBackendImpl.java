@@ -9,6 +9,7 @@
 
 package com.facebook.imagepipeline.animated.impl;
 
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.GuardedBy;
 
 import java.util.ArrayList;
@@ -17,7 +18,9 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.Arrays;
 import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -29,6 +32,7 @@ import android.graphics.PorterDuff;
 import android.graphics.Rect;
 import android.support.v4.util.SparseArrayCompat;
 
+import com.facebook.cache.common.CacheKey;
 import com.facebook.common.executors.SerialExecutorService;
 import com.facebook.common.internal.VisibleForTesting;
 import com.facebook.common.logging.FLog;
@@ -41,14 +45,38 @@ import com.facebook.imagepipeline.animated.base.AnimatedDrawableCachingBackend;
 import com.facebook.imagepipeline.animated.base.AnimatedDrawableFrameInfo;
 import com.facebook.imagepipeline.animated.base.AnimatedDrawableFrameInfo.DisposalMethod;
 import com.facebook.imagepipeline.animated.base.AnimatedDrawableOptions;
+import com.facebook.imagepipeline.animated.base.AnimatedDrawableOptions.FrameStorage;
+import com.facebook.imagepipeline.animated.base.AnimatedImageResult;
 import com.facebook.imagepipeline.animated.base.DelegatingAnimatedDrawableBackend;
 import com.facebook.imagepipeline.animated.util.AnimatedDrawableUtil;
+import com.facebook.imagepipeline.cache.CountingMemoryCache;
+import com.facebook.imagepipeline.image.CloseableImage;
+import com.facebook.imagepipeline.image.CloseableStaticBitmap;
+import com.facebook.imagepipeline.image.ImmutableQualityInfo;
 
 import bolts.Continuation;
 import bolts.Task;
 
 /**
  * A caching and prefetching layer that delegates to a {@link AnimatedDrawableBackend}.
+ *
+ * <p> Unless the options specify the maximum bytes to use, whether all frames are kept in memory
+ * is decided by the {@link AnimatedFrameBudget} shared with the other backends, if there is one.
+ *
+ * <p> Given a frame memory cache, rendered frames are published to it through an
+ * {@link AnimatedFrameCache}, so that the backends of other drawables showing the same image at
+ * the same size reuse them instead of rendering them again.
+ *
+ * <p> The number of frames prefetched ahead of the current one grows with the measured time to
+ * render them, relative to the time they are shown for. Frames that can be rendered without the
+ * previous frames get rendered in parallel on the key frame executor, if there is one.
+ *
+ * <p> Unless all frames are kept, a few snapshot frames are kept as well, so that any frame can be
+ * rendered with a bounded number of composite steps after seeking or dropping frames. Backends
+ * sharing an {@link AnimatedFrameBudget} only keep snapshots if the budget grants their bytes.
+ *
+ * <p> Depending on the {@link FrameStorage} of the options, rendered frames are cached as indexed
+ * frames or as RGB_565 bitmaps when they can be, so that more of them fit in the maximum bytes.
  */
 public class AnimatedDrawableCachingBackendImpl extends DelegatingAnimatedDrawableBackend
     implements AnimatedDrawableCachingBackend {
@@ -57,9 +85,12 @@ public class AnimatedDrawableCachingBackendImpl extends DelegatingAnimatedDrawab
 
   private static final AtomicInteger sTotalBitmaps = new AtomicInteger();
 
-  private static final int PREFETCH_FRAMES = 3;
+  private static final int MIN_PREFETCH_FRAMES = 3;
+  private static final int MAX_PREFETCH_FRAMES = 8;
+  private static final int MIN_SNAPSHOT_INTERVAL = 8;
 
   private final SerialExecutorService mExecutorService;
+  private final @Nullable Executor mKeyFrameExecutor;
   private final AnimatedDrawableUtil mAnimatedDrawableUtil;
   private final ActivityManager mActivityManager;
   private final MonotonicClock mMonotonicClock;
@@ -67,25 +98,64 @@ public class AnimatedDrawableCachingBackendImpl extends DelegatingAnimatedDrawab
   private final AnimatedDrawableOptions mAnimatedDrawableOptions;
   private final AnimatedImageCompositor mAnimatedImageCompositor;
   private final ResourceReleaser<Bitmap> mResourceReleaserForBitmaps;
+  private final ResourceReleaser<Bitmap> mResourceReleaserForOpaqueBitmaps;
   private final double mMaximumKiloBytes;
+  private final @Nullable AnimatedFrameBudget mAnimatedFrameBudget;
+  private final @Nullable CountingMemoryCache<CacheKey, CloseableImage> mFrameMemoryCache;
+  private final @Nullable CacheKey mImageCacheKey;
+  private final @Nullable AnimatedFrameCache mAnimatedFrameCache;
 
   private final double mApproxKiloBytesToHoldAllFrames;
+  private final int[] mSnapshotFrames;
 
-  @GuardedBy("this")
+  private volatile boolean mKeepAllFramesGranted;
+  private volatile boolean mSnapshotFramesGranted;
+
+  // Not guarded by this, as bitmaps may get released by the frame memory cache on behalf of any
+  // other backend.
+  @GuardedBy("mFreeBitmaps")
   private final List<Bitmap> mFreeBitmaps;
 
+  @GuardedBy("mFreeBitmaps")
+  private final List<Bitmap> mFreeOpaqueBitmaps;
+
   @GuardedBy("this")
   private final SparseArrayCompat<Task<Object>> mDecodesInFlight;
 
   @GuardedBy("this")
   private final SparseArrayCompat<CloseableReference<Bitmap>> mCachedBitmaps;
 
+  @GuardedBy("this")
+  private final SparseArrayCompat<IndexedFrame> mIndexedFrames;
+
+  // Pixels of the frame being converted to or from an indexed or opaque frame.
+  @GuardedBy("this")
+  private int[] mPixels;
+
   @GuardedBy("this")
   private final WhatToKeepCachedArray mBitmapsToKeepCached;
 
+  @GuardedBy("this")
+  private final int[] mRenderTimesMs;
+
+  @GuardedBy("this")
+  private int mRenderTimesMsSum;
+
+  @GuardedBy("this")
+  private int mRenderTimesMsCount;
+
+  // Instrumentation
+  private final AtomicInteger mDeferredFrameCount = new AtomicInteger();
+  private final AtomicInteger mCallingThreadRenderCount = new AtomicInteger();
+  private final AtomicInteger mKeyFrameRenderCount = new AtomicInteger();
+  private final AtomicInteger mExpandedFrameCount = new AtomicInteger();
+
   @GuardedBy("ui-thread")
   private int mCurrentFrameIndex;
 
+  @GuardedBy("ui-thread")
+  private boolean mIsActive;
+
   public AnimatedDrawableCachingBackendImpl(
       SerialExecutorService executorService,
       ActivityManager activityManager,
@@ -93,8 +163,104 @@ public class AnimatedDrawableCachingBackendImpl extends DelegatingAnimatedDrawab
       MonotonicClock monotonicClock,
       AnimatedDrawableBackend animatedDrawableBackend,
       AnimatedDrawableOptions options) {
+    this(
+        executorService,
+        activityManager,
+        animatedDrawableUtil,
+        monotonicClock,
+        animatedDrawableBackend,
+        options,
+        null);
+  }
+
+  public AnimatedDrawableCachingBackendImpl(
+      SerialExecutorService executorService,
+      ActivityManager activityManager,
+      AnimatedDrawableUtil animatedDrawableUtil,
+      MonotonicClock monotonicClock,
+      AnimatedDrawableBackend animatedDrawableBackend,
+      AnimatedDrawableOptions options,
+      @Nullable AnimatedFrameBudget animatedFrameBudget) {
+    this(
+        executorService,
+        activityManager,
+        animatedDrawableUtil,
+        monotonicClock,
+        animatedDrawableBackend,
+        options,
+        animatedFrameBudget,
+        null);
+  }
+
+  public AnimatedDrawableCachingBackendImpl(
+      SerialExecutorService executorService,
+      ActivityManager activityManager,
+      AnimatedDrawableUtil animatedDrawableUtil,
+      MonotonicClock monotonicClock,
+      AnimatedDrawableBackend animatedDrawableBackend,
+      AnimatedDrawableOptions options,
+      @Nullable AnimatedFrameBudget animatedFrameBudget,
+      @Nullable CountingMemoryCache<CacheKey, CloseableImage> frameMemoryCache) {
+    this(
+        executorService,
+        activityManager,
+        animatedDrawableUtil,
+        monotonicClock,
+        animatedDrawableBackend,
+        options,
+        animatedFrameBudget,
+        frameMemoryCache,
+        null);
+  }
+
+  /**
+   * @param keyFrameExecutor executor to render the frames that don't depend on the previous frames
+   *     on, in parallel with other frames, or null to render all frames on the serial executor
+   */
+  public AnimatedDrawableCachingBackendImpl(
+      SerialExecutorService executorService,
+      ActivityManager activityManager,
+      AnimatedDrawableUtil animatedDrawableUtil,
+      MonotonicClock monotonicClock,
+      AnimatedDrawableBackend animatedDrawableBackend,
+      AnimatedDrawableOptions options,
+      @Nullable AnimatedFrameBudget animatedFrameBudget,
+      @Nullable CountingMemoryCache<CacheKey, CloseableImage> frameMemoryCache,
+      @Nullable Executor keyFrameExecutor) {
+    this(
+        executorService,
+        activityManager,
+        animatedDrawableUtil,
+        monotonicClock,
+        animatedDrawableBackend,
+        options,
+        animatedFrameBudget,
+        frameMemoryCache,
+        keyFrameExecutor,
+        null);
+  }
+
+  /**
+   * @param keyFrameExecutor executor to render the frames that don't depend on the previous frames
+   *     on, in parallel with other frames, or null to render all frames on the serial executor
+   * @param imageCacheKey the key of the image in the frame memory cache, or null if unknown. If
+   *     known, frames rendered at the full rendered size of the image are shared with the requests
+   *     for single frames of the image
+   */
+  public AnimatedDrawableCachingBackendImpl(
+      SerialExecutorService executorService,
+      ActivityManager activityManager,
+      AnimatedDrawableUtil animatedDrawableUtil,
+      MonotonicClock monotonicClock,
+      AnimatedDrawableBackend animatedDrawableBackend,
+      AnimatedDrawableOptions options,
+      @Nullable AnimatedFrameBudget animatedFrameBudget,
+      @Nullable CountingMemoryCache<CacheKey, CloseableImage> frameMemoryCache,
+      @Nullable Executor keyFrameExecutor,
+      @Nullable CacheKey imageCacheKey) {
     super(animatedDrawableBackend);
     mExecutorService = executorService;
+    mKeyFrameExecutor = keyFrameExecutor;
     mActivityManager = activityManager;
     mAnimatedDrawableUtil = animatedDrawableUtil;
     mMonotonicClock = monotonicClock;
@@ -122,14 +288,71 @@ public class AnimatedDrawableCachingBackendImpl extends DelegatingAnimatedDrawab
         releaseBitmapInternal(value);
       }
     };
+    mResourceReleaserForOpaqueBitmaps = new ResourceReleaser<Bitmap>() {
+      @Override
+      public void release(Bitmap value) {
+        releaseOpaqueBitmapInternal(value);
+      }
+    };
     mFreeBitmaps = new ArrayList<Bitmap>();
+    mFreeOpaqueBitmaps = new ArrayList<Bitmap>();
     mDecodesInFlight = new SparseArrayCompat<Task<Object>>(10);
     mCachedBitmaps = new SparseArrayCompat<CloseableReference<Bitmap>>(10);
+    mIndexedFrames = new SparseArrayCompat<IndexedFrame>(10);
     mBitmapsToKeepCached = new WhatToKeepCachedArray(mAnimatedDrawableBackend.getFrameCount());
+    mRenderTimesMs = new int[mAnimatedDrawableBackend.getFrameCount()];
+    Arrays.fill(mRenderTimesMs, -1);
     mApproxKiloBytesToHoldAllFrames =
         mAnimatedDrawableBackend.getRenderedWidth() *
         mAnimatedDrawableBackend.getRenderedHeight() / ByteConstants.KB *
-        mAnimatedDrawableBackend.getFrameCount() * 4;
+        mAnimatedDrawableBackend.getFrameCount() * getApproxBytesPerPixel(options.frameStorage);
+    // snapshots may use up to half of the maximum bytes
+    mSnapshotFrames = chooseSnapshotFrames(getFramesWithinMaximumBytes() / 2);
+    mAnimatedFrameBudget = usesSharedBudget(options, animatedFrameBudget)
+        ? animatedFrameBudget
+        : null;
+    if (mAnimatedFrameBudget != null) {
+      mAnimatedFrameBudget.add(this);
+    }
+    mFrameMemoryCache = frameMemoryCache;
+    mImageCacheKey = imageCacheKey;
+    AnimatedImageResult animatedImageResult = animatedDrawableBackend.getAnimatedImageResult();
+    mAnimatedFrameCache = frameMemoryCache != null && animatedImageResult != null ?
+        new AnimatedFrameCache(
+            getFrameCacheImageKey(animatedDrawableBackend, animatedImageResult, imageCacheKey),
+            frameMemoryCache) :
+        null;
+  }
+
+  /**
+   * Gets the key that the frames of this backend are cached under, along with their number.
+   *
+   * <p> Requests for single frames render them at the full rendered size of the image, and cache
+   * them under the key of the image. Frames rendered at that size are cached under the same key,
+   * so that each frame is only cached once. Frames rendered at other sizes are only shared with
+   * the backends of the same image at the same size.
+   */
+  private static CacheKey getFrameCacheImageKey(
+      AnimatedDrawableBackend animatedDrawableBackend,
+      AnimatedImageResult animatedImageResult,
+      @Nullable CacheKey imageCacheKey) {
+    if (imageCacheKey != null &&
+        animatedDrawableBackend.getRenderedWidth() == animatedImageResult.getRenderedWidth() &&
+        animatedDrawableBackend.getRenderedHeight() == animatedImageResult.getRenderedHeight()) {
+      return imageCacheKey;
+    }
+    return new AnimatedFrameCache.RenderedImageKey(
+        animatedImageResult,
+        animatedDrawableBackend.getRenderedWidth(),
+        animatedDrawableBackend.getRenderedHeight());
+  }
+
+  private static boolean usesSharedBudget(
+      AnimatedDrawableOptions options,
+      @Nullable AnimatedFrameBudget animatedFrameBudget) {
+    return animatedFrameBudget != null &&
+        options.maximumBytes < 0 &&
+        !options.forceKeepAllFramesInMemory;
   }
 
   @Override
@@ -138,18 +361,21 @@ public class AnimatedDrawableCachingBackendImpl extends DelegatingAnimatedDrawab
     if (mCachedBitmaps.size() > 0) {
       FLog.d(TAG, "Finalizing with rendered bitmaps");
     }
-    sTotalBitmaps.addAndGet(-mFreeBitmaps.size());
-    mFreeBitmaps.clear();
+    synchronized (mFreeBitmaps) {
+      sTotalBitmaps.addAndGet(-mFreeBitmaps.size() - mFreeOpaqueBitmaps.size());
+      mFreeBitmaps.clear();
+      mFreeOpaqueBitmaps.clear();
+    }
   }
 
-  private Bitmap createNewBitmap() {
+  private Bitmap createNewBitmap(Bitmap.Config config) {
     FLog.v(TAG, "Creating new bitmap");
     sTotalBitmaps.incrementAndGet();
     FLog.v(TAG, "Total bitmaps: %d", sTotalBitmaps.get());
     return Bitmap.createBitmap(
         mAnimatedDrawableBackend.getRenderedWidth(),
         mAnimatedDrawableBackend.getRenderedHeight(),
-        Bitmap.Config.ARGB_8888);
+        config);
   }
 
   @Override
@@ -191,35 +417,105 @@ public class AnimatedDrawableCachingBackendImpl extends DelegatingAnimatedDrawab
         mAnimatedDrawableUtil,
         mMonotonicClock,
         newBackend,
-        mAnimatedDrawableOptions);
+        mAnimatedDrawableOptions,
+        mAnimatedFrameBudget,
+        mFrameMemoryCache,
+        mKeyFrameExecutor,
+        mImageCacheKey);
+  }
+
+  @Override
+  public void setActive(boolean active) {
+    if (mIsActive == active) {
+      return;
+    }
+    mIsActive = active;
+    if (mAnimatedFrameBudget != null) {
+      mAnimatedFrameBudget.setActive(this, active);
+    }
+  }
+
+  /**
+   * Called by the shared budget to tell whether this backend may keep all its frames.
+   */
+  void setKeepAllFramesGranted(boolean keepAllFramesGranted) {
+    mKeepAllFramesGranted = keepAllFramesGranted;
+  }
+
+  @VisibleForTesting
+  boolean isKeepAllFramesGranted() {
+    return mKeepAllFramesGranted;
+  }
+
+  /**
+   * Called by the shared budget to tell whether this backend may keep its snapshot frames while
+   * it does not keep all its frames.
+   */
+  void setSnapshotFramesGranted(boolean snapshotFramesGranted) {
+    mSnapshotFramesGranted = snapshotFramesGranted;
+  }
+
+  @VisibleForTesting
+  boolean isSnapshotFramesGranted() {
+    return mSnapshotFramesGranted;
+  }
+
+  int getBytesToHoldAllFrames() {
+    return (int) (mApproxKiloBytesToHoldAllFrames * ByteConstants.KB);
+  }
+
+  int getBytesToHoldSnapshotFrames() {
+    return (int) ((long) getBytesToHoldAllFrames() * mSnapshotFrames.length /
+        mAnimatedDrawableBackend.getFrameCount());
   }
 
   @Override
   public synchronized void dropCaches() {
     mBitmapsToKeepCached.setAll(false);
     dropBitmapsThatShouldNotBeCached();
-    for (Bitmap freeBitmap : mFreeBitmaps) {
-      freeBitmap.recycle();
-      sTotalBitmaps.decrementAndGet();
+    synchronized (mFreeBitmaps) {
+      for (Bitmap freeBitmap : mFreeBitmaps) {
+        freeBitmap.recycle();
+        sTotalBitmaps.decrementAndGet();
+      }
+      mFreeBitmaps.clear();
+      for (Bitmap freeBitmap : mFreeOpaqueBitmaps) {
+        freeBitmap.recycle();
+        sTotalBitmaps.decrementAndGet();
+      }
+      mFreeOpaqueBitmaps.clear();
     }
-    mFreeBitmaps.clear();
+    mPixels = null;
     mAnimatedDrawableBackend.dropCaches();
     FLog.v(TAG, "Total bitmaps: %d", sTotalBitmaps.get());
   }
 
   @Override
   public int getMemoryUsage() {
+    return getRenderedFrameBytes() + mAnimatedDrawableBackend.getMemoryUsage();
+  }
+
+  /**
+   * Gets the bytes used by the bitmaps and indexed frames of rendered frames, including the free
+   * bitmaps.
+   */
+  synchronized int getRenderedFrameBytes() {
     int bytes = 0;
-    synchronized (this) {
+    synchronized (mFreeBitmaps) {
       for (Bitmap bitmap : mFreeBitmaps) {
         bytes += mAnimatedDrawableUtil.getSizeOfBitmap(bitmap);
       }
-      for (int i = 0; i < mCachedBitmaps.size(); i++) {
-        CloseableReference<Bitmap> bitmapReference = mCachedBitmaps.valueAt(i);
-        bytes += mAnimatedDrawableUtil.getSizeOfBitmap(bitmapReference.get());
+      for (Bitmap bitmap : mFreeOpaqueBitmaps) {
+        bytes += mAnimatedDrawableUtil.getSizeOfBitmap(bitmap);
       }
     }
-    bytes += mAnimatedDrawableBackend.getMemoryUsage();
+    for (int i = 0; i < mCachedBitmaps.size(); i++) {
+      CloseableReference<Bitmap> bitmapReference = mCachedBitmaps.valueAt(i);
+      bytes += mAnimatedDrawableUtil.getSizeOfBitmap(bitmapReference.get());
+    }
+    for (int i = 0; i < mIndexedFrames.size(); i++) {
+      bytes += mIndexedFrames.valueAt(i).getSizeInBytes();
+    }
     return bytes;
   }
 
@@ -227,6 +523,11 @@ public class AnimatedDrawableCachingBackendImpl extends DelegatingAnimatedDrawab
   public void appendDebugOptionString(StringBuilder sb) {
     if (mAnimatedDrawableOptions.forceKeepAllFramesInMemory) {
       sb.append("Pinned To Memory");
+    } else if (mAnimatedFrameBudget != null) {
+      sb.append(mKeepAllFramesGranted ? "within shared " : "exceeds shared ");
+      mAnimatedDrawableUtil.appendMemoryString(
+          sb,
+          mAnimatedFrameBudget.getMaxBytes() / ByteConstants.KB);
     } else {
       if (mApproxKiloBytesToHoldAllFrames < mMaximumKiloBytes) {
         sb.append("within ");
@@ -238,6 +539,9 @@ public class AnimatedDrawableCachingBackendImpl extends DelegatingAnimatedDrawab
     if (shouldKeepAllFramesInMemory() && mAnimatedDrawableOptions.allowPrefetching) {
       sb.append(" MT");
     }
+    if (mAnimatedDrawableOptions.frameStorage != FrameStorage.ARGB_8888) {
+      sb.append(" ").append(mAnimatedDrawableOptions.frameStorage);
+    }
   }
 
   private CloseableReference<Bitmap> getBitmapForFrameInternal(
@@ -258,9 +562,10 @@ public class AnimatedDrawableCachingBackendImpl extends DelegatingAnimatedDrawab
       if (forceImmediate) {
         // Give up and try to do it on the calling thread.
         renderedOnCallingThread = true;
+        mCallingThreadRenderCount.incrementAndGet();
         CloseableReference<Bitmap> bitmapReference = obtainBitmapInternal();
         try {
-          mAnimatedImageCompositor.renderFrame(frameNumber, bitmapReference.get());
+          renderFrameInternal(frameNumber, bitmapReference.get());
           maybeCacheRenderedBitmap(frameNumber, bitmapReference);
           return bitmapReference.clone();
         } finally {
@@ -268,6 +573,7 @@ public class AnimatedDrawableCachingBackendImpl extends DelegatingAnimatedDrawab
         }
       }
       deferred = true;
+      mDeferredFrameCount.incrementAndGet();
       return null;
     } finally {
       long elapsedMs = mMonotonicClock.now() - startMs;
@@ -297,7 +603,7 @@ public class AnimatedDrawableCachingBackendImpl extends DelegatingAnimatedDrawab
     synchronized (this) {
       boolean shouldCache = mBitmapsToKeepCached.get(frameNumber);
       if (shouldCache) {
-        cacheBitmap = mCachedBitmaps.get(frameNumber) == null;
+        cacheBitmap = !hasCachedFrame(frameNumber);
       }
     }
     if (cacheBitmap) {
@@ -325,12 +631,12 @@ public class AnimatedDrawableCachingBackendImpl extends DelegatingAnimatedDrawab
 
   private CloseableReference<Bitmap> obtainBitmapInternal() {
     Bitmap bitmap;
-    synchronized (this) {
+    synchronized (mFreeBitmaps) {
       long nowNanos = System.nanoTime();
       long waitUntilNanos = nowNanos + TimeUnit.NANOSECONDS.convert(20, TimeUnit.MILLISECONDS);
       while (mFreeBitmaps.isEmpty() && nowNanos < waitUntilNanos) {
         try {
-          TimeUnit.NANOSECONDS.timedWait(this, waitUntilNanos - nowNanos);
+          TimeUnit.NANOSECONDS.timedWait(mFreeBitmaps, waitUntilNanos - nowNanos);
           nowNanos = System.nanoTime();
         } catch (InterruptedException e) {
           Thread.currentThread().interrupt();
@@ -339,7 +645,7 @@ public class AnimatedDrawableCachingBackendImpl extends DelegatingAnimatedDrawab
       }
 
       if (mFreeBitmaps.isEmpty()) {
-        bitmap = createNewBitmap();
+        bitmap = createNewBitmap(Bitmap.Config.ARGB_8888);
       } else {
         bitmap = mFreeBitmaps.remove(mFreeBitmaps.size() - 1);
       }
@@ -347,8 +653,38 @@ public class AnimatedDrawableCachingBackendImpl extends DelegatingAnimatedDrawab
     return CloseableReference.of(bitmap, mResourceReleaserForBitmaps);
   }
 
-  synchronized void releaseBitmapInternal(Bitmap bitmap) {
-    mFreeBitmaps.add(bitmap);
+  /**
+   * Obtains a free bitmap or a new one, without waiting for bitmaps to be released as this is
+   * called while holding the lock of this backend.
+   *
+   * @param opaque whether to obtain an RGB_565 bitmap rather than an ARGB_8888 one
+   */
+  private CloseableReference<Bitmap> obtainBitmapWithoutWaiting(boolean opaque) {
+    Bitmap bitmap = null;
+    synchronized (mFreeBitmaps) {
+      List<Bitmap> freeBitmaps = opaque ? mFreeOpaqueBitmaps : mFreeBitmaps;
+      if (!freeBitmaps.isEmpty()) {
+        bitmap = freeBitmaps.remove(freeBitmaps.size() - 1);
+      }
+    }
+    if (bitmap == null) {
+      bitmap = createNewBitmap(opaque ? Bitmap.Config.RGB_565 : Bitmap.Config.ARGB_8888);
+    }
+    return CloseableReference.of(
+        bitmap,
+        opaque ? mResourceReleaserForOpaqueBitmaps : mResourceReleaserForBitmaps);
+  }
+
+  void releaseBitmapInternal(Bitmap bitmap) {
+    synchronized (mFreeBitmaps) {
+      mFreeBitmaps.add(bitmap);
+    }
+  }
+
+  void releaseOpaqueBitmapInternal(Bitmap bitmap) {
+    synchronized (mFreeBitmaps) {
+      mFreeOpaqueBitmaps.add(bitmap);
+    }
   }
 
   private synchronized void schedulePrefetches() {
@@ -356,7 +692,8 @@ public class AnimatedDrawableCachingBackendImpl extends DelegatingAnimatedDrawab
     boolean keepOnePreceding = frameInfo.disposalMethod == DisposalMethod.DISPOSE_TO_PREVIOUS;
 
     int startFrame = Math.max(0, mCurrentFrameIndex - (keepOnePreceding ? 1 : 0));
-    int numToPrefetch = mAnimatedDrawableOptions.allowPrefetching ? PREFETCH_FRAMES : 0;
+    int numToPrefetch =
+        mAnimatedDrawableOptions.allowPrefetching ? getPrefetchFrameCount(startFrame) : 0;
     numToPrefetch = Math.max(numToPrefetch, keepOnePreceding ? 1 : 0);
     int endFrame = (startFrame + numToPrefetch) % mAnimatedDrawableBackend.getFrameCount();
     cancelFuturesOutsideOfRange(startFrame, endFrame);
@@ -368,11 +705,18 @@ public class AnimatedDrawableCachingBackendImpl extends DelegatingAnimatedDrawab
       // Keep one closest to startFrame that is already cached to reduce the number of frames we
       // need to composite together to draw startFrame.
       for (int frameNumber = startFrame; frameNumber >= 0; frameNumber--) {
-        if (mCachedBitmaps.get(frameNumber) != null) {
+        if (hasCachedFrame(frameNumber)) {
           mBitmapsToKeepCached.set(frameNumber, true);
           break;
         }
       }
+      // Also keep the snapshots, so that frames far from their key frame are still quick to render
+      // after seeking or dropping frames.
+      if (shouldKeepSnapshotFrames()) {
+        for (int i = 0; i < mSnapshotFrames.length; i++) {
+          mBitmapsToKeepCached.set(mSnapshotFrames[i], true);
+        }
+      }
       dropBitmapsThatShouldNotBeCached();
     }
     if (mAnimatedDrawableOptions.allowPrefetching) {
@@ -382,6 +726,122 @@ public class AnimatedDrawableCachingBackendImpl extends DelegatingAnimatedDrawab
     }
   }
 
+  /**
+   * Gets the number of frames to prefetch from the specified frame on. Prefetching goes on until
+   * the frames ahead are shown for at least twice the time it takes to render them one after the
+   * other, within {@link #MAX_PREFETCH_FRAMES} and within the bytes that frames may use if not all
+   * of them are kept.
+   */
+  @VisibleForTesting
+  synchronized int getPrefetchFrameCount(int startFrame) {
+    int frameCount = mAnimatedDrawableBackend.getFrameCount();
+    int maxFrames = Math.min(MAX_PREFETCH_FRAMES, frameCount);
+    if (!shouldKeepAllFramesInMemory()) {
+      int snapshotFrameCount = shouldKeepSnapshotFrames() ? mSnapshotFrames.length : 0;
+      maxFrames = Math.min(maxFrames, getFramesWithinMaximumBytes() - snapshotFrameCount);
+    }
+    int count = 0;
+    int aheadMs = 0;
+    int renderMs = 0;
+    while (count < MIN_PREFETCH_FRAMES || (count < maxFrames && aheadMs < 2 * renderMs)) {
+      int frameNumber = (startFrame + count) % frameCount;
+      aheadMs += mAnimatedDrawableBackend.getDurationMsForFrame(frameNumber);
+      renderMs += getRenderTimeMs(frameNumber);
+      count++;
+    }
+    return count;
+  }
+
+  private int getFramesWithinMaximumBytes() {
+    double kiloBytesPerFrame =
+        mApproxKiloBytesToHoldAllFrames / mAnimatedDrawableBackend.getFrameCount();
+    return (int) (mMaximumKiloBytes / Math.max(kiloBytesPerFrame, 1));
+  }
+
+  /**
+   * Chooses the frames that are a multiple of an interval of composite steps away from their key
+   * frame. The interval starts at {@link #MIN_SNAPSHOT_INTERVAL}, and doubles until there are no
+   * more than the specified number of such frames.
+   */
+  private int[] chooseSnapshotFrames(int maxSnapshotFrames) {
+    if (maxSnapshotFrames <= 0) {
+      return new int[0];
+    }
+    int interval = MIN_SNAPSHOT_INTERVAL;
+    List<Integer> snapshotFrames = getSnapshotFrames(interval);
+    while (snapshotFrames.size() > maxSnapshotFrames) {
+      interval *= 2;
+      snapshotFrames = getSnapshotFrames(interval);
+    }
+    int[] result = new int[snapshotFrames.size()];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = snapshotFrames.get(i);
+    }
+    return result;
+  }
+
+  private List<Integer> getSnapshotFrames(int interval) {
+    List<Integer> snapshotFrames = new ArrayList<Integer>();
+    int frameCount = mAnimatedDrawableBackend.getFrameCount();
+    for (int frameNumber = 0; frameNumber < frameCount; frameNumber++) {
+      int steps = frameNumber - mAnimatedImageCompositor.getKeyFrame(frameNumber);
+      if (steps > 0 && steps % interval == 0) {
+        snapshotFrames.add(frameNumber);
+      }
+    }
+    return snapshotFrames;
+  }
+
+  /**
+   * Gets the time it took to render the specified frame the last time, or the average time it
+   * took to render the other frames if it was not rendered yet.
+   */
+  private synchronized int getRenderTimeMs(int frameNumber) {
+    if (mRenderTimesMs[frameNumber] >= 0) {
+      return mRenderTimesMs[frameNumber];
+    }
+    return mRenderTimesMsCount > 0 ? mRenderTimesMsSum / mRenderTimesMsCount : 0;
+  }
+
+  private synchronized void onFrameRendered(int frameNumber, int renderTimeMs) {
+    if (mRenderTimesMs[frameNumber] >= 0) {
+      mRenderTimesMsSum -= mRenderTimesMs[frameNumber];
+    } else {
+      mRenderTimesMsCount++;
+    }
+    mRenderTimesMs[frameNumber] = renderTimeMs;
+    mRenderTimesMsSum += renderTimeMs;
+  }
+
+  private void renderFrameInternal(int frameNumber, Bitmap bitmap) {
+    long startMs = mMonotonicClock.now();
+    mAnimatedImageCompositor.renderFrame(frameNumber, bitmap);
+    onFrameRendered(frameNumber, (int) (mMonotonicClock.now() - startMs));
+  }
+
+  /**
+   * Returns whether the specified frame can be rendered without rendering the previous frames.
+   */
+  private boolean isKeyFrame(int frameNumber) {
+    return frameNumber == 0 ||
+        !mAnimatedDrawableBackend.getFrameInfo(frameNumber).shouldBlendWithPreviousFrame;
+  }
+
+  /**
+   * Gets the approximate bytes per pixel of a cached frame, assuming that frames can be stored the
+   * way the options ask for.
+   */
+  private static int getApproxBytesPerPixel(FrameStorage frameStorage) {
+    switch (frameStorage) {
+      case RGB_565:
+        return 2;
+      case PALETTE_INDEXED:
+        return 1;
+      default:
+        return 4;
+    }
+  }
+
   private static int getDefaultMaxBytes(ActivityManager activityManager) {
     int memory = activityManager.getMemoryClass();
     if (memory > 32) {
@@ -396,23 +856,40 @@ public class AnimatedDrawableCachingBackendImpl extends DelegatingAnimatedDrawab
       // This overrides everything.
       return true;
     }
+    if (mAnimatedFrameBudget != null) {
+      return mKeepAllFramesGranted;
+    }
     return mApproxKiloBytesToHoldAllFrames < mMaximumKiloBytes;
   }
 
+  /**
+   * Whether to keep the snapshot frames when not all frames are kept. Snapshots are sized against
+   * the maximum bytes of this backend, but backends sharing a budget must also have their bytes
+   * granted by it.
+   */
+  private boolean shouldKeepSnapshotFrames() {
+    return mAnimatedFrameBudget == null || mSnapshotFramesGranted;
+  }
+
   private synchronized void doPrefetch(int startFrame, int count) {
     for (int i = 0; i < count; i++) {
       final int frameNumber = (startFrame + i) % mAnimatedDrawableBackend.getFrameCount();
-      boolean hasCached = hasCachedOrPredecodedFrame(frameNumber);
       Task<Object> future = mDecodesInFlight.get(frameNumber);
-      if (!hasCached && future == null) {
+      if (future == null &&
+          !hasCachedOrPredecodedFrame(frameNumber) &&
+          !hasSharedFrame(frameNumber)) {
+        final boolean isKeyFrame = mKeyFrameExecutor != null && isKeyFrame(frameNumber);
         final Task<Object> newFuture = Task.call(
             new Callable<Object>() {
               @Override
               public Object call() {
+                if (isKeyFrame) {
+                  mKeyFrameRenderCount.incrementAndGet();
+                }
                 runPrefetch(frameNumber);
                 return null;
               }
-            }, mExecutorService);
+            }, isKeyFrame ? mKeyFrameExecutor : mExecutorService);
         mDecodesInFlight.put(frameNumber, newFuture);
         newFuture.continueWith(
             new Continuation<Object, Object>() {
@@ -437,7 +914,7 @@ public class AnimatedDrawableCachingBackendImpl extends DelegatingAnimatedDrawab
         // Looks like we're no longer supposed to keep this cached.
         return;
       }
-      if (hasCachedOrPredecodedFrame(frameNumber)) {
+      if (hasCachedOrPredecodedFrame(frameNumber) || hasSharedFrame(frameNumber)) {
         // Looks like it's already cached.
         return;
       }
@@ -447,11 +924,12 @@ public class AnimatedDrawableCachingBackendImpl extends DelegatingAnimatedDrawab
         mAnimatedDrawableBackend.getPreDecodedFrame(frameNumber);
     try {
       if (preDecodedFrame != null) {
-        maybeCacheRenderedBitmap(frameNumber, preDecodedFrame);
+        // Pre-decoded frames are held by the image already, there is no point in sharing them.
+        maybeCacheBitmap(frameNumber, preDecodedFrame, false);
       } else {
         CloseableReference<Bitmap> bitmapReference = obtainBitmapInternal();
         try {
-          mAnimatedImageCompositor.renderFrame(frameNumber, bitmapReference.get());
+          renderFrameInternal(frameNumber, bitmapReference.get());
           maybeCacheRenderedBitmap(frameNumber, bitmapReference);
           FLog.v(TAG, "Prefetch rendered frame %d", frameNumber);
         } finally {
@@ -504,38 +982,213 @@ public class AnimatedDrawableCachingBackendImpl extends DelegatingAnimatedDrawab
         index++;
       }
     }
+    index = 0;
+    while (index < mIndexedFrames.size()) {
+      if (!mBitmapsToKeepCached.get(mIndexedFrames.keyAt(index))) {
+        mIndexedFrames.removeAt(index);
+      } else {
+        index++;
+      }
+    }
+  }
+
+  private void maybeCacheRenderedBitmap(
+      int frameNumber,
+      CloseableReference<Bitmap> bitmapReference) {
+    if (mAnimatedDrawableOptions.frameStorage == FrameStorage.ARGB_8888) {
+      maybeCacheBitmap(frameNumber, bitmapReference, true);
+    } else {
+      maybeCacheCompactFrame(frameNumber, bitmapReference);
+    }
   }
 
-  private synchronized void maybeCacheRenderedBitmap(
+  /**
+   * Caches a rendered frame as an indexed frame or as an RGB_565 bitmap if the frame storage allows
+   * it and the frame has few enough colors or no transparency, or else caches its bitmap.
+   */
+  private synchronized void maybeCacheCompactFrame(
       int frameNumber,
       CloseableReference<Bitmap> bitmapReference) {
     if (!mBitmapsToKeepCached.get(frameNumber)) {
       return;
     }
+    Bitmap bitmap = bitmapReference.get();
+    int width = bitmap.getWidth();
+    int height = bitmap.getHeight();
+    int[] pixels = getPixelBuffer(width * height);
+    bitmap.getPixels(pixels, 0, width, 0, 0, width, height);
+    if (mAnimatedDrawableOptions.frameStorage == FrameStorage.PALETTE_INDEXED) {
+      IndexedFrame indexedFrame = IndexedFrame.create(pixels, width * height);
+      if (indexedFrame != null) {
+        removeCachedFrame(frameNumber);
+        mIndexedFrames.put(frameNumber, indexedFrame);
+        return;
+      }
+    }
+    if (!isOpaque(pixels, width * height)) {
+      maybeCacheBitmap(frameNumber, bitmapReference, true);
+      return;
+    }
+    CloseableReference<Bitmap> opaqueBitmapReference = obtainBitmapWithoutWaiting(true);
+    try {
+      opaqueBitmapReference.get().setPixels(pixels, 0, width, 0, 0, width, height);
+      maybeCacheBitmap(frameNumber, opaqueBitmapReference, true);
+    } finally {
+      opaqueBitmapReference.close();
+    }
+  }
 
+  /**
+   * Expands an indexed frame into a free bitmap. This happens each time the frame is drawn.
+   */
+  private synchronized CloseableReference<Bitmap> expandIndexedFrame(IndexedFrame indexedFrame) {
+    mExpandedFrameCount.incrementAndGet();
+    int width = mAnimatedDrawableBackend.getRenderedWidth();
+    int height = mAnimatedDrawableBackend.getRenderedHeight();
+    int[] pixels = getPixelBuffer(width * height);
+    indexedFrame.expand(pixels);
+    CloseableReference<Bitmap> bitmapReference = obtainBitmapWithoutWaiting(false);
+    bitmapReference.get().setPixels(pixels, 0, width, 0, 0, width, height);
+    return bitmapReference;
+  }
+
+  private synchronized int[] getPixelBuffer(int pixelCount) {
+    if (mPixels == null || mPixels.length < pixelCount) {
+      mPixels = new int[pixelCount];
+    }
+    return mPixels;
+  }
+
+  private static boolean isOpaque(int[] pixels, int pixelCount) {
+    for (int i = 0; i < pixelCount; i++) {
+      if ((pixels[i] >>> 24) != 0xFF) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private synchronized void removeCachedFrame(int frameNumber) {
     int existingIndex = mCachedBitmaps.indexOfKey(frameNumber);
     if (existingIndex >= 0) {
       CloseableReference<Bitmap> oldReference = mCachedBitmaps.valueAt(existingIndex);
       oldReference.close();
       mCachedBitmaps.removeAt(existingIndex);
     }
-    mCachedBitmaps.put(frameNumber, bitmapReference.clone());
+    mIndexedFrames.remove(frameNumber);
+  }
+
+  private synchronized void maybeCacheBitmap(
+      int frameNumber,
+      CloseableReference<Bitmap> bitmapReference,
+      boolean share) {
+    if (!mBitmapsToKeepCached.get(frameNumber)) {
+      return;
+    }
+
+    removeCachedFrame(frameNumber);
+    CloseableReference<Bitmap> sharedReference =
+        share ? shareRenderedBitmap(frameNumber, bitmapReference) : null;
+    mCachedBitmaps.put(
+        frameNumber,
+        sharedReference != null ? sharedReference : bitmapReference.clone());
+  }
+
+  /**
+   * Publishes a rendered frame to the frame memory cache.
+   *
+   * @return the reference to keep instead of the rendered one, or null if the frame is not shared
+   */
+  @Nullable
+  private CloseableReference<Bitmap> shareRenderedBitmap(
+      int frameNumber,
+      CloseableReference<Bitmap> bitmapReference) {
+    if (mAnimatedFrameCache == null) {
+      return null;
+    }
+    CloseableReference<CloseableImage> frameReference = CloseableReference.<CloseableImage>of(
+        new CloseableStaticBitmap(bitmapReference, ImmutableQualityInfo.FULL_QUALITY, 0));
+    try {
+      return toBitmapReference(mAnimatedFrameCache.cache(frameNumber, frameReference));
+    } finally {
+      frameReference.close();
+    }
+  }
+
+  /**
+   * Gets a frame rendered by another backend for the same image and size, and keeps it if this
+   * frame should stay cached.
+   */
+  @Nullable
+  private synchronized CloseableReference<Bitmap> getSharedFrame(int frameNumber) {
+    if (mAnimatedFrameCache == null) {
+      return null;
+    }
+    CloseableReference<Bitmap> sharedReference =
+        toBitmapReference(mAnimatedFrameCache.get(frameNumber));
+    if (sharedReference != null && mBitmapsToKeepCached.get(frameNumber)) {
+      mCachedBitmaps.put(frameNumber, sharedReference.clone());
+    }
+    return sharedReference;
+  }
+
+  private synchronized boolean hasSharedFrame(int frameNumber) {
+    CloseableReference<Bitmap> sharedReference = getSharedFrame(frameNumber);
+    try {
+      return sharedReference != null;
+    } finally {
+      CloseableReference.closeSafely(sharedReference);
+    }
+  }
+
+  /**
+   * Wraps a frame of the frame memory cache, so that closing the returned reference releases the
+   * frame to the cache.
+   */
+  @Nullable
+  private static CloseableReference<Bitmap> toBitmapReference(
+      @Nullable final CloseableReference<CloseableImage> frameReference) {
+    if (frameReference == null) {
+      return null;
+    }
+    Bitmap bitmap = ((CloseableStaticBitmap) frameReference.get()).getUnderlyingBitmap();
+    return CloseableReference.of(
+        bitmap,
+        new ResourceReleaser<Bitmap>() {
+          @Override
+          public void release(Bitmap value) {
+            frameReference.close();
+          }
+        });
   }
 
   private synchronized CloseableReference<Bitmap> getCachedOrPredecodedFrame(int frameNumber) {
     CloseableReference<Bitmap> ret =
         CloseableReference.cloneOrNull(mCachedBitmaps.get(frameNumber));
+    if (ret == null) {
+      IndexedFrame indexedFrame = mIndexedFrames.get(frameNumber);
+      if (indexedFrame != null) {
+        ret = expandIndexedFrame(indexedFrame);
+      }
+    }
     if (ret == null) {
       ret = mAnimatedDrawableBackend.getPreDecodedFrame(frameNumber);
     }
+    if (ret == null) {
+      ret = getSharedFrame(frameNumber);
+    }
     return ret;
   }
 
   private synchronized boolean hasCachedOrPredecodedFrame(int frameNumber) {
-    return mCachedBitmaps.get(frameNumber) != null ||
+    return hasCachedFrame(frameNumber) ||
         mAnimatedDrawableBackend.hasPreDecodedFrame(frameNumber);
   }
 
+  private synchronized boolean hasCachedFrame(int frameNumber) {
+    return mCachedBitmaps.get(frameNumber) != null || mIndexedFrames.get(frameNumber) != null;
+  }
+
   @VisibleForTesting
   synchronized Map<Integer, Task<?>> getDecodesInFlight() {
     Map<Integer, Task<?>> map = new HashMap<Integer, Task<?>>();
@@ -545,12 +1198,57 @@ public class AnimatedDrawableCachingBackendImpl extends DelegatingAnimatedDrawab
     return map;
   }
 
+  /**
+   * Gets the number of frames that were not rendered yet when asked for.
+   */
+  public int getDeferredFrameCount() {
+    return mDeferredFrameCount.get();
+  }
+
+  /**
+   * Gets the number of frames rendered on the thread asking for them instead of being prefetched.
+   */
+  public int getCallingThreadRenderCount() {
+    return mCallingThreadRenderCount.get();
+  }
+
+  /**
+   * Gets the number of frames rendered on the key frame executor.
+   */
+  public int getKeyFrameRenderCount() {
+    return mKeyFrameRenderCount.get();
+  }
+
+  /**
+   * Gets the number of times an indexed frame was expanded to be drawn.
+   */
+  public int getExpandedFrameCount() {
+    return mExpandedFrameCount.get();
+  }
+
+  /**
+   * Gets the frame cache shared with the other backends for the same image and size, or null if
+   * frames are not shared.
+   */
+  @Nullable
+  public AnimatedFrameCache getAnimatedFrameCache() {
+    return mAnimatedFrameCache;
+  }
+
+  @VisibleForTesting
+  int[] getSnapshotFrames() {
+    return mSnapshotFrames;
+  }
+
   @VisibleForTesting
   synchronized Set<Integer> getFramesCached() {
     Set<Integer> set = new HashSet<Integer>();
     for (int i = 0; i < mCachedBitmaps.size(); i++) {
       set.add(mCachedBitmaps.keyAt(i));
     }
+    for (int i = 0; i < mIndexedFrames.size(); i++) {
+      set.add(mIndexedFrames.keyAt(i));
+    }
     return set;
   }
 }
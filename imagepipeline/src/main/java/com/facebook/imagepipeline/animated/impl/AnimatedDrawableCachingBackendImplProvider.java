@@ -9,6 +9,9 @@
 
 package com.facebook.imagepipeline.animated.impl;
 
+import javax.annotation.Nullable;
+
+import com.facebook.cache.common.CacheKey;
 import com.facebook.imagepipeline.animated.base.AnimatedDrawableBackend;
 import com.facebook.imagepipeline.animated.base.AnimatedDrawableOptions;
 
@@ -22,9 +25,11 @@ public interface AnimatedDrawableCachingBackendImplProvider {
    *
    * @param animatedDrawableBackend the backend to delegate to
    * @param options the options for the drawable
+   * @param imageCacheKey the bitmap memory cache key of the image, or null if unknown
    * @return a new {@link AnimatedDrawableCachingBackendImpl}
    */
   AnimatedDrawableCachingBackendImpl get(
       AnimatedDrawableBackend animatedDrawableBackend,
-      AnimatedDrawableOptions options);
+      AnimatedDrawableOptions options,
+      @Nullable CacheKey imageCacheKey);
 }
@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2015-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.imagepipeline.animated.impl;
+
+import javax.annotation.concurrent.GuardedBy;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import android.app.ActivityManager;
+
+import com.facebook.common.internal.VisibleForTesting;
+import com.facebook.common.util.ByteConstants;
+
+/**
+ * Process-wide budget for the frames that {@link AnimatedDrawableCachingBackendImpl}s keep in
+ * memory.
+ *
+ * <p> A backend either keeps all of its rendered frames, or only the few frames around the
+ * current one. The budget grants keeping all frames to as many backends as fit, in this order:
+ * <ul>
+ * <li> backends of running and visible animations before the others;
+ * <li> shorter loops before longer ones, since they render the same frames again more often per
+ * byte held;
+ * <li> smaller animations before bigger ones.
+ * </ul>
+ * Backends that are not granted keeping all frames may keep their snapshot frames, in the same
+ * order, if the bytes of the snapshots fit what is left of the budget.
+ * The grants get rebalanced whenever a backend is added, or an animation starts or stops.
+ *
+ * <p> Backends are held weakly, and go away with their drawables.
+ */
+public class AnimatedFrameBudget {
+
+  private static final Comparator<Entry> PRIORITY_ORDER = new Comparator<Entry>() {
+    @Override
+    public int compare(Entry lhs, Entry rhs) {
+      if (lhs.isActive != rhs.isActive) {
+        return lhs.isActive ? -1 : 1;
+      }
+      if (lhs.durationMs != rhs.durationMs) {
+        return lhs.durationMs < rhs.durationMs ? -1 : 1;
+      }
+      return lhs.bytesToHoldAllFrames < rhs.bytesToHoldAllFrames ? -1 :
+          (lhs.bytesToHoldAllFrames == rhs.bytesToHoldAllFrames ? 0 : 1);
+    }
+  };
+
+  private final int mMaxBytes;
+
+  @GuardedBy("this")
+  private final Map<AnimatedDrawableCachingBackendImpl, Boolean> mBackends;
+
+  @GuardedBy("this")
+  private final List<Entry> mEntries;
+
+  @GuardedBy("this")
+  private int mGrantedBytes;
+
+  @GuardedBy("this")
+  private int mGrantedCount;
+
+  /**
+   * @param maxBytes the bytes that may be spent on keeping all frames of animations
+   */
+  public AnimatedFrameBudget(int maxBytes) {
+    mMaxBytes = maxBytes;
+    mBackends = new WeakHashMap<AnimatedDrawableCachingBackendImpl, Boolean>();
+    mEntries = new ArrayList<Entry>();
+  }
+
+  /**
+   * Gets a budget that scales with the memory class of the device.
+   */
+  public static int getDefaultMaxBytes(ActivityManager activityManager) {
+    return Math.max(activityManager.getMemoryClass() * ByteConstants.MB / 8, 4 * ByteConstants.MB);
+  }
+
+  /**
+   * Adds a backend to the ones sharing this budget.
+   */
+  synchronized void add(AnimatedDrawableCachingBackendImpl backend) {
+    mBackends.put(backend, false);
+    rebalance();
+  }
+
+  /**
+   * Sets whether the animation of the specified backend is running and visible.
+   */
+  synchronized void setActive(AnimatedDrawableCachingBackendImpl backend, boolean isActive) {
+    Boolean wasActive = mBackends.get(backend);
+    if (wasActive == null || wasActive == isActive) {
+      return;
+    }
+    mBackends.put(backend, isActive);
+    rebalance();
+  }
+
+  @VisibleForTesting
+  synchronized void rebalance() {
+    for (Map.Entry<AnimatedDrawableCachingBackendImpl, Boolean> backend : mBackends.entrySet()) {
+      mEntries.add(new Entry(backend.getKey(), backend.getValue()));
+    }
+    Collections.sort(mEntries, PRIORITY_ORDER);
+    mGrantedBytes = 0;
+    mGrantedCount = 0;
+    for (int i = 0; i < mEntries.size(); i++) {
+      Entry entry = mEntries.get(i);
+      boolean isGranted = mGrantedBytes + entry.bytesToHoldAllFrames <= mMaxBytes;
+      boolean isSnapshotGranted = false;
+      if (isGranted) {
+        mGrantedBytes += entry.bytesToHoldAllFrames;
+        mGrantedCount++;
+      } else if (mGrantedBytes + entry.bytesToHoldSnapshotFrames <= mMaxBytes) {
+        mGrantedBytes += entry.bytesToHoldSnapshotFrames;
+        isSnapshotGranted = true;
+      }
+      entry.backend.setKeepAllFramesGranted(isGranted);
+      entry.backend.setSnapshotFramesGranted(isSnapshotGranted);
+    }
+    mEntries.clear();
+  }
+
+  /**
+   * Gets the bytes that may be spent on keeping all frames of animations.
+   */
+  public int getMaxBytes() {
+    return mMaxBytes;
+  }
+
+  /**
+   * Gets the bytes granted to backends for keeping all their frames or their snapshot frames.
+   */
+  public synchronized int getGrantedBytes() {
+    return mGrantedBytes;
+  }
+
+  /**
+   * Gets the number of backends allowed to keep all their frames.
+   */
+  public synchronized int getGrantedBackendCount() {
+    return mGrantedCount;
+  }
+
+  /**
+   * Gets the number of backends sharing this budget.
+   */
+  public synchronized int getBackendCount() {
+    return mBackends.size();
+  }
+
+  /**
+   * Gets the bytes currently used by the rendered frames of all backends sharing this budget,
+   * whether or not they were allowed to keep all their frames.
+   */
+  public int getTotalFrameBytes() {
+    List<AnimatedDrawableCachingBackendImpl> backends;
+    synchronized (this) {
+      backends = new ArrayList<AnimatedDrawableCachingBackendImpl>(mBackends.keySet());
+    }
+    // backends are not called while holding the lock, as they may call back into the budget
+    int bytes = 0;
+    for (int i = 0; i < backends.size(); i++) {
+      bytes += backends.get(i).getRenderedFrameBytes();
+    }
+    return bytes;
+  }
+
+  private static class Entry {
+    final AnimatedDrawableCachingBackendImpl backend;
+    final boolean isActive;
+    final int durationMs;
+    final int bytesToHoldAllFrames;
+    final int bytesToHoldSnapshotFrames;
+
+    Entry(AnimatedDrawableCachingBackendImpl backend, boolean isActive) {
+      this.backend = backend;
+      this.isActive = isActive;
+      this.durationMs = backend.getDurationMs();
+      this.bytesToHoldAllFrames = backend.getBytesToHoldAllFrames();
+      this.bytesToHoldSnapshotFrames = backend.getBytesToHoldSnapshotFrames();
+    }
+  }
+}
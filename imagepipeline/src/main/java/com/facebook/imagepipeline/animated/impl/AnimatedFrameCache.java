@@ -15,36 +15,56 @@ import javax.annotation.concurrent.GuardedBy;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 
+import android.util.SparseIntArray;
+
 import com.facebook.cache.common.CacheKey;
 import com.facebook.common.internal.Objects;
 import com.facebook.common.internal.VisibleForTesting;
 import com.facebook.common.references.CloseableReference;
+import com.facebook.imagepipeline.animated.base.AnimatedImageResult;
+import com.facebook.imagepipeline.cache.AnimatedFrameCacheKey;
 import com.facebook.imagepipeline.cache.CountingMemoryCache;
 import com.facebook.imagepipeline.image.CloseableImage;
 
 /**
  * Facade to the image memory cache for frames of an animated image.
  *
- * <p> Each animated image should have its own instance of this class.
+ * <p> Each animated image should have its own instance of this class. Instances created for equal
+ * image cache keys share their frames, e.g. drawables showing the same image at the same size
+ * through a {@link RenderedImageKey}.
+ *
+ * <p> Frames are cached under {@link AnimatedFrameCacheKey}s, the keys the pipeline uses for
+ * requests of single frames. Given the bitmap memory cache key of the image, frames are thus
+ * shared with such requests instead of being cached twice.
  */
 public class AnimatedFrameCache {
 
+  /**
+   * Key of an animated image rendered at a given size. Images are compared by reference, as the
+   * drawables of the same image share the same decoded result.
+   */
   @VisibleForTesting
-  static class FrameKey implements CacheKey {
-
-    private final CacheKey mImageCacheKey;
-    private final int mFrameIndex;
-
-    public FrameKey(CacheKey imageCacheKey, int frameIndex) {
-      mImageCacheKey = imageCacheKey;
-      mFrameIndex = frameIndex;
+  static class RenderedImageKey implements CacheKey {
+
+    private final AnimatedImageResult mAnimatedImageResult;
+    private final int mRenderedWidth;
+    private final int mRenderedHeight;
+
+    public RenderedImageKey(
+        AnimatedImageResult animatedImageResult,
+        int renderedWidth,
+        int renderedHeight) {
+      mAnimatedImageResult = animatedImageResult;
+      mRenderedWidth = renderedWidth;
+      mRenderedHeight = renderedHeight;
     }
 
     @Override
     public String toString() {
       return Objects.toStringHelper(this)
-          .add("imageCacheKey", mImageCacheKey)
-          .add("frameIndex", mFrameIndex)
+          .add("animatedImageResult", mAnimatedImageResult)
+          .add("renderedWidth", mRenderedWidth)
+          .add("renderedHeight", mRenderedHeight)
           .toString();
     }
 
@@ -53,17 +73,20 @@ public class AnimatedFrameCache {
       if (o == this) {
         return true;
       }
-      if (o instanceof FrameKey) {
-        FrameKey that = (FrameKey) o;
-        return this.mImageCacheKey == that.mImageCacheKey &&
-            this.mFrameIndex == that.mFrameIndex;
+      if (o instanceof RenderedImageKey) {
+        RenderedImageKey that = (RenderedImageKey) o;
+        return this.mAnimatedImageResult == that.mAnimatedImageResult &&
+            this.mRenderedWidth == that.mRenderedWidth &&
+            this.mRenderedHeight == that.mRenderedHeight;
       }
       return false;
     }
 
     @Override
     public int hashCode() {
-      return mImageCacheKey.hashCode() * 1013 + mFrameIndex;
+      int result = System.identityHashCode(mAnimatedImageResult);
+      result = result * 31 + mRenderedWidth;
+      return result * 31 + mRenderedHeight;
     }
   }
 
@@ -73,12 +96,23 @@ public class AnimatedFrameCache {
   @GuardedBy("this")
   private final LinkedHashSet<CacheKey> mFreeItemsPool;
 
+  // Instrumentation
+  @GuardedBy("this")
+  private final SparseIntArray mHitCounts;
+  @GuardedBy("this")
+  private int mHitCount;
+  @GuardedBy("this")
+  private int mMissCount;
+  @GuardedBy("this")
+  private int mCachedCount;
+
   public AnimatedFrameCache(
       CacheKey imageCacheKey,
       final CountingMemoryCache<CacheKey, CloseableImage> backingCache) {
     mImageCacheKey = imageCacheKey;
     mBackingCache = backingCache;
     mFreeItemsPool = new LinkedHashSet<>();
+    mHitCounts = new SparseIntArray();
     mEntryStateObserver = new CountingMemoryCache.EntryStateObserver<CacheKey>() {
       @Override
       public void onExclusivityChanged(CacheKey key, boolean isExclusive) {
@@ -107,7 +141,12 @@ public class AnimatedFrameCache {
   public CloseableReference<CloseableImage> cache(
       int frameIndex,
       CloseableReference<CloseableImage> imageRef) {
-    return mBackingCache.cache(keyFor(frameIndex), imageRef, mEntryStateObserver);
+    CloseableReference<CloseableImage> cachedRef =
+        mBackingCache.cache(keyFor(frameIndex), imageRef, mEntryStateObserver);
+    if (cachedRef != null) {
+      onCached();
+    }
+    return cachedRef;
   }
 
   /**
@@ -117,7 +156,9 @@ public class AnimatedFrameCache {
    */
   @Nullable
   public CloseableReference<CloseableImage> get(int frameIndex) {
-    return mBackingCache.get(keyFor(frameIndex));
+    CloseableReference<CloseableImage> imageRef = mBackingCache.get(keyFor(frameIndex));
+    onLookup(frameIndex, imageRef != null);
+    return imageRef;
   }
 
   /**
@@ -154,7 +195,49 @@ public class AnimatedFrameCache {
     return cacheKey;
   }
 
-  private FrameKey keyFor(int frameIndex)   {
-    return new FrameKey(mImageCacheKey, frameIndex);
+  private synchronized void onCached() {
+    mCachedCount++;
+  }
+
+  private synchronized void onLookup(int frameIndex, boolean isHit) {
+    if (isHit) {
+      mHitCount++;
+      mHitCounts.put(frameIndex, mHitCounts.get(frameIndex) + 1);
+    } else {
+      mMissCount++;
+    }
+  }
+
+  /**
+   * Gets the number of frames cached through this instance.
+   */
+  public synchronized int getCachedCount() {
+    return mCachedCount;
+  }
+
+  /**
+   * Gets the number of frames found in the cache, including the ones cached by other instances
+   * for the same image.
+   */
+  public synchronized int getHitCount() {
+    return mHitCount;
+  }
+
+  /**
+   * Gets the number of times the given frame was found in the cache.
+   */
+  public synchronized int getHitCount(int frameIndex) {
+    return mHitCounts.get(frameIndex);
+  }
+
+  /**
+   * Gets the number of frames not found in the cache.
+   */
+  public synchronized int getMissCount() {
+    return mMissCount;
+  }
+
+  private AnimatedFrameCacheKey keyFor(int frameIndex) {
+    return new AnimatedFrameCacheKey(mImageCacheKey, frameIndex);
   }
 }
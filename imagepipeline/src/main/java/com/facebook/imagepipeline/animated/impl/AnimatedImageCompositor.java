@@ -28,6 +28,9 @@ import com.facebook.imagepipeline.animated.base.AnimatedImage;
  * being blended on a previous frame in order to render the full frame. This class encapsulates
  * the behavior to be able to render any frame of the image. Designed to work with a cache
  * via a Callback.
+ *
+ * <p> The frame that compositing starts from when no frame is cached, the key frame, is computed
+ * once for every frame from the blend and disposal info of the frames.
  */
 public class AnimatedImageCompositor {
 
@@ -62,6 +65,7 @@ public class AnimatedImageCompositor {
   private final AnimatedDrawableBackend mAnimatedDrawableBackend;
   private final Callback mCallback;
   private final Paint mTransparentFillPaint;
+  private final int[] mKeyFrames;
 
   public AnimatedImageCompositor(
       AnimatedDrawableBackend animatedDrawableBackend,
@@ -72,6 +76,59 @@ public class AnimatedImageCompositor {
     mTransparentFillPaint.setColor(Color.TRANSPARENT);
     mTransparentFillPaint.setStyle(Paint.Style.FILL);
     mTransparentFillPaint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.SRC));
+    mKeyFrames = buildKeyFrames();
+  }
+
+  /**
+   * Gets the frame that compositing the specified frame starts from when no frame is cached.
+   *
+   * @param frameNumber the frame to render
+   * @return the key frame, which is the specified frame itself if it does not depend on any
+   *     previous frame
+   */
+  public int getKeyFrame(int frameNumber) {
+    return mKeyFrames[frameNumber];
+  }
+
+  /**
+   * Gets the number of frames to render in order to render the specified frame when no frame is
+   * cached.
+   */
+  public int getCompositeStepCount(int frameNumber) {
+    return frameNumber - mKeyFrames[frameNumber] + 1;
+  }
+
+  /**
+   * Computes the key frame of every frame in one pass, the same way
+   * {@link #prepareCanvasWithClosestCachedFrame} goes backwards when no frame is cached.
+   */
+  private int[] buildKeyFrames() {
+    int frameCount = mAnimatedDrawableBackend.getFrameCount();
+    int[] keyFrames = new int[frameCount];
+    // the frame to start from when going backwards from the previous frame
+    int previousStart = 0;
+    for (int index = 0; index < frameCount; index++) {
+      AnimatedDrawableFrameInfo frameInfo = mAnimatedDrawableBackend.getFrameInfo(index);
+      keyFrames[index] =
+          frameInfo.shouldBlendWithPreviousFrame && index > 0 ? previousStart : index;
+      switch (isFrameNeededForRendering(index)) {
+        case REQUIRED:
+          if (!frameInfo.shouldBlendWithPreviousFrame) {
+            previousStart = index;
+          }
+          break;
+        case NOT_REQUIRED:
+          previousStart = index + 1;
+          break;
+        case ABORT:
+          previousStart = index;
+          break;
+        case SKIP:
+        default:
+          // Keep going.
+      }
+    }
+    return keyFrames;
   }
 
   /**
@@ -89,7 +146,10 @@ public class AnimatedImageCompositor {
     AnimatedDrawableFrameInfo frameInfo = mAnimatedDrawableBackend.getFrameInfo(frameNumber);
     if (frameInfo.shouldBlendWithPreviousFrame && frameNumber > 0) {
       // Blending is required. nextIndex points to the next index to render onto the canvas.
-      nextIndex = prepareCanvasWithClosestCachedFrame(frameNumber - 1, canvas);
+      nextIndex = prepareCanvasWithClosestCachedFrame(
+          frameNumber - 1,
+          mKeyFrames[frameNumber],
+          canvas);
     } else {
       // Blending isn't required. Start at the frame we're trying to render.
       nextIndex = frameNumber;
@@ -138,11 +198,16 @@ public class AnimatedImageCompositor {
    * composited onto the canvas.
    *
    * @param previousFrameNumber the frame number that is ones less than the one we're rendering
+   * @param keyFrame the key frame of the one we're rendering, so that there is no need to go
+   *     any further
    * @param canvas the canvas to prepare
    * @return the index of the the next frame to process
    */
-  private int prepareCanvasWithClosestCachedFrame(int previousFrameNumber, Canvas canvas) {
-    for (int index = previousFrameNumber; index >= 0; index--) {
+  private int prepareCanvasWithClosestCachedFrame(
+      int previousFrameNumber,
+      int keyFrame,
+      Canvas canvas) {
+    for (int index = previousFrameNumber; index >= keyFrame; index--) {
       FrameNeededResult neededResult = isFrameNeededForRendering(index);
       switch (neededResult) {
         case REQUIRED:
@@ -175,7 +240,7 @@ public class AnimatedImageCompositor {
           // Keep going.
       }
     }
-    return 0;
+    return keyFrame;
   }
 
   private void disposeToBackground(Canvas canvas, AnimatedDrawableFrameInfo frameInfo) {
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2015-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.imagepipeline.animated.impl;
+
+import javax.annotation.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * A rendered frame of at most {@link #MAX_COLORS} colors, stored as one byte per pixel indexing a
+ * palette of its colors. It takes about a quarter of the memory of an ARGB_8888 bitmap, but has to
+ * be expanded to be drawn.
+ */
+class IndexedFrame {
+
+  static final int MAX_COLORS = 256;
+
+  // the table from colors to their index is twice as large as the palette, so that probes are short
+  private static final int TABLE_BITS = 9;
+  private static final int TABLE_MASK = (1 << TABLE_BITS) - 1;
+
+  private final int[] mPalette;
+  private final byte[] mIndices;
+
+  private IndexedFrame(int[] palette, byte[] indices) {
+    mPalette = palette;
+    mIndices = indices;
+  }
+
+  /**
+   * Creates an indexed frame of the specified pixels.
+   *
+   * @param pixels the ARGB pixels of the frame
+   * @param pixelCount the number of pixels of the frame
+   * @return the indexed frame, or null if the pixels have more than {@link #MAX_COLORS} colors
+   */
+  @Nullable
+  static IndexedFrame create(int[] pixels, int pixelCount) {
+    int[] palette = new int[MAX_COLORS];
+    int colorCount = 0;
+    // open addressing table from colors to their index in the palette plus one, 0 being empty
+    int[] tableColors = new int[TABLE_MASK + 1];
+    int[] tableIndices = new int[TABLE_MASK + 1];
+    byte[] indices = new byte[pixelCount];
+    int lastColor = 0;
+    int lastIndex = -1;
+    for (int i = 0; i < pixelCount; i++) {
+      int color = pixels[i];
+      if (color != lastColor || lastIndex < 0) {
+        int slot = (color * 0x9E3779B1) >>> (32 - TABLE_BITS);
+        while (tableIndices[slot] != 0 && tableColors[slot] != color) {
+          slot = (slot + 1) & TABLE_MASK;
+        }
+        if (tableIndices[slot] == 0) {
+          if (colorCount == MAX_COLORS) {
+            return null;
+          }
+          palette[colorCount] = color;
+          tableColors[slot] = color;
+          tableIndices[slot] = ++colorCount;
+        }
+        lastColor = color;
+        lastIndex = tableIndices[slot] - 1;
+      }
+      indices[i] = (byte) lastIndex;
+    }
+    return new IndexedFrame(Arrays.copyOf(palette, colorCount), indices);
+  }
+
+  /**
+   * Expands the frame into the specified ARGB pixels.
+   *
+   * @param pixels the array to write the pixels of the frame to
+   */
+  void expand(int[] pixels) {
+    for (int i = 0; i < mIndices.length; i++) {
+      pixels[i] = mPalette[mIndices[i] & 0xFF];
+    }
+  }
+
+  int getColorCount() {
+    return mPalette.length;
+  }
+
+  int getSizeInBytes() {
+    return mIndices.length + mPalette.length * 4;
+  }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2015-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.imagepipeline.cache;
+
+import javax.annotation.concurrent.Immutable;
+
+import com.facebook.cache.common.CacheKey;
+import com.facebook.common.internal.Objects;
+import com.facebook.common.internal.Preconditions;
+import com.facebook.imagepipeline.request.ImageRequest;
+
+/**
+ * Cache key for a single frame of an animated image, requested through
+ * {@link ImageRequest#getAnimatedFrameNumber()} or rendered by an animated drawable.
+ *
+ * <p> The key wraps the cache key of the whole image, as created by the {@link CacheKeyFactory},
+ * so that frames never get confused with the image they are part of.
+ */
+@Immutable
+public class AnimatedFrameCacheKey implements CacheKey {
+
+  private final CacheKey mImageCacheKey;
+  private final int mFrameNumber;
+
+  public AnimatedFrameCacheKey(CacheKey imageCacheKey, int frameNumber) {
+    mImageCacheKey = Preconditions.checkNotNull(imageCacheKey);
+    mFrameNumber = frameNumber;
+  }
+
+  /**
+   * @return the key of the frame requested by the request, or the image cache key itself if the
+   * whole image is requested
+   */
+  public static CacheKey forRequest(CacheKey imageCacheKey, ImageRequest request) {
+    final int frameNumber = request.getAnimatedFrameNumber();
+    return (frameNumber != ImageRequest.NO_ANIMATED_FRAME)
+        ? new AnimatedFrameCacheKey(imageCacheKey, frameNumber)
+        : imageCacheKey;
+  }
+
+  public CacheKey getImageCacheKey() {
+    return mImageCacheKey;
+  }
+
+  public int getFrameNumber() {
+    return mFrameNumber;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (o == this) {
+      return true;
+    }
+    if (!(o instanceof AnimatedFrameCacheKey)) {
+      return false;
+    }
+    AnimatedFrameCacheKey otherKey = (AnimatedFrameCacheKey) o;
+    return mFrameNumber == otherKey.mFrameNumber &&
+        mImageCacheKey.equals(otherKey.mImageCacheKey);
+  }
+
+  @Override
+  public int hashCode() {
+    return mImageCacheKey.hashCode() * 1013 + mFrameNumber;
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(this)
+        .add("imageCacheKey", mImageCacheKey)
+        .add("frameNumber", mFrameNumber)
+        .toString();
+  }
+}
@@ -9,6 +9,8 @@
 
 package com.facebook.imagepipeline.cache;
 
+import javax.annotation.Nullable;
+
 import com.facebook.cache.common.CacheKey;
 import com.facebook.common.internal.Supplier;
 import com.facebook.common.memory.MemoryTrimmableRegistry;
@@ -18,6 +20,15 @@ public class BitmapCountingMemoryCacheFactory {
   public static CountingMemoryCache<CacheKey, CloseableImage> get(
       Supplier<MemoryCacheParams> bitmapMemoryCacheParamsSupplier,
       MemoryTrimmableRegistry memoryTrimmableRegistry) {
+    return get(bitmapMemoryCacheParamsSupplier, memoryTrimmableRegistry, null, null);
+  }
+
+  public static CountingMemoryCache<CacheKey, CloseableImage> get(
+      Supplier<MemoryCacheParams> bitmapMemoryCacheParamsSupplier,
+      MemoryTrimmableRegistry memoryTrimmableRegistry,
+      @Nullable CountingMemoryCache.EntryEvictionObserver<CacheKey, CloseableImage>
+          entryEvictionObserver,
+      @Nullable CountingMemoryCache.EntryClassifier<CacheKey, CloseableImage> entryClassifier) {
 
     ValueDescriptor<CloseableImage> valueDescriptor =
         new ValueDescriptor<CloseableImage>() {
@@ -30,7 +41,12 @@ public class BitmapCountingMemoryCacheFactory {
     CountingMemoryCache.CacheTrimStrategy trimStrategy = new BitmapMemoryCacheTrimStrategy();
 
     CountingMemoryCache<CacheKey, CloseableImage> countingCache =
-        new CountingMemoryCache<>(valueDescriptor, trimStrategy, bitmapMemoryCacheParamsSupplier);
+        new CountingMemoryCache<>(
+            valueDescriptor,
+            trimStrategy,
+            bitmapMemoryCacheParamsSupplier,
+            entryEvictionObserver,
+            entryClassifier);
 
      memoryTrimmableRegistry.registerMemoryTrimmable(countingCache);
 
@@ -0,0 +1,281 @@
+/*
+ * Copyright (c) 2015-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.imagepipeline.cache;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import android.graphics.Bitmap;
+
+import com.facebook.cache.common.CacheKey;
+import com.facebook.common.internal.Preconditions;
+import com.facebook.common.logging.FLog;
+import com.facebook.common.references.CloseableReference;
+import com.facebook.common.references.ResourceReleaser;
+import com.facebook.imagepipeline.image.CloseableImage;
+import com.facebook.imagepipeline.image.CloseableStaticBitmap;
+import com.facebook.imagepipeline.memory.PooledByteBuffer;
+import com.facebook.imagepipeline.memory.PooledByteBufferFactory;
+import com.facebook.imagepipeline.memory.PooledByteBufferOutputStream;
+import com.facebook.imagepipeline.request.ImageRequest;
+
+import com.android.internal.util.Predicate;
+
+/**
+ * Demotes bitmaps evicted from the bitmap memory cache into the encoded memory cache.
+ *
+ * <p> When a decoded bitmap is evicted and its encoded bytes are no longer in the encoded memory
+ * cache, the bitmap is compressed on a background thread and put into the encoded memory cache
+ * under the encoded cache key of the image. A later request for the same image then decodes from
+ * memory instead of reading from disk. Bitmaps are compressed to PNG, the only lossless format
+ * {@link Bitmap#compress} supports on all platform versions, so that the demoted entry decodes to
+ * the same pixels as the original image.
+ *
+ * <p> Only bitmaps that are identical to a plain decode of the original image are demoted, i.e.
+ * full quality bitmaps that were not resized, postprocessed or rotated. The encoded cache key is
+ * obtained from the pipeline's {@link CacheKeyFactory}, for a request of the source uri of the
+ * bitmap. Both the key and the lookup of the encoded memory cache are done on the executor, not
+ * on the thread evicting the bitmap.
+ *
+ * <p> The total size of the demoted entries that are still alive is kept within a budget.
+ */
+@ThreadSafe
+public class BitmapMemoryCacheDemoter
+    implements CountingMemoryCache.EntryEvictionObserver<CacheKey, CloseableImage> {
+
+  private static final Class<?> TAG = BitmapMemoryCacheDemoter.class;
+
+  // Limits the number of evicted bitmaps kept alive while waiting to be compressed
+  private static final int MAX_PENDING_DEMOTIONS = 2;
+
+  // ignored by PNG, which is lossless
+  private static final int PNG_QUALITY = 100;
+
+  private final CountingMemoryCache<CacheKey, PooledByteBuffer> mEncodedMemoryCache;
+  private final PooledByteBufferFactory mPooledByteBufferFactory;
+  private final CacheKeyFactory mCacheKeyFactory;
+  private final Executor mExecutor;
+  private final int mBudgetInBytes;
+
+  @GuardedBy("this")
+  private final Map<CacheKey, PooledByteBuffer> mDemotedBuffers = new HashMap<>();
+  @GuardedBy("this")
+  private int mDemotedSizeInBytes;
+  @GuardedBy("this")
+  private int mPendingDemotions;
+  @GuardedBy("this")
+  private int mDemotionCount;
+  @GuardedBy("this")
+  private int mDemotionHitCount;
+
+  public BitmapMemoryCacheDemoter(
+      CountingMemoryCache<CacheKey, PooledByteBuffer> encodedMemoryCache,
+      PooledByteBufferFactory pooledByteBufferFactory,
+      CacheKeyFactory cacheKeyFactory,
+      Executor executor,
+      int budgetInBytes) {
+    Preconditions.checkArgument(budgetInBytes > 0);
+    mEncodedMemoryCache = encodedMemoryCache;
+    mPooledByteBufferFactory = pooledByteBufferFactory;
+    mCacheKeyFactory = cacheKeyFactory;
+    mExecutor = executor;
+    mBudgetInBytes = budgetInBytes;
+  }
+
+  @Override
+  public void onEntryEvicted(CacheKey key, CloseableReference<CloseableImage> valueRef) {
+    if (!(key instanceof BitmapMemoryCacheKey) ||
+        !(valueRef.get() instanceof CloseableStaticBitmap)) {
+      return;
+    }
+    final BitmapMemoryCacheKey bitmapCacheKey = (BitmapMemoryCacheKey) key;
+    CloseableStaticBitmap closeableBitmap = (CloseableStaticBitmap) valueRef.get();
+    if (bitmapCacheKey.getResizeOptions() != null ||
+        bitmapCacheKey.getPostprocessorName() != null ||
+        closeableBitmap.getRotationAngle() != 0 ||
+        !closeableBitmap.getQualityInfo().isOfFullQuality()) {
+      return;
+    }
+    synchronized (this) {
+      if (mPendingDemotions >= MAX_PENDING_DEMOTIONS || mDemotedSizeInBytes >= mBudgetInBytes) {
+        return;
+      }
+      mPendingDemotions++;
+    }
+    final CloseableReference<CloseableImage> bitmapRef = valueRef.clone();
+    try {
+      mExecutor.execute(
+          new Runnable() {
+            @Override
+            public void run() {
+              try {
+                maybeDemote(bitmapCacheKey, (CloseableStaticBitmap) bitmapRef.get());
+              } finally {
+                bitmapRef.close();
+                onDemotionFinished();
+              }
+            }
+          });
+    } catch (Exception exception) {
+      FLog.w(TAG, exception, "Failed to schedule demotion for %s", key.toString());
+      bitmapRef.close();
+      onDemotionFinished();
+    }
+  }
+
+  private synchronized void onDemotionFinished() {
+    mPendingDemotions--;
+  }
+
+  /**
+   * Demotes the bitmap, unless its encoded bytes are still in the encoded memory cache.
+   */
+  private void maybeDemote(
+      BitmapMemoryCacheKey bitmapCacheKey,
+      CloseableStaticBitmap closeableBitmap) {
+    ImageRequest imageRequest = ImageRequest.fromUri(bitmapCacheKey.getSourceUriString());
+    if (imageRequest == null) {
+      return;
+    }
+    final CacheKey encodedCacheKey = mCacheKeyFactory.getEncodedCacheKey(imageRequest);
+    if (mEncodedMemoryCache.contains(
+        new Predicate<CacheKey>() {
+          @Override
+          public boolean apply(CacheKey cacheKey) {
+            return encodedCacheKey.equals(cacheKey);
+          }
+        })) {
+      return;
+    }
+    demote(encodedCacheKey, closeableBitmap);
+  }
+
+  private void demote(CacheKey encodedCacheKey, CloseableStaticBitmap closeableBitmap) {
+    PooledByteBuffer buffer;
+    PooledByteBufferOutputStream outputStream = mPooledByteBufferFactory.newOutputStream();
+    try {
+      Bitmap bitmap = closeableBitmap.getUnderlyingBitmap();
+      if (!bitmap.compress(Bitmap.CompressFormat.PNG, PNG_QUALITY, outputStream)) {
+        return;
+      }
+      buffer = outputStream.toByteBuffer();
+    } finally {
+      outputStream.close();
+    }
+
+    synchronized (this) {
+      if (mDemotedSizeInBytes + buffer.size() > mBudgetInBytes) {
+        buffer.close();
+        return;
+      }
+      mDemotedSizeInBytes += buffer.size();
+      mDemotedBuffers.put(encodedCacheKey, buffer);
+    }
+    CloseableReference<PooledByteBuffer> bufferRef = CloseableReference.of(
+        buffer,
+        new DemotedBufferReleaser(encodedCacheKey));
+    try {
+      CloseableReference<PooledByteBuffer> cachedRef =
+          mEncodedMemoryCache.cache(encodedCacheKey, bufferRef);
+      if (cachedRef != null) {
+        synchronized (this) {
+          mDemotionCount++;
+        }
+      }
+      CloseableReference.closeSafely(cachedRef);
+    } finally {
+      bufferRef.close();
+    }
+  }
+
+  /**
+   * Releases a demoted buffer, once both the encoded memory cache and its clients are done with it.
+   */
+  private class DemotedBufferReleaser implements ResourceReleaser<PooledByteBuffer> {
+
+    private final CacheKey mEncodedCacheKey;
+
+    private DemotedBufferReleaser(CacheKey encodedCacheKey) {
+      mEncodedCacheKey = encodedCacheKey;
+    }
+
+    @Override
+    public void release(PooledByteBuffer buffer) {
+      synchronized (BitmapMemoryCacheDemoter.this) {
+        mDemotedSizeInBytes -= buffer.size();
+        if (mDemotedBuffers.get(mEncodedCacheKey) == buffer) {
+          mDemotedBuffers.remove(mEncodedCacheKey);
+        }
+      }
+      buffer.close();
+    }
+  }
+
+  /**
+   * Wraps the encoded memory cache used by the pipeline, so that hits on demoted entries are
+   * counted.
+   */
+  public MemoryCache<CacheKey, PooledByteBuffer> trackDemotionHits(
+      final MemoryCache<CacheKey, PooledByteBuffer> encodedMemoryCache) {
+    return new MemoryCache<CacheKey, PooledByteBuffer>() {
+      @Override
+      @Nullable
+      public CloseableReference<PooledByteBuffer> cache(
+          CacheKey key,
+          CloseableReference<PooledByteBuffer> value) {
+        return encodedMemoryCache.cache(key, value);
+      }
+
+      @Override
+      @Nullable
+      public CloseableReference<PooledByteBuffer> get(CacheKey key) {
+        CloseableReference<PooledByteBuffer> result = encodedMemoryCache.get(key);
+        if (result != null) {
+          synchronized (BitmapMemoryCacheDemoter.this) {
+            if (mDemotedBuffers.get(key) == result.get()) {
+              mDemotionHitCount++;
+            }
+          }
+        }
+        return result;
+      }
+
+      @Override
+      public int removeAll(Predicate<CacheKey> predicate) {
+        return encodedMemoryCache.removeAll(predicate);
+      }
+
+      @Override
+      public boolean contains(Predicate<CacheKey> predicate) {
+        return encodedMemoryCache.contains(predicate);
+      }
+    };
+  }
+
+  /** Gets the number of bitmaps demoted into the encoded memory cache. */
+  public synchronized int getDemotionCount() {
+    return mDemotionCount;
+  }
+
+  /** Gets the number of encoded memory cache hits served by demoted entries. */
+  public synchronized int getDemotionHitCount() {
+    return mDemotionHitCount;
+  }
+
+  /** Gets the total size in bytes of the demoted entries that are still alive. */
+  public synchronized int getDemotedSizeInBytes() {
+    return mDemotedSizeInBytes;
+  }
+}
@@ -81,6 +81,11 @@ public class BitmapMemoryCacheKey implements CacheKey {
     return mSourceString;
   }
 
+  @Nullable
+  public ResizeOptions getResizeOptions() {
+    return mResizeOptions;
+  }
+
   @Nullable
   public String getPostprocessorName() {
     return mPostprocessorName;
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2015-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.imagepipeline.cache;
+
+import com.facebook.cache.common.CacheKey;
+import com.facebook.common.internal.Preconditions;
+import com.facebook.imagepipeline.image.CloseableAnimatedImage;
+import com.facebook.imagepipeline.image.CloseableImage;
+
+/**
+ * Entry classifier for the bitmap memory cache that partitions the cached images into
+ * thumbnails, medium and large static images, and animated images.
+ *
+ * <p> Use together with {@link MemoryCacheParams#getPartitionBudget partition budgets}, e.g. as
+ * returned by {@link #getPartitionBudgets}, so that a few large images cannot flush all the
+ * thumbnails.
+ */
+public class BitmapSizeClassEntryClassifier
+    implements CountingMemoryCache.EntryClassifier<CacheKey, CloseableImage> {
+
+  public static final int PARTITION_THUMBNAIL = 0;
+  public static final int PARTITION_MEDIUM = 1;
+  public static final int PARTITION_LARGE = 2;
+  public static final int PARTITION_ANIMATED = 3;
+  private static final int PARTITION_COUNT = 4;
+
+  public static final int DEFAULT_MAX_THUMBNAIL_PIXELS = 256 * 256;
+  public static final int DEFAULT_MAX_MEDIUM_PIXELS = 720 * 720;
+
+  private final int mMaxThumbnailPixels;
+  private final int mMaxMediumPixels;
+
+  public BitmapSizeClassEntryClassifier() {
+    this(DEFAULT_MAX_THUMBNAIL_PIXELS, DEFAULT_MAX_MEDIUM_PIXELS);
+  }
+
+  /**
+   * @param maxThumbnailPixels the maximum number of pixels of a thumbnail
+   * @param maxMediumPixels the maximum number of pixels of a medium image
+   */
+  public BitmapSizeClassEntryClassifier(int maxThumbnailPixels, int maxMediumPixels) {
+    Preconditions.checkArgument(maxThumbnailPixels > 0);
+    Preconditions.checkArgument(maxMediumPixels >= maxThumbnailPixels);
+    mMaxThumbnailPixels = maxThumbnailPixels;
+    mMaxMediumPixels = maxMediumPixels;
+  }
+
+  @Override
+  public int getPartitionCount() {
+    return PARTITION_COUNT;
+  }
+
+  @Override
+  public int getPartition(CacheKey key, CloseableImage value) {
+    if (value instanceof CloseableAnimatedImage) {
+      return PARTITION_ANIMATED;
+    }
+    long pixels = (long) value.getWidth() * value.getHeight();
+    if (pixels <= mMaxThumbnailPixels) {
+      return PARTITION_THUMBNAIL;
+    }
+    return (pixels <= mMaxMediumPixels) ? PARTITION_MEDIUM : PARTITION_LARGE;
+  }
+
+  /**
+   * Splits the cache size among the partitions: 25% for thumbnails, 35% for medium images, 25%
+   * for large images and 15% for animated images.
+   */
+  public static int[] getPartitionBudgets(int maxCacheSize) {
+    int[] partitionBudgets = new int[PARTITION_COUNT];
+    partitionBudgets[PARTITION_THUMBNAIL] = maxCacheSize / 4;
+    partitionBudgets[PARTITION_MEDIUM] = (int) (maxCacheSize * 0.35);
+    partitionBudgets[PARTITION_LARGE] = maxCacheSize / 4;
+    partitionBudgets[PARTITION_ANIMATED] = (int) (maxCacheSize * 0.15);
+    return partitionBudgets;
+  }
+}
@@ -231,6 +231,15 @@ public class BufferedDiskCache {
     }
   }
 
+  /**
+   * Records how long it took to fetch the image associated with key, so that the disk cache can
+   * take it into account when evicting.
+   */
+  public void recordFetchCost(final CacheKey key, long fetchCostMs) {
+    Preconditions.checkNotNull(key);
+    mFileCache.recordFetchCost(key, fetchCostMs);
+  }
+
   /**
    * Removes the item from the disk cache and the staging area.
    */
@@ -280,6 +289,28 @@ public class BufferedDiskCache {
     }
   }
 
+  /**
+   * Compacts cold entries of the disk cache.
+   * @return Task that resolves to the number of bytes reclaimed
+   */
+  public Task<Long> compactColdEntries() {
+    try {
+      return Task.call(
+          new Callable<Long>() {
+            @Override
+            public Long call() throws Exception {
+              return mFileCache.compactColdEntries();
+            }
+          },
+          mWriteExecutor);
+    } catch (Exception exception) {
+      // Log failure
+      // TODO: 3697790
+      FLog.w(TAG, exception, "Failed to schedule disk-cache compaction");
+      return Task.forError(exception);
+    }
+  }
+
   /**
    * Performs disk cache read. In case of any exception null is returned.
    */
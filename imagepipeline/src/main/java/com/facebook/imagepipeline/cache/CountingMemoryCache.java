@@ -14,6 +14,9 @@ import javax.annotation.concurrent.GuardedBy;
 import javax.annotation.concurrent.ThreadSafe;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.concurrent.TimeUnit;
 
 import android.os.SystemClock;
@@ -21,8 +24,8 @@ import android.os.SystemClock;
 import com.facebook.common.internal.Preconditions;
 import com.facebook.common.internal.Supplier;
 import com.facebook.common.internal.VisibleForTesting;
+import com.facebook.common.memory.IncrementalMemoryTrimmable;
 import com.facebook.common.memory.MemoryTrimType;
-import com.facebook.common.memory.MemoryTrimmable;
 import com.facebook.common.references.CloseableReference;
 import com.facebook.common.references.ResourceReleaser;
 
@@ -37,11 +40,18 @@ import com.android.internal.util.Predicate;
  * <p> Only the exclusively owned elements, i.e. the elements not referenced by any client, can be
  * evicted.
  *
+ * <p> If an {@link EntryClassifier} is given, the cached items are assigned to partitions. Each
+ * partition keeps its own hit statistics and, if {@link MemoryCacheParams#hasPartitionBudgets
+ * budgets} are set, its own budget. Partitions are not hard limits: a partition can grow beyond
+ * its budget as long as the whole cache fits, but the partitions that exceed their budget are
+ * evicted from first, in LRU order. That way a few large items cannot flush a partition of small
+ * items that stays within its budget.
+ *
  * @param <K> the key type
  * @param <V> the value type
  */
 @ThreadSafe
-public class CountingMemoryCache<K, V> implements MemoryCache<K, V>, MemoryTrimmable {
+public class CountingMemoryCache<K, V> implements MemoryCache<K, V>, IncrementalMemoryTrimmable {
 
   /**
    * Interface used to specify the trimming strategy for the cache.
@@ -63,6 +73,33 @@ public class CountingMemoryCache<K, V> implements MemoryCache<K, V>, MemoryTrimm
     void onExclusivityChanged(K key, boolean isExclusive);
   }
 
+  /**
+   * Interface used to observe the entries evicted to meet the cache constraints.
+   */
+  public interface EntryEvictionObserver<K, V> {
+
+    /**
+     * Called when an exclusively owned entry is evicted because the cache constraints are
+     * exceeded. Entries removed explicitly or trimmed on memory pressure are not reported.
+     *
+     * <p> The value is closed right after this call. The observer may clone the reference to keep
+     * the value alive, but must not close the given reference.
+     */
+    void onEntryEvicted(K key, CloseableReference<V> valueRef);
+  }
+
+  /**
+   * Interface used to assign the cached entries to partitions, e.g. by size class.
+   */
+  public interface EntryClassifier<K, V> {
+
+    /** Gets the number of partitions. */
+    int getPartitionCount();
+
+    /** Gets the partition of the entry, in the range [0, getPartitionCount()). */
+    int getPartition(K key, V value);
+  }
+
   /**
    * The internal representation of a key-value pair stored by the cache.
    */
@@ -77,13 +114,23 @@ public class CountingMemoryCache<K, V> implements MemoryCache<K, V>, MemoryTrimm
     // closed too.
     public boolean isOrphan;
     @Nullable public final EntryStateObserver<K> observer;
-
-    private Entry(K key, CloseableReference<V> valueRef, @Nullable EntryStateObserver<K> observer) {
+    // The partition the entry is accounted to, 0 if the cache is not partitioned.
+    public final int partition;
+    // When the entry last became exclusively owned, to order the exclusive entries of different
+    // partitions.
+    public long exclusiveSequence;
+
+    private Entry(
+        K key,
+        CloseableReference<V> valueRef,
+        @Nullable EntryStateObserver<K> observer,
+        int partition) {
       this.key = Preconditions.checkNotNull(key);
       this.valueRef = Preconditions.checkNotNull(CloseableReference.cloneOrNull(valueRef));
       this.clientCount = 0;
       this.isOrphan = false;
       this.observer = observer;
+      this.partition = partition;
     }
 
     /** Creates a new entry with the usage count of 0. */
@@ -92,7 +139,17 @@ public class CountingMemoryCache<K, V> implements MemoryCache<K, V>, MemoryTrimm
         final K key,
         final CloseableReference<V> valueRef,
         final @Nullable EntryStateObserver<K> observer) {
-      return new Entry<>(key, valueRef, observer);
+      return of(key, valueRef, observer, 0);
+    }
+
+    /** Creates a new entry with the usage count of 0, accounted to the given partition. */
+    @VisibleForTesting
+    static <K, V> Entry<K, V> of(
+        final K key,
+        final CloseableReference<V> valueRef,
+        final @Nullable EntryStateObserver<K> observer,
+        final int partition) {
+      return new Entry<>(key, valueRef, observer, partition);
     }
   }
 
@@ -114,6 +171,28 @@ public class CountingMemoryCache<K, V> implements MemoryCache<K, V>, MemoryTrimm
 
   private final CacheTrimStrategy mCacheTrimStrategy;
 
+  @Nullable private final EntryEvictionObserver<K, V> mEntryEvictionObserver;
+
+  @Nullable private final EntryClassifier<K, V> mEntryClassifier;
+
+  // Per-partition accounting. An unpartitioned cache has a single partition.
+  @GuardedBy("this")
+  private final int[] mPartitionSizesInBytes;
+  @GuardedBy("this")
+  private final int[] mPartitionHitCounts;
+  @GuardedBy("this")
+  private final int[] mPartitionPutCounts;
+  @GuardedBy("this")
+  private final int[] mPartitionEvictionCounts;
+
+  // The exclusively owned items of each partition, in LRU order, so that the next item to evict
+  // from a partition over its budget is found without scanning the other partitions. Null if the
+  // cache is not partitioned.
+  @GuardedBy("this")
+  @Nullable private final ArrayList<LinkedHashMap<K, Entry<K, V>>> mPartitionExclusiveEntries;
+  @GuardedBy("this")
+  private long mExclusiveSequence;
+
   // Cache size constraints.
   private final Supplier<MemoryCacheParams> mMemoryCacheParamsSupplier;
   @GuardedBy("this")
@@ -125,11 +204,49 @@ public class CountingMemoryCache<K, V> implements MemoryCache<K, V>, MemoryTrimm
       ValueDescriptor<V> valueDescriptor,
       CacheTrimStrategy cacheTrimStrategy,
       Supplier<MemoryCacheParams> memoryCacheParamsSupplier) {
+    this(valueDescriptor, cacheTrimStrategy, memoryCacheParamsSupplier, null);
+  }
+
+  public CountingMemoryCache(
+      ValueDescriptor<V> valueDescriptor,
+      CacheTrimStrategy cacheTrimStrategy,
+      Supplier<MemoryCacheParams> memoryCacheParamsSupplier,
+      @Nullable EntryEvictionObserver<K, V> entryEvictionObserver) {
+    this(
+        valueDescriptor,
+        cacheTrimStrategy,
+        memoryCacheParamsSupplier,
+        entryEvictionObserver,
+        null);
+  }
+
+  public CountingMemoryCache(
+      ValueDescriptor<V> valueDescriptor,
+      CacheTrimStrategy cacheTrimStrategy,
+      Supplier<MemoryCacheParams> memoryCacheParamsSupplier,
+      @Nullable EntryEvictionObserver<K, V> entryEvictionObserver,
+      @Nullable EntryClassifier<K, V> entryClassifier) {
     mValueDescriptor = valueDescriptor;
     mExclusiveEntries = new CountingLruMap<>(wrapValueDescriptor(valueDescriptor));
     mCachedEntries = new CountingLruMap<>(wrapValueDescriptor(valueDescriptor));
     mCacheTrimStrategy = cacheTrimStrategy;
     mMemoryCacheParamsSupplier = memoryCacheParamsSupplier;
+    mEntryEvictionObserver = entryEvictionObserver;
+    mEntryClassifier = entryClassifier;
+    int partitionCount = (entryClassifier == null) ? 1 : entryClassifier.getPartitionCount();
+    Preconditions.checkArgument(partitionCount > 0);
+    mPartitionSizesInBytes = new int[partitionCount];
+    mPartitionHitCounts = new int[partitionCount];
+    mPartitionPutCounts = new int[partitionCount];
+    mPartitionEvictionCounts = new int[partitionCount];
+    if (entryClassifier == null) {
+      mPartitionExclusiveEntries = null;
+    } else {
+      mPartitionExclusiveEntries = new ArrayList<>(partitionCount);
+      for (int i = 0; i < partitionCount; i++) {
+        mPartitionExclusiveEntries.add(new LinkedHashMap<K, Entry<K, V>>());
+      }
+    }
     mMemoryCacheParams = mMemoryCacheParamsSupplier.get();
     mLastCacheParamsCheck = SystemClock.elapsedRealtime();
   }
@@ -173,21 +290,24 @@ public class CountingMemoryCache<K, V> implements MemoryCache<K, V>, MemoryTrimm
 
     maybeUpdateCacheParams();
 
+    int partition = getPartition(key, valueRef.get());
     Entry<K, V> oldExclusive;
     CloseableReference<V> oldRefToClose = null;
     CloseableReference<V> clientRef = null;
     synchronized (this) {
       // remove the old item (if any) as it is stale now
-      oldExclusive = mExclusiveEntries.remove(key);
-      Entry<K, V> oldEntry = mCachedEntries.remove(key);
+      oldExclusive = removeExclusive(key);
+      Entry<K, V> oldEntry = removeCachedEntry(key);
       if (oldEntry != null) {
         makeOrphan(oldEntry);
         oldRefToClose = referenceToClose(oldEntry);
       }
 
       if (canCacheNewValue(valueRef.get())) {
-        Entry<K, V> newEntry = Entry.of(key, valueRef, observer);
+        Entry<K, V> newEntry = Entry.of(key, valueRef, observer, partition);
         mCachedEntries.put(key, newEntry);
+        mPartitionSizesInBytes[partition] += getEntrySizeInBytes(newEntry);
+        mPartitionPutCounts[partition]++;
         clientRef = newClientReference(newEntry);
       }
     }
@@ -198,6 +318,16 @@ public class CountingMemoryCache<K, V> implements MemoryCache<K, V>, MemoryTrimm
     return clientRef;
   }
 
+  /** Gets the partition of the given key-value pair, 0 if the cache is not partitioned. */
+  private int getPartition(K key, V value) {
+    if (mEntryClassifier == null) {
+      return 0;
+    }
+    int partition = mEntryClassifier.getPartition(key, value);
+    Preconditions.checkState(partition >= 0 && partition < mPartitionSizesInBytes.length);
+    return partition;
+  }
+
   /** Checks the cache constraints to determine whether the new value can be cached or not. */
   private synchronized boolean canCacheNewValue(V value) {
     int newValueSize = mValueDescriptor.getSizeInBytes(value);
@@ -217,9 +347,10 @@ public class CountingMemoryCache<K, V> implements MemoryCache<K, V>, MemoryTrimm
     Entry<K, V> oldExclusive;
     CloseableReference<V> clientRef = null;
     synchronized (this) {
-      oldExclusive = mExclusiveEntries.remove(key);
+      oldExclusive = removeExclusive(key);
       Entry<K, V> entry = mCachedEntries.get(key);
       if (entry != null) {
+        mPartitionHitCounts[entry.partition]++;
         clientRef = newClientReference(entry);
       }
     }
@@ -262,11 +393,29 @@ public class CountingMemoryCache<K, V> implements MemoryCache<K, V>, MemoryTrimm
   private synchronized boolean maybeAddToExclusives(Entry<K, V> entry) {
     if (!entry.isOrphan && entry.clientCount == 0) {
       mExclusiveEntries.put(entry.key, entry);
+      if (mPartitionExclusiveEntries != null) {
+        LinkedHashMap<K, Entry<K, V>> partitionExclusives =
+            mPartitionExclusiveEntries.get(entry.partition);
+        // remove first so that the entry moves to the end of the queue
+        partitionExclusives.remove(entry.key);
+        partitionExclusives.put(entry.key, entry);
+        entry.exclusiveSequence = mExclusiveSequence++;
+      }
       return true;
     }
     return false;
   }
 
+  /** Removes the entry from the exclusively owned queues, if it is there. */
+  @Nullable
+  private synchronized Entry<K, V> removeExclusive(K key) {
+    Entry<K, V> oldExclusive = mExclusiveEntries.remove(key);
+    if (oldExclusive != null && mPartitionExclusiveEntries != null) {
+      mPartitionExclusiveEntries.get(oldExclusive.partition).remove(key);
+    }
+    return oldExclusive;
+  }
+
   /**
    * Gets the value with the given key to be reused, or null if there is no such value.
    *
@@ -279,9 +428,9 @@ public class CountingMemoryCache<K, V> implements MemoryCache<K, V>, MemoryTrimm
     boolean removed = false;
     Entry<K, V> oldExclusive = null;
     synchronized (this) {
-      oldExclusive = mExclusiveEntries.remove(key);
+      oldExclusive = removeExclusive(key);
       if (oldExclusive != null) {
-        Entry<K, V> entry = mCachedEntries.remove(key);
+        Entry<K, V> entry = removeCachedEntry(key);
         Preconditions.checkNotNull(entry);
         Preconditions.checkState(entry.clientCount == 0);
         // optimization: instead of cloning and then closing the original reference,
@@ -307,7 +456,15 @@ public class CountingMemoryCache<K, V> implements MemoryCache<K, V>, MemoryTrimm
     ArrayList<Entry<K, V>> oldEntries;
     synchronized (this) {
       oldExclusives = mExclusiveEntries.removeAll(predicate);
+      if (mPartitionExclusiveEntries != null) {
+        for (Entry<K, V> oldExclusive : oldExclusives) {
+          mPartitionExclusiveEntries.get(oldExclusive.partition).remove(oldExclusive.key);
+        }
+      }
       oldEntries = mCachedEntries.removeAll(predicate);
+      for (Entry<K, V> oldEntry : oldEntries) {
+        mPartitionSizesInBytes[oldEntry.partition] -= getEntrySizeInBytes(oldEntry);
+      }
       makeOrphans(oldEntries);
     }
     maybeClose(oldEntries);
@@ -323,7 +480,13 @@ public class CountingMemoryCache<K, V> implements MemoryCache<K, V>, MemoryTrimm
     ArrayList<Entry<K, V>> oldEntries;
     synchronized (this) {
       oldExclusives = mExclusiveEntries.clear();
+      if (mPartitionExclusiveEntries != null) {
+        for (LinkedHashMap<K, Entry<K, V>> partitionExclusives : mPartitionExclusiveEntries) {
+          partitionExclusives.clear();
+        }
+      }
       oldEntries = mCachedEntries.clear();
+      Arrays.fill(mPartitionSizesInBytes, 0);
       makeOrphans(oldEntries);
     }
     maybeClose(oldEntries);
@@ -348,8 +511,7 @@ public class CountingMemoryCache<K, V> implements MemoryCache<K, V>, MemoryTrimm
     ArrayList<Entry<K, V>> oldEntries;
     final double trimRatio = mCacheTrimStrategy.getTrimRatio(trimType);
     synchronized (this) {
-      int targetCacheSize = (int) (mCachedEntries.getSizeInBytes() * (1 - trimRatio));
-      int targetEvictionQueueSize = Math.max(0, targetCacheSize - getInUseSizeInBytes());
+      int targetEvictionQueueSize = getTargetEvictionQueueSize(trimRatio);
       oldEntries = trimExclusivelyOwnedEntries(Integer.MAX_VALUE, targetEvictionQueueSize);
       makeOrphans(oldEntries);
     }
@@ -359,6 +521,49 @@ public class CountingMemoryCache<K, V> implements MemoryCache<K, V>, MemoryTrimm
     maybeEvictEntries();
   }
 
+  /** Gets the size the eviction queue has to be trimmed to, to trim the given ratio. */
+  private synchronized int getTargetEvictionQueueSize(double trimRatio) {
+    int targetCacheSize = (int) (mCachedEntries.getSizeInBytes() * (1 - trimRatio));
+    return Math.max(0, targetCacheSize - getInUseSizeInBytes());
+  }
+
+  /** Gets the number of bytes {@link #trim} would free for the given trim type. */
+  @Override
+  public int getTrimmableSizeInBytes(MemoryTrimType trimType) {
+    final double trimRatio = mCacheTrimStrategy.getTrimRatio(trimType);
+    synchronized (this) {
+      return Math.max(
+          0,
+          mExclusiveEntries.getSizeInBytes() - getTargetEvictionQueueSize(trimRatio));
+    }
+  }
+
+  @Override
+  public int getTrimCost() {
+    return TRIM_COST_CACHED;
+  }
+
+  /**
+   * Removes exclusively owned items, in the eviction order, until about the given number of bytes
+   * is freed or there are no exclusively owned items left.
+   *
+   * @return the number of bytes freed
+   */
+  @Override
+  public int trimIncrementally(int maxBytes) {
+    ArrayList<Entry<K, V>> oldEntries;
+    int freedBytes;
+    synchronized (this) {
+      int evictionQueueSize = mExclusiveEntries.getSizeInBytes();
+      oldEntries = trimExclusivelyOwnedEntries(Integer.MAX_VALUE, evictionQueueSize - maxBytes);
+      freedBytes = evictionQueueSize - mExclusiveEntries.getSizeInBytes();
+      makeOrphans(oldEntries);
+    }
+    maybeClose(oldEntries);
+    maybeNotifyExclusiveEntryRemoval(oldEntries);
+    return freedBytes;
+  }
+
   /**
    * Updates the cache params (constraints) if enough time has passed since the last update.
    */
@@ -388,10 +593,25 @@ public class CountingMemoryCache<K, V> implements MemoryCache<K, V>, MemoryTrimm
       oldEntries = trimExclusivelyOwnedEntries(maxCount, maxSize);
       makeOrphans(oldEntries);
     }
+    maybeNotifyEviction(oldEntries);
     maybeClose(oldEntries);
     maybeNotifyExclusiveEntryRemoval(oldEntries);
   }
 
+  /**
+   * Notifies the eviction observer (if any) about the evicted items before they get closed.
+   *
+   * <p> This method invokes the external observer, so it must not be called while holding the
+   * <code>this</code> lock.
+   */
+  private void maybeNotifyEviction(@Nullable ArrayList<Entry<K, V>> oldEntries) {
+    if (oldEntries != null && mEntryEvictionObserver != null) {
+      for (Entry<K, V> oldEntry : oldEntries) {
+        mEntryEvictionObserver.onEntryEvicted(oldEntry.key, oldEntry.valueRef);
+      }
+    }
+  }
+
   /**
    * Removes the exclusively owned items until there is at most <code>count</code> of them
    * and they occupy no more than <code>size</code> bytes.
@@ -409,13 +629,65 @@ public class CountingMemoryCache<K, V> implements MemoryCache<K, V>, MemoryTrimm
     }
     ArrayList<Entry<K, V>> oldEntries = new ArrayList<>();
     while (mExclusiveEntries.getCount() > count || mExclusiveEntries.getSizeInBytes() > size) {
-      K key = mExclusiveEntries.getFirstKey();
-      mExclusiveEntries.remove(key);
-      oldEntries.add(mCachedEntries.remove(key));
+      K key = getEvictionCandidate();
+      removeExclusive(key);
+      Entry<K, V> oldEntry = removeCachedEntry(key);
+      mPartitionEvictionCounts[oldEntry.partition]++;
+      oldEntries.add(oldEntry);
     }
     return oldEntries;
   }
 
+  /**
+   * Gets the key of the exclusively owned item to evict next: the least recently used item of the
+   * partitions over their budget if there is such an item, the least recently used item otherwise.
+   *
+   * <p> Only the head of each partition's queue is looked at, so this takes time linear in the
+   * number of partitions, not in the number of items.
+   */
+  private synchronized K getEvictionCandidate() {
+    if (mPartitionExclusiveEntries != null && mMemoryCacheParams.hasPartitionBudgets()) {
+      Entry<K, V> candidate = null;
+      for (int partition = 0; partition < mPartitionExclusiveEntries.size(); partition++) {
+        if (!isPartitionOverBudget(partition)) {
+          continue;
+        }
+        Iterator<Entry<K, V>> partitionExclusives =
+            mPartitionExclusiveEntries.get(partition).values().iterator();
+        if (!partitionExclusives.hasNext()) {
+          continue;
+        }
+        Entry<K, V> head = partitionExclusives.next();
+        if (candidate == null || head.exclusiveSequence < candidate.exclusiveSequence) {
+          candidate = head;
+        }
+      }
+      if (candidate != null) {
+        return candidate.key;
+      }
+    }
+    return mExclusiveEntries.getFirstKey();
+  }
+
+  /** Returns whether the partition occupies more than its budget. */
+  private synchronized boolean isPartitionOverBudget(int partition) {
+    return mPartitionSizesInBytes[partition] > mMemoryCacheParams.getPartitionBudget(partition);
+  }
+
+  /** Removes the entry from the cached items, keeping the partition sizes up to date. */
+  @Nullable
+  private synchronized Entry<K, V> removeCachedEntry(K key) {
+    Entry<K, V> oldEntry = mCachedEntries.remove(key);
+    if (oldEntry != null) {
+      mPartitionSizesInBytes[oldEntry.partition] -= getEntrySizeInBytes(oldEntry);
+    }
+    return oldEntry;
+  }
+
+  private int getEntrySizeInBytes(Entry<K, V> entry) {
+    return mValueDescriptor.getSizeInBytes(entry.valueRef.get());
+  }
+
   /**
    * Notifies the client that the cache no longer tracks the given items.
    *
@@ -516,4 +788,39 @@ public class CountingMemoryCache<K, V> implements MemoryCache<K, V>, MemoryTrimm
   public synchronized int getEvictionQueueSizeInBytes() {
     return mExclusiveEntries.getSizeInBytes();
   }
+
+  /** Gets the number of partitions, 1 if the cache is not partitioned. */
+  public int getPartitionCount() {
+    return mPartitionSizesInBytes.length;
+  }
+
+  /** Gets the total size in bytes of the currently cached items of the partition. */
+  public synchronized int getPartitionSizeInBytes(int partition) {
+    return mPartitionSizesInBytes[partition];
+  }
+
+  /** Gets the number of lookups that found an item of the partition. */
+  public synchronized int getPartitionHitCount(int partition) {
+    return mPartitionHitCounts[partition];
+  }
+
+  /** Gets the number of items cached in the partition. */
+  public synchronized int getPartitionPutCount(int partition) {
+    return mPartitionPutCounts[partition];
+  }
+
+  /** Gets the number of items of the partition evicted or trimmed from the cache. */
+  public synchronized int getPartitionEvictionCount(int partition) {
+    return mPartitionEvictionCounts[partition];
+  }
+
+  /**
+   * Gets the hit rate of the partition, assuming that every miss is followed by caching the
+   * fetched item, as the pipeline does. Returns -1 if the partition was never used.
+   */
+  public synchronized float getPartitionHitRate(int partition) {
+    int hitCount = mPartitionHitCounts[partition];
+    int lookupCount = hitCount + mPartitionPutCounts[partition];
+    return lookupCount == 0 ? -1 : (float) hitCount / lookupCount;
+  }
 }
@@ -9,6 +9,8 @@
 
 package com.facebook.imagepipeline.cache;
 
+import javax.annotation.Nullable;
+
 /**
  * Configuration for a memory cache.
  */
@@ -19,6 +21,7 @@ public class MemoryCacheParams {
   public final int maxEvictionQueueSize;
   public final int maxEvictionQueueEntries;
   public final int maxCacheEntrySize;
+  @Nullable private final int[] mPartitionBudgets;
 
   /**
    * Pass arguments to control the cache's behavior in the constructor.
@@ -37,10 +40,58 @@ public class MemoryCacheParams {
       int maxEvictionQueueSize,
       int maxEvictionQueueEntries,
       int maxCacheEntrySize) {
+    this(
+        maxCacheSize,
+        maxCacheEntries,
+        maxEvictionQueueSize,
+        maxEvictionQueueEntries,
+        maxCacheEntrySize,
+        null);
+  }
+
+  /**
+   * Pass arguments to control the cache's behavior in the constructor.
+   *
+   * @param maxCacheSize The maximum size of the cache, in bytes.
+   * @param maxCacheEntries The maximum number of items that can live in the cache.
+   * @param maxEvictionQueueSize The eviction queue is an area of memory that stores items ready
+   *                             for eviction but have not yet been deleted. This is the maximum
+   *                             size of that queue in bytes.
+   * @param maxEvictionQueueEntries The maximum number of entries in the eviction queue.
+   * @param maxCacheEntrySize The maximum size of a single cache entry.
+   * @param partitionBudgets The share of the cache, in bytes, reserved for each partition of a
+   *                         cache that uses an entry classifier. A partition can borrow space
+   *                         beyond its budget while other partitions are under-utilized, but
+   *                         partitions over their budget are evicted from first. Null if the
+   *                         cache is not partitioned. The array is copied.
+   */
+  public MemoryCacheParams(
+      int maxCacheSize,
+      int maxCacheEntries,
+      int maxEvictionQueueSize,
+      int maxEvictionQueueEntries,
+      int maxCacheEntrySize,
+      @Nullable int[] partitionBudgets) {
     this.maxCacheSize = maxCacheSize;
     this.maxCacheEntries = maxCacheEntries;
     this.maxEvictionQueueSize = maxEvictionQueueSize;
     this.maxEvictionQueueEntries = maxEvictionQueueEntries;
     this.maxCacheEntrySize = maxCacheEntrySize;
+    mPartitionBudgets = (partitionBudgets == null) ? null : partitionBudgets.clone();
+  }
+
+  /** Whether the partitions of the cache have budgets. */
+  public boolean hasPartitionBudgets() {
+    return mPartitionBudgets != null;
+  }
+
+  /**
+   * Gets the budget of the partition, in bytes.
+   * @return the budget, or {@link Integer#MAX_VALUE} if the partition has no budget
+   */
+  public int getPartitionBudget(int partition) {
+    return (mPartitionBudgets != null && partition >= 0 && partition < mPartitionBudgets.length)
+        ? mPartitionBudgets[partition]
+        : Integer.MAX_VALUE;
   }
 }
@@ -0,0 +1,227 @@
+/*
+ * Copyright (c) 2015-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.imagepipeline.cache;
+
+import javax.annotation.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Matrix;
+import android.media.ExifInterface;
+import android.os.Build;
+
+import com.facebook.binaryresource.BinaryResource;
+import com.facebook.cache.common.WriterCallback;
+import com.facebook.cache.disk.EntryCompactor;
+import com.facebook.common.internal.Preconditions;
+import com.facebook.imageformat.ImageFormat;
+import com.facebook.imageformat.ImageFormatChecker;
+import com.facebook.imageutils.JfifUtil;
+
+/**
+ * {@link EntryCompactor} that re-encodes cold JPEG and PNG entries to WebP where the platform
+ * can encode it, and downscales images larger than the configured maximum dimension.
+ *
+ * <p>Entries that are already WebP, or JPEGs that are within the maximum dimension on platforms
+ * without a WebP encoder, are left alone. That makes compaction idempotent without having to
+ * store any additional metadata: the pipeline detects the image format from the bytes.
+ *
+ * <p>The encoders do not write EXIF data, so JPEGs are rotated according to their EXIF orientation
+ * before they are re-encoded. Mirrored JPEGs are left alone.
+ */
+public class ReencodingEntryCompactor implements EntryCompactor {
+
+  public static final int DEFAULT_QUALITY = 80;
+
+  private final int mMaxDimension;
+  private final int mQuality;
+
+  public ReencodingEntryCompactor(int maxDimension) {
+    this(maxDimension, DEFAULT_QUALITY);
+  }
+
+  /**
+   * @param maxDimension the maximum width or height of compacted images
+   * @param quality the quality hint passed to the encoder, 0-100
+   */
+  public ReencodingEntryCompactor(int maxDimension, int quality) {
+    Preconditions.checkArgument(maxDimension > 0);
+    Preconditions.checkArgument(quality >= 0 && quality <= 100);
+    mMaxDimension = maxDimension;
+    mQuality = quality;
+  }
+
+  @Override
+  @Nullable
+  public WriterCallback getCompactingWriter(final BinaryResource resource) throws IOException {
+    final ImageFormat imageFormat = getImageFormat(resource);
+    final Bitmap.CompressFormat compressFormat = getCompressFormat(imageFormat);
+    if (compressFormat == null) {
+      return null;
+    }
+    final int rotationAngle;
+    if (imageFormat == ImageFormat.JPEG) {
+      int orientation = getOrientation(resource);
+      if (!isRotationOnly(orientation)) {
+        return null;
+      }
+      rotationAngle =
+          orientation == 0 ? 0 : JfifUtil.getAutoRotateAngleFromOrientation(orientation);
+    } else {
+      rotationAngle = 0;
+    }
+    final BitmapFactory.Options boundsOptions = new BitmapFactory.Options();
+    boundsOptions.inJustDecodeBounds = true;
+    decode(resource, boundsOptions);
+    final int width = boundsOptions.outWidth;
+    final int height = boundsOptions.outHeight;
+    if (width <= 0 || height <= 0) {
+      return null;
+    }
+    final boolean needsDownscale = Math.max(width, height) > mMaxDimension;
+    if (!needsDownscale && compressFormat == Bitmap.CompressFormat.JPEG) {
+      // re-encoding a JPEG to JPEG at the same size gains nothing
+      return null;
+    }
+    return new WriterCallback() {
+      @Override
+      public void write(OutputStream os) throws IOException {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = getSampleSize(width, height);
+        Bitmap bitmap = decode(resource, options);
+        if (bitmap == null) {
+          throw new IOException("Failed to decode cache entry");
+        }
+        try {
+          bitmap = scaleToMaxDimension(bitmap);
+          bitmap = rotate(bitmap, rotationAngle);
+          if (!bitmap.compress(compressFormat, mQuality, os)) {
+            throw new IOException("Failed to encode cache entry");
+          }
+        } finally {
+          bitmap.recycle();
+        }
+      }
+    };
+  }
+
+  @Nullable
+  private static Bitmap.CompressFormat getCompressFormat(ImageFormat imageFormat) {
+    if (imageFormat != ImageFormat.JPEG && imageFormat != ImageFormat.PNG) {
+      return null;
+    }
+    // WebP encoding with an alpha channel is supported only from JB MR2
+    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2 ||
+        (imageFormat == ImageFormat.JPEG &&
+            Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH)) {
+      return Bitmap.CompressFormat.WEBP;
+    }
+    return imageFormat == ImageFormat.JPEG ? Bitmap.CompressFormat.JPEG : null;
+  }
+
+  /**
+   * @return the largest power of two sample size that keeps the image at least as big as the
+   * maximum dimension
+   */
+  private int getSampleSize(int width, int height) {
+    int maxSide = Math.max(width, height);
+    int sampleSize = 1;
+    while (maxSide / (sampleSize * 2) >= mMaxDimension) {
+      sampleSize *= 2;
+    }
+    return sampleSize;
+  }
+
+  private Bitmap scaleToMaxDimension(Bitmap bitmap) {
+    int maxSide = Math.max(bitmap.getWidth(), bitmap.getHeight());
+    if (maxSide <= mMaxDimension) {
+      return bitmap;
+    }
+    float scale = (float) mMaxDimension / maxSide;
+    Bitmap scaled = Bitmap.createScaledBitmap(
+        bitmap,
+        Math.max(1, Math.round(bitmap.getWidth() * scale)),
+        Math.max(1, Math.round(bitmap.getHeight() * scale)),
+        true);
+    if (scaled != bitmap) {
+      bitmap.recycle();
+    }
+    return scaled;
+  }
+
+  private static Bitmap rotate(Bitmap bitmap, int rotationAngle) {
+    if (rotationAngle == 0) {
+      return bitmap;
+    }
+    Matrix matrix = new Matrix();
+    matrix.setRotate(rotationAngle);
+    Bitmap rotated = Bitmap.createBitmap(
+        bitmap,
+        0,
+        0,
+        bitmap.getWidth(),
+        bitmap.getHeight(),
+        matrix,
+        true);
+    if (rotated != bitmap) {
+      bitmap.recycle();
+    }
+    return rotated;
+  }
+
+  /**
+   * @return whether the EXIF orientation is unknown or can be applied by rotating the image
+   */
+  private static boolean isRotationOnly(int orientation) {
+    switch (orientation) {
+      case 0:
+      case ExifInterface.ORIENTATION_NORMAL:
+      case ExifInterface.ORIENTATION_ROTATE_90:
+      case ExifInterface.ORIENTATION_ROTATE_180:
+      case ExifInterface.ORIENTATION_ROTATE_270:
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  private static int getOrientation(BinaryResource resource) throws IOException {
+    InputStream is = resource.openStream();
+    try {
+      return JfifUtil.getOrientation(is);
+    } finally {
+      is.close();
+    }
+  }
+
+  private static ImageFormat getImageFormat(BinaryResource resource) throws IOException {
+    InputStream is = resource.openStream();
+    try {
+      return ImageFormatChecker.getImageFormat(is);
+    } finally {
+      is.close();
+    }
+  }
+
+  @Nullable
+  private static Bitmap decode(BinaryResource resource, BitmapFactory.Options options)
+      throws IOException {
+    InputStream is = resource.openStream();
+    try {
+      return BitmapFactory.decodeStream(is, null, options);
+    } finally {
+      is.close();
+    }
+  }
+}
@@ -53,6 +53,13 @@ public class ImageDecodeOptions {
    */
   public final boolean decodeAllFrames;
 
+  /**
+   * Whether to decode the frames of network GIFs and animated WebPs received so far as
+   * intermediate results. Every intermediate result holds all of the frames received so far, and
+   * gets decoded once the number of complete frames has doubled since the previous one.
+   */
+  public final boolean decodeProgressiveAnimations;
+
   ImageDecodeOptions(ImageDecodeOptionsBuilder b) {
     this.minDecodeIntervalMs = b.getMinDecodeIntervalMs();
     this.backgroundColor = b.getBackgroundColor();
@@ -60,6 +67,7 @@ public class ImageDecodeOptions {
     this.decodePreviewFrame = b.getDecodePreviewFrame();
     this.useLastFrameForPreview = b.getUseLastFrameForPreview();
     this.decodeAllFrames = b.getDecodeAllFrames();
+    this.decodeProgressiveAnimations = b.getDecodeProgressiveAnimations();
   }
 
   /**
@@ -92,6 +100,7 @@ public class ImageDecodeOptions {
     if (decodePreviewFrame != that.decodePreviewFrame) return false;
     if (useLastFrameForPreview != that.useLastFrameForPreview) return false;
     if (decodeAllFrames != that.decodeAllFrames) return false;
+    if (decodeProgressiveAnimations != that.decodeProgressiveAnimations) return false;
 
     return true;
   }
@@ -107,12 +116,13 @@ public class ImageDecodeOptions {
   public String toString() {
     return String.format(
         (Locale) null,
-        "%d-%d-%b-%b-%b-%b",
+        "%d-%d-%b-%b-%b-%b-%b",
         minDecodeIntervalMs,
         backgroundColor,
         forceOldAnimationCode,
         decodePreviewFrame,
         useLastFrameForPreview,
-        decodeAllFrames);
+        decodeAllFrames,
+        decodeProgressiveAnimations);
   }
 }
@@ -22,6 +22,7 @@ public class ImageDecodeOptionsBuilder {
   private boolean mDecodePreviewFrame;
   private boolean mUseLastFrameForPreview;
   private boolean mDecodeAllFrames;
+  private boolean mDecodeProgressiveAnimations;
 
   ImageDecodeOptionsBuilder() {
   }
@@ -38,6 +39,7 @@ public class ImageDecodeOptionsBuilder {
     mDecodePreviewFrame = options.decodePreviewFrame;
     mUseLastFrameForPreview = options.useLastFrameForPreview;
     mDecodeAllFrames = options.decodeAllFrames;
+    mDecodeProgressiveAnimations = options.decodeProgressiveAnimations;
     return this;
   }
 
@@ -172,6 +174,29 @@ public class ImageDecodeOptionsBuilder {
     return this;
   }
 
+  /**
+   * Gets whether to decode the frames of network GIFs and animated WebPs received so far as
+   * intermediate results, before the whole image has been downloaded.
+   *
+   * @return whether to decode animations progressively
+   */
+  public boolean getDecodeProgressiveAnimations() {
+    return mDecodeProgressiveAnimations;
+  }
+
+  /**
+   * Sets whether to decode the frames of network GIFs and animated WebPs received so far as
+   * intermediate results, before the whole image has been downloaded.
+   *
+   * @param decodeProgressiveAnimations whether to decode animations progressively
+   * @return this builder
+   */
+  public ImageDecodeOptionsBuilder setDecodeProgressiveAnimations(
+      boolean decodeProgressiveAnimations) {
+    mDecodeProgressiveAnimations = decodeProgressiveAnimations;
+    return this;
+  }
+
   /**
    * Builds the immutable {@link ImageDecodeOptions} instance.
    *
@@ -27,6 +27,7 @@ import com.facebook.common.util.UriUtil;
 import com.facebook.datasource.DataSource;
 import com.facebook.datasource.DataSources;
 import com.facebook.datasource.SimpleDataSource;
+import com.facebook.imagepipeline.cache.AnimatedFrameCacheKey;
 import com.facebook.imagepipeline.cache.BitmapMemoryCacheKey;
 import com.facebook.imagepipeline.cache.BufferedDiskCache;
 import com.facebook.imagepipeline.cache.MemoryCache;
@@ -249,6 +250,23 @@ public class ImagePipeline {
   public DataSource<Void> prefetchToBitmapCache(
       ImageRequest imageRequest,
       Object callerContext) {
+    return prefetchToBitmapCache(imageRequest, callerContext, Priority.LOW);
+  }
+
+  /**
+   * Submits a request for prefetching to the bitmap cache with the given priority.
+   *
+   * <p> Prefetches are multiplexed with other requests for the same image, so submitting the
+   * same prefetch again with a higher priority and closing the old data source promotes a
+   * prefetch that is in flight.
+   * @param imageRequest the request to submit
+   * @param priority the priority of the prefetch
+   * @return a DataSource that can safely be ignored.
+   */
+  public DataSource<Void> prefetchToBitmapCache(
+      ImageRequest imageRequest,
+      Object callerContext,
+      Priority priority) {
     if (!mIsPrefetchEnabledSupplier.get()) {
       return DataSources.immediateFailedDataSource(PREFETCH_EXCEPTION);
     }
@@ -259,7 +277,8 @@ public class ImagePipeline {
           producerSequence,
           imageRequest,
           ImageRequest.RequestLevel.FULL_FETCH,
-          callerContext);
+          callerContext,
+          priority);
     } catch (Exception exception) {
       return DataSources.immediateFailedDataSource(exception);
     }
@@ -273,6 +292,23 @@ public class ImagePipeline {
   public DataSource<Void> prefetchToDiskCache(
       ImageRequest imageRequest,
       Object callerContext) {
+    return prefetchToDiskCache(imageRequest, callerContext, Priority.LOW);
+  }
+
+  /**
+   * Submits a request for prefetching to the disk cache with the given priority.
+   *
+   * <p> Prefetches are multiplexed with other requests for the same image, so submitting the
+   * same prefetch again with a higher priority and closing the old data source promotes a
+   * prefetch that is in flight.
+   * @param imageRequest the request to submit
+   * @param priority the priority of the prefetch
+   * @return a DataSource that can safely be ignored.
+   */
+  public DataSource<Void> prefetchToDiskCache(
+      ImageRequest imageRequest,
+      Object callerContext,
+      Priority priority) {
     if (!mIsPrefetchEnabledSupplier.get()) {
       return DataSources.immediateFailedDataSource(PREFETCH_EXCEPTION);
     }
@@ -283,7 +319,8 @@ public class ImagePipeline {
           producerSequence,
           imageRequest,
           ImageRequest.RequestLevel.FULL_FETCH,
-          callerContext);
+          callerContext,
+          priority);
     } catch (Exception exception) {
       return DataSources.immediateFailedDataSource(exception);
     }
@@ -364,6 +401,17 @@ public class ImagePipeline {
     mSmallImageBufferedDiskCache.clearAll();
   }
 
+  /**
+   * Compacts cold entries of the disk caches in the background.
+   *
+   * <p>This is a no-op for caches configured without an
+   * {@link com.facebook.cache.disk.EntryCompactor}.
+   */
+  public void compactDiskCaches() {
+    mMainBufferedDiskCache.compactColdEntries();
+    mSmallImageBufferedDiskCache.compactColdEntries();
+  }
+
   /**
    * Clear all the caches (memory and disk)
    */
@@ -390,7 +438,9 @@ public class ImagePipeline {
    * @return true if the image was found in the bitmap memory cache, false otherwise.
    */
   public boolean isInBitmapMemoryCache(final ImageRequest imageRequest) {
-    final CacheKey cacheKey = mCacheKeyFactory.getBitmapCacheKey(imageRequest);
+    final CacheKey cacheKey = AnimatedFrameCacheKey.forRequest(
+        mCacheKeyFactory.getBitmapCacheKey(imageRequest),
+        imageRequest);
     CloseableReference<CloseableImage> ref = mBitmapMemoryCache.get(cacheKey);
     try {
       return CloseableReference.isValid(ref);
@@ -477,7 +527,8 @@ public class ImagePipeline {
       Producer<Void> producerSequence,
       ImageRequest imageRequest,
       ImageRequest.RequestLevel lowestPermittedRequestLevelOnSubmit,
-      Object callerContext) {
+      Object callerContext,
+      Priority priority) {
     try {
       ImageRequest.RequestLevel lowestPermittedRequestLevel =
           ImageRequest.RequestLevel.getMax(
@@ -491,7 +542,7 @@ public class ImagePipeline {
           lowestPermittedRequestLevel,
         /* isPrefetch */ true,
         /* isIntermediateResultExpected */ false,
-          Priority.LOW);
+          priority);
       return ProducerToDataSourceAdapter.create(
           producerSequence,
           settableProducerContext,
@@ -525,4 +576,8 @@ public class ImagePipeline {
   public boolean isPaused() {
     return mThreadHandoffProducerQueue.isQueueing();
   }
+
+  public CacheKeyFactory getCacheKeyFactory() {
+    return mCacheKeyFactory;
+  }
 }
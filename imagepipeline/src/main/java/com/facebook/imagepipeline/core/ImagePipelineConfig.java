@@ -20,6 +20,7 @@ import android.app.ActivityManager;
 import android.content.Context;
 import android.graphics.Bitmap;
 
+import com.facebook.cache.common.CacheKey;
 import com.facebook.cache.disk.DefaultEntryEvictionComparatorSupplier;
 import com.facebook.cache.disk.DiskCacheConfig;
 import com.facebook.common.internal.Preconditions;
@@ -31,6 +32,7 @@ import com.facebook.imagepipeline.animated.factory.AnimatedImageFactory;
 import com.facebook.imagepipeline.bitmaps.PlatformBitmapFactory;
 import com.facebook.imagepipeline.cache.DefaultBitmapMemoryCacheParamsSupplier;
 import com.facebook.imagepipeline.cache.CacheKeyFactory;
+import com.facebook.imagepipeline.cache.CountingMemoryCache;
 import com.facebook.imagepipeline.cache.DefaultCacheKeyFactory;
 import com.facebook.imagepipeline.cache.DefaultEncodedMemoryCacheParamsSupplier;
 import com.facebook.imagepipeline.cache.ImageCacheStatsTracker;
@@ -39,6 +41,7 @@ import com.facebook.imagepipeline.cache.NoOpImageCacheStatsTracker;
 import com.facebook.imagepipeline.decoder.ProgressiveJpegConfig;
 import com.facebook.imagepipeline.decoder.ImageDecoder;
 import com.facebook.imagepipeline.decoder.SimpleProgressiveJpegConfig;
+import com.facebook.imagepipeline.image.CloseableImage;
 import com.facebook.imagepipeline.memory.PoolConfig;
 import com.facebook.imagepipeline.memory.PoolFactory;
 import com.facebook.imagepipeline.listener.RequestListener;
@@ -69,6 +72,9 @@ public class ImagePipelineConfig {
   // There are a lot of parameters in this class. Please follow strict alphabetical order.
   @Nullable private final AnimatedImageFactory mAnimatedImageFactory;
   private final Bitmap.Config mBitmapConfig;
+  private final int mBitmapMemoryCacheDemotionBudget;
+  @Nullable private final CountingMemoryCache.EntryClassifier<CacheKey, CloseableImage>
+      mBitmapMemoryCacheEntryClassifier;
   private final Supplier<MemoryCacheParams> mBitmapMemoryCacheParamsSupplier;
   private final CacheKeyFactory mCacheKeyFactory;
   private final Context mContext;
@@ -93,6 +99,8 @@ public class ImagePipelineConfig {
 
   private ImagePipelineConfig(Builder builder) {
     mAnimatedImageFactory = builder.mAnimatedImageFactory;
+    mBitmapMemoryCacheDemotionBudget = builder.mBitmapMemoryCacheDemotionBudget;
+    mBitmapMemoryCacheEntryClassifier = builder.mBitmapMemoryCacheEntryClassifier;
     mBitmapMemoryCacheParamsSupplier =
         builder.mBitmapMemoryCacheParamsSupplier == null ?
             new DefaultBitmapMemoryCacheParamsSupplier(
@@ -181,6 +189,16 @@ public class ImagePipelineConfig {
     return mBitmapConfig;
   }
 
+  public int getBitmapMemoryCacheDemotionBudget() {
+    return mBitmapMemoryCacheDemotionBudget;
+  }
+
+  @Nullable
+  public CountingMemoryCache.EntryClassifier<CacheKey, CloseableImage>
+      getBitmapMemoryCacheEntryClassifier() {
+    return mBitmapMemoryCacheEntryClassifier;
+  }
+
   public Supplier<MemoryCacheParams> getBitmapMemoryCacheParamsSupplier() {
     return mBitmapMemoryCacheParamsSupplier;
   }
@@ -275,6 +293,9 @@ public class ImagePipelineConfig {
 
     private AnimatedImageFactory mAnimatedImageFactory;
     private Bitmap.Config mBitmapConfig;
+    private int mBitmapMemoryCacheDemotionBudget = 0;
+    private CountingMemoryCache.EntryClassifier<CacheKey, CloseableImage>
+        mBitmapMemoryCacheEntryClassifier;
     private Supplier<MemoryCacheParams> mBitmapMemoryCacheParamsSupplier;
     private CacheKeyFactory mCacheKeyFactory;
     private final Context mContext;
@@ -312,6 +333,27 @@ public class ImagePipelineConfig {
       return this;
     }
 
+    /**
+     * Enables demotion of bitmaps evicted from the bitmap memory cache into the encoded memory
+     * cache, keeping the demoted entries within the given budget in bytes. 0 disables demotion.
+     */
+    public Builder setBitmapMemoryCacheDemotionBudget(int bitmapMemoryCacheDemotionBudget) {
+      mBitmapMemoryCacheDemotionBudget = bitmapMemoryCacheDemotionBudget;
+      return this;
+    }
+
+    /**
+     * Partitions the bitmap memory cache with the given classifier, e.g.
+     * {@link com.facebook.imagepipeline.cache.BitmapSizeClassEntryClassifier}. The budget of each
+     * partition is taken from {@link MemoryCacheParams#getPartitionBudget}.
+     */
+    public Builder setBitmapMemoryCacheEntryClassifier(
+        CountingMemoryCache.EntryClassifier<CacheKey, CloseableImage>
+            bitmapMemoryCacheEntryClassifier) {
+      mBitmapMemoryCacheEntryClassifier = bitmapMemoryCacheEntryClassifier;
+      return this;
+    }
+
     public Builder setBitmapMemoryCacheParamsSupplier(
         Supplier<MemoryCacheParams> bitmapMemoryCacheParamsSupplier) {
       mBitmapMemoryCacheParamsSupplier =
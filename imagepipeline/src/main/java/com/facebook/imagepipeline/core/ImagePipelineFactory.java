@@ -9,8 +9,10 @@
 
 package com.facebook.imagepipeline.core;
 
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.NotThreadSafe;
 
+import java.util.concurrent.Executor;
 import java.util.concurrent.ScheduledExecutorService;
 
 import android.app.ActivityManager;
@@ -38,6 +40,7 @@ import com.facebook.imagepipeline.animated.impl.AnimatedDrawableBackendImpl;
 import com.facebook.imagepipeline.animated.impl.AnimatedDrawableBackendProvider;
 import com.facebook.imagepipeline.animated.impl.AnimatedDrawableCachingBackendImpl;
 import com.facebook.imagepipeline.animated.impl.AnimatedDrawableCachingBackendImplProvider;
+import com.facebook.imagepipeline.animated.impl.AnimatedFrameBudget;
 import com.facebook.imagepipeline.animated.util.AnimatedDrawableUtil;
 import com.facebook.imagepipeline.bitmaps.ArtBitmapFactory;
 import com.facebook.imagepipeline.bitmaps.EmptyJpegGenerator;
@@ -45,6 +48,7 @@ import com.facebook.imagepipeline.bitmaps.GingerbreadBitmapFactory;
 import com.facebook.imagepipeline.bitmaps.HoneycombBitmapFactory;
 import com.facebook.imagepipeline.bitmaps.PlatformBitmapFactory;
 import com.facebook.imagepipeline.cache.BitmapCountingMemoryCacheFactory;
+import com.facebook.imagepipeline.cache.BitmapMemoryCacheDemoter;
 import com.facebook.imagepipeline.cache.BitmapMemoryCacheFactory;
 import com.facebook.imagepipeline.cache.BufferedDiskCache;
 import com.facebook.imagepipeline.cache.CountingMemoryCache;
@@ -105,9 +109,11 @@ public class ImagePipelineFactory {
   private AnimatedDrawableBackendProvider mAnimatedDrawableBackendProvider;
   private AnimatedDrawableUtil mAnimatedDrawableUtil;
   private AnimatedDrawableFactory mAnimatedDrawableFactory;
+  private AnimatedFrameBudget mAnimatedFrameBudget;
   private AnimatedImageFactory mAnimatedImageFactory;
   private CountingMemoryCache<CacheKey, CloseableImage>
       mBitmapCountingMemoryCache;
+  private BitmapMemoryCacheDemoter mBitmapMemoryCacheDemoter;
   private MemoryCache<CacheKey, CloseableImage> mBitmapMemoryCache;
   private CountingMemoryCache<CacheKey, PooledByteBuffer> mEncodedCountingMemoryCache;
   private MemoryCache<CacheKey, PooledByteBuffer> mEncodedMemoryCache;
@@ -129,6 +135,10 @@ public class ImagePipelineFactory {
         config.getExecutorSupplier().forLightweightBackgroundTasks());
   }
 
+  public ExecutorSupplier getExecutorSupplier() {
+    return mConfig.getExecutorSupplier();
+  }
+
   public static AnimatedDrawableFactory buildAnimatedDrawableFactory(
       final SerialExecutorService serialExecutorService,
       final ActivityManager activityManager,
@@ -137,19 +147,48 @@ public class ImagePipelineFactory {
       ScheduledExecutorService scheduledExecutorService,
       final MonotonicClock monotonicClock,
       Resources resources) {
+    return buildAnimatedDrawableFactory(
+        serialExecutorService,
+        activityManager,
+        animatedDrawableUtil,
+        animatedDrawableBackendProvider,
+        scheduledExecutorService,
+        monotonicClock,
+        resources,
+        null,
+        null,
+        null);
+  }
+
+  public static AnimatedDrawableFactory buildAnimatedDrawableFactory(
+      final SerialExecutorService serialExecutorService,
+      final ActivityManager activityManager,
+      final AnimatedDrawableUtil animatedDrawableUtil,
+      AnimatedDrawableBackendProvider animatedDrawableBackendProvider,
+      ScheduledExecutorService scheduledExecutorService,
+      final MonotonicClock monotonicClock,
+      Resources resources,
+      @Nullable final AnimatedFrameBudget animatedFrameBudget,
+      @Nullable final CountingMemoryCache<CacheKey, CloseableImage> frameMemoryCache,
+      @Nullable final Executor keyFrameExecutor) {
     AnimatedDrawableCachingBackendImplProvider animatedDrawableCachingBackendImplProvider =
         new AnimatedDrawableCachingBackendImplProvider() {
           @Override
           public AnimatedDrawableCachingBackendImpl get(
               AnimatedDrawableBackend animatedDrawableBackend,
-              AnimatedDrawableOptions options) {
+              AnimatedDrawableOptions options,
+              @Nullable CacheKey imageCacheKey) {
             return new AnimatedDrawableCachingBackendImpl(
                 serialExecutorService,
                 activityManager,
                 animatedDrawableUtil,
                 monotonicClock,
                 animatedDrawableBackend,
-                options);
+                options,
+                animatedFrameBudget,
+                frameMemoryCache,
+                keyFrameExecutor,
+                imageCacheKey);
           }
         };
 
@@ -190,11 +229,27 @@ public class ImagePipelineFactory {
           getAnimatedDrawableBackendProvider(),
           UiThreadImmediateExecutorService.getInstance(),
           RealtimeSinceBootClock.get(),
-          mConfig.getContext().getResources());
+          mConfig.getContext().getResources(),
+          getAnimatedFrameBudget(),
+          getBitmapCountingMemoryCache(),
+          mConfig.getExecutorSupplier().forDecode());
     }
     return mAnimatedDrawableFactory;
   }
 
+  /**
+   * Gets the memory budget shared by the frames of all animated drawables.
+   */
+  public AnimatedFrameBudget getAnimatedFrameBudget() {
+    if (mAnimatedFrameBudget == null) {
+      ActivityManager activityManager =
+          (ActivityManager) mConfig.getContext().getSystemService(Context.ACTIVITY_SERVICE);
+      mAnimatedFrameBudget =
+          new AnimatedFrameBudget(AnimatedFrameBudget.getDefaultMaxBytes(activityManager));
+    }
+    return mAnimatedFrameBudget;
+  }
+
   // We need some of these methods public for now so internal code can use them.
 
   private AnimatedDrawableUtil getAnimatedDrawableUtil() {
@@ -236,11 +291,30 @@ public class ImagePipelineFactory {
       mBitmapCountingMemoryCache =
           BitmapCountingMemoryCacheFactory.get(
               mConfig.getBitmapMemoryCacheParamsSupplier(),
-              mConfig.getMemoryTrimmableRegistry());
+              mConfig.getMemoryTrimmableRegistry(),
+              getBitmapMemoryCacheDemoter(),
+              mConfig.getBitmapMemoryCacheEntryClassifier());
     }
     return mBitmapCountingMemoryCache;
   }
 
+  /**
+   * Returns the demoter of evicted bitmaps, or null if demotion is disabled.
+   */
+  @Nullable
+  public BitmapMemoryCacheDemoter getBitmapMemoryCacheDemoter() {
+    if (mBitmapMemoryCacheDemoter == null && mConfig.getBitmapMemoryCacheDemotionBudget() > 0) {
+      mBitmapMemoryCacheDemoter =
+          new BitmapMemoryCacheDemoter(
+              getEncodedCountingMemoryCache(),
+              mConfig.getPoolFactory().getPooledByteBufferFactory(),
+              mConfig.getCacheKeyFactory(),
+              mConfig.getExecutorSupplier().forBackgroundTasks(),
+              mConfig.getBitmapMemoryCacheDemotionBudget());
+    }
+    return mBitmapMemoryCacheDemoter;
+  }
+
   public MemoryCache<CacheKey, CloseableImage> getBitmapMemoryCache() {
     if (mBitmapMemoryCache == null) {
       mBitmapMemoryCache =
@@ -267,6 +341,9 @@ public class ImagePipelineFactory {
           EncodedMemoryCacheFactory.get(
               getEncodedCountingMemoryCache(),
               mConfig.getImageCacheStatsTracker());
+      if (getBitmapMemoryCacheDemoter() != null) {
+        mEncodedMemoryCache = getBitmapMemoryCacheDemoter().trackDemotionHits(mEncodedMemoryCache);
+      }
     }
     return mEncodedMemoryCache;
   }
@@ -407,6 +484,7 @@ public class ImagePipelineFactory {
               getSmallImageBufferedDiskCache(),
               mConfig.getCacheKeyFactory(),
               getPlatformBitmapFactory(),
+              getAnimatedDrawableBackendProvider(),
               mConfig.isDecodeFileDescriptorEnabled());
     }
     return mProducerFactory;
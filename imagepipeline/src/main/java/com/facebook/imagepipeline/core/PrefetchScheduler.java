@@ -0,0 +1,412 @@
+/*
+ * Copyright (c) 2015-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.imagepipeline.core;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import com.facebook.common.executors.CallerThreadExecutor;
+import com.facebook.common.internal.Preconditions;
+import com.facebook.datasource.BaseDataSubscriber;
+import com.facebook.datasource.DataSource;
+import com.facebook.imagepipeline.common.Priority;
+import com.facebook.imagepipeline.request.ImageRequest;
+
+/**
+ * Prefetches the images of the items about to scroll into the viewport of a list.
+ *
+ * <p> The list reports its viewport and scroll velocity with {@link #onViewportChanged}. The
+ * scheduler then prefetches the next items in the scroll direction to the bitmap cache, the closer
+ * half with {@link Priority#MEDIUM} and the rest with {@link Priority#LOW}. The faster the list
+ * scrolls, the further ahead it prefetches.
+ *
+ * <p> When an item gets attached, e.g. when the controller of its {@code DraweeHolder} gets
+ * attached, {@link #onItemAttached} gets called and the prefetch of the item, if still in flight,
+ * is promoted to {@link Priority#HIGH}. Prefetches of items that fall behind the viewport without
+ * being attached are cancelled. With Drawee, a {@code PrefetchItemAttachListener} set on the
+ * holder or view of each item makes these calls; the list only keeps its position up to date.
+ *
+ * <p> At most {@code maxConcurrentPrefetches} prefetches are in flight at once, so that they
+ * cannot starve the requests of the visible items.
+ */
+@ThreadSafe
+public class PrefetchScheduler {
+
+  public static final int DEFAULT_MAX_CONCURRENT_PREFETCHES = 3;
+  public static final int DEFAULT_MIN_PREFETCH_DISTANCE = 4;
+  public static final int DEFAULT_MAX_PREFETCH_DISTANCE = 20;
+  // How far ahead, in time, the items are prefetched.
+  private static final float LOOKAHEAD_SECONDS = 1f;
+
+  /**
+   * Provides the image requests of the items of the list.
+   */
+  public interface ItemImageRequestProvider {
+
+    /** Gets the number of items in the list. */
+    int getItemCount();
+
+    /** Gets the image request of the item at the given position, null if it has no image. */
+    @Nullable
+    ImageRequest getImageRequest(int position);
+  }
+
+  private static class Prefetch {
+    final int position;
+    final ImageRequest imageRequest;
+    Priority priority;
+    boolean isSubmitted;
+    // null until the pipeline returns the data source of the submitted prefetch
+    @Nullable DataSource<Void> dataSource;
+    boolean isFinished;
+    boolean isAttached;
+
+    Prefetch(int position, ImageRequest imageRequest, Priority priority) {
+      this.position = position;
+      this.imageRequest = imageRequest;
+      this.priority = priority;
+    }
+
+    boolean isInFlight() {
+      return isSubmitted && !isFinished;
+    }
+  }
+
+  private final ImagePipeline mImagePipeline;
+  private final ItemImageRequestProvider mItemImageRequestProvider;
+  private final Object mCallerContext;
+  private final int mMaxConcurrentPrefetches;
+  private final int mMinPrefetchDistance;
+  private final int mMaxPrefetchDistance;
+
+  // Prefetches by item position.
+  @GuardedBy("this")
+  private final Map<Integer, Prefetch> mPrefetches = new HashMap<>();
+  @GuardedBy("this")
+  private int mFirstVisiblePosition;
+  @GuardedBy("this")
+  private int mLastVisiblePosition = -1;
+
+  @GuardedBy("this")
+  private int mIssuedCount;
+  @GuardedBy("this")
+  private int mHitCount;
+  @GuardedBy("this")
+  private int mCancelledCount;
+  @GuardedBy("this")
+  private int mWastedCount;
+
+  public PrefetchScheduler(
+      ImagePipeline imagePipeline,
+      ItemImageRequestProvider itemImageRequestProvider,
+      Object callerContext) {
+    this(
+        imagePipeline,
+        itemImageRequestProvider,
+        callerContext,
+        DEFAULT_MAX_CONCURRENT_PREFETCHES,
+        DEFAULT_MIN_PREFETCH_DISTANCE,
+        DEFAULT_MAX_PREFETCH_DISTANCE);
+  }
+
+  /**
+   * @param maxConcurrentPrefetches the maximum number of prefetches in flight at once
+   * @param minPrefetchDistance the number of items prefetched ahead of an idle list
+   * @param maxPrefetchDistance the maximum number of items prefetched ahead of a scrolling list
+   */
+  public PrefetchScheduler(
+      ImagePipeline imagePipeline,
+      ItemImageRequestProvider itemImageRequestProvider,
+      Object callerContext,
+      int maxConcurrentPrefetches,
+      int minPrefetchDistance,
+      int maxPrefetchDistance) {
+    Preconditions.checkArgument(maxConcurrentPrefetches > 0);
+    Preconditions.checkArgument(minPrefetchDistance >= 0);
+    Preconditions.checkArgument(maxPrefetchDistance >= minPrefetchDistance);
+    mImagePipeline = Preconditions.checkNotNull(imagePipeline);
+    mItemImageRequestProvider = Preconditions.checkNotNull(itemImageRequestProvider);
+    mCallerContext = callerContext;
+    mMaxConcurrentPrefetches = maxConcurrentPrefetches;
+    mMinPrefetchDistance = minPrefetchDistance;
+    mMaxPrefetchDistance = maxPrefetchDistance;
+  }
+
+  /**
+   * Updates the prefetches for the new viewport.
+   *
+   * @param firstVisiblePosition the position of the first visible item
+   * @param lastVisiblePosition the position of the last visible item
+   * @param itemsPerSecond the scroll velocity, positive when scrolling towards the end of the
+   *     list and negative when scrolling towards its start
+   */
+  public void onViewportChanged(
+      int firstVisiblePosition,
+      int lastVisiblePosition,
+      float itemsPerSecond) {
+    final List<DataSource<Void>> dataSourcesToClose = new ArrayList<>();
+    synchronized (this) {
+      mFirstVisiblePosition = firstVisiblePosition;
+      mLastVisiblePosition = lastVisiblePosition;
+      final boolean isScrollingForward = itemsPerSecond >= 0;
+      final int distance = Math.min(
+          mMaxPrefetchDistance,
+          mMinPrefetchDistance + (int) (Math.abs(itemsPerSecond) * LOOKAHEAD_SECONDS));
+      final int windowStart =
+          isScrollingForward ? lastVisiblePosition + 1 : firstVisiblePosition - distance;
+      final int windowEnd =
+          isScrollingForward ? lastVisiblePosition + distance : firstVisiblePosition - 1;
+
+      // drop the prefetches outside of both the viewport and the prefetch window
+      Iterator<Map.Entry<Integer, Prefetch>> iterator = mPrefetches.entrySet().iterator();
+      while (iterator.hasNext()) {
+        Map.Entry<Integer, Prefetch> entry = iterator.next();
+        int position = entry.getKey();
+        boolean isInViewport = position >= firstVisiblePosition && position <= lastVisiblePosition;
+        boolean isInWindow = position >= windowStart && position <= windowEnd;
+        if (!isInViewport && !isInWindow) {
+          dropPrefetch(entry.getValue(), dataSourcesToClose);
+          iterator.remove();
+        }
+      }
+
+      final int itemCount = mItemImageRequestProvider.getItemCount();
+      for (int i = 0; i < distance; i++) {
+        int position = isScrollingForward ? windowStart + i : windowEnd - i;
+        if (position < 0 || position >= itemCount) {
+          continue;
+        }
+        Priority priority = (i < (distance + 1) / 2) ? Priority.MEDIUM : Priority.LOW;
+        Prefetch prefetch = mPrefetches.get(position);
+        if (prefetch != null) {
+          if (!prefetch.isSubmitted) {
+            prefetch.priority = priority;
+          }
+          continue;
+        }
+        ImageRequest imageRequest = mItemImageRequestProvider.getImageRequest(position);
+        if (imageRequest != null) {
+          mPrefetches.put(position, new Prefetch(position, imageRequest, priority));
+        }
+      }
+    }
+    closeDataSources(dataSourcesToClose);
+    submitPrefetches();
+  }
+
+  /**
+   * Called when the item at the given position gets attached, e.g. when its
+   * {@code DraweeHolder} is attached.
+   */
+  public void onItemAttached(int position) {
+    final Prefetch prefetchToPromote;
+    final DataSource<Void> dataSourceToClose;
+    synchronized (this) {
+      Prefetch prefetch = mPrefetches.get(position);
+      if (prefetch == null || prefetch.isAttached) {
+        return;
+      }
+      if (!prefetch.isSubmitted) {
+        // the request of the item takes over
+        mPrefetches.remove(position);
+        return;
+      }
+      prefetch.isAttached = true;
+      mHitCount++;
+      // a prefetch whose data source is not back from the pipeline yet keeps its priority
+      if (!prefetch.isInFlight() ||
+          prefetch.dataSource == null ||
+          prefetch.priority == Priority.HIGH) {
+        return;
+      }
+      prefetchToPromote = prefetch;
+      dataSourceToClose = prefetch.dataSource;
+      prefetch.priority = Priority.HIGH;
+      prefetch.dataSource = null;
+    }
+    submit(prefetchToPromote, Priority.HIGH);
+    // closing the old data source after submitting the new one keeps the fetch going
+    dataSourceToClose.close();
+  }
+
+  /** Called when the item at the given position gets detached. */
+  public void onItemDetached(int position) {
+    DataSource<Void> dataSourceToClose = null;
+    synchronized (this) {
+      Prefetch prefetch = mPrefetches.get(position);
+      if (prefetch != null && prefetch.isAttached) {
+        mPrefetches.remove(position);
+        dataSourceToClose = prefetch.dataSource;
+      }
+    }
+    if (dataSourceToClose != null) {
+      dataSourceToClose.close();
+    }
+    submitPrefetches();
+  }
+
+  /** Cancels all the prefetches. */
+  public void clear() {
+    final List<DataSource<Void>> dataSourcesToClose = new ArrayList<>();
+    synchronized (this) {
+      for (Prefetch prefetch : mPrefetches.values()) {
+        dropPrefetch(prefetch, dataSourcesToClose);
+      }
+      mPrefetches.clear();
+    }
+    closeDataSources(dataSourcesToClose);
+  }
+
+  @GuardedBy("this")
+  private void dropPrefetch(Prefetch prefetch, List<DataSource<Void>> dataSourcesToClose) {
+    if (!prefetch.isAttached) {
+      if (prefetch.isInFlight()) {
+        mCancelledCount++;
+      } else if (prefetch.isFinished) {
+        mWastedCount++;
+      }
+    }
+    if (prefetch.dataSource != null) {
+      dataSourcesToClose.add(prefetch.dataSource);
+    }
+  }
+
+  private static void closeDataSources(List<DataSource<Void>> dataSources) {
+    for (int i = 0; i < dataSources.size(); i++) {
+      dataSources.get(i).close();
+    }
+  }
+
+  /**
+   * Submits the pending prefetches closest to the viewport, within the concurrency budget.
+   *
+   * <p> The prefetches are picked under the lock, but submitted outside of it: a prefetch that
+   * hits the memory cache finishes while being submitted, and calls back into the scheduler.
+   */
+  private void submitPrefetches() {
+    final List<Prefetch> prefetchesToSubmit = new ArrayList<>();
+    final List<Priority> priorities = new ArrayList<>();
+    synchronized (this) {
+      int budget = mMaxConcurrentPrefetches - getInFlightCount();
+      while (prefetchesToSubmit.size() < budget) {
+        Prefetch closestPrefetch = null;
+        int closestDistance = Integer.MAX_VALUE;
+        for (Prefetch prefetch : mPrefetches.values()) {
+          if (!prefetch.isSubmitted && getDistance(prefetch.position) < closestDistance) {
+            closestPrefetch = prefetch;
+            closestDistance = getDistance(prefetch.position);
+          }
+        }
+        if (closestPrefetch == null) {
+          break;
+        }
+        closestPrefetch.isSubmitted = true;
+        prefetchesToSubmit.add(closestPrefetch);
+        priorities.add(closestPrefetch.priority);
+        mIssuedCount++;
+      }
+    }
+    for (int i = 0; i < prefetchesToSubmit.size(); i++) {
+      submit(prefetchesToSubmit.get(i), priorities.get(i));
+    }
+  }
+
+  @GuardedBy("this")
+  private int getInFlightCount() {
+    int inFlightCount = 0;
+    for (Prefetch prefetch : mPrefetches.values()) {
+      if (prefetch.isInFlight()) {
+        inFlightCount++;
+      }
+    }
+    return inFlightCount;
+  }
+
+  @GuardedBy("this")
+  private int getDistance(int position) {
+    if (position < mFirstVisiblePosition) {
+      return mFirstVisiblePosition - position;
+    }
+    return position > mLastVisiblePosition ? position - mLastVisiblePosition : 0;
+  }
+
+  /** Submits the prefetch to the pipeline. Must not be called while holding the lock. */
+  private void submit(final Prefetch prefetch, Priority priority) {
+    final DataSource<Void> dataSource = mImagePipeline.prefetchToBitmapCache(
+        prefetch.imageRequest,
+        mCallerContext,
+        priority);
+    final boolean isDropped;
+    synchronized (this) {
+      // the prefetch may have been dropped in the meantime
+      isDropped = mPrefetches.get(prefetch.position) != prefetch;
+      if (!isDropped) {
+        prefetch.dataSource = dataSource;
+        prefetch.isFinished = false;
+      }
+    }
+    if (isDropped) {
+      dataSource.close();
+      return;
+    }
+    dataSource.subscribe(
+        new BaseDataSubscriber<Void>() {
+          @Override
+          protected void onNewResultImpl(DataSource<Void> dataSource) {
+            if (dataSource.isFinished()) {
+              onPrefetchFinished(prefetch, dataSource);
+            }
+          }
+
+          @Override
+          protected void onFailureImpl(DataSource<Void> dataSource) {
+            onPrefetchFinished(prefetch, dataSource);
+          }
+        },
+        CallerThreadExecutor.getInstance());
+  }
+
+  private void onPrefetchFinished(Prefetch prefetch, DataSource<Void> dataSource) {
+    synchronized (this) {
+      if (mPrefetches.get(prefetch.position) != prefetch || prefetch.dataSource != dataSource) {
+        return;
+      }
+      prefetch.isFinished = true;
+    }
+    submitPrefetches();
+  }
+
+  /** Gets the number of prefetches submitted to the pipeline. */
+  public synchronized int getIssuedCount() {
+    return mIssuedCount;
+  }
+
+  /** Gets the number of prefetched items that got attached. */
+  public synchronized int getHitCount() {
+    return mHitCount;
+  }
+
+  /** Gets the number of prefetches cancelled before they finished. */
+  public synchronized int getCancelledCount() {
+    return mCancelledCount;
+  }
+
+  /** Gets the number of finished prefetches whose items were never attached. */
+  public synchronized int getWastedCount() {
+    return mWastedCount;
+  }
+}
@@ -16,6 +16,7 @@ import android.content.res.Resources;
 
 import com.facebook.cache.common.CacheKey;
 import com.facebook.common.references.CloseableReference;
+import com.facebook.imagepipeline.animated.impl.AnimatedDrawableBackendProvider;
 import com.facebook.imagepipeline.bitmaps.PlatformBitmapFactory;
 import com.facebook.imagepipeline.cache.BufferedDiskCache;
 import com.facebook.imagepipeline.cache.CacheKeyFactory;
@@ -28,6 +29,8 @@ import com.facebook.imagepipeline.memory.ByteArrayPool;
 import com.facebook.imagepipeline.memory.PooledByteBuffer;
 import com.facebook.imagepipeline.memory.PooledByteBufferFactory;
 import com.facebook.imagepipeline.producers.AddImageTransformMetaDataProducer;
+import com.facebook.imagepipeline.producers.AnimatedFrameBitmapMemoryCacheProducer;
+import com.facebook.imagepipeline.producers.AnimatedFrameProducer;
 import com.facebook.imagepipeline.producers.BitmapMemoryCacheGetProducer;
 import com.facebook.imagepipeline.producers.BitmapMemoryCacheKeyMultiplexProducer;
 import com.facebook.imagepipeline.producers.BitmapMemoryCacheProducer;
@@ -84,6 +87,9 @@ public class ProducerFactory {
   // Postproc dependencies
   private final PlatformBitmapFactory mPlatformBitmapFactory;
 
+  // Animated frame dependencies
+  private final AnimatedDrawableBackendProvider mAnimatedDrawableBackendProvider;
+
   public ProducerFactory(
       Context context,
       ByteArrayPool byteArrayPool,
@@ -99,6 +105,7 @@ public class ProducerFactory {
       BufferedDiskCache smallImageBufferedDiskCache,
       CacheKeyFactory cacheKeyFactory,
       PlatformBitmapFactory platformBitmapFactory,
+      AnimatedDrawableBackendProvider animatedDrawableBackendProvider,
       boolean decodeFileDescriptorEnabled) {
     mContentResolver = context.getApplicationContext().getContentResolver();
     mResources = context.getApplicationContext().getResources();
@@ -121,6 +128,8 @@ public class ProducerFactory {
 
     mPlatformBitmapFactory = platformBitmapFactory;
 
+    mAnimatedDrawableBackendProvider = animatedDrawableBackendProvider;
+
     mDecodeFileDescriptorEnabled = decodeFileDescriptorEnabled;
   }
 
@@ -129,6 +138,23 @@ public class ProducerFactory {
     return new AddImageTransformMetaDataProducer(inputProducer);
   }
 
+  public AnimatedFrameBitmapMemoryCacheProducer newAnimatedFrameBitmapMemoryCacheProducer(
+      Producer<CloseableReference<CloseableImage>> inputProducer) {
+    return new AnimatedFrameBitmapMemoryCacheProducer(
+        mBitmapMemoryCache, mCacheKeyFactory, inputProducer);
+  }
+
+  public AnimatedFrameProducer newAnimatedFrameProducer(
+      Producer<CloseableReference<CloseableImage>> inputProducer) {
+    return new AnimatedFrameProducer(
+        inputProducer,
+        mAnimatedDrawableBackendProvider,
+        mPlatformBitmapFactory,
+        mBitmapMemoryCache,
+        mCacheKeyFactory,
+        mExecutorSupplier.forDecode());
+  }
+
   public BitmapMemoryCacheGetProducer newBitmapMemoryCacheGetProducer(
       Producer<CloseableReference<CloseableImage>> inputProducer) {
     return new BitmapMemoryCacheGetProducer(mBitmapMemoryCache, mCacheKeyFactory, inputProducer);
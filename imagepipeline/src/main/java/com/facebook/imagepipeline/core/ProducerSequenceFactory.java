@@ -23,6 +23,8 @@ import com.facebook.common.util.UriUtil;
 import com.facebook.imagepipeline.image.CloseableImage;
 import com.facebook.imagepipeline.image.EncodedImage;
 import com.facebook.imagepipeline.memory.PooledByteBuffer;
+import com.facebook.imagepipeline.producers.AnimatedFrameBitmapMemoryCacheProducer;
+import com.facebook.imagepipeline.producers.AnimatedFrameProducer;
 import com.facebook.imagepipeline.producers.BitmapMemoryCacheKeyMultiplexProducer;
 import com.facebook.imagepipeline.producers.BitmapMemoryCacheProducer;
 import com.facebook.imagepipeline.producers.DecodeProducer;
@@ -71,6 +73,10 @@ public class ProducerSequenceFactory {
       Producer<CloseableReference<CloseableImage>>,
       Producer<CloseableReference<CloseableImage>>>
       mPostprocessorSequences;
+  @VisibleForTesting Map<
+      Producer<CloseableReference<CloseableImage>>,
+      Producer<CloseableReference<CloseableImage>>>
+      mAnimatedFrameSequences;
   @VisibleForTesting Map<Producer<CloseableReference<CloseableImage>>, Producer<Void>>
       mCloseableImagePrefetchSequences;
 
@@ -87,6 +93,7 @@ public class ProducerSequenceFactory {
     mDownsampleEnabled = downsampleEnabled;
     mWebpSupportEnabled = webpSupportEnabled;
     mPostprocessorSequences = new HashMap<>();
+    mAnimatedFrameSequences = new HashMap<>();
     mCloseableImagePrefetchSequences = new HashMap<>();
     mThreadHandoffProducerQueue = threadHandoffProducerQueue;
   }
@@ -141,6 +148,9 @@ public class ProducerSequenceFactory {
       ImageRequest imageRequest) {
     Producer<CloseableReference<CloseableImage>> pipelineSequence =
         getBasicDecodedImageSequence(imageRequest);
+    if (imageRequest.getAnimatedFrameNumber() != ImageRequest.NO_ANIMATED_FRAME) {
+      pipelineSequence = getAnimatedFrameSequence(pipelineSequence);
+    }
     if (imageRequest.getPostprocessor() != null) {
       return getPostprocessorSequence(pipelineSequence);
     } else {
@@ -156,7 +166,13 @@ public class ProducerSequenceFactory {
    */
   public Producer<Void> getDecodedImagePrefetchProducerSequence(
       ImageRequest imageRequest) {
-    return getDecodedImagePrefetchSequence(getBasicDecodedImageSequence(imageRequest));
+    Producer<CloseableReference<CloseableImage>> pipelineSequence =
+        getBasicDecodedImageSequence(imageRequest);
+    if (imageRequest.getAnimatedFrameNumber() != ImageRequest.NO_ANIMATED_FRAME) {
+      // frames are prefetched into the bitmap memory cache ahead of being shown
+      pipelineSequence = getAnimatedFrameSequence(pipelineSequence);
+    }
+    return getDecodedImagePrefetchSequence(pipelineSequence);
   }
 
   private Producer<CloseableReference<CloseableImage>> getBasicDecodedImageSequence(
@@ -466,6 +482,21 @@ public class ProducerSequenceFactory {
     return mPostprocessorSequences.get(inputProducer);
   }
 
+  /**
+   * animated frame bitmap cache producer -> animated frame producer -> inputProducer
+   */
+  private synchronized Producer<CloseableReference<CloseableImage>> getAnimatedFrameSequence(
+      Producer<CloseableReference<CloseableImage>> inputProducer) {
+    if (!mAnimatedFrameSequences.containsKey(inputProducer)) {
+      AnimatedFrameProducer animatedFrameProducer =
+          mProducerFactory.newAnimatedFrameProducer(inputProducer);
+      AnimatedFrameBitmapMemoryCacheProducer animatedFrameBitmapMemoryCacheProducer =
+          mProducerFactory.newAnimatedFrameBitmapMemoryCacheProducer(animatedFrameProducer);
+      mAnimatedFrameSequences.put(inputProducer, animatedFrameBitmapMemoryCacheProducer);
+    }
+    return mAnimatedFrameSequences.get(inputProducer);
+  }
+
   /**
    * swallow result producer -> inputProducer
    */
@@ -18,6 +18,7 @@ import com.facebook.imageformat.ImageFormat;
 import com.facebook.imageformat.ImageFormatChecker;
 import com.facebook.imagepipeline.animated.factory.AnimatedImageFactory;
 import com.facebook.imagepipeline.common.ImageDecodeOptions;
+import com.facebook.imagepipeline.common.ResizeOptions;
 import com.facebook.imagepipeline.image.CloseableImage;
 import com.facebook.imagepipeline.image.CloseableStaticBitmap;
 import com.facebook.imagepipeline.image.EncodedImage;
@@ -25,6 +26,8 @@ import com.facebook.imagepipeline.image.ImmutableQualityInfo;
 import com.facebook.imagepipeline.image.QualityInfo;
 import com.facebook.imagepipeline.platform.PlatformDecoder;
 
+import javax.annotation.Nullable;
+
 import java.io.InputStream;
 
 /**
@@ -71,6 +74,26 @@ public class ImageDecoder {
       final int length,
       final QualityInfo qualityInfo,
       final ImageDecodeOptions options) {
+    return decodeImage(encodedImage, length, qualityInfo, options, null);
+  }
+
+  /**
+   * Decodes image, rendering the frames of animated images at the size of the resize options at
+   * most.
+   *
+   * @param encodedImage input image (encoded bytes plus meta data)
+   * @param length if image type supports decoding incomplete image then determines where
+   *   the image data should be cut for decoding.
+   * @param qualityInfo quality information for the image
+   * @param options options that cange decode behavior
+   * @param resizeOptions the size requested for the image, or null
+   */
+  public CloseableImage decodeImage(
+      final EncodedImage encodedImage,
+      final int length,
+      final QualityInfo qualityInfo,
+      final ImageDecodeOptions options,
+      final @Nullable ResizeOptions resizeOptions) {
     ImageFormat imageFormat = encodedImage.getImageFormat();
     if (imageFormat == null || imageFormat == ImageFormat.UNKNOWN) {
       imageFormat = ImageFormatChecker.getImageFormat_WrapIOException(
@@ -85,10 +108,10 @@ public class ImageDecoder {
         return decodeJpeg(encodedImage, length, qualityInfo);
 
       case GIF:
-        return decodeGif(encodedImage, options);
+        return decodeGif(encodedImage, length, options, resizeOptions);
 
       case WEBP_ANIMATED:
-        return decodeAnimatedWebp(encodedImage, options);
+        return decodeAnimatedWebp(encodedImage, length, options, resizeOptions);
 
       default:
         return decodeStaticImage(encodedImage);
@@ -104,13 +127,58 @@ public class ImageDecoder {
   public CloseableImage decodeGif(
       EncodedImage encodedImage,
       ImageDecodeOptions options) {
+    return decodeGif(encodedImage, encodedImage.getSize(), options);
+  }
+
+  /**
+   * Decodes a gif, possibly cut after its last complete frame, into CloseableImage.
+   *
+   * @param encodedImage input image (encoded bytes plus meta data)
+   * @param length amount of data to decode in bytes
+   * @return a CloseableImage
+   */
+  public CloseableImage decodeGif(
+      EncodedImage encodedImage,
+      int length,
+      ImageDecodeOptions options) {
+    return decodeGif(encodedImage, length, options, null);
+  }
+
+  /**
+   * Decodes a gif, possibly cut after its last complete frame, into CloseableImage whose frames
+   * get rendered at the size of the resize options at most.
+   *
+   * @param encodedImage input image (encoded bytes plus meta data)
+   * @param length amount of data to decode in bytes
+   * @param resizeOptions the size requested for the image, or null
+   * @return a CloseableImage
+   */
+  public CloseableImage decodeGif(
+      EncodedImage encodedImage,
+      int length,
+      ImageDecodeOptions options,
+      @Nullable ResizeOptions resizeOptions) {
+    if (length < encodedImage.getSize()) {
+      // the frames received so far of an animation that is still being downloaded
+      return mAnimatedImageFactory.decodeGif(
+          encodedImage,
+          length,
+          options,
+          resizeOptions,
+          mBitmapConfig);
+    }
     InputStream is = encodedImage.getInputStream();
     if (is == null) {
       return null;
     }
     try {
       if (GifFormatChecker.isAnimated(is)) {
-        return mAnimatedImageFactory.decodeGif(encodedImage, options, mBitmapConfig);
+        return mAnimatedImageFactory.decodeGif(
+            encodedImage,
+            encodedImage.getSize(),
+            options,
+            resizeOptions,
+            mBitmapConfig);
       }
       return decodeStaticImage(encodedImage);
     } finally {
@@ -172,7 +240,46 @@ public class ImageDecoder {
   public CloseableImage decodeAnimatedWebp(
       final EncodedImage encodedImage,
       final ImageDecodeOptions options) {
-    return mAnimatedImageFactory.decodeWebP(encodedImage, options, mBitmapConfig);
+    return decodeAnimatedWebp(encodedImage, encodedImage.getSize(), options);
+  }
+
+  /**
+   * Decode a webp animated image, possibly cut after its last complete frame, into a
+   * CloseableImage.
+   *
+   * @param encodedImage input image (encoded bytes plus meta data)
+   * @param length amount of data to decode in bytes
+   * @param options
+   * @return a {@link CloseableImage}
+   */
+  public CloseableImage decodeAnimatedWebp(
+      final EncodedImage encodedImage,
+      final int length,
+      final ImageDecodeOptions options) {
+    return decodeAnimatedWebp(encodedImage, length, options, null);
+  }
+
+  /**
+   * Decode a webp animated image, possibly cut after its last complete frame, into a
+   * CloseableImage whose frames get rendered at the size of the resize options at most.
+   *
+   * @param encodedImage input image (encoded bytes plus meta data)
+   * @param length amount of data to decode in bytes
+   * @param options
+   * @param resizeOptions the size requested for the image, or null
+   * @return a {@link CloseableImage}
+   */
+  public CloseableImage decodeAnimatedWebp(
+      final EncodedImage encodedImage,
+      final int length,
+      final ImageDecodeOptions options,
+      final @Nullable ResizeOptions resizeOptions) {
+    return mAnimatedImageFactory.decodeWebP(
+        encodedImage,
+        length,
+        options,
+        resizeOptions,
+        mBitmapConfig);
   }
 
 }
@@ -0,0 +1,302 @@
+/*
+ * Copyright (c) 2015-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.imagepipeline.decoder;
+
+import com.facebook.common.references.CloseableReference;
+import com.facebook.imagepipeline.image.EncodedImage;
+import com.facebook.imagepipeline.memory.PooledByteBuffer;
+
+/**
+ * Progressively scans GIF and WebP data and instructs caller when enough data is available to
+ * decode the frames received so far.
+ *
+ * <p> Only the block structure of the data is parsed: GIF blocks and sub-blocks, and RIFF chunks
+ * for WebP. A frame is complete once all of its image data blocks (GIF) or its ANMF chunk (WebP)
+ * have been received. Static WebPs are not supported.
+ *
+ * <p> Users should call parseMoreData method each time new chunk of data is received. The buffer
+ * passed as a parameter should include entire image data received so far.
+ */
+public class ProgressiveAnimatedImageParser {
+
+  /**
+   * Initial state of the parser. The header of the file has not been received yet.
+   */
+  private static final int READ_HEADER = 0;
+
+  /**
+   * Next byte is the introducer of a GIF block: an extension, an image descriptor or the trailer.
+   */
+  private static final int READ_GIF_BLOCK = 1;
+
+  /**
+   * Next byte is the size of a GIF data sub-block, or 0 if the block has no more sub-blocks.
+   */
+  private static final int READ_GIF_SUB_BLOCK = 2;
+
+  /**
+   * Next bytes are the header of a RIFF chunk of a WebP file.
+   */
+  private static final int READ_WEBP_CHUNK = 3;
+
+  /**
+   * The end of the file has been reached.
+   */
+  private static final int END_OF_IMAGE = 4;
+
+  /**
+   * Parsed data is not an animated image
+   */
+  private static final int NOT_AN_ANIMATED_IMAGE = 5;
+
+  private static final int GIF_HEADER_SIZE = 13;
+  private static final int GIF_IMAGE_DESCRIPTOR_SIZE = 10;
+  private static final int GIF_EXTENSION_INTRODUCER = 0x21;
+  private static final int GIF_IMAGE_SEPARATOR = 0x2C;
+  private static final int GIF_TRAILER = 0x3B;
+
+  private static final int WEBP_HEADER_SIZE = 12;
+  private static final int WEBP_CHUNK_HEADER_SIZE = 8;
+
+  private int mParserState;
+
+  /**
+   * number of bytes consumed so far, which is the offset of the next block, sub-block or chunk
+   */
+  private int mBytesParsed;
+
+  /**
+   * whether the GIF sub-blocks being read hold the image data of a frame
+   */
+  private boolean mIsReadingFrame;
+
+  private int mFrameCount;
+  private int mFramesEndOffset;
+
+  public ProgressiveAnimatedImageParser() {
+    mParserState = READ_HEADER;
+    mBytesParsed = 0;
+    mIsReadingFrame = false;
+    mFrameCount = 0;
+    mFramesEndOffset = 0;
+  }
+
+  /**
+   * If this is the first time calling this method, the buffer will be checked to make sure it
+   * starts with a GIF or a WebP header. If the image has been identified as neither, data will be
+   * ignored and false will be returned immediately on all subsequent calls.
+   *
+   * This object maintains state of the position of the next block to read. On repeated calls to
+   * this method, it will continue from where it left off.
+   *
+   * @param encodedImage Next set of bytes received by the caller
+   * @return true if new complete frames have been found
+   */
+  public boolean parseMoreData(final EncodedImage encodedImage) {
+    if (mParserState == NOT_AN_ANIMATED_IMAGE || mParserState == END_OF_IMAGE) {
+      return false;
+    }
+    CloseableReference<PooledByteBuffer> bytesRef = encodedImage.getByteBufferRef();
+    if (bytesRef == null) {
+      return false;
+    }
+    try {
+      return doParseMoreData(bytesRef.get());
+    } finally {
+      CloseableReference.closeSafely(bytesRef);
+    }
+  }
+
+  private boolean doParseMoreData(final PooledByteBuffer buffer) {
+    final int oldFrameCount = mFrameCount;
+    final int size = buffer.size();
+    boolean parsed;
+    do {
+      switch (mParserState) {
+        case READ_HEADER:
+          parsed = readHeader(buffer, size);
+          break;
+        case READ_GIF_BLOCK:
+          parsed = readGifBlock(buffer, size);
+          break;
+        case READ_GIF_SUB_BLOCK:
+          parsed = readGifSubBlock(buffer, size);
+          break;
+        case READ_WEBP_CHUNK:
+          parsed = readWebPChunk(buffer, size);
+          break;
+        default:
+          parsed = false;
+      }
+    } while (parsed);
+    return mParserState != NOT_AN_ANIMATED_IMAGE && mFrameCount != oldFrameCount;
+  }
+
+  private boolean readHeader(PooledByteBuffer buffer, int size) {
+    if (size < WEBP_HEADER_SIZE) {
+      return false;
+    }
+    if (matches(buffer, 0, "GIF8")) {
+      if (size < GIF_HEADER_SIZE) {
+        return false;
+      }
+      int flags = buffer.read(10) & 0xFF;
+      mBytesParsed = GIF_HEADER_SIZE + getGifColorTableSize(flags);
+      mParserState = READ_GIF_BLOCK;
+      return true;
+    }
+    if (matches(buffer, 0, "RIFF") && matches(buffer, 8, "WEBP")) {
+      mBytesParsed = WEBP_HEADER_SIZE;
+      mParserState = READ_WEBP_CHUNK;
+      return true;
+    }
+    mParserState = NOT_AN_ANIMATED_IMAGE;
+    return false;
+  }
+
+  private boolean readGifBlock(PooledByteBuffer buffer, int size) {
+    if (mBytesParsed >= size) {
+      return false;
+    }
+    int introducer = buffer.read(mBytesParsed) & 0xFF;
+    switch (introducer) {
+      case GIF_EXTENSION_INTRODUCER:
+        // the introducer and the label, followed by data sub-blocks
+        if (mBytesParsed + 2 > size) {
+          return false;
+        }
+        mBytesParsed += 2;
+        mIsReadingFrame = false;
+        mParserState = READ_GIF_SUB_BLOCK;
+        return true;
+      case GIF_IMAGE_SEPARATOR:
+        // the image descriptor, the local color table and the LZW minimum code size, followed by
+        // the image data sub-blocks
+        if (mBytesParsed + GIF_IMAGE_DESCRIPTOR_SIZE > size) {
+          return false;
+        }
+        int flags = buffer.read(mBytesParsed + GIF_IMAGE_DESCRIPTOR_SIZE - 1) & 0xFF;
+        int blockSize = GIF_IMAGE_DESCRIPTOR_SIZE + getGifColorTableSize(flags) + 1;
+        if (mBytesParsed + blockSize > size) {
+          return false;
+        }
+        mBytesParsed += blockSize;
+        mIsReadingFrame = true;
+        mParserState = READ_GIF_SUB_BLOCK;
+        return true;
+      case GIF_TRAILER:
+        mBytesParsed++;
+        mParserState = END_OF_IMAGE;
+        return false;
+      default:
+        mParserState = NOT_AN_ANIMATED_IMAGE;
+        return false;
+    }
+  }
+
+  private boolean readGifSubBlock(PooledByteBuffer buffer, int size) {
+    if (mBytesParsed >= size) {
+      return false;
+    }
+    int subBlockSize = buffer.read(mBytesParsed) & 0xFF;
+    if (subBlockSize == 0) {
+      mBytesParsed++;
+      if (mIsReadingFrame) {
+        mFrameCount++;
+        mFramesEndOffset = mBytesParsed;
+      }
+      mParserState = READ_GIF_BLOCK;
+      return true;
+    }
+    if (mBytesParsed + 1 + subBlockSize > size) {
+      return false;
+    }
+    mBytesParsed += 1 + subBlockSize;
+    return true;
+  }
+
+  private boolean readWebPChunk(PooledByteBuffer buffer, int size) {
+    if (mBytesParsed + WEBP_CHUNK_HEADER_SIZE > size) {
+      return false;
+    }
+    int payloadSize = readLittleEndianInt(buffer, mBytesParsed + 4);
+    if (payloadSize < 0) {
+      mParserState = NOT_AN_ANIMATED_IMAGE;
+      return false;
+    }
+    // chunks are padded to an even size
+    long chunkSize = WEBP_CHUNK_HEADER_SIZE + (long) payloadSize + (payloadSize & 1);
+    if (mBytesParsed + chunkSize > size) {
+      return false;
+    }
+    if (matches(buffer, mBytesParsed, "VP8 ") || matches(buffer, mBytesParsed, "VP8L")) {
+      // image data outside of an ANMF chunk, which is a static WebP
+      mParserState = NOT_AN_ANIMATED_IMAGE;
+      return false;
+    }
+    boolean isFrame = matches(buffer, mBytesParsed, "ANMF");
+    mBytesParsed += (int) chunkSize;
+    if (isFrame) {
+      mFrameCount++;
+      mFramesEndOffset = mBytesParsed;
+    }
+    // the RIFF size does not include the RIFF fourcc and the size itself
+    if (mBytesParsed >= readLittleEndianInt(buffer, 4) + 8) {
+      mParserState = END_OF_IMAGE;
+      return false;
+    }
+    return true;
+  }
+
+  private static int getGifColorTableSize(int flags) {
+    return (flags & 0x80) != 0 ? 3 << ((flags & 0x07) + 1) : 0;
+  }
+
+  private static boolean matches(PooledByteBuffer buffer, int offset, String fourCc) {
+    for (int i = 0; i < fourCc.length(); i++) {
+      if (buffer.read(offset + i) != fourCc.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int readLittleEndianInt(PooledByteBuffer buffer, int offset) {
+    return (buffer.read(offset) & 0xFF) |
+        ((buffer.read(offset + 1) & 0xFF) << 8) |
+        ((buffer.read(offset + 2) & 0xFF) << 16) |
+        ((buffer.read(offset + 3) & 0xFF) << 24);
+  }
+
+  public boolean isAnimatedImage() {
+    return mParserState != READ_HEADER && mParserState != NOT_AN_ANIMATED_IMAGE;
+  }
+
+  /**
+   * @return whether the end of the image has been reached
+   */
+  public boolean isEndOfImage() {
+    return mParserState == END_OF_IMAGE;
+  }
+
+  /**
+   * @return number of complete frames found so far
+   */
+  public int getFrameCount() {
+    return mFrameCount;
+  }
+
+  /**
+   * @return offset at which parsed data should be cut to decode all of the complete frames
+   */
+  public int getFramesEndOffset() {
+    return mFramesEndOffset;
+  }
+}
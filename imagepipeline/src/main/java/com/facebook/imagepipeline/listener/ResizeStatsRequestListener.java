@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2015-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.imagepipeline.listener;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.facebook.imagepipeline.producers.DecodeProducer;
+import com.facebook.imagepipeline.producers.ResizeAndRotateProducer;
+import com.facebook.imagepipeline.request.ImageRequest;
+
+/**
+ * Measures what decoding images smaller saves, for requests with
+ * {@link ImageRequest#getResizeOptions resize options}.
+ *
+ * <p> For every final bitmap decoded for such a request, the decoded size is compared with the
+ * size of the original image, as reported by the {@link ResizeAndRotateProducer} if the image got
+ * transcoded, and by the {@link DecodeProducer} otherwise. Bytes saved assume 4 bytes per pixel.
+ * Decode time saved is an estimate: the measured decode time scaled by the ratio of original to
+ * decoded pixels, minus the measured decode and transcode times. It can be negative if
+ * transcoding costs more than it saves.
+ *
+ * <p> Extra maps are only requested for requests with resize options.
+ */
+public class ResizeStatsRequestListener extends BaseRequestListener {
+
+  private static final int BYTES_PER_PIXEL = 4;
+
+  private static class ResizedRequest {
+    long originalPixelCount;
+    long transcodeStartNs;
+    long transcodeTimeNs;
+    long decodeStartNs;
+  }
+
+  @GuardedBy("this")
+  private final Map<String, ResizedRequest> mResizedRequests = new HashMap<>();
+
+  @GuardedBy("this")
+  private long mResizedImageCount;
+  @GuardedBy("this")
+  private long mBytesSaved;
+  @GuardedBy("this")
+  private long mDecodeTimeSavedNs;
+
+  @Override
+  public synchronized void onRequestStart(
+      ImageRequest request,
+      Object callerContext,
+      String requestId,
+      boolean isPrefetch) {
+    if (request.getResizeOptions() != null) {
+      mResizedRequests.put(requestId, new ResizedRequest());
+    }
+  }
+
+  @Override
+  public synchronized boolean requiresExtraMap(String requestId) {
+    return mResizedRequests.containsKey(requestId);
+  }
+
+  @Override
+  public synchronized void onProducerStart(String requestId, String producerName) {
+    ResizedRequest resizedRequest = mResizedRequests.get(requestId);
+    if (resizedRequest == null) {
+      return;
+    }
+    if (ResizeAndRotateProducer.PRODUCER_NAME.equals(producerName)) {
+      resizedRequest.transcodeStartNs = System.nanoTime();
+    } else if (DecodeProducer.PRODUCER_NAME.equals(producerName)) {
+      resizedRequest.decodeStartNs = System.nanoTime();
+    }
+  }
+
+  @Override
+  public synchronized void onProducerFinishWithSuccess(
+      String requestId,
+      String producerName,
+      @Nullable Map<String, String> extraMap) {
+    ResizedRequest resizedRequest = mResizedRequests.get(requestId);
+    if (resizedRequest == null || extraMap == null) {
+      return;
+    }
+    if (ResizeAndRotateProducer.PRODUCER_NAME.equals(producerName)) {
+      resizedRequest.transcodeTimeNs += System.nanoTime() - resizedRequest.transcodeStartNs;
+      resizedRequest.originalPixelCount =
+          getPixelCount(extraMap.get(ResizeAndRotateProducer.ORIGINAL_SIZE_KEY));
+    } else if (DecodeProducer.PRODUCER_NAME.equals(producerName) &&
+        Boolean.parseBoolean(extraMap.get(DecodeProducer.IS_FINAL_KEY))) {
+      long decodeTimeNs = System.nanoTime() - resizedRequest.decodeStartNs;
+      long decodedPixelCount = getPixelCount(extraMap.get(DecodeProducer.BITMAP_SIZE_KEY));
+      long originalPixelCount = (resizedRequest.originalPixelCount > 0)
+          ? resizedRequest.originalPixelCount
+          : getPixelCount(extraMap.get(DecodeProducer.ENCODED_IMAGE_SIZE_KEY));
+      if (decodedPixelCount <= 0 || originalPixelCount <= decodedPixelCount) {
+        return;
+      }
+      mResizedImageCount++;
+      mBytesSaved += (originalPixelCount - decodedPixelCount) * BYTES_PER_PIXEL;
+      mDecodeTimeSavedNs += decodeTimeNs * originalPixelCount / decodedPixelCount -
+          decodeTimeNs -
+          resizedRequest.transcodeTimeNs;
+    }
+  }
+
+  @Override
+  public synchronized void onRequestSuccess(
+      ImageRequest request,
+      String requestId,
+      boolean isPrefetch) {
+    mResizedRequests.remove(requestId);
+  }
+
+  @Override
+  public synchronized void onRequestFailure(
+      ImageRequest request,
+      String requestId,
+      Throwable throwable,
+      boolean isPrefetch) {
+    mResizedRequests.remove(requestId);
+  }
+
+  @Override
+  public synchronized void onRequestCancellation(String requestId) {
+    mResizedRequests.remove(requestId);
+  }
+
+  /**
+   * Gets the number of final bitmaps decoded smaller than the original image.
+   */
+  public synchronized long getResizedImageCount() {
+    return mResizedImageCount;
+  }
+
+  /**
+   * Gets the bitmap bytes saved by decoding images smaller than the original.
+   */
+  public synchronized long getBytesSaved() {
+    return mBytesSaved;
+  }
+
+  /**
+   * Gets the estimated decode time saved by decoding images smaller than the original, in
+   * nanoseconds.
+   */
+  public synchronized long getDecodeTimeSavedNs() {
+    return mDecodeTimeSavedNs;
+  }
+
+  /**
+   * Parses a size of the form {@code <width>x<height>}.
+   * @return the number of pixels, or 0 if the size is unknown
+   */
+  private static long getPixelCount(@Nullable String size) {
+    if (size == null) {
+      return 0;
+    }
+    int separator = size.indexOf('x');
+    if (separator < 0) {
+      return 0;
+    }
+    try {
+      long width = Long.parseLong(size.substring(0, separator));
+      long height = Long.parseLong(size.substring(separator + 1));
+      return (width > 0 && height > 0) ? width * height : 0;
+    } catch (NumberFormatException e) {
+      return 0;
+    }
+  }
+}
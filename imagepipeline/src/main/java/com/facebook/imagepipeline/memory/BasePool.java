@@ -27,6 +27,7 @@ import com.facebook.common.internal.Sets;
 import com.facebook.common.internal.Throwables;
 import com.facebook.common.internal.VisibleForTesting;
 import com.facebook.common.logging.FLog;
+import com.facebook.common.memory.IncrementalMemoryTrimmable;
 import com.facebook.common.memory.MemoryTrimType;
 import com.facebook.common.memory.MemoryTrimmableRegistry;
 
@@ -111,7 +112,7 @@ import com.facebook.common.memory.MemoryTrimmableRegistry;
  *   </li>
  * </ul>
  */
-public abstract class BasePool<V> implements Pool<V> {
+public abstract class BasePool<V> implements Pool<V>, IncrementalMemoryTrimmable {
   private final Class<?> TAG = this.getClass();
 
   /**
@@ -378,6 +379,33 @@ public abstract class BasePool<V> implements Pool<V> {
     trimToNothing();
   }
 
+  /**
+   * Gets the number of bytes {@link #trim} would free, i.e. the size of the free portion of the
+   * pool, whatever the trim type.
+   */
+  @Override
+  public synchronized int getTrimmableSizeInBytes(MemoryTrimType memoryTrimType) {
+    return mFree.mNumBytes;
+  }
+
+  @Override
+  public int getTrimCost() {
+    return TRIM_COST_POOLED;
+  }
+
+  /**
+   * Frees up about maxBytes of the free portion of the pool, in the same order as
+   * {@link #trimToSize}.
+   * @param maxBytes the number of bytes to free
+   * @return the number of bytes freed
+   */
+  @Override
+  public synchronized int trimIncrementally(int maxBytes) {
+    final int freeBytes = mFree.mNumBytes;
+    trimToSize(mUsed.mNumBytes + freeBytes - maxBytes);
+    return freeBytes - mFree.mNumBytes;
+  }
+
   /**
    * Allocates a new 'value' with the given size
    * @param bucketedSize the logical size to allocate
@@ -0,0 +1,464 @@
+/*
+ * Copyright (c) 2015-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.imagepipeline.memory;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.facebook.common.internal.Preconditions;
+import com.facebook.common.internal.VisibleForTesting;
+import com.facebook.common.logging.FLog;
+import com.facebook.common.memory.IncrementalMemoryTrimmable;
+import com.facebook.common.memory.MemoryTrimType;
+import com.facebook.common.memory.MemoryTrimmable;
+import com.facebook.common.memory.MemoryTrimmableRegistry;
+import com.facebook.common.time.MonotonicClock;
+import com.facebook.common.util.ByteConstants;
+
+/**
+ * {@link MemoryTrimmableRegistry} that trims the registered caches and pools in bounded slices on
+ * a background executor, instead of freeing everything at once on the thread that received the
+ * memory event.
+ *
+ * <p> {@link IncrementalMemoryTrimmable}s are trimmed by the amount they would free on a plain
+ * {@link MemoryTrimmable#trim} call, but at most {@code maxBytesPerSlice} bytes and
+ * {@code sliceDurationBudgetMs} milliseconds per slice. The memory that is cheapest to get back,
+ * such as the free values of pools, is trimmed first. Other trimmables are trimmed in one go on
+ * the executor. When the app goes to the background, everything is trimmed at once.
+ *
+ * <p> The coordinator can also trim ahead of memory pressure: see
+ * {@link #startProactiveTrimming}.
+ *
+ * <p> To use it, pass it to
+ * {@link com.facebook.imagepipeline.core.ImagePipelineConfig.Builder#setMemoryTrimmableRegistry}
+ * and call {@link #trim} from the app's memory callbacks.
+ */
+@ThreadSafe
+public class MemoryTrimmingCoordinator implements MemoryTrimmableRegistry {
+
+  private static final Class<?> TAG = MemoryTrimmingCoordinator.class;
+
+  public static final int DEFAULT_MAX_BYTES_PER_SLICE = 2 * ByteConstants.MB;
+  public static final long DEFAULT_SLICE_DURATION_BUDGET_MS = 4;
+  public static final long DEFAULT_SLICE_INTERVAL_MS = 16;
+
+  public static final double DEFAULT_PROACTIVE_HEAP_USAGE_RATIO = 0.8;
+  public static final long DEFAULT_PROACTIVE_LOOKAHEAD_MS = 2000;
+
+  // Bytes asked from a single trimmable at once, so that the slice duration is checked often.
+  private static final int MAX_BYTES_PER_STEP = 256 * ByteConstants.KB;
+  private static final long HEAP_SAMPLING_INTERVAL_MS = 500;
+  // Share of the trimmable memory freed when the heap is about to reach the high-water mark.
+  private static final double PROACTIVE_TRIM_RATIO = 0.25;
+
+  /**
+   * Listener notified about the trimming work, e.g. to log trim durations.
+   */
+  public interface TrimListener {
+
+    /**
+     * Called on the executor after each slice of trimming.
+     *
+     * @param freedBytes the number of bytes freed by the incremental trimmables, 0 for a slice
+     *     that only trimmed other trimmables
+     * @param durationMs how long the slice took
+     */
+    void onTrimSliceFinished(int freedBytes, long durationMs);
+  }
+
+  private final ScheduledExecutorService mExecutor;
+  private final MonotonicClock mClock;
+  private final int mMaxBytesPerSlice;
+  private final long mSliceDurationBudgetMs;
+  private final long mSliceIntervalMs;
+
+  @GuardedBy("this")
+  private final List<MemoryTrimmable> mTrimmables = new ArrayList<>();
+  // Bytes still to be trimmed from each incremental trimmable.
+  @GuardedBy("this")
+  private final Map<IncrementalMemoryTrimmable, Integer> mPendingTrims = new HashMap<>();
+  @GuardedBy("this")
+  private boolean mIsSliceScheduled;
+  @GuardedBy("this")
+  @Nullable private TrimListener mTrimListener;
+
+  @GuardedBy("this")
+  private boolean mIsSamplingHeap;
+  @GuardedBy("this")
+  private double mProactiveHeapUsageRatio;
+  @GuardedBy("this")
+  private long mProactiveLookaheadMs;
+  @GuardedBy("this")
+  private long mLastSampleTimeMs = -1;
+  @GuardedBy("this")
+  private long mLastUsedHeapBytes;
+
+  @GuardedBy("this")
+  private int mSliceCount;
+  @GuardedBy("this")
+  private int mProactiveTrimCount;
+  @GuardedBy("this")
+  private long mTrimmedBytes;
+  @GuardedBy("this")
+  private long mTotalTrimDurationMs;
+  @GuardedBy("this")
+  private long mLongestSliceDurationMs;
+
+  private final Runnable mSliceRunnable = new Runnable() {
+    @Override
+    public void run() {
+      runSlice();
+    }
+  };
+
+  private final Runnable mSampleHeapRunnable = new Runnable() {
+    @Override
+    public void run() {
+      sampleHeapUsage();
+    }
+  };
+
+  public MemoryTrimmingCoordinator(ScheduledExecutorService executor, MonotonicClock clock) {
+    this(
+        executor,
+        clock,
+        DEFAULT_MAX_BYTES_PER_SLICE,
+        DEFAULT_SLICE_DURATION_BUDGET_MS,
+        DEFAULT_SLICE_INTERVAL_MS);
+  }
+
+  /**
+   * @param executor the executor to trim on, preferably a single background thread
+   * @param clock the clock used to measure the slices
+   * @param maxBytesPerSlice the maximum number of bytes freed by a slice
+   * @param sliceDurationBudgetMs the time after which a slice stops freeing memory
+   * @param sliceIntervalMs the delay between two slices
+   */
+  public MemoryTrimmingCoordinator(
+      ScheduledExecutorService executor,
+      MonotonicClock clock,
+      int maxBytesPerSlice,
+      long sliceDurationBudgetMs,
+      long sliceIntervalMs) {
+    Preconditions.checkArgument(maxBytesPerSlice > 0);
+    Preconditions.checkArgument(sliceDurationBudgetMs > 0);
+    Preconditions.checkArgument(sliceIntervalMs >= 0);
+    mExecutor = Preconditions.checkNotNull(executor);
+    mClock = Preconditions.checkNotNull(clock);
+    mMaxBytesPerSlice = maxBytesPerSlice;
+    mSliceDurationBudgetMs = sliceDurationBudgetMs;
+    mSliceIntervalMs = sliceIntervalMs;
+  }
+
+  @Override
+  public synchronized void registerMemoryTrimmable(MemoryTrimmable trimmable) {
+    if (!mTrimmables.contains(trimmable)) {
+      mTrimmables.add(trimmable);
+    }
+  }
+
+  @Override
+  public synchronized void unregisterMemoryTrimmable(MemoryTrimmable trimmable) {
+    mTrimmables.remove(trimmable);
+    mPendingTrims.remove(trimmable);
+  }
+
+  public synchronized void setTrimListener(@Nullable TrimListener trimListener) {
+    mTrimListener = trimListener;
+  }
+
+  /**
+   * Trims the registered trimmables for the given trim type.
+   *
+   * <p> Returns right away; the memory is freed on the executor.
+   */
+  public void trim(final MemoryTrimType trimType) {
+    final List<MemoryTrimmable> trimmables;
+    synchronized (this) {
+      trimmables = new ArrayList<>(mTrimmables);
+    }
+    final boolean isBackgroundTrim = trimType == MemoryTrimType.OnAppBackgrounded ||
+        trimType == MemoryTrimType.OnSystemLowMemoryWhileAppInBackground;
+    final List<MemoryTrimmable> trimmablesToTrimAtOnce = new ArrayList<>();
+    for (MemoryTrimmable trimmable : trimmables) {
+      if (isBackgroundTrim || !(trimmable instanceof IncrementalMemoryTrimmable)) {
+        trimmablesToTrimAtOnce.add(trimmable);
+      } else {
+        IncrementalMemoryTrimmable incrementalTrimmable = (IncrementalMemoryTrimmable) trimmable;
+        int trimmableSize = incrementalTrimmable.getTrimmableSizeInBytes(trimType);
+        addPendingTrim(incrementalTrimmable, trimmableSize);
+      }
+    }
+    if (!trimmablesToTrimAtOnce.isEmpty()) {
+      mExecutor.execute(
+          new Runnable() {
+            @Override
+            public void run() {
+              trimAtOnce(trimmablesToTrimAtOnce, trimType);
+            }
+          });
+    }
+    synchronized (this) {
+      if (isBackgroundTrim) {
+        // the trimmables are emptied anyway
+        mPendingTrims.clear();
+      } else if (!mPendingTrims.isEmpty()) {
+        scheduleSlice(0);
+      }
+    }
+  }
+
+  private synchronized void addPendingTrim(IncrementalMemoryTrimmable trimmable, int bytes) {
+    if (bytes <= 0) {
+      return;
+    }
+    Integer pendingBytes = mPendingTrims.get(trimmable);
+    mPendingTrims.put(trimmable, pendingBytes == null ? bytes : Math.max(pendingBytes, bytes));
+  }
+
+  private void trimAtOnce(List<MemoryTrimmable> trimmables, MemoryTrimType trimType) {
+    final long startMs = mClock.now();
+    for (MemoryTrimmable trimmable : trimmables) {
+      trimmable.trim(trimType);
+    }
+    onSliceFinished(0, mClock.now() - startMs);
+  }
+
+  @GuardedBy("this")
+  private void scheduleSlice(long delayMs) {
+    if (!mIsSliceScheduled) {
+      mIsSliceScheduled = true;
+      mExecutor.schedule(mSliceRunnable, delayMs, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Frees memory from the pending trims, the cheapest first, until the slice runs out of bytes or
+   * time.
+   */
+  @VisibleForTesting
+  void runSlice() {
+    synchronized (this) {
+      mIsSliceScheduled = false;
+    }
+    final long startMs = mClock.now();
+    int freedBytes = 0;
+    while (freedBytes < mMaxBytesPerSlice && mClock.now() - startMs < mSliceDurationBudgetMs) {
+      IncrementalMemoryTrimmable trimmable;
+      int bytesToFree;
+      synchronized (this) {
+        trimmable = getCheapestPendingTrimmable();
+        if (trimmable == null) {
+          break;
+        }
+        bytesToFree = Math.min(
+            mPendingTrims.get(trimmable),
+            Math.min(MAX_BYTES_PER_STEP, mMaxBytesPerSlice - freedBytes));
+      }
+      // trim outside of the lock, the trimmable might be slow or call back into the registry
+      int bytesFreed = trimmable.trimIncrementally(bytesToFree);
+      synchronized (this) {
+        Integer pendingBytes = mPendingTrims.get(trimmable);
+        if (pendingBytes != null) {
+          if (bytesFreed <= 0 || pendingBytes <= bytesFreed) {
+            mPendingTrims.remove(trimmable);
+          } else {
+            mPendingTrims.put(trimmable, pendingBytes - bytesFreed);
+          }
+        }
+      }
+      freedBytes += Math.max(bytesFreed, 0);
+    }
+    onSliceFinished(freedBytes, mClock.now() - startMs);
+    synchronized (this) {
+      if (!mPendingTrims.isEmpty()) {
+        scheduleSlice(mSliceIntervalMs);
+      }
+    }
+  }
+
+  /** Gets the pending trimmable with the lowest trim cost, the one with most to trim on a tie. */
+  @GuardedBy("this")
+  @Nullable
+  private IncrementalMemoryTrimmable getCheapestPendingTrimmable() {
+    IncrementalMemoryTrimmable cheapest = null;
+    for (Map.Entry<IncrementalMemoryTrimmable, Integer> pendingTrim : mPendingTrims.entrySet()) {
+      IncrementalMemoryTrimmable trimmable = pendingTrim.getKey();
+      if (cheapest == null ||
+          trimmable.getTrimCost() < cheapest.getTrimCost() ||
+          (trimmable.getTrimCost() == cheapest.getTrimCost() &&
+              pendingTrim.getValue() > mPendingTrims.get(cheapest))) {
+        cheapest = trimmable;
+      }
+    }
+    return cheapest;
+  }
+
+  private void onSliceFinished(int freedBytes, long durationMs) {
+    TrimListener trimListener;
+    synchronized (this) {
+      mSliceCount++;
+      mTrimmedBytes += freedBytes;
+      mTotalTrimDurationMs += durationMs;
+      mLongestSliceDurationMs = Math.max(mLongestSliceDurationMs, durationMs);
+      trimListener = mTrimListener;
+    }
+    if (FLog.isLoggable(FLog.VERBOSE)) {
+      FLog.v(TAG, "Trim slice freed %d bytes in %d ms", freedBytes, durationMs);
+    }
+    if (trimListener != null) {
+      trimListener.onTrimSliceFinished(freedBytes, durationMs);
+    }
+  }
+
+  /**
+   * Starts sampling the Java heap usage. Whenever the allocation rate would take the heap beyond
+   * the given share of the maximum heap size within the lookahead time, a share of the trimmable
+   * memory is freed in slices, the cheapest memory first.
+   *
+   * @param heapUsageRatio the high-water mark, as a share of the maximum heap size
+   * @param lookaheadMs how far ahead the heap usage is projected
+   */
+  public synchronized void startProactiveTrimming(double heapUsageRatio, long lookaheadMs) {
+    Preconditions.checkArgument(heapUsageRatio > 0 && heapUsageRatio <= 1);
+    Preconditions.checkArgument(lookaheadMs >= 0);
+    mProactiveHeapUsageRatio = heapUsageRatio;
+    mProactiveLookaheadMs = lookaheadMs;
+    if (!mIsSamplingHeap) {
+      mIsSamplingHeap = true;
+      mLastSampleTimeMs = -1;
+      mExecutor.schedule(mSampleHeapRunnable, 0, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  public void startProactiveTrimming() {
+    startProactiveTrimming(DEFAULT_PROACTIVE_HEAP_USAGE_RATIO, DEFAULT_PROACTIVE_LOOKAHEAD_MS);
+  }
+
+  public synchronized void stopProactiveTrimming() {
+    mIsSamplingHeap = false;
+  }
+
+  @VisibleForTesting
+  void sampleHeapUsage() {
+    final long nowMs = mClock.now();
+    final long usedHeapBytes = getUsedHeapBytes();
+    boolean shouldTrim = false;
+    synchronized (this) {
+      if (!mIsSamplingHeap) {
+        return;
+      }
+      if (mLastSampleTimeMs >= 0 && nowMs > mLastSampleTimeMs && mPendingTrims.isEmpty()) {
+        double bytesPerMs = (double) (usedHeapBytes - mLastUsedHeapBytes) /
+            (nowMs - mLastSampleTimeMs);
+        long projectedHeapBytes = usedHeapBytes + (long) (bytesPerMs * mProactiveLookaheadMs);
+        shouldTrim = bytesPerMs > 0 &&
+            projectedHeapBytes > getMaxHeapBytes() * mProactiveHeapUsageRatio;
+      }
+      mLastSampleTimeMs = nowMs;
+      mLastUsedHeapBytes = usedHeapBytes;
+      mExecutor.schedule(mSampleHeapRunnable, HEAP_SAMPLING_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+    if (shouldTrim) {
+      trimProactively();
+    }
+  }
+
+  /**
+   * Schedules freeing a share of the memory trimmable on heap pressure, taken from the cheapest
+   * trimmables first.
+   */
+  private void trimProactively() {
+    final List<IncrementalMemoryTrimmable> trimmables = new ArrayList<>();
+    synchronized (this) {
+      for (MemoryTrimmable trimmable : mTrimmables) {
+        if (trimmable instanceof IncrementalMemoryTrimmable) {
+          trimmables.add((IncrementalMemoryTrimmable) trimmable);
+        }
+      }
+    }
+    final int[] trimmableSizes = new int[trimmables.size()];
+    long totalTrimmableSize = 0;
+    for (int i = 0; i < trimmables.size(); i++) {
+      trimmableSizes[i] =
+          trimmables.get(i).getTrimmableSizeInBytes(MemoryTrimType.OnCloseToDalvikHeapLimit);
+      totalTrimmableSize += trimmableSizes[i];
+    }
+    long bytesToTrim = (long) (totalTrimmableSize * PROACTIVE_TRIM_RATIO);
+    if (bytesToTrim <= 0) {
+      return;
+    }
+    synchronized (this) {
+      mProactiveTrimCount++;
+      while (bytesToTrim > 0) {
+        int cheapest = -1;
+        for (int i = 0; i < trimmables.size(); i++) {
+          if (trimmableSizes[i] > 0 &&
+              (cheapest < 0 ||
+                  trimmables.get(i).getTrimCost() < trimmables.get(cheapest).getTrimCost())) {
+            cheapest = i;
+          }
+        }
+        if (cheapest < 0) {
+          break;
+        }
+        int bytes = (int) Math.min(trimmableSizes[cheapest], bytesToTrim);
+        addPendingTrim(trimmables.get(cheapest), bytes);
+        bytesToTrim -= bytes;
+        trimmableSizes[cheapest] = 0;
+      }
+      scheduleSlice(0);
+    }
+  }
+
+  @VisibleForTesting
+  long getUsedHeapBytes() {
+    Runtime runtime = Runtime.getRuntime();
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  @VisibleForTesting
+  long getMaxHeapBytes() {
+    return Runtime.getRuntime().maxMemory();
+  }
+
+  /** Gets the number of trim slices run so far. */
+  public synchronized int getSliceCount() {
+    return mSliceCount;
+  }
+
+  /** Gets the number of times memory was trimmed ahead of memory pressure. */
+  public synchronized int getProactiveTrimCount() {
+    return mProactiveTrimCount;
+  }
+
+  /** Gets the number of bytes freed by the incremental trimmables so far. */
+  public synchronized long getTrimmedBytes() {
+    return mTrimmedBytes;
+  }
+
+  /** Gets the total time spent trimming so far. */
+  public synchronized long getTotalTrimDurationMs() {
+    return mTotalTrimDurationMs;
+  }
+
+  /** Gets the duration of the longest trim slice so far. */
+  public synchronized long getLongestSliceDurationMs() {
+    return mLongestSliceDurationMs;
+  }
+}
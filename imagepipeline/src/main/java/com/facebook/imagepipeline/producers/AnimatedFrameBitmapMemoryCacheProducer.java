@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2015-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.imagepipeline.producers;
+
+import com.facebook.cache.common.CacheKey;
+import com.facebook.common.internal.ImmutableMap;
+import com.facebook.common.internal.VisibleForTesting;
+import com.facebook.common.references.CloseableReference;
+import com.facebook.imagepipeline.cache.AnimatedFrameCacheKey;
+import com.facebook.imagepipeline.cache.CacheKeyFactory;
+import com.facebook.imagepipeline.cache.MemoryCache;
+import com.facebook.imagepipeline.image.CloseableImage;
+import com.facebook.imagepipeline.request.ImageRequest;
+
+/**
+ * Memory cache producer for the frames of animated images in the bitmap memory cache.
+ *
+ * <p> Requests for the whole image are passed through.
+ */
+public class AnimatedFrameBitmapMemoryCacheProducer
+    implements Producer<CloseableReference<CloseableImage>> {
+
+  @VisibleForTesting static final String PRODUCER_NAME = "AnimatedFrameBitmapMemoryCacheProducer";
+  @VisibleForTesting static final String VALUE_FOUND = "cached_value_found";
+
+  private final MemoryCache<CacheKey, CloseableImage> mMemoryCache;
+  private final CacheKeyFactory mCacheKeyFactory;
+  private final Producer<CloseableReference<CloseableImage>> mInputProducer;
+
+  public AnimatedFrameBitmapMemoryCacheProducer(
+      MemoryCache<CacheKey, CloseableImage> memoryCache,
+      CacheKeyFactory cacheKeyFactory,
+      Producer<CloseableReference<CloseableImage>> inputProducer) {
+    mMemoryCache = memoryCache;
+    mCacheKeyFactory = cacheKeyFactory;
+    mInputProducer = inputProducer;
+  }
+
+  @Override
+  public void produceResults(
+      final Consumer<CloseableReference<CloseableImage>> consumer,
+      final ProducerContext producerContext) {
+
+    final ProducerListener listener = producerContext.getListener();
+    final String requestId = producerContext.getId();
+    final ImageRequest imageRequest = producerContext.getImageRequest();
+
+    // If the whole image is requested, forward results.
+    final int frameNumber = imageRequest.getAnimatedFrameNumber();
+    if (frameNumber == ImageRequest.NO_ANIMATED_FRAME) {
+      mInputProducer.produceResults(consumer, producerContext);
+      return;
+    }
+    listener.onProducerStart(requestId, getProducerName());
+    final CacheKey cacheKey = new AnimatedFrameCacheKey(
+        mCacheKeyFactory.getBitmapCacheKey(imageRequest),
+        frameNumber);
+    CloseableReference<CloseableImage> cachedReference = mMemoryCache.get(cacheKey);
+    if (cachedReference != null) {
+      listener.onProducerFinishWithSuccess(
+          requestId,
+          getProducerName(),
+          listener.requiresExtraMap(requestId) ? ImmutableMap.of(VALUE_FOUND, "true") : null);
+      consumer.onProgressUpdate(1.0f);
+      consumer.onNewResult(cachedReference, true);
+      cachedReference.close();
+    } else {
+      Consumer<CloseableReference<CloseableImage>> cachedConsumer =
+          new CachedAnimatedFrameConsumer(consumer, cacheKey, mMemoryCache);
+      listener.onProducerFinishWithSuccess(
+          requestId,
+          getProducerName(),
+          listener.requiresExtraMap(requestId) ? ImmutableMap.of(VALUE_FOUND, "false") : null);
+      mInputProducer.produceResults(cachedConsumer, producerContext);
+    }
+  }
+
+  private static class CachedAnimatedFrameConsumer extends DelegatingConsumer<
+      CloseableReference<CloseableImage>,
+      CloseableReference<CloseableImage>> {
+
+    private final CacheKey mCacheKey;
+    private final MemoryCache<CacheKey, CloseableImage> mMemoryCache;
+
+    public CachedAnimatedFrameConsumer(
+        final Consumer<CloseableReference<CloseableImage>> consumer,
+        final CacheKey cacheKey,
+        final MemoryCache<CacheKey, CloseableImage> memoryCache) {
+      super(consumer);
+      mCacheKey = cacheKey;
+      mMemoryCache = memoryCache;
+    }
+
+    @Override
+    protected void onNewResultImpl(CloseableReference<CloseableImage> newResult, boolean isLast) {
+      // forward intermediate results, which are images that are not animated, without caching
+      if (newResult == null || !isLast) {
+        getConsumer().onNewResult(newResult, isLast);
+        return;
+      }
+      // cache and forward the frame
+      CloseableReference<CloseableImage> newCachedResult =
+          mMemoryCache.cache(mCacheKey, newResult);
+      try {
+        getConsumer().onProgressUpdate(1f);
+        getConsumer().onNewResult(
+            (newCachedResult != null) ? newCachedResult : newResult, isLast);
+      } finally {
+        CloseableReference.closeSafely(newCachedResult);
+      }
+    }
+  }
+
+  protected String getProducerName() {
+    return PRODUCER_NAME;
+  }
+}
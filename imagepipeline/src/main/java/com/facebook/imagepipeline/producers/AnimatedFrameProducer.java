@@ -0,0 +1,254 @@
+/*
+ * Copyright (c) 2015-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.imagepipeline.producers;
+
+import javax.annotation.Nullable;
+
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+
+import com.facebook.cache.common.CacheKey;
+import com.facebook.common.internal.ImmutableMap;
+import com.facebook.common.internal.Preconditions;
+import com.facebook.common.internal.VisibleForTesting;
+import com.facebook.common.references.CloseableReference;
+import com.facebook.common.references.ResourceReleaser;
+import com.facebook.imagepipeline.animated.base.AnimatedDrawableBackend;
+import com.facebook.imagepipeline.animated.base.AnimatedImageResult;
+import com.facebook.imagepipeline.animated.impl.AnimatedDrawableBackendProvider;
+import com.facebook.imagepipeline.animated.impl.AnimatedImageCompositor;
+import com.facebook.imagepipeline.bitmaps.PlatformBitmapFactory;
+import com.facebook.imagepipeline.cache.AnimatedFrameCacheKey;
+import com.facebook.imagepipeline.cache.CacheKeyFactory;
+import com.facebook.imagepipeline.cache.MemoryCache;
+import com.facebook.imagepipeline.image.CloseableAnimatedImage;
+import com.facebook.imagepipeline.image.CloseableImage;
+import com.facebook.imagepipeline.image.CloseableStaticBitmap;
+import com.facebook.imagepipeline.image.ImmutableQualityInfo;
+import com.facebook.imagepipeline.request.ImageRequest;
+
+/**
+ * Renders the requested frame of an animated image into a static bitmap.
+ *
+ * <p> The frame is rendered at the size the image was decoded for, starting from the closest
+ * earlier frame found in the bitmap memory cache, and a frame decoded along with the image is
+ * used as is. Images that are not animated and requests for the whole image are passed through.
+ *
+ * <p> Frames are looked up under {@link AnimatedFrameCacheKey}s, the keys that animated drawables
+ * also cache the frames they render at the same size under, so that a frame rendered by either is
+ * cached once and reused by both.
+ */
+public class AnimatedFrameProducer implements Producer<CloseableReference<CloseableImage>> {
+
+  @VisibleForTesting static final String PRODUCER_NAME = "AnimatedFrameProducer";
+  @VisibleForTesting static final String FRAME_NUMBER = "frameNumber";
+  @VisibleForTesting static final String PRE_DECODED = "preDecoded";
+
+  private final Producer<CloseableReference<CloseableImage>> mInputProducer;
+  private final AnimatedDrawableBackendProvider mAnimatedDrawableBackendProvider;
+  private final PlatformBitmapFactory mBitmapFactory;
+  private final MemoryCache<CacheKey, CloseableImage> mMemoryCache;
+  private final CacheKeyFactory mCacheKeyFactory;
+  private final Executor mExecutor;
+
+  public AnimatedFrameProducer(
+      Producer<CloseableReference<CloseableImage>> inputProducer,
+      AnimatedDrawableBackendProvider animatedDrawableBackendProvider,
+      PlatformBitmapFactory platformBitmapFactory,
+      MemoryCache<CacheKey, CloseableImage> memoryCache,
+      CacheKeyFactory cacheKeyFactory,
+      Executor executor) {
+    mInputProducer = Preconditions.checkNotNull(inputProducer);
+    mAnimatedDrawableBackendProvider = animatedDrawableBackendProvider;
+    mBitmapFactory = platformBitmapFactory;
+    mMemoryCache = memoryCache;
+    mCacheKeyFactory = cacheKeyFactory;
+    mExecutor = Preconditions.checkNotNull(executor);
+  }
+
+  @Override
+  public void produceResults(
+      final Consumer<CloseableReference<CloseableImage>> consumer,
+      final ProducerContext producerContext) {
+    if (producerContext.getImageRequest().getAnimatedFrameNumber() ==
+        ImageRequest.NO_ANIMATED_FRAME) {
+      mInputProducer.produceResults(consumer, producerContext);
+      return;
+    }
+    mInputProducer.produceResults(
+        new AnimatedFrameConsumer(consumer, producerContext),
+        producerContext);
+  }
+
+  private class AnimatedFrameConsumer extends DelegatingConsumer<
+      CloseableReference<CloseableImage>,
+      CloseableReference<CloseableImage>> {
+
+    private final ProducerContext mProducerContext;
+
+    public AnimatedFrameConsumer(
+        Consumer<CloseableReference<CloseableImage>> consumer,
+        ProducerContext producerContext) {
+      super(consumer);
+      mProducerContext = producerContext;
+    }
+
+    @Override
+    protected void onNewResultImpl(CloseableReference<CloseableImage> newResult, boolean isLast) {
+      // images that are not animated are forwarded as they are
+      if (!CloseableReference.isValid(newResult) ||
+          !(newResult.get() instanceof CloseableAnimatedImage)) {
+        getConsumer().onNewResult(newResult, isLast);
+        return;
+      }
+      // intermediate results may not have received the requested frame yet
+      if (!isLast) {
+        return;
+      }
+      submitRendering(newResult.clone());
+    }
+
+    private void submitRendering(final CloseableReference<CloseableImage> imageRef) {
+      final ImageRequest imageRequest = mProducerContext.getImageRequest();
+      final int frameNumber = imageRequest.getAnimatedFrameNumber();
+      final StatefulProducerRunnable<CloseableReference<CloseableImage>> renderingRunnable =
+          new StatefulProducerRunnable<CloseableReference<CloseableImage>>(
+              getConsumer(),
+              mProducerContext.getListener(),
+              PRODUCER_NAME,
+              mProducerContext.getId()) {
+
+            private boolean mIsPreDecoded;
+
+            @Override
+            protected CloseableReference<CloseableImage> getResult() throws Exception {
+              try {
+                AnimatedImageResult imageResult =
+                    ((CloseableAnimatedImage) imageRef.get()).getImageResult();
+                Rect renderedBounds = new Rect(
+                    0,
+                    0,
+                    imageResult.getRenderedWidth(),
+                    imageResult.getRenderedHeight());
+                AnimatedDrawableBackend backend =
+                    mAnimatedDrawableBackendProvider.get(imageResult, renderedBounds);
+                try {
+                  Preconditions.checkElementIndex(frameNumber, backend.getFrameCount());
+                  CloseableReference<Bitmap> bitmapRef = backend.getPreDecodedFrame(frameNumber);
+                  mIsPreDecoded = bitmapRef != null;
+                  if (bitmapRef == null) {
+                    bitmapRef = renderFrame(backend, imageRequest, frameNumber);
+                  }
+                  try {
+                    return CloseableReference.<CloseableImage>of(
+                        new CloseableStaticBitmap(
+                            bitmapRef,
+                            ImmutableQualityInfo.FULL_QUALITY,
+                            0));
+                  } finally {
+                    bitmapRef.close();
+                  }
+                } finally {
+                  backend.dropCaches();
+                }
+              } finally {
+                imageRef.close();
+              }
+            }
+
+            @Override
+            protected void disposeResult(CloseableReference<CloseableImage> result) {
+              CloseableReference.closeSafely(result);
+            }
+
+            @Override
+            protected void onCancellation() {
+              super.onCancellation();
+              imageRef.close();
+            }
+
+            @Override
+            protected Map<String, String> getExtraMapOnSuccess(
+                CloseableReference<CloseableImage> result) {
+              return ImmutableMap.of(
+                  FRAME_NUMBER, String.valueOf(frameNumber),
+                  PRE_DECODED, String.valueOf(mIsPreDecoded));
+            }
+          };
+
+      mProducerContext.addCallbacks(
+          new BaseProducerContextCallbacks() {
+            @Override
+            public void onCancellationRequested() {
+              renderingRunnable.cancel();
+            }
+          });
+      mExecutor.execute(renderingRunnable);
+    }
+  }
+
+  private CloseableReference<Bitmap> renderFrame(
+      AnimatedDrawableBackend backend,
+      final ImageRequest imageRequest,
+      int frameNumber) {
+    CloseableReference<Bitmap> bitmapRef =
+        mBitmapFactory.createBitmap(backend.getRenderedWidth(), backend.getRenderedHeight());
+    try {
+      AnimatedImageCompositor compositor = new AnimatedImageCompositor(
+          backend,
+          new AnimatedImageCompositor.Callback() {
+            @Override
+            public void onIntermediateResult(int frameNumber, Bitmap bitmap) {
+              // Intermediate frames are not cached, as each would take a copy of the bitmap.
+            }
+
+            @Override
+            public CloseableReference<Bitmap> getCachedBitmap(int frameNumber) {
+              return getCachedFrame(imageRequest, frameNumber);
+            }
+          });
+      compositor.renderFrame(frameNumber, bitmapRef.get());
+      return bitmapRef.clone();
+    } finally {
+      bitmapRef.close();
+    }
+  }
+
+  /**
+   * Gets an earlier frame of the same request from the bitmap memory cache. Closing the returned
+   * reference releases the frame to the cache.
+   */
+  @Nullable
+  private CloseableReference<Bitmap> getCachedFrame(ImageRequest imageRequest, int frameNumber) {
+    CacheKey cacheKey = new AnimatedFrameCacheKey(
+        mCacheKeyFactory.getBitmapCacheKey(imageRequest),
+        frameNumber);
+    final CloseableReference<CloseableImage> frameRef = mMemoryCache.get(cacheKey);
+    if (frameRef == null) {
+      return null;
+    }
+    if (!(frameRef.get() instanceof CloseableStaticBitmap)) {
+      frameRef.close();
+      return null;
+    }
+    Bitmap bitmap = ((CloseableStaticBitmap) frameRef.get()).getUnderlyingBitmap();
+    return CloseableReference.of(
+        bitmap,
+        new ResourceReleaser<Bitmap>() {
+          @Override
+          public void release(Bitmap value) {
+            frameRef.close();
+          }
+        });
+  }
+}
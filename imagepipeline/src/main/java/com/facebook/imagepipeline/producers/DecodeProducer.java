@@ -12,6 +12,7 @@ package com.facebook.imagepipeline.producers;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.GuardedBy;
 
+import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.Executor;
 
@@ -23,6 +24,7 @@ import com.facebook.common.references.CloseableReference;
 import com.facebook.common.util.UriUtil;
 import com.facebook.imagepipeline.common.ImageDecodeOptions;
 import com.facebook.imagepipeline.decoder.ImageDecoder;
+import com.facebook.imagepipeline.decoder.ProgressiveAnimatedImageParser;
 import com.facebook.imagepipeline.decoder.ProgressiveJpegConfig;
 import com.facebook.imagepipeline.decoder.ProgressiveJpegParser;
 import com.facebook.imagepipeline.image.CloseableImage;
@@ -38,17 +40,19 @@ import static com.facebook.imagepipeline.producers.JobScheduler.JobRunnable;
 /**
  * Decodes images.
  *
- * <p/> Progressive JPEGs are decoded progressively as new data arrives.
+ * <p/> Progressive JPEGs are decoded progressively as new data arrives. So are the frames of
+ * GIFs and animated WebPs if {@link ImageDecodeOptions#decodeProgressiveAnimations} is set.
  */
 public class DecodeProducer implements Producer<CloseableReference<CloseableImage>> {
 
   public static final String PRODUCER_NAME = "DecodeProducer";
 
   // keys for extra map
-  private static final String BITMAP_SIZE_KEY = "bitmapSize";
+  public static final String BITMAP_SIZE_KEY = "bitmapSize";
+  public static final String ENCODED_IMAGE_SIZE_KEY = "encodedImageSize";
   private static final String HAS_GOOD_QUALITY_KEY = "hasGoodQuality";
   private static final String IMAGE_TYPE_KEY = "imageType";
-  private static final String IS_FINAL_KEY = "isFinal";
+  public static final String IS_FINAL_KEY = "isFinal";
 
   private final ByteArrayPool mByteArrayPool;
   private final Executor mExecutor;
@@ -85,10 +89,15 @@ public class DecodeProducer implements Producer<CloseableReference<CloseableImag
       progressiveDecoder = new LocalImagesProgressiveDecoder(consumer, producerContext);
     } else {
       ProgressiveJpegParser jpegParser = new ProgressiveJpegParser(mByteArrayPool);
+      ProgressiveAnimatedImageParser animatedImageParser =
+          imageRequest.getImageDecodeOptions().decodeProgressiveAnimations
+              ? new ProgressiveAnimatedImageParser()
+              : null;
       progressiveDecoder = new NetworkImagesProgressiveDecoder(
           consumer,
           producerContext,
           jpegParser,
+          animatedImageParser,
           mProgressiveJpegConfig);
     }
     mInputProducer.produceResults(progressiveDecoder, producerContext);
@@ -186,15 +195,21 @@ public class DecodeProducer implements Producer<CloseableReference<CloseableImag
         mProducerListener.onProducerStart(mProducerContext.getId(), PRODUCER_NAME);
         CloseableImage image = null;
         try {
-          image = mImageDecoder.decodeImage(encodedImage, length, quality, mImageDecodeOptions);
+          image = mImageDecoder.decodeImage(
+              encodedImage,
+              length,
+              quality,
+              mImageDecodeOptions,
+              mProducerContext.getImageRequest().getResizeOptions());
         } catch (Exception e) {
-          Map<String, String> extraMap = getExtraMap(image, queueTime, quality, isLast);
+          Map<String, String> extraMap =
+              getExtraMap(encodedImage, image, queueTime, quality, isLast);
           mProducerListener.
               onProducerFinishWithFailure(mProducerContext.getId(), PRODUCER_NAME, e, extraMap);
           handleError(e);
           return;
         }
-        Map<String, String> extraMap = getExtraMap(image, queueTime, quality, isLast);
+        Map<String, String> extraMap = getExtraMap(encodedImage, image, queueTime, quality, isLast);
         mProducerListener.
             onProducerFinishWithSuccess(mProducerContext.getId(), PRODUCER_NAME, extraMap);
         handleResult(image, isLast);
@@ -204,6 +219,7 @@ public class DecodeProducer implements Producer<CloseableReference<CloseableImag
     }
 
     private Map<String, String> getExtraMap(
+        EncodedImage encodedImage,
         @Nullable CloseableImage image,
         long queueTime,
         QualityInfo quality,
@@ -218,17 +234,15 @@ public class DecodeProducer implements Producer<CloseableReference<CloseableImag
       if (image instanceof CloseableStaticBitmap) {
         Bitmap bitmap = ((CloseableStaticBitmap) image).getUnderlyingBitmap();
         String sizeStr = bitmap.getWidth() + "x" + bitmap.getHeight();
-        return ImmutableMap.of(
-            BITMAP_SIZE_KEY,
-            sizeStr,
-            JobScheduler.QUEUE_TIME_KEY,
-            queueStr,
-            HAS_GOOD_QUALITY_KEY,
-            qualityStr,
-            IS_FINAL_KEY,
-            finalStr,
-            IMAGE_TYPE_KEY,
-            imageTypeStr);
+        String encodedSizeStr = encodedImage.getWidth() + "x" + encodedImage.getHeight();
+        Map<String, String> extraMap = new HashMap<>();
+        extraMap.put(BITMAP_SIZE_KEY, sizeStr);
+        extraMap.put(ENCODED_IMAGE_SIZE_KEY, encodedSizeStr);
+        extraMap.put(JobScheduler.QUEUE_TIME_KEY, queueStr);
+        extraMap.put(HAS_GOOD_QUALITY_KEY, qualityStr);
+        extraMap.put(IS_FINAL_KEY, finalStr);
+        extraMap.put(IMAGE_TYPE_KEY, imageTypeStr);
+        return ImmutableMap.copyOf(extraMap);
       } else {
         return ImmutableMap.of(
             JobScheduler.QUEUE_TIME_KEY,
@@ -327,46 +341,84 @@ public class DecodeProducer implements Producer<CloseableReference<CloseableImag
   private class NetworkImagesProgressiveDecoder extends ProgressiveDecoder {
 
     private final ProgressiveJpegParser mProgressiveJpegParser;
+    private final @Nullable ProgressiveAnimatedImageParser mProgressiveAnimatedImageParser;
     private final ProgressiveJpegConfig mProgressiveJpegConfig;
     private int mLastScheduledScanNumber;
+    private int mLastScheduledFrameCount;
 
     public NetworkImagesProgressiveDecoder(
         final Consumer<CloseableReference<CloseableImage>> consumer,
         final ProducerContext producerContext,
         final ProgressiveJpegParser progressiveJpegParser,
+        final @Nullable ProgressiveAnimatedImageParser progressiveAnimatedImageParser,
         final ProgressiveJpegConfig progressiveJpegConfig) {
       super(consumer, producerContext);
       mProgressiveJpegParser = Preconditions.checkNotNull(progressiveJpegParser);
+      mProgressiveAnimatedImageParser = progressiveAnimatedImageParser;
       mProgressiveJpegConfig = Preconditions.checkNotNull(progressiveJpegConfig);
       mLastScheduledScanNumber = 0;
+      mLastScheduledFrameCount = 0;
     }
 
     @Override
     protected synchronized boolean updateDecodeJob(EncodedImage encodedImage, boolean isLast) {
       boolean ret = super.updateDecodeJob(encodedImage, isLast);
       if (!isLast && EncodedImage.isValid(encodedImage)) {
-        if (!mProgressiveJpegParser.parseMoreData(encodedImage)) {
-          return false;
-        }
-        int scanNum = mProgressiveJpegParser.getBestScanNumber();
-        if (scanNum <= mLastScheduledScanNumber ||
-            scanNum < mProgressiveJpegConfig.getNextScanNumberToDecode(
-                mLastScheduledScanNumber)) {
+        if (mProgressiveJpegParser.parseMoreData(encodedImage)) {
+          int scanNum = mProgressiveJpegParser.getBestScanNumber();
+          if (scanNum <= mLastScheduledScanNumber ||
+              scanNum < mProgressiveJpegConfig.getNextScanNumberToDecode(
+                  mLastScheduledScanNumber)) {
+            return false;
+          }
+          mLastScheduledScanNumber = scanNum;
+        } else if (parseMoreAnimatedImageData(encodedImage)) {
+          // Every intermediate result parses all of the frames received so far again, so only
+          // decode once their number has doubled.
+          int frameCount = mProgressiveAnimatedImageParser.getFrameCount();
+          if (frameCount < 2 * mLastScheduledFrameCount) {
+            return false;
+          }
+          mLastScheduledFrameCount = frameCount;
+        } else {
           return false;
         }
-        mLastScheduledScanNumber = scanNum;
       }
       return ret;
     }
 
+    /**
+     * Parses the new data of an animated image.
+     * @return true if new complete frames have been found
+     */
+    private boolean parseMoreAnimatedImageData(EncodedImage encodedImage) {
+      return mProgressiveAnimatedImageParser != null &&
+          !mProgressiveJpegParser.isJpeg() &&
+          mProgressiveAnimatedImageParser.parseMoreData(encodedImage);
+    }
+
     @Override
     protected int getIntermediateImageEndOffset(EncodedImage encodedImage) {
+      if (isAnimatedImage()) {
+        return mProgressiveAnimatedImageParser.getFramesEndOffset();
+      }
       return mProgressiveJpegParser.getBestScanEndOffset();
     }
 
     @Override
     protected QualityInfo getQualityInfo() {
+      if (isAnimatedImage()) {
+        return ImmutableQualityInfo.of(
+            mProgressiveAnimatedImageParser.getFrameCount(),
+            false,
+            false);
+      }
       return mProgressiveJpegConfig.getQualityInfo(mProgressiveJpegParser.getBestScanNumber());
     }
+
+    private boolean isAnimatedImage() {
+      return mProgressiveAnimatedImageParser != null &&
+          mProgressiveAnimatedImageParser.isAnimatedImage();
+    }
   }
 }
@@ -13,6 +13,8 @@ import java.util.concurrent.CancellationException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.Map;
 
+import android.os.SystemClock;
+
 import com.facebook.common.internal.ImmutableMap;
 import com.facebook.common.internal.VisibleForTesting;
 import com.facebook.imagepipeline.cache.BufferedDiskCache;
@@ -30,7 +32,7 @@ import bolts.Task;
  * <p>This producer looks in the disk cache for the requested image. If the image is found, then it
  * is passed to the consumer. If the image is not found, then the request is passed to the next
  * producer in the sequence. Any results that the producer returns are passed to the consumer, and
- * the last result is also put into the disk cache.
+ * the last result is also put into the disk cache, along with how long it took to fetch it.
  *
  * <p>This implementation delegates disk cache requests to BufferedDiskCache.
  */
@@ -164,6 +166,7 @@ public class DiskCacheProducer implements Producer<EncodedImage> {
 
     private final BufferedDiskCache mCache;
     private final CacheKey mCacheKey;
+    private final long mFetchStartTimeMs;
 
     private DiskCacheConsumer(
         final Consumer<EncodedImage> consumer,
@@ -172,12 +175,14 @@ public class DiskCacheProducer implements Producer<EncodedImage> {
       super(consumer);
       mCache = cache;
       mCacheKey = cacheKey;
+      mFetchStartTimeMs = SystemClock.elapsedRealtime();
     }
 
     @Override
     public void onNewResultImpl(EncodedImage newResult, boolean isLast) {
       if (newResult != null && isLast) {
         mCache.put(mCacheKey, newResult);
+        mCache.recordFetchCost(mCacheKey, SystemClock.elapsedRealtime() - mFetchStartTimeMs);
       }
       getConsumer().onNewResult(newResult, isLast);
     }
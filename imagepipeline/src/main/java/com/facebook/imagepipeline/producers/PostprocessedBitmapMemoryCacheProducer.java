@@ -13,6 +13,7 @@ import com.facebook.cache.common.CacheKey;
 import com.facebook.common.internal.ImmutableMap;
 import com.facebook.common.internal.VisibleForTesting;
 import com.facebook.common.references.CloseableReference;
+import com.facebook.imagepipeline.cache.AnimatedFrameCacheKey;
 import com.facebook.imagepipeline.cache.CacheKeyFactory;
 import com.facebook.imagepipeline.cache.MemoryCache;
 import com.facebook.imagepipeline.image.CloseableImage;
@@ -58,7 +59,10 @@ public class PostprocessedBitmapMemoryCacheProducer
       return;
     }
     listener.onProducerStart(requestId, getProducerName());
-    final CacheKey cacheKey = mCacheKeyFactory.getPostprocessedBitmapCacheKey(imageRequest);
+    // a postprocessed frame must not be confused with the postprocessed image
+    final CacheKey cacheKey = AnimatedFrameCacheKey.forRequest(
+        mCacheKeyFactory.getPostprocessedBitmapCacheKey(imageRequest),
+        imageRequest);
     CloseableReference<CloseableImage> cachedReference = mMemoryCache.get(cacheKey);
     if (cachedReference != null) {
       listener.onProducerFinishWithSuccess(
@@ -32,7 +32,8 @@ import com.facebook.imagepipeline.request.RepeatedPostprocessorRunner;
  * Runs a caller-supplied post-processor object.
  *
  * <p>Post-processors are only supported for static bitmaps. If the request is for an animated
- * image, the post-processor step will be skipped without warning.
+ * image, the post-processor step will be skipped without warning, unless a single frame of the
+ * image is requested.
  */
 public class PostprocessorProducer implements Producer<CloseableReference<CloseableImage>> {
 
@@ -28,6 +28,9 @@ import com.facebook.imageutils.BitmapUtil;
 @Immutable
 public class ImageRequest {
 
+  /** Frame number of requests for the whole image rather than for a frame of an animated image */
+  public static final int NO_ANIMATED_FRAME = -1;
+
   /** image type */
   private final ImageType mImageType;
 
@@ -64,6 +67,9 @@ public class ImageRequest {
   /** Postprocessor to run on the output bitmap. */
   private final Postprocessor mPostprocessor;
 
+  /** Frame of an animated image to request, or {@link #NO_ANIMATED_FRAME} for the whole image */
+  private final int mAnimatedFrameNumber;
+
   public static ImageRequest fromUri(@Nullable Uri uri) {
     return (uri == null) ? null : ImageRequestBuilder.newBuilderWithSource(uri).build();
   }
@@ -89,6 +95,8 @@ public class ImageRequest {
     mIsDiskCacheEnabled = builder.isDiskCacheEnabled();
 
     mPostprocessor = builder.getPostprocessor();
+
+    mAnimatedFrameNumber = builder.getAnimatedFrameNumber();
   }
 
   public ImageType getImageType() {
@@ -150,6 +158,16 @@ public class ImageRequest {
     return mPostprocessor;
   }
 
+  /**
+   * Gets the frame of an animated image requested, which the pipeline renders into a static
+   * bitmap. Images that are not animated are returned as they are.
+   *
+   * @return the frame number, or {@link #NO_ANIMATED_FRAME} if the whole image is requested
+   */
+  public int getAnimatedFrameNumber() {
+    return mAnimatedFrameNumber;
+  }
+
   @Override
   public boolean equals(Object o) {
     if (!(o instanceof ImageRequest)) {
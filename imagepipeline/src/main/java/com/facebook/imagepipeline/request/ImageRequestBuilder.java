@@ -37,6 +37,7 @@ public class ImageRequestBuilder {
   private boolean mLocalThumbnailPreviewsEnabled = false;
   private Priority mRequestPriority = Priority.HIGH;
   private @Nullable Postprocessor mPostprocessor = null;
+  private int mAnimatedFrameNumber = ImageRequest.NO_ANIMATED_FRAME;
 
   /**
    * Creates a new request builder instance. The setting will be done according to the source type.
@@ -79,6 +80,7 @@ public class ImageRequestBuilder {
    */
   public static ImageRequestBuilder fromRequest(ImageRequest imageRequest) {
     return ImageRequestBuilder.newBuilderWithSource(imageRequest.getSourceUri())
+        .setAnimatedFrameNumber(imageRequest.getAnimatedFrameNumber())
         .setAutoRotateEnabled(imageRequest.getAutoRotateEnabled())
         .setImageDecodeOptions(imageRequest.getImageDecodeOptions())
         .setImageType(imageRequest.getImageType())
@@ -245,6 +247,23 @@ public class ImageRequestBuilder {
     return mPostprocessor;
   }
 
+  /**
+   * Requests a single frame of an animated image, rendered into a static bitmap and cached in the
+   * bitmap memory cache. Images that are not animated are returned as they are.
+   * @param animatedFrameNumber the frame to request, or {@link ImageRequest#NO_ANIMATED_FRAME}
+   *     for the whole image
+   * @return the modified builder instance
+   */
+  public ImageRequestBuilder setAnimatedFrameNumber(int animatedFrameNumber) {
+    mAnimatedFrameNumber = animatedFrameNumber;
+    return this;
+  }
+
+  /** Gets the frame of an animated image requested if set, NO_ANIMATED_FRAME otherwise. */
+  public int getAnimatedFrameNumber() {
+    return mAnimatedFrameNumber;
+  }
+
   /**
    * Builds the Request.
    * @return a valid image request
@@ -288,5 +307,9 @@ public class ImageRequestBuilder {
     if (UriUtil.isLocalAssetUri(mSourceUri) && !mSourceUri.isAbsolute()) {
       throw new BuilderException("Asset URI path must be absolute.");
     }
+
+    if (mAnimatedFrameNumber < ImageRequest.NO_ANIMATED_FRAME) {
+      throw new BuilderException("Animated frame number must not be negative.");
+    }
   }
 }
@@ -188,6 +188,57 @@ public class AnimatedDrawableTest {
     assertEquals(2, mBackend.getDropCachesCallCount());
   }
 
+  @Test
+  public void testAnimationClock() {
+    TestAnimationClock animationClock = new TestAnimationClock();
+    mDrawable = new AnimatedDrawable(
+        mTestScheduledExecutorService,
+        mCachingBackend,
+        AnimatedDrawableDiagnosticsNoop.getInstance(),
+        mFakeClock,
+        animationClock);
+    mDrawable.setCallback(mCallback);
+    Bitmap bitmap = Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888);
+    Canvas canvas = new Canvas(bitmap);
+    mDrawable.setBounds(0, 0, WIDTH, HEIGHT);
+
+    // The first tick starts the animation.
+    mDrawable.start();
+    assertTrue(mDrawable.isOnClock());
+    animationClock.tick();
+    assertTrue(mDrawable.isWaitingForDraw());
+    mDrawable.draw(canvas);
+    assertEquals(pixelValue(0, 10, 20), bitmap.getPixel(10, 20));
+
+    // Ticks only invalidate when the frame changes.
+    mFakeClock.incrementBy(FRAME_DURATIONS[0] - 1);
+    animationClock.tick();
+    assertFalse(mDrawable.isWaitingForDraw());
+    mFakeClock.incrementBy(1);
+    animationClock.tick();
+    assertTrue(mDrawable.isWaitingForDraw());
+    assertEquals(1, mDrawable.getScheduledFrameNumber());
+    mDrawable.draw(canvas);
+    assertEquals(pixelValue(1, 10, 20), bitmap.getPixel(10, 20));
+    assertEquals(2, animationClock.getInvalidationCount());
+    assertFalse(mDrawable.isWaitingForNextFrame());
+
+    // Only the watchdog got posted.
+    assertEquals(1, mDrawable.getPostedTaskCount());
+
+    // Not drawn after being invalidated, as when offscreen, pauses until the next draw.
+    mFakeClock.incrementBy(FRAME_DURATIONS[1]);
+    animationClock.tick();
+    assertTrue(mDrawable.isWaitingForDraw());
+    animationClock.tick();
+    assertFalse(mDrawable.isOnClock());
+    mDrawable.draw(canvas);
+    assertTrue(mDrawable.isOnClock());
+
+    mDrawable.stop();
+    assertFalse(mDrawable.isOnClock());
+  }
+
   private void prepareDrawable() {
     mDrawable.start();
     mFakeClock.incrementBy(0); // Just to trigger the callbacks to run.
@@ -195,6 +246,13 @@ public class AnimatedDrawableTest {
     assertEquals(1, mBackend.getDropCachesCallCount());
   }
 
+  private static class TestAnimationClock extends AnimationClock {
+
+    @Override
+    protected void scheduleTick() {
+    }
+  }
+
   private static class ScheduledRunnable {
 
     final Runnable runnable;
@@ -241,6 +299,10 @@ public class AnimatedDrawableTest {
     public void appendDebugOptionString(StringBuilder sb) {
     }
 
+    @Override
+    public void setActive(boolean active) {
+    }
+
     @Override
     public AnimatedDrawableCachingBackend forNewBounds(Rect bounds) {
       return this;
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2015-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.imagepipeline.animated.base;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for {@link AnimatedImageResult}.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class AnimatedImageResultTest {
+
+  private static final int[] FRAME_DURATIONS = new int[] { 100, 50 };
+
+  private AnimatedImage mAnimatedImage;
+
+  @Before
+  public void setup() {
+    mAnimatedImage = mock(AnimatedImage.class);
+    when(mAnimatedImage.getWidth()).thenReturn(200);
+    when(mAnimatedImage.getHeight()).thenReturn(100);
+    when(mAnimatedImage.getLoopCount()).thenReturn(3);
+    when(mAnimatedImage.getFrameCount()).thenReturn(FRAME_DURATIONS.length);
+    when(mAnimatedImage.getFrameDurations()).thenReturn(FRAME_DURATIONS.clone());
+    for (int i = 0; i < FRAME_DURATIONS.length; i++) {
+      when(mAnimatedImage.getFrameInfo(i)).thenReturn(
+          new AnimatedDrawableFrameInfo(
+              i,
+              0,
+              0,
+              200,
+              100,
+              false,
+              AnimatedDrawableFrameInfo.DisposalMethod.DISPOSE_DO_NOT));
+    }
+  }
+
+  @Test
+  public void testMetadataReadOnce() {
+    AnimatedImageResult animatedImageResult = AnimatedImageResult.forAnimatedImage(mAnimatedImage);
+
+    AnimatedImageMetadata metadata = animatedImageResult.getMetadata();
+    assertEquals(200, metadata.getWidth());
+    assertEquals(100, metadata.getHeight());
+    assertEquals(3, metadata.getLoopCount());
+    assertEquals(FRAME_DURATIONS.length, metadata.getFrameCount());
+    assertArrayEquals(FRAME_DURATIONS, metadata.getFrameDurations());
+    assertEquals(1, metadata.getFrameInfo(1).frameNumber);
+    assertEquals(0, animatedImageResult.getMetadataReuseCount());
+
+    // the frame durations handed out may be modified
+    metadata.getFrameDurations()[0] = 0;
+    assertSame(metadata, animatedImageResult.getMetadata());
+    assertSame(metadata, animatedImageResult.getMetadata());
+    assertArrayEquals(FRAME_DURATIONS, metadata.getFrameDurations());
+    assertEquals(2, animatedImageResult.getMetadataReuseCount());
+    assertEquals(
+        2 * metadata.getReadTimeNanos(),
+        animatedImageResult.getMetadataReadTimeSavedNanos());
+
+    verify(mAnimatedImage).getFrameDurations();
+    verify(mAnimatedImage).getFrameInfo(0);
+    verify(mAnimatedImage).getFrameInfo(1);
+  }
+
+  @Test
+  public void testMetadataSetByBuilder() {
+    AnimatedImageMetadata metadata = AnimatedImageMetadata.read(mAnimatedImage);
+    AnimatedImageResult animatedImageResult = AnimatedImageResult.newBuilder(mAnimatedImage)
+        .setMetadata(metadata)
+        .build();
+
+    assertSame(metadata, animatedImageResult.getMetadata());
+    assertEquals(1, animatedImageResult.getMetadataReuseCount());
+    verify(mAnimatedImage).getFrameDurations();
+  }
+}
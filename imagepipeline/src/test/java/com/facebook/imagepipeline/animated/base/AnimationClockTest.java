@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2015-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.imagepipeline.animated.base;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link AnimationClock}.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class AnimationClockTest {
+
+  private TestAnimationClock mAnimationClock;
+
+  @Before
+  public void setUp() {
+    mAnimationClock = new TestAnimationClock();
+  }
+
+  @Test
+  public void testTicksWhileThereAreListeners() {
+    TestListener listener = new TestListener(true);
+    mAnimationClock.addListener(listener);
+    mAnimationClock.addListener(listener);
+    assertEquals(1, mAnimationClock.getListenerCount());
+    assertEquals(1, mAnimationClock.mScheduledTickCount);
+
+    mAnimationClock.tick();
+    assertEquals(1, listener.mTickCount);
+    assertEquals(2, mAnimationClock.mScheduledTickCount);
+
+    mAnimationClock.removeListener(listener);
+    mAnimationClock.tick();
+    assertEquals(1, listener.mTickCount);
+    assertEquals(2, mAnimationClock.mScheduledTickCount);
+    assertEquals(2, mAnimationClock.getTickCount());
+  }
+
+  @Test
+  public void testCountsInvalidations() {
+    TestListener invalidatingListener = new TestListener(true);
+    mAnimationClock.addListener(invalidatingListener);
+    mAnimationClock.addListener(new TestListener(false));
+    mAnimationClock.addListener(new TestListener(true));
+
+    mAnimationClock.tick();
+    mAnimationClock.removeListener(invalidatingListener);
+    mAnimationClock.tick();
+    assertEquals(3, mAnimationClock.getInvalidationCount());
+    assertEquals(2, mAnimationClock.getMaxInvalidationsPerTick());
+  }
+
+  @Test
+  public void testListenerRemovedWhileTicking() {
+    final TestListener listener = new TestListener(false);
+    mAnimationClock.addListener(
+        new AnimationClock.Listener() {
+          @Override
+          public boolean onTick() {
+            mAnimationClock.removeListener(this);
+            return false;
+          }
+        });
+    mAnimationClock.addListener(listener);
+
+    mAnimationClock.tick();
+    assertEquals(1, listener.mTickCount);
+    assertEquals(1, mAnimationClock.getListenerCount());
+  }
+
+  private static class TestAnimationClock extends AnimationClock {
+
+    private int mScheduledTickCount;
+
+    @Override
+    protected void scheduleTick() {
+      mScheduledTickCount++;
+    }
+  }
+
+  private static class TestListener implements AnimationClock.Listener {
+
+    private final boolean mInvalidate;
+    private int mTickCount;
+
+    TestListener(boolean invalidate) {
+      mInvalidate = invalidate;
+    }
+
+    @Override
+    public boolean onTick() {
+      mTickCount++;
+      return mInvalidate;
+    }
+  }
+}
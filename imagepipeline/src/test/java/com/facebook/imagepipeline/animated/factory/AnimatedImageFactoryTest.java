@@ -23,6 +23,7 @@ import com.facebook.imagepipeline.animated.impl.AnimatedImageCompositor;
 import com.facebook.imagepipeline.animated.testing.TestAnimatedDrawableBackend;
 import com.facebook.imagepipeline.bitmaps.PlatformBitmapFactory;
 import com.facebook.imagepipeline.common.ImageDecodeOptions;
+import com.facebook.imagepipeline.common.ResizeOptions;
 import com.facebook.imagepipeline.image.CloseableAnimatedImage;
 import com.facebook.imagepipeline.image.EncodedImage;
 import com.facebook.imagepipeline.memory.PooledByteBuffer;
@@ -240,6 +241,110 @@ public class AnimatedImageFactoryTest {
     verify(mockCompositor).renderFrame(1, mockBitmap2);
   }
 
+  @Test
+  public void testCreateWithResizeOptions() throws Exception {
+    WebPImage mockWebPImage = mock(WebPImage.class);
+
+    Bitmap mockBitmap1 = MockBitmapFactory.create(100, 50, DEFAULT_BITMAP_CONFIG);
+    Bitmap mockBitmap2 = MockBitmapFactory.create(100, 50, DEFAULT_BITMAP_CONFIG);
+
+    // Expect a call to WebPImage.create
+    TrivialPooledByteBuffer byteBuffer = createByteBuffer();
+    when(WebPImage.create(byteBuffer.getNativePtr(), byteBuffer.size()))
+        .thenReturn(mockWebPImage);
+    when(mockWebPImage.getWidth()).thenReturn(200);
+    when(mockWebPImage.getHeight()).thenReturn(100);
+
+    // The frames cover the resize options, keeping the aspect ratio of the image.
+    Rect renderedBounds = new Rect(0, 0, 100, 50);
+    when(
+        mMockAnimatedDrawableBackendProvider.get(
+            any(AnimatedImageResult.class),
+            eq(renderedBounds)))
+        .thenReturn(new TestAnimatedDrawableBackend(100, 50, new int[]{ 100, 200 }));
+    when(mMockBitmapFactory.createBitmap(100, 50, DEFAULT_BITMAP_CONFIG))
+        .thenReturn(CloseableReference.of(mockBitmap1, FAKE_BITMAP_RESOURCE_RELEASER))
+        .thenReturn(CloseableReference.of(mockBitmap2, FAKE_BITMAP_RESOURCE_RELEASER));
+    AnimatedImageCompositor mockCompositor = mock(AnimatedImageCompositor.class);
+    PowerMockito.whenNew(AnimatedImageCompositor.class)
+        .withAnyArguments()
+        .thenReturn(mockCompositor);
+
+    ImageDecodeOptions imageDecodeOptions = ImageDecodeOptions.newBuilder()
+        .setDecodePreviewFrame(true)
+        .setDecodeAllFrames(true)
+        .build();
+
+    EncodedImage encodedImage = new EncodedImage(
+        CloseableReference.of(byteBuffer, FAKE_RESOURCE_RELEASER));
+    encodedImage.setImageFormat(ImageFormat.UNKNOWN);
+
+    CloseableAnimatedImage closeableImage =
+        (CloseableAnimatedImage) mAnimatedImageFactory.decodeWebP(
+            encodedImage,
+            byteBuffer.size(),
+            imageDecodeOptions,
+            new ResizeOptions(50, 50),
+            DEFAULT_BITMAP_CONFIG);
+
+    // Verify we got the right result
+    AnimatedImageResult imageResult = closeableImage.getImageResult();
+    assertSame(mockWebPImage, imageResult.getImage());
+    assertEquals(100, imageResult.getRenderedWidth());
+    assertEquals(50, imageResult.getRenderedHeight());
+    assertSame(mockBitmap1, imageResult.getPreviewBitmap().get());
+
+    verify(mMockAnimatedDrawableBackendProvider).get(
+        any(AnimatedImageResult.class),
+        eq(renderedBounds));
+    verifyNoMoreInteractions(mMockAnimatedDrawableBackendProvider);
+    verify(mMockBitmapFactory, times(2)).createBitmap(100, 50, DEFAULT_BITMAP_CONFIG);
+    verifyNoMoreInteractions(mMockBitmapFactory);
+    verify(mockCompositor).renderFrame(0, mockBitmap1);
+    verify(mockCompositor).renderFrame(1, mockBitmap2);
+  }
+
+  @Test
+  public void testGetRenderedBounds() {
+    assertNull(AnimatedImageFactory.getRenderedBounds(200, 100, null));
+    // never larger than the image
+    assertNull(AnimatedImageFactory.getRenderedBounds(200, 100, new ResizeOptions(200, 50)));
+    assertNull(AnimatedImageFactory.getRenderedBounds(200, 100, new ResizeOptions(400, 400)));
+    assertEquals(
+        new Rect(0, 0, 100, 50),
+        AnimatedImageFactory.getRenderedBounds(200, 100, new ResizeOptions(50, 50)));
+    assertEquals(
+        new Rect(0, 0, 150, 75),
+        AnimatedImageFactory.getRenderedBounds(200, 100, new ResizeOptions(150, 20)));
+  }
+
+  @Test
+  public void testGetPartialGif() {
+    TrivialPooledByteBuffer byteBuffer = new TrivialPooledByteBuffer(
+        new byte[] { 'G', 'I', 'F', '8', '9', 'a', 1, 2, 3, 4 });
+
+    byte[] partialGif = AnimatedImageFactory.getPartialGif(byteBuffer, 8);
+
+    assertArrayEquals(new byte[] { 'G', 'I', 'F', '8', '9', 'a', 1, 2, 0x3B }, partialGif);
+  }
+
+  @Test
+  public void testGetPartialWebP() {
+    byte[] webp = new byte[300];
+    webp[4] = 36;
+    webp[5] = 1;
+    TrivialPooledByteBuffer byteBuffer = new TrivialPooledByteBuffer(webp);
+
+    byte[] partialWebP = AnimatedImageFactory.getPartialWebP(byteBuffer, 266);
+
+    assertEquals(266, partialWebP.length);
+    // 258 bytes after the RIFF fourcc and size
+    assertEquals(2, partialWebP[4]);
+    assertEquals(1, partialWebP[5]);
+    assertEquals(0, partialWebP[6]);
+    assertEquals(0, partialWebP[7]);
+  }
+
   private TrivialPooledByteBuffer createByteBuffer() {
     byte[] buf = new byte[16];
     return new TrivialPooledByteBuffer(buf);
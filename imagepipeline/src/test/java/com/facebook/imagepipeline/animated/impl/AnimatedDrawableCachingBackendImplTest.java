@@ -9,16 +9,31 @@
 
 package com.facebook.imagepipeline.animated.impl;
 
+import java.util.Arrays;
 import java.util.Map;
 
 import android.app.ActivityManager;
 import android.content.Context;
 import android.graphics.Bitmap;
+import android.graphics.Canvas;
 
+import com.facebook.cache.common.CacheKey;
+import com.facebook.cache.common.SimpleCacheKey;
+import com.facebook.common.internal.Supplier;
+import com.facebook.common.memory.MemoryTrimmableRegistry;
 import com.facebook.common.references.CloseableReference;
+import com.facebook.common.util.ByteConstants;
 import org.robolectric.RobolectricTestRunner;
+import com.facebook.imagepipeline.animated.base.AnimatedDrawableFrameInfo;
 import com.facebook.imagepipeline.animated.base.AnimatedDrawableOptions;
+import com.facebook.imagepipeline.animated.base.AnimatedImageResult;
 import com.facebook.imagepipeline.animated.util.AnimatedDrawableUtil;
+import com.facebook.imagepipeline.cache.AnimatedFrameCacheKey;
+import com.facebook.imagepipeline.cache.BitmapCountingMemoryCacheFactory;
+import com.facebook.imagepipeline.cache.CountingMemoryCache;
+import com.facebook.imagepipeline.cache.MemoryCacheParams;
+import com.facebook.imagepipeline.image.CloseableImage;
+import com.facebook.imagepipeline.image.CloseableStaticBitmap;
 
 import com.facebook.imagepipeline.animated.testing.MyShadowBitmap;
 import com.facebook.imagepipeline.animated.testing.MyShadowCanvas;
@@ -35,6 +50,7 @@ import org.robolectric.annotation.Config;
 
 import static com.facebook.imagepipeline.animated.testing.TestAnimatedDrawableBackend.pixelValue;
 import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
 
 /**
  * Tests for {@link AnimatedDrawableCachingBackendImpl}.
@@ -139,6 +155,268 @@ public class AnimatedDrawableCachingBackendImplTest {
     assertEquals(9, mCachingBackend.getFramesCached().size());
   }
 
+  @Test
+  public void testFramesSharedBetweenBackends() {
+    final AnimatedImageResult animatedImageResult = mock(AnimatedImageResult.class);
+    mDrawableBackend = new TestAnimatedDrawableBackend(WIDTH, HEIGHT, FRAME_DURATIONS) {
+      @Override
+      public AnimatedImageResult getAnimatedImageResult() {
+        return animatedImageResult;
+      }
+    };
+    CountingMemoryCache<CacheKey, CloseableImage> frameMemoryCache = makeFrameMemoryCache();
+    AnimatedDrawableCachingBackendImpl cachingBackend1 = makeCachingBackend(frameMemoryCache);
+    AnimatedDrawableCachingBackendImpl cachingBackend2 = makeCachingBackend(frameMemoryCache);
+
+    CloseableReference<Bitmap> bitmap1 = cachingBackend1.getBitmapForFrameBlocking(0);
+    CloseableReference<Bitmap> bitmap2 = cachingBackend2.getBitmapForFrameBlocking(0);
+    assertSame(bitmap1.get(), bitmap2.get());
+    assertEquals(1, cachingBackend1.getAnimatedFrameCache().getCachedCount());
+    assertEquals(0, cachingBackend2.getAnimatedFrameCache().getCachedCount());
+    assertEquals(1, cachingBackend2.getAnimatedFrameCache().getHitCount(0));
+
+    // the shared frame stays valid after the backend that rendered it drops its caches
+    cachingBackend1.dropCaches();
+    assertEquals(pixelValue(0, 10, 10), bitmap2.get().getPixel(10, 10));
+    bitmap1.close();
+    bitmap2.close();
+  }
+
+  @Test
+  public void testFramesSharedWithFrameRequests() {
+    final AnimatedImageResult animatedImageResult = mock(AnimatedImageResult.class);
+    when(animatedImageResult.getRenderedWidth()).thenReturn(WIDTH);
+    when(animatedImageResult.getRenderedHeight()).thenReturn(HEIGHT);
+    mDrawableBackend = new TestAnimatedDrawableBackend(WIDTH, HEIGHT, FRAME_DURATIONS) {
+      @Override
+      public AnimatedImageResult getAnimatedImageResult() {
+        return animatedImageResult;
+      }
+    };
+    CacheKey imageCacheKey = new SimpleCacheKey("image");
+    CountingMemoryCache<CacheKey, CloseableImage> frameMemoryCache = makeFrameMemoryCache();
+    mCachingBackend = new AnimatedDrawableCachingBackendImpl(
+        mExecutorService,
+        mActivityManager,
+        mAnimatedDrawableUtil,
+        mFakeClock,
+        mDrawableBackend,
+        AnimatedDrawableOptions.DEFAULTS,
+        null,
+        frameMemoryCache,
+        null,
+        imageCacheKey);
+
+    // the frame is cached once, under the key that requests for the frame look up
+    CloseableReference<Bitmap> bitmap = mCachingBackend.getBitmapForFrameBlocking(0);
+    assertEquals(1, frameMemoryCache.getCount());
+    CloseableReference<CloseableImage> frame =
+        frameMemoryCache.get(new AnimatedFrameCacheKey(imageCacheKey, 0));
+    assertNotNull(frame);
+    assertSame(bitmap.get(), ((CloseableStaticBitmap) frame.get()).getUnderlyingBitmap());
+    frame.close();
+    bitmap.close();
+  }
+
+  @Test
+  public void testPrefetchGrowsWithRenderTime() {
+    final FakeClock renderClock = new FakeClock();
+    mDrawableBackend = new TestAnimatedDrawableBackend(WIDTH, HEIGHT, FRAME_DURATIONS) {
+      @Override
+      public void renderFrame(int frameNumber, Canvas canvas) {
+        super.renderFrame(frameNumber, canvas);
+        renderClock.incrementBy(40);
+      }
+    };
+    mCachingBackend = new AnimatedDrawableCachingBackendImpl(
+        mExecutorService,
+        mActivityManager,
+        mAnimatedDrawableUtil,
+        renderClock,
+        mDrawableBackend,
+        AnimatedDrawableOptions.newBuilder().setMaximumBytes(50 * 1024 * 1024).build());
+    assertEquals(3, mCachingBackend.getPrefetchFrameCount(0));
+
+    CloseableReference<Bitmap> bitmap = mCachingBackend.getBitmapForFrameBlocking(0);
+    bitmap.close();
+    assertEquals(1, mCachingBackend.getCallingThreadRenderCount());
+    // frames take 40 ms to render and are shown for 60, 30, 15, 30, 60, 30, 45 and 15 ms
+    assertEquals(8, mCachingBackend.getPrefetchFrameCount(0));
+  }
+
+  @Test
+  public void testPrefetchWithinMaximumBytes() {
+    final FakeClock renderClock = new FakeClock();
+    mDrawableBackend = new TestAnimatedDrawableBackend(WIDTH, HEIGHT, FRAME_DURATIONS) {
+      @Override
+      public void renderFrame(int frameNumber, Canvas canvas) {
+        super.renderFrame(frameNumber, canvas);
+        renderClock.incrementBy(40);
+      }
+    };
+    mCachingBackend = new AnimatedDrawableCachingBackendImpl(
+        mExecutorService,
+        mActivityManager,
+        mAnimatedDrawableUtil,
+        renderClock,
+        mDrawableBackend,
+        AnimatedDrawableOptions.newBuilder().setMaximumBytes(5 * WIDTH * HEIGHT * 4).build());
+
+    mCachingBackend.getBitmapForFrameBlocking(0).close();
+    assertEquals(5, mCachingBackend.getPrefetchFrameCount(0));
+  }
+
+  @Test
+  public void testKeyFramesRenderedInParallel() {
+    TestExecutorService keyFrameExecutorService = new TestExecutorService(mFakeClock);
+    mCachingBackend = new AnimatedDrawableCachingBackendImpl(
+        mExecutorService,
+        mActivityManager,
+        mAnimatedDrawableUtil,
+        mFakeClock,
+        mDrawableBackend,
+        AnimatedDrawableOptions.newBuilder().setMaximumBytes(0).build(),
+        null,
+        null,
+        keyFrameExecutorService);
+
+    // none of the test frames blends with the previous frame
+    assertNull(mCachingBackend.getBitmapForFrame(0));
+    assertEquals(1, mCachingBackend.getDeferredFrameCount());
+    assertEquals(0, mExecutorService.getScheduledQueue().getPendingCount());
+    assertEquals(3, keyFrameExecutorService.getScheduledQueue().getPendingCount());
+
+    keyFrameExecutorService.getScheduledQueue().runUntilIdle();
+    assertEquals(3, mCachingBackend.getKeyFrameRenderCount());
+    CloseableReference<Bitmap> bitmap0 = mCachingBackend.getBitmapForFrame(0);
+    assertNotNull(bitmap0);
+    assertEquals(pixelValue(0, 10, 20), bitmap0.get().getPixel(10, 20));
+    assertEquals(0, mCachingBackend.getCallingThreadRenderCount());
+  }
+
+  @Test
+  public void testSnapshotFrames() {
+    int[] frameDurations = new int[40];
+    Arrays.fill(frameDurations, 10);
+    final int[] renderCount = new int[1];
+    mDrawableBackend = new TestAnimatedDrawableBackend(WIDTH, HEIGHT, frameDurations) {
+      @Override
+      public AnimatedDrawableFrameInfo getFrameInfo(int frameNumber) {
+        return new AnimatedDrawableFrameInfo(
+            frameNumber,
+            0,
+            0,
+            WIDTH,
+            HEIGHT,
+            true,
+            AnimatedDrawableFrameInfo.DisposalMethod.DISPOSE_DO_NOT);
+      }
+
+      @Override
+      public void renderFrame(int frameNumber, Canvas canvas) {
+        super.renderFrame(frameNumber, canvas);
+        renderCount[0]++;
+      }
+    };
+    int bytesPerFrame = WIDTH * HEIGHT / 1024 * 4 * 1024;
+
+    // room for 3 snapshots
+    mCachingBackend = makeCachingBackend(6 * bytesPerFrame);
+    assertArrayEquals(new int[] { 16, 32 }, mCachingBackend.getSnapshotFrames());
+
+    // room for 5 snapshots
+    mCachingBackend = makeCachingBackend(10 * bytesPerFrame);
+    assertArrayEquals(new int[] { 8, 16, 24, 32 }, mCachingBackend.getSnapshotFrames());
+    assertNull(mCachingBackend.getBitmapForFrame(0));
+    mCachingBackend.getBitmapForFrameBlocking(39).close();
+    assertTrue(mCachingBackend.getFramesCached().containsAll(Arrays.asList(8, 16, 24, 32)));
+
+    // composites from the snapshot at 32 rather than from frame 0
+    renderCount[0] = 0;
+    mCachingBackend.getBitmapForFrameBlocking(35).close();
+    assertEquals(3, renderCount[0]);
+  }
+
+  @Test
+  public void testPaletteIndexedFrames() {
+    mDrawableBackend = makeOpaqueDrawableBackend();
+    mCachingBackend = makeCachingBackend(
+        50 * 1024 * 1024,
+        AnimatedDrawableOptions.FrameStorage.PALETTE_INDEXED);
+
+    for (int i = 0; i < FRAME_DURATIONS.length; i++) {
+      CloseableReference<Bitmap> bitmap = mCachingBackend.getBitmapForFrameBlocking(i);
+      assertEquals(opaquePixelValue(i, 20), bitmap.get().getPixel(10, 20));
+      bitmap.close();
+      mExecutorService.getScheduledQueue().runUntilIdle();
+    }
+    assertEquals(9, mCachingBackend.getFramesCached().size());
+
+    // cached frames get expanded each time they are drawn
+    int expandedFrameCount = mCachingBackend.getExpandedFrameCount();
+    CloseableReference<Bitmap> bitmap = mCachingBackend.getBitmapForFrame(3);
+    assertEquals(opaquePixelValue(3, 20), bitmap.get().getPixel(10, 20));
+    assertEquals(Bitmap.Config.ARGB_8888, bitmap.get().getConfig());
+    assertEquals(expandedFrameCount + 1, mCachingBackend.getExpandedFrameCount());
+    bitmap.close();
+
+    // frames are expected to take a quarter of the memory of ARGB_8888 bitmaps
+    assertEquals(
+        makeCachingBackend(0).getBytesToHoldAllFrames(),
+        4 * mCachingBackend.getBytesToHoldAllFrames());
+  }
+
+  @Test
+  public void testOpaqueFramesStoredAsRgb565() {
+    mDrawableBackend = makeOpaqueDrawableBackend();
+    mCachingBackend = makeCachingBackend(
+        50 * 1024 * 1024,
+        AnimatedDrawableOptions.FrameStorage.RGB_565);
+
+    mCachingBackend.getBitmapForFrameBlocking(0).close();
+    CloseableReference<Bitmap> bitmap = mCachingBackend.getBitmapForFrame(0);
+    assertEquals(Bitmap.Config.RGB_565, bitmap.get().getConfig());
+    assertEquals(opaquePixelValue(0, 20), bitmap.get().getPixel(10, 20));
+    bitmap.close();
+    assertEquals(0, mCachingBackend.getExpandedFrameCount());
+  }
+
+  @Test
+  public void testTransparentFramesStoredAsArgb8888() {
+    // the test frames are transparent and have more colors than a palette can hold
+    mCachingBackend = makeCachingBackend(
+        50 * 1024 * 1024,
+        AnimatedDrawableOptions.FrameStorage.PALETTE_INDEXED);
+
+    mCachingBackend.getBitmapForFrameBlocking(0).close();
+    CloseableReference<Bitmap> bitmap = mCachingBackend.getBitmapForFrame(0);
+    assertEquals(Bitmap.Config.ARGB_8888, bitmap.get().getConfig());
+    assertEquals(pixelValue(0, 10, 20), bitmap.get().getPixel(10, 20));
+    bitmap.close();
+    assertEquals(0, mCachingBackend.getExpandedFrameCount());
+  }
+
+  /**
+   * Makes a drawable backend whose frames are opaque and have one color per row.
+   */
+  private static TestAnimatedDrawableBackend makeOpaqueDrawableBackend() {
+    return new TestAnimatedDrawableBackend(WIDTH, HEIGHT, FRAME_DURATIONS) {
+      @Override
+      public void renderFrame(int frameNumber, Canvas canvas) {
+        int[] pixels = new int[WIDTH * HEIGHT];
+        for (int i = 0; i < pixels.length; i++) {
+          pixels[i] = opaquePixelValue(frameNumber, i / WIDTH);
+        }
+        Bitmap bitmap = Bitmap.createBitmap(pixels, WIDTH, HEIGHT, Bitmap.Config.ARGB_8888);
+        canvas.drawBitmap(bitmap, 0, 0, null);
+      }
+    };
+  }
+
+  private static int opaquePixelValue(int frameNumber, int y) {
+    return 0xFF000000 | pixelValue(frameNumber, 0, y);
+  }
+
   private void assertDecodesInFlight(int... frames) {
     assertTrue(mExecutorService.getScheduledQueue().getPendingCount() >= frames.length);
     Map<Integer, Task<?>> decodesInFlight =  mCachingBackend.getDecodesInFlight();
@@ -151,8 +429,15 @@ public class AnimatedDrawableCachingBackendImplTest {
   }
 
   private AnimatedDrawableCachingBackendImpl makeCachingBackend(int maxBytes) {
+    return makeCachingBackend(maxBytes, AnimatedDrawableOptions.FrameStorage.ARGB_8888);
+  }
+
+  private AnimatedDrawableCachingBackendImpl makeCachingBackend(
+      int maxBytes,
+      AnimatedDrawableOptions.FrameStorage frameStorage) {
     AnimatedDrawableOptions options = AnimatedDrawableOptions.newBuilder()
         .setMaximumBytes(maxBytes)
+        .setFrameStorage(frameStorage)
         .build();
     return new AnimatedDrawableCachingBackendImpl(
         mExecutorService,
@@ -162,4 +447,35 @@ public class AnimatedDrawableCachingBackendImplTest {
         mDrawableBackend,
         options);
   }
+
+  private AnimatedDrawableCachingBackendImpl makeCachingBackend(
+      CountingMemoryCache<CacheKey, CloseableImage> frameMemoryCache) {
+    return new AnimatedDrawableCachingBackendImpl(
+        mExecutorService,
+        mActivityManager,
+        mAnimatedDrawableUtil,
+        mFakeClock,
+        mDrawableBackend,
+        AnimatedDrawableOptions.DEFAULTS,
+        null,
+        frameMemoryCache);
+  }
+
+  private static CountingMemoryCache<CacheKey, CloseableImage> makeFrameMemoryCache() {
+    final MemoryCacheParams params = new MemoryCacheParams(
+        4 * ByteConstants.MB,
+        256,
+        Integer.MAX_VALUE,
+        Integer.MAX_VALUE,
+        Integer.MAX_VALUE);
+    Supplier<MemoryCacheParams> paramsSupplier = new Supplier<MemoryCacheParams>() {
+      @Override
+      public MemoryCacheParams get() {
+        return params;
+      }
+    };
+    return BitmapCountingMemoryCacheFactory.get(
+        paramsSupplier,
+        mock(MemoryTrimmableRegistry.class));
+  }
 }
@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2015-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.imagepipeline.animated.impl;
+
+import java.util.Arrays;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.graphics.Bitmap;
+
+import com.facebook.common.references.CloseableReference;
+import com.facebook.imagepipeline.animated.base.AnimatedDrawableBackend;
+import com.facebook.imagepipeline.animated.base.AnimatedDrawableFrameInfo;
+import com.facebook.imagepipeline.animated.base.AnimatedDrawableOptions;
+import com.facebook.imagepipeline.animated.testing.MyShadowBitmap;
+import com.facebook.imagepipeline.animated.testing.MyShadowCanvas;
+import com.facebook.imagepipeline.animated.testing.TestAnimatedDrawableBackend;
+import com.facebook.imagepipeline.animated.util.AnimatedDrawableUtil;
+import com.facebook.imagepipeline.testing.FakeClock;
+import com.facebook.imagepipeline.testing.TestExecutorService;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link AnimatedFrameBudget}.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(shadows = {MyShadowCanvas.class, MyShadowBitmap.class})
+public class AnimatedFrameBudgetTest {
+
+  private static final int WIDTH = 200;
+  private static final int HEIGHT = 100;
+  private static final int[] SHORT_LOOP = new int[] { 60, 30, 15, 30, 60, 30, 45, 15, 30 };
+  private static final int[] LONG_LOOP = new int[] { 90, 90, 90, 90, 90, 90, 90, 90, 90 };
+
+  private FakeClock mFakeClock;
+  private TestExecutorService mExecutorService;
+  private ActivityManager mActivityManager;
+  private AnimatedDrawableUtil mAnimatedDrawableUtil;
+  private AnimatedFrameBudget mAnimatedFrameBudget;
+
+  @Before
+  public void setup() {
+    mActivityManager =
+        (ActivityManager) RuntimeEnvironment.application.getSystemService(Context.ACTIVITY_SERVICE);
+    mFakeClock = new FakeClock();
+    mExecutorService = new TestExecutorService(mFakeClock);
+    mAnimatedDrawableUtil = new AnimatedDrawableUtil();
+  }
+
+  @Test
+  public void testGrantsShorterLoopsAndActiveAnimationsFirst() {
+    AnimatedDrawableCachingBackendImpl shortLoop1 = makeCachingBackend(SHORT_LOOP);
+    mAnimatedFrameBudget = new AnimatedFrameBudget(2 * shortLoop1.getBytesToHoldAllFrames());
+    shortLoop1 = makeCachingBackend(SHORT_LOOP);
+    AnimatedDrawableCachingBackendImpl longLoop = makeCachingBackend(LONG_LOOP);
+    AnimatedDrawableCachingBackendImpl shortLoop2 = makeCachingBackend(SHORT_LOOP);
+    assertEquals(3, mAnimatedFrameBudget.getBackendCount());
+    assertEquals(2, mAnimatedFrameBudget.getGrantedBackendCount());
+    assertTrue(shortLoop1.isKeepAllFramesGranted());
+    assertTrue(shortLoop2.isKeepAllFramesGranted());
+    assertFalse(longLoop.isKeepAllFramesGranted());
+
+    longLoop.setActive(true);
+    shortLoop1.setActive(true);
+    assertTrue(longLoop.isKeepAllFramesGranted());
+    assertTrue(shortLoop1.isKeepAllFramesGranted());
+    assertFalse(shortLoop2.isKeepAllFramesGranted());
+    assertEquals(
+        2 * shortLoop1.getBytesToHoldAllFrames(),
+        mAnimatedFrameBudget.getGrantedBytes());
+
+    longLoop.setActive(false);
+    assertFalse(longLoop.isKeepAllFramesGranted());
+    assertTrue(shortLoop2.isKeepAllFramesGranted());
+  }
+
+  @Test
+  public void testOnlyGrantedBackendsKeepAllFrames() {
+    mAnimatedFrameBudget = new AnimatedFrameBudget(0);
+    AnimatedDrawableCachingBackendImpl backend = makeCachingBackend(SHORT_LOOP);
+    fetchAllFrames(backend);
+    assertTrue(backend.getFramesCached().size() < SHORT_LOOP.length);
+
+    mAnimatedFrameBudget = new AnimatedFrameBudget(50 * 1024 * 1024);
+    backend = makeCachingBackend(SHORT_LOOP);
+    fetchAllFrames(backend);
+    assertEquals(SHORT_LOOP.length, backend.getFramesCached().size());
+    assertEquals(backend.getRenderedFrameBytes(), mAnimatedFrameBudget.getTotalFrameBytes());
+    assertTrue(mAnimatedFrameBudget.getTotalFrameBytes() > 0);
+  }
+
+  @Test
+  public void testSnapshotFramesCountAgainstBudget() {
+    AnimatedDrawableCachingBackendImpl backend = makeCachingBackend(makeLongRunOfDeltaFrames());
+    int snapshotBytes = backend.getBytesToHoldSnapshotFrames();
+    assertTrue(snapshotBytes > 0);
+    assertTrue(snapshotBytes < backend.getBytesToHoldAllFrames());
+
+    // only one backend gets its snapshots
+    mAnimatedFrameBudget = new AnimatedFrameBudget(snapshotBytes);
+    backend = makeCachingBackend(makeLongRunOfDeltaFrames());
+    AnimatedDrawableCachingBackendImpl otherBackend =
+        makeCachingBackend(makeLongRunOfDeltaFrames());
+    backend.setActive(true);
+    assertFalse(backend.isKeepAllFramesGranted());
+    assertTrue(backend.isSnapshotFramesGranted());
+    assertFalse(otherBackend.isKeepAllFramesGranted());
+    assertFalse(otherBackend.isSnapshotFramesGranted());
+    assertEquals(snapshotBytes, mAnimatedFrameBudget.getGrantedBytes());
+    assertEquals(0, mAnimatedFrameBudget.getGrantedBackendCount());
+
+    assertNull(backend.getBitmapForFrame(0));
+    backend.getBitmapForFrameBlocking(39).close();
+    assertTrue(backend.getFramesCached().containsAll(Arrays.asList(8, 16, 24, 32)));
+    assertNull(otherBackend.getBitmapForFrame(0));
+    otherBackend.getBitmapForFrameBlocking(39).close();
+    assertFalse(otherBackend.getFramesCached().contains(16));
+  }
+
+  /**
+   * Makes a backend of 40 frames that all blend with the previous frame, so that only the first
+   * frame is a key frame.
+   */
+  private AnimatedDrawableBackend makeLongRunOfDeltaFrames() {
+    int[] frameDurations = new int[40];
+    Arrays.fill(frameDurations, 10);
+    return new TestAnimatedDrawableBackend(WIDTH, HEIGHT, frameDurations) {
+      @Override
+      public AnimatedDrawableFrameInfo getFrameInfo(int frameNumber) {
+        return new AnimatedDrawableFrameInfo(
+            frameNumber,
+            0,
+            0,
+            WIDTH,
+            HEIGHT,
+            true,
+            AnimatedDrawableFrameInfo.DisposalMethod.DISPOSE_DO_NOT);
+      }
+    };
+  }
+
+  private void fetchAllFrames(AnimatedDrawableCachingBackendImpl backend) {
+    for (int i = 0; i < SHORT_LOOP.length; i++) {
+      CloseableReference<Bitmap> bitmap = backend.getBitmapForFrameBlocking(i);
+      assertNotNull(bitmap);
+      bitmap.close();
+      mExecutorService.getScheduledQueue().runUntilIdle();
+    }
+  }
+
+  private AnimatedDrawableCachingBackendImpl makeCachingBackend(int[] frameDurations) {
+    return makeCachingBackend(new TestAnimatedDrawableBackend(WIDTH, HEIGHT, frameDurations));
+  }
+
+  private AnimatedDrawableCachingBackendImpl makeCachingBackend(
+      AnimatedDrawableBackend drawableBackend) {
+    return new AnimatedDrawableCachingBackendImpl(
+        mExecutorService,
+        mActivityManager,
+        mAnimatedDrawableUtil,
+        mFakeClock,
+        drawableBackend,
+        AnimatedDrawableOptions.DEFAULTS,
+        mAnimatedFrameBudget);
+  }
+}
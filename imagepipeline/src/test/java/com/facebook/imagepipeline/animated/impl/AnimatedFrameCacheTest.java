@@ -15,6 +15,7 @@ import com.facebook.common.internal.Supplier;
 import com.facebook.common.memory.MemoryTrimmableRegistry;
 import com.facebook.common.references.CloseableReference;
 import com.facebook.common.util.ByteConstants;
+import com.facebook.imagepipeline.animated.base.AnimatedImageResult;
 import com.facebook.imagepipeline.cache.BitmapCountingMemoryCacheFactory;
 import com.facebook.imagepipeline.cache.CountingMemoryCache;
 import com.facebook.imagepipeline.cache.MemoryCacheParams;
@@ -27,6 +28,7 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.robolectric.RobolectricTestRunner;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
@@ -40,6 +42,7 @@ public class AnimatedFrameCacheTest {
   @Mock public MemoryTrimmableRegistry mMemoryTrimmableRegistry;
   @Mock public Supplier<MemoryCacheParams> mMemoryCacheParamsSupplier;
 
+  private CountingMemoryCache<CacheKey, CloseableImage> mCountingMemoryCache;
   private CacheKey mCacheKey;
   private AnimatedFrameCache mAnimatedFrameCache;
   private CloseableReference<CloseableImage> mFrame1;
@@ -55,10 +58,10 @@ public class AnimatedFrameCacheTest {
         Integer.MAX_VALUE,
         Integer.MAX_VALUE);
     when(mMemoryCacheParamsSupplier.get()).thenReturn(params);
-    CountingMemoryCache<CacheKey, CloseableImage> countingMemoryCache =
+    mCountingMemoryCache =
         BitmapCountingMemoryCacheFactory.get(mMemoryCacheParamsSupplier, mMemoryTrimmableRegistry);
     mCacheKey = new SimpleCacheKey("key");
-    mAnimatedFrameCache = new AnimatedFrameCache(mCacheKey, countingMemoryCache);
+    mAnimatedFrameCache = new AnimatedFrameCache(mCacheKey, mCountingMemoryCache);
     mFrame1 = CloseableReference.of(mock(CloseableImage.class));
     mFrame2 = CloseableReference.of(mock(CloseableImage.class));
   }
@@ -106,4 +109,39 @@ public class AnimatedFrameCacheTest {
     ret.close();
     assertNotNull(mAnimatedFrameCache.get(1));
   }
+
+  @Test
+  public void testSharedBetweenEqualImageKeys() {
+    AnimatedImageResult animatedImageResult = mock(AnimatedImageResult.class);
+    AnimatedFrameCache animatedFrameCache1 = new AnimatedFrameCache(
+        new AnimatedFrameCache.RenderedImageKey(animatedImageResult, 100, 50),
+        mCountingMemoryCache);
+    AnimatedFrameCache animatedFrameCache2 = new AnimatedFrameCache(
+        new AnimatedFrameCache.RenderedImageKey(animatedImageResult, 100, 50),
+        mCountingMemoryCache);
+    AnimatedFrameCache otherSizeFrameCache = new AnimatedFrameCache(
+        new AnimatedFrameCache.RenderedImageKey(animatedImageResult, 50, 25),
+        mCountingMemoryCache);
+    AnimatedFrameCache otherImageFrameCache = new AnimatedFrameCache(
+        new AnimatedFrameCache.RenderedImageKey(mock(AnimatedImageResult.class), 100, 50),
+        mCountingMemoryCache);
+
+    animatedFrameCache1.cache(1, mFrame1);
+    assertSame(mFrame1.get(), animatedFrameCache2.get(1).get());
+    assertNull(otherSizeFrameCache.get(1));
+    assertNull(otherImageFrameCache.get(1));
+  }
+
+  @Test
+  public void testCounts() {
+    mAnimatedFrameCache.cache(1, mFrame1);
+    mAnimatedFrameCache.get(1);
+    mAnimatedFrameCache.get(1);
+    mAnimatedFrameCache.get(2);
+    assertEquals(1, mAnimatedFrameCache.getCachedCount());
+    assertEquals(2, mAnimatedFrameCache.getHitCount());
+    assertEquals(2, mAnimatedFrameCache.getHitCount(1));
+    assertEquals(0, mAnimatedFrameCache.getHitCount(2));
+    assertEquals(1, mAnimatedFrameCache.getMissCount());
+  }
 }
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2015-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.imagepipeline.animated.impl;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+
+import com.facebook.imagepipeline.animated.base.AnimatedDrawableBackend;
+import com.facebook.imagepipeline.animated.base.AnimatedDrawableFrameInfo;
+import com.facebook.imagepipeline.animated.base.AnimatedDrawableFrameInfo.DisposalMethod;
+import com.facebook.imagepipeline.animated.testing.MyShadowBitmap;
+import com.facebook.imagepipeline.animated.testing.MyShadowCanvas;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for {@link AnimatedImageCompositor}.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(shadows = {MyShadowCanvas.class, MyShadowBitmap.class})
+public class AnimatedImageCompositorTest {
+
+  private static final int WIDTH = 100;
+  private static final int HEIGHT = 50;
+
+  private AnimatedDrawableBackend mAnimatedDrawableBackend;
+  private AnimatedImageCompositor.Callback mCallback;
+  private AnimatedImageCompositor mAnimatedImageCompositor;
+
+  @Before
+  public void setUp() {
+    mAnimatedDrawableBackend = mock(AnimatedDrawableBackend.class);
+    when(mAnimatedDrawableBackend.getRenderedWidth()).thenReturn(WIDTH);
+    when(mAnimatedDrawableBackend.getRenderedHeight()).thenReturn(HEIGHT);
+    when(mAnimatedDrawableBackend.getFrameCount()).thenReturn(8);
+    mockFrame(0, false, DisposalMethod.DISPOSE_DO_NOT);
+    mockFrame(1, true, DisposalMethod.DISPOSE_DO_NOT);
+    mockFrame(2, true, DisposalMethod.DISPOSE_DO_NOT);
+    mockFrame(3, false, DisposalMethod.DISPOSE_DO_NOT);
+    mockFrame(4, true, DisposalMethod.DISPOSE_TO_PREVIOUS);
+    mockFrame(5, true, DisposalMethod.DISPOSE_DO_NOT);
+    mockFrame(6, true, DisposalMethod.DISPOSE_TO_BACKGROUND);
+    mockFrame(7, true, DisposalMethod.DISPOSE_DO_NOT);
+    mCallback = mock(AnimatedImageCompositor.Callback.class);
+    mAnimatedImageCompositor = new AnimatedImageCompositor(mAnimatedDrawableBackend, mCallback);
+  }
+
+  @Test
+  public void testKeyFrames() {
+    assertEquals(0, mAnimatedImageCompositor.getKeyFrame(0));
+    assertEquals(0, mAnimatedImageCompositor.getKeyFrame(1));
+    assertEquals(0, mAnimatedImageCompositor.getKeyFrame(2));
+    assertEquals(3, mAnimatedImageCompositor.getKeyFrame(3));
+    assertEquals(3, mAnimatedImageCompositor.getKeyFrame(4));
+    // frame 4 gets disposed to previous, so it is skipped
+    assertEquals(3, mAnimatedImageCompositor.getKeyFrame(5));
+    assertEquals(3, mAnimatedImageCompositor.getKeyFrame(6));
+    // frame 6 covers the whole image and gets disposed to background
+    assertEquals(7, mAnimatedImageCompositor.getKeyFrame(7));
+    assertEquals(3, mAnimatedImageCompositor.getCompositeStepCount(5));
+  }
+
+  @Test
+  public void testRenderFrameStartsAtKeyFrame() {
+    Bitmap bitmap = Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888);
+    mAnimatedImageCompositor.renderFrame(5, bitmap);
+    verify(mAnimatedDrawableBackend).renderFrame(eq(3), any(Canvas.class));
+    verify(mAnimatedDrawableBackend).renderFrame(eq(5), any(Canvas.class));
+    verify(mAnimatedDrawableBackend, never()).renderFrame(eq(0), any(Canvas.class));
+    verify(mAnimatedDrawableBackend, never()).renderFrame(eq(4), any(Canvas.class));
+    verify(mCallback, never()).getCachedBitmap(2);
+  }
+
+  private void mockFrame(int frameNumber, boolean blend, DisposalMethod disposalMethod) {
+    when(mAnimatedDrawableBackend.getFrameInfo(frameNumber)).thenReturn(
+        new AnimatedDrawableFrameInfo(frameNumber, 0, 0, WIDTH, HEIGHT, blend, disposalMethod));
+  }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2015-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.imagepipeline.animated.impl;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link IndexedFrame}.
+ */
+public class IndexedFrameTest {
+
+  @Test
+  public void testExpand() {
+    int[] pixels = new int[1000];
+    for (int i = 0; i < pixels.length; i++) {
+      // runs of the same color, and colors whose low bits are the same
+      pixels[i] = (i / 3 % IndexedFrame.MAX_COLORS) << 24 | 0x123456;
+    }
+    IndexedFrame indexedFrame = IndexedFrame.create(pixels, pixels.length);
+    assertNotNull(indexedFrame);
+    assertEquals(IndexedFrame.MAX_COLORS, indexedFrame.getColorCount());
+    assertEquals(pixels.length + IndexedFrame.MAX_COLORS * 4, indexedFrame.getSizeInBytes());
+
+    int[] expandedPixels = new int[pixels.length];
+    indexedFrame.expand(expandedPixels);
+    assertArrayEquals(pixels, expandedPixels);
+  }
+
+  @Test
+  public void testOnlyCountedPixels() {
+    int[] pixels = new int[] { 0, 0xFFFFFFFF, 0, 0xFF000000 };
+    IndexedFrame indexedFrame = IndexedFrame.create(pixels, 3);
+    assertNotNull(indexedFrame);
+    assertEquals(2, indexedFrame.getColorCount());
+    assertEquals(3 + 2 * 4, indexedFrame.getSizeInBytes());
+  }
+
+  @Test
+  public void testTooManyColors() {
+    int[] pixels = new int[IndexedFrame.MAX_COLORS + 1];
+    for (int i = 0; i < pixels.length; i++) {
+      pixels[i] = 0xFF000000 | i;
+    }
+    assertNull(IndexedFrame.create(pixels, pixels.length));
+    assertNotNull(IndexedFrame.create(pixels, pixels.length - 1));
+  }
+}
@@ -24,6 +24,7 @@ public class MyShadowBitmap {
 
   private int width;
   private int height;
+  private Bitmap.Config config;
   private int[] mPixels;
 
   @Implementation
@@ -36,12 +37,18 @@ public class MyShadowBitmap {
     return height;
   }
 
+  @Implementation
+  public Bitmap.Config getConfig() {
+    return config;
+  }
+
   @Implementation
   public static Bitmap createBitmap(int width, int height, Bitmap.Config config) {
     Bitmap bitmap = Shadow.newInstanceOf(Bitmap.class);
     MyShadowBitmap shadowBitmap = (MyShadowBitmap) ShadowExtractor.extract(bitmap);
     shadowBitmap.width = width;
     shadowBitmap.height = height;
+    shadowBitmap.config = config;
     shadowBitmap.mPixels = new int[width * height];
     return bitmap;
   }
@@ -52,6 +59,7 @@ public class MyShadowBitmap {
     MyShadowBitmap shadowBitmap = (MyShadowBitmap) ShadowExtractor.extract(bitmap);
     shadowBitmap.width = width;
     shadowBitmap.height = height;
+    shadowBitmap.config = config;
     shadowBitmap.mPixels = new int[width * height];
     for (int i = 0; i < colors.length; i++) {
       shadowBitmap.mPixels[i] = colors[i];
@@ -69,6 +77,38 @@ public class MyShadowBitmap {
     return mPixels[y * width + x];
   }
 
+  @Implementation
+  public void getPixels(
+      int[] pixels,
+      int offset,
+      int stride,
+      int x,
+      int y,
+      int pixelsWidth,
+      int pixelsHeight) {
+    for (int row = 0; row < pixelsHeight; row++) {
+      for (int column = 0; column < pixelsWidth; column++) {
+        pixels[offset + row * stride + column] = mPixels[(y + row) * width + x + column];
+      }
+    }
+  }
+
+  @Implementation
+  public void setPixels(
+      int[] pixels,
+      int offset,
+      int stride,
+      int x,
+      int y,
+      int pixelsWidth,
+      int pixelsHeight) {
+    for (int row = 0; row < pixelsHeight; row++) {
+      for (int column = 0; column < pixelsWidth; column++) {
+        mPixels[(y + row) * width + x + column] = pixels[offset + row * stride + column];
+      }
+    }
+  }
+
   @Implementation
   public void eraseColor(int c) {
     for (int i = 0; i < mPixels.length; i++) {
@@ -278,6 +278,98 @@ public class CountingMemoryCacheTest {
     verify(mReleaser).release(500);
   }
 
+  @Test
+  public void testEviction_NotifiesObserver() {
+    CountingMemoryCache.EntryEvictionObserver<String, Integer> evictionObserver =
+        mock(CountingMemoryCache.EntryEvictionObserver.class);
+    mCache = new CountingMemoryCache<>(
+        mValueDescriptor,
+        mCacheTrimStrategy,
+        mParamsSupplier,
+        evictionObserver);
+    mCache.cache(KEYS[1], newReference(400)).close();
+    mCache.cache(KEYS[2], newReference(500)).close();
+    verify(evictionObserver, never()).onEntryEvicted(anyString(), any(CloseableReference.class));
+
+    // value 3 can only fit after evicting value 1
+    CloseableReference<Integer> valueRef3 = mCache.cache(KEYS[3], newReference(700));
+    verify(evictionObserver).onEntryEvicted(eq(KEYS[1]), any(CloseableReference.class));
+    verify(evictionObserver, never()).onEntryEvicted(eq(KEYS[2]), any(CloseableReference.class));
+    verify(mReleaser).release(400);
+
+    // explicit removal is not an eviction
+    valueRef3.close();
+    mCache.clear();
+    verify(evictionObserver, times(1)).onEntryEvicted(anyString(), any(CloseableReference.class));
+  }
+
+  @Test
+  public void testEviction_PartitionsOverBudgetFirst() {
+    int[] partitionBudgets = new int[] {400, 800};
+    setUpPartitionedCache(partitionBudgets);
+    // the cache params keep their own copy of the budgets
+    partitionBudgets[0] = 0;
+    assertEquals(2, mCache.getPartitionCount());
+
+    mCache.cache(KEYS[1], newReference(100)).close();
+    mCache.cache(KEYS[2], newReference(110)).close();
+    mCache.cache(KEYS[3], newReference(120)).close();
+    mCache.cache(KEYS[4], newReference(500)).close();
+    // partition 1 may borrow space as long as the whole cache fits
+    assertEquals(330, mCache.getPartitionSizeInBytes(0));
+    assertEquals(500, mCache.getPartitionSizeInBytes(1));
+
+    // value 5 only fits after an eviction; partition 1 exceeds its budget, so it gets evicted from
+    // even though value 1 is the least recently used one
+    CloseableReference<Integer> valueRef5 = mCache.cache(KEYS[5], newReference(500));
+    assertTotalSize(4, 830);
+    assertExclusivelyOwned(KEYS[1], 100);
+    assertExclusivelyOwned(KEYS[2], 110);
+    assertExclusivelyOwned(KEYS[3], 120);
+    assertNotCached(KEYS[4], 500);
+    assertSharedWithCount(KEYS[5], 500, 1);
+    verify(mReleaser).release(500);
+    assertEquals(330, mCache.getPartitionSizeInBytes(0));
+    assertEquals(500, mCache.getPartitionSizeInBytes(1));
+    assertEquals(0, mCache.getPartitionEvictionCount(0));
+    assertEquals(1, mCache.getPartitionEvictionCount(1));
+
+    mCache.get(KEYS[1]).close();
+    valueRef5.close();
+    assertEquals(1, mCache.getPartitionHitCount(0));
+    assertEquals(3, mCache.getPartitionPutCount(0));
+    assertEquals(0.25f, mCache.getPartitionHitRate(0), 0f);
+    assertEquals(0, mCache.getPartitionHitCount(1));
+    assertEquals(2, mCache.getPartitionPutCount(1));
+
+    mCache.clear();
+    assertEquals(0, mCache.getPartitionSizeInBytes(0));
+    assertEquals(0, mCache.getPartitionSizeInBytes(1));
+  }
+
+  @Test
+  public void testEviction_LeastRecentlyUsedOfPartitionsOverBudgetFirst() {
+    setUpPartitionedCache(new int[] {100, 300});
+
+    mCache.cache(KEYS[1], newReference(500)).close();
+    mCache.cache(KEYS[2], newReference(100)).close();
+    mCache.cache(KEYS[3], newReference(110)).close();
+    mCache.cache(KEYS[4], newReference(400)).close();
+    mCache.get(KEYS[1]).close();
+    // both partitions exceed their budget; value 1 got used after values 2 and 3, so the least
+    // recently used values of both partitions are values 2 and 3
+    CloseableReference<Integer> valueRef5 = mCache.cache(KEYS[5], newReference(200));
+    assertTotalSize(3, 1100);
+    assertExclusivelyOwned(KEYS[1], 500);
+    assertNotCached(KEYS[2], 100);
+    assertNotCached(KEYS[3], 110);
+    assertExclusivelyOwned(KEYS[4], 400);
+    assertSharedWithCount(KEYS[5], 200, 1);
+    assertEquals(2, mCache.getPartitionEvictionCount(0));
+    assertEquals(0, mCache.getPartitionEvictionCount(1));
+    valueRef5.close();
+  }
+
   @Test
   public void testEviction_ByTotalCount() {
     // value 5 cannot fit the cache
@@ -596,6 +688,30 @@ public class CountingMemoryCacheTest {
     inOrder.verify(mReleaser).release(105);
   }
 
+  private void setUpPartitionedCache(int[] partitionBudgets) {
+    // values smaller than 300 go to partition 0, the others to partition 1
+    CountingMemoryCache.EntryClassifier<String, Integer> entryClassifier =
+        new CountingMemoryCache.EntryClassifier<String, Integer>() {
+          @Override
+          public int getPartitionCount() {
+            return 2;
+          }
+
+          @Override
+          public int getPartition(String key, Integer value) {
+            return value < 300 ? 0 : 1;
+          }
+        };
+    when(mParamsSupplier.get()).thenReturn(
+        new MemoryCacheParams(1200, 10, 1200, 10, 1000, partitionBudgets));
+    mCache = new CountingMemoryCache<>(
+        mValueDescriptor,
+        mCacheTrimStrategy,
+        mParamsSupplier,
+        null,
+        entryClassifier);
+  }
+
   private CloseableReference<Integer> newReference(int size) {
     return CloseableReference.of(size, mReleaser);
   }
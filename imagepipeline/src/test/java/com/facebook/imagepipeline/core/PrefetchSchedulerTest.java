@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2015-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.imagepipeline.core;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.facebook.datasource.AbstractDataSource;
+import com.facebook.imagepipeline.common.Priority;
+import com.facebook.imagepipeline.request.ImageRequest;
+
+import org.junit.*;
+import org.junit.runner.*;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.robolectric.*;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for {@link PrefetchScheduler}
+ */
+@RunWith(RobolectricTestRunner.class)
+public class PrefetchSchedulerTest {
+
+  private static final int ITEM_COUNT = 100;
+
+  private ImagePipeline mImagePipeline;
+  private Object mCallerContext;
+  private ImageRequest[] mImageRequests;
+  private Map<ImageRequest, PrefetchDataSource> mDataSources;
+  private PrefetchScheduler mPrefetchScheduler;
+
+  @Before
+  public void setUp() {
+    mImagePipeline = mock(ImagePipeline.class);
+    mCallerContext = new Object();
+    mImageRequests = new ImageRequest[ITEM_COUNT];
+    for (int i = 0; i < ITEM_COUNT; i++) {
+      mImageRequests[i] = mock(ImageRequest.class);
+    }
+    mDataSources = new HashMap<>();
+    when(mImagePipeline.prefetchToBitmapCache(
+        any(ImageRequest.class),
+        any(),
+        any(Priority.class))).thenAnswer(
+        new Answer<PrefetchDataSource>() {
+          @Override
+          public PrefetchDataSource answer(InvocationOnMock invocation) throws Throwable {
+            PrefetchDataSource dataSource = new PrefetchDataSource();
+            mDataSources.put((ImageRequest) invocation.getArguments()[0], dataSource);
+            return dataSource;
+          }
+        });
+    mPrefetchScheduler = new PrefetchScheduler(
+        mImagePipeline,
+        new PrefetchScheduler.ItemImageRequestProvider() {
+          @Override
+          public int getItemCount() {
+            return ITEM_COUNT;
+          }
+
+          @Override
+          public ImageRequest getImageRequest(int position) {
+            return mImageRequests[position];
+          }
+        },
+        mCallerContext,
+        3,
+        4,
+        20);
+  }
+
+  @Test
+  public void testPrefetchesAheadWithinBudget() {
+    mPrefetchScheduler.onViewportChanged(0, 4, 0);
+    verifyPrefetch(5, Priority.MEDIUM);
+    verifyPrefetch(6, Priority.MEDIUM);
+    verifyPrefetch(7, Priority.LOW);
+    verifyNoPrefetch(8);
+    assertEquals(3, mPrefetchScheduler.getIssuedCount());
+
+    // a finished prefetch frees up the budget
+    mDataSources.get(mImageRequests[5]).finish();
+    verifyPrefetch(8, Priority.LOW);
+    assertEquals(4, mPrefetchScheduler.getIssuedCount());
+  }
+
+  @Test
+  public void testPrefetchesFurtherWhenScrollingFast() {
+    mPrefetchScheduler.onViewportChanged(50, 54, -10);
+    verifyPrefetch(49, Priority.MEDIUM);
+    verifyPrefetch(48, Priority.MEDIUM);
+    verifyPrefetch(47, Priority.MEDIUM);
+    verifyNoPrefetch(55);
+
+    for (int position = 49; position > 38; position--) {
+      mDataSources.get(mImageRequests[position]).finish();
+    }
+    // 4 items ahead at rest plus 10 items for one second of scrolling
+    verify(mImagePipeline).prefetchToBitmapCache(
+        mImageRequests[36],
+        mCallerContext,
+        Priority.LOW);
+    verifyNoPrefetch(35);
+  }
+
+  @Test
+  public void testPromotesAttachedItems() {
+    mPrefetchScheduler.onViewportChanged(0, 4, 0);
+    PrefetchDataSource dataSource = mDataSources.get(mImageRequests[5]);
+
+    mPrefetchScheduler.onItemAttached(5);
+    verifyPrefetch(5, Priority.HIGH);
+    assertTrue(dataSource.isClosed());
+    assertEquals(1, mPrefetchScheduler.getHitCount());
+
+    // the item of a prefetch not submitted yet just gets dropped
+    mPrefetchScheduler.onItemAttached(8);
+    mDataSources.get(mImageRequests[6]).finish();
+    verifyNoPrefetch(8);
+    assertEquals(1, mPrefetchScheduler.getHitCount());
+  }
+
+  @Test
+  public void testCancelsItemsBehindViewport() {
+    mPrefetchScheduler.onViewportChanged(0, 4, 0);
+    mDataSources.get(mImageRequests[5]).finish();
+    PrefetchDataSource dataSource6 = mDataSources.get(mImageRequests[6]);
+    mPrefetchScheduler.onItemAttached(7);
+
+    mPrefetchScheduler.onViewportChanged(20, 24, 0);
+    assertTrue(dataSource6.isClosed());
+    assertEquals(1, mPrefetchScheduler.getWastedCount());
+    // items 6 and 8 were still in flight, item 7 got attached
+    assertEquals(2, mPrefetchScheduler.getCancelledCount());
+    assertEquals(1, mPrefetchScheduler.getHitCount());
+    verifyPrefetch(25, Priority.MEDIUM);
+  }
+
+  @Test
+  public void testMemoryCacheHitsFinishOutsideOfTheLock() {
+    final boolean[] calledWithLockHeld = new boolean[1];
+    when(mImagePipeline.prefetchToBitmapCache(
+        any(ImageRequest.class),
+        any(),
+        any(Priority.class))).thenAnswer(
+        new Answer<PrefetchDataSource>() {
+          @Override
+          public PrefetchDataSource answer(InvocationOnMock invocation) throws Throwable {
+            calledWithLockHeld[0] |= Thread.holdsLock(mPrefetchScheduler);
+            PrefetchDataSource dataSource = new PrefetchDataSource();
+            mDataSources.put((ImageRequest) invocation.getArguments()[0], dataSource);
+            if (invocation.getArguments()[0] == mImageRequests[5]) {
+              dataSource.finish();
+            }
+            return dataSource;
+          }
+        });
+
+    mPrefetchScheduler.onViewportChanged(0, 4, 0);
+    verifyPrefetch(5, Priority.MEDIUM);
+    verifyPrefetch(8, Priority.LOW);
+    assertEquals(4, mPrefetchScheduler.getIssuedCount());
+    assertFalse(calledWithLockHeld[0]);
+  }
+
+  private void verifyPrefetch(int position, Priority priority) {
+    verify(mImagePipeline).prefetchToBitmapCache(
+        mImageRequests[position],
+        mCallerContext,
+        priority);
+  }
+
+  private void verifyNoPrefetch(int position) {
+    verify(mImagePipeline, never()).prefetchToBitmapCache(
+        eq(mImageRequests[position]),
+        any(),
+        any(Priority.class));
+  }
+
+  private static class PrefetchDataSource extends AbstractDataSource<Void> {
+    public void finish() {
+      setResult(null, /* isLast */ true);
+    }
+  }
+}
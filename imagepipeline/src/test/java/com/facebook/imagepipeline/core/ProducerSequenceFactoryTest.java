@@ -17,6 +17,7 @@ import com.facebook.common.util.UriUtil;
 import com.facebook.imagepipeline.image.CloseableImage;
 import com.facebook.imagepipeline.image.EncodedImage;
 import com.facebook.imagepipeline.memory.PooledByteBuffer;
+import com.facebook.imagepipeline.producers.AnimatedFrameProducer;
 import com.facebook.imagepipeline.producers.DecodeProducer;
 import com.facebook.imagepipeline.producers.LocalAssetFetchProducer;
 import com.facebook.imagepipeline.producers.LocalContentUriFetchProducer;
@@ -79,6 +80,7 @@ public class ProducerSequenceFactoryTest {
         .thenReturn(ImageRequest.RequestLevel.FULL_FETCH);
     mUri = Uri.parse("http://dummy");
     when(mImageRequest.getSourceUri()).thenReturn(mUri);
+    when(mImageRequest.getAnimatedFrameNumber()).thenReturn(ImageRequest.NO_ANIMATED_FRAME);
     when(MediaUtils.extractMime(mUri.getPath())).thenReturn(mDummyMime);
     when(MediaUtils.isVideo(mDummyMime)).thenReturn(false);
   }
@@ -252,6 +254,33 @@ public class ProducerSequenceFactoryTest {
             mProducerSequenceFactory.mBackgroundNetworkFetchToEncodedMemorySequence));
   }
 
+  @Test
+  public void testAnimatedFrame() {
+    PowerMockito.when(UriUtil.isNetworkUri(mUri)).thenReturn(true);
+    when(mImageRequest.getAnimatedFrameNumber()).thenReturn(2);
+    Producer<CloseableReference<CloseableImage>> frameSequence =
+        mProducerSequenceFactory.getDecodedImageProducerSequence(mImageRequest);
+    assertSame(
+        frameSequence,
+        mProducerSequenceFactory.mAnimatedFrameSequences.get(
+            mProducerSequenceFactory.mNetworkFetchSequence));
+
+    // frames are prefetched from the same sequence
+    Producer<Void> framePrefetchSequence =
+        mProducerSequenceFactory.getDecodedImagePrefetchProducerSequence(mImageRequest);
+    assertSame(
+        framePrefetchSequence,
+        mProducerSequenceFactory.mCloseableImagePrefetchSequences.get(frameSequence));
+
+    // postprocessed frames are postprocessed after being rendered
+    when(mImageRequest.getPostprocessor()).thenReturn(mPostprocessor);
+    Producer<CloseableReference<CloseableImage>> postprocessedFrameSequence =
+        mProducerSequenceFactory.getDecodedImageProducerSequence(mImageRequest);
+    assertSame(
+        postprocessedFrameSequence,
+        mProducerSequenceFactory.mPostprocessorSequences.get(frameSequence));
+  }
+
   private static class MockProducerFactory extends ProducerFactory {
 
     public MockProducerFactory() {
@@ -270,6 +299,7 @@ public class ProducerSequenceFactoryTest {
           null,
           null,
           null,
+          null,
           false);
     }
 
@@ -334,6 +364,12 @@ public class ProducerSequenceFactoryTest {
       return mock(LocalContentUriFetchProducer.class);
     }
 
+    @Override
+    public AnimatedFrameProducer newAnimatedFrameProducer(
+        Producer<CloseableReference<CloseableImage>> inputProducer) {
+      return mock(AnimatedFrameProducer.class);
+    }
+
     @Override
     public PostprocessorProducer newPostprocessorProducer(
         Producer<CloseableReference<CloseableImage>> inputProducer) {
@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2015-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.imagepipeline.decoder;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+import com.facebook.common.references.CloseableReference;
+import com.facebook.imagepipeline.image.EncodedImage;
+import com.facebook.imagepipeline.memory.PooledByteBuffer;
+import com.facebook.imagepipeline.testing.TrivialPooledByteBuffer;
+
+import org.junit.*;
+import org.junit.runner.*;
+import org.robolectric.*;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+public class ProgressiveAnimatedImageParserTest {
+
+  // header, logical screen descriptor and a global color table of 2 colors
+  private static final int GIF_HEADER_SIZE = 19;
+  // graphic control extension, image descriptor and image data
+  private static final int GIF_FRAME_SIZE = 23;
+
+  private ProgressiveAnimatedImageParser mProgressiveAnimatedImageParser;
+
+  @Before
+  public void setUp() {
+    mProgressiveAnimatedImageParser = new ProgressiveAnimatedImageParser();
+  }
+
+  @Test
+  public void testOnGif() {
+    byte[] gif = createGif(3);
+    assertFalse(parse(gif, 13));
+    assertTrue(mProgressiveAnimatedImageParser.isAnimatedImage());
+    assertFalse(parse(gif, GIF_HEADER_SIZE + GIF_FRAME_SIZE - 1));
+    assertEquals(0, mProgressiveAnimatedImageParser.getFrameCount());
+
+    assertTrue(parse(gif, GIF_HEADER_SIZE + GIF_FRAME_SIZE));
+    assertEquals(1, mProgressiveAnimatedImageParser.getFrameCount());
+    assertEquals(
+        GIF_HEADER_SIZE + GIF_FRAME_SIZE,
+        mProgressiveAnimatedImageParser.getFramesEndOffset());
+
+    assertTrue(parse(gif, gif.length));
+    assertEquals(3, mProgressiveAnimatedImageParser.getFrameCount());
+    assertEquals(gif.length - 1, mProgressiveAnimatedImageParser.getFramesEndOffset());
+    assertTrue(mProgressiveAnimatedImageParser.isEndOfImage());
+  }
+
+  @Test
+  public void testOnGifByteByByte() {
+    byte[] gif = createGif(2);
+    for (int n = 1; n <= gif.length; n++) {
+      boolean newFrames = parse(gif, n);
+      int expectedFrameCount = Math.max((n - GIF_HEADER_SIZE) / GIF_FRAME_SIZE, 0);
+      assertEquals(expectedFrameCount, mProgressiveAnimatedImageParser.getFrameCount());
+      assertEquals(
+          n > GIF_HEADER_SIZE && (n - GIF_HEADER_SIZE) % GIF_FRAME_SIZE == 0,
+          newFrames);
+    }
+    assertEquals(2, mProgressiveAnimatedImageParser.getFrameCount());
+    assertTrue(mProgressiveAnimatedImageParser.isEndOfImage());
+  }
+
+  @Test
+  public void testOnAnimatedWebp() {
+    byte[] webp = createAnimatedWebp(2);
+    assertFalse(parse(webp, 44));
+    assertTrue(mProgressiveAnimatedImageParser.isAnimatedImage());
+    assertEquals(0, mProgressiveAnimatedImageParser.getFrameCount());
+
+    // frames are padded to an even size
+    assertFalse(parse(webp, 57));
+    assertTrue(parse(webp, 58));
+    assertEquals(1, mProgressiveAnimatedImageParser.getFrameCount());
+    assertEquals(58, mProgressiveAnimatedImageParser.getFramesEndOffset());
+
+    assertTrue(parse(webp, webp.length));
+    assertEquals(2, mProgressiveAnimatedImageParser.getFrameCount());
+    assertEquals(webp.length, mProgressiveAnimatedImageParser.getFramesEndOffset());
+    assertTrue(mProgressiveAnimatedImageParser.isEndOfImage());
+  }
+
+  @Test
+  public void testOnStaticWebp() {
+    ByteArrayOutputStream stream = new ByteArrayOutputStream();
+    writeChunk(stream, "VP8 ", 20);
+    byte[] webp = createRiff(stream.toByteArray());
+    assertFalse(parse(webp, webp.length));
+    assertFalse(mProgressiveAnimatedImageParser.isAnimatedImage());
+  }
+
+  @Test
+  public void testOnJpeg() {
+    byte[] jpeg = new byte[32];
+    jpeg[0] = (byte) 0xFF;
+    jpeg[1] = (byte) 0xD8;
+    assertFalse(parse(jpeg, jpeg.length));
+    assertFalse(mProgressiveAnimatedImageParser.isAnimatedImage());
+    assertEquals(0, mProgressiveAnimatedImageParser.getFrameCount());
+  }
+
+  private boolean parse(byte[] data, int length) {
+    return mProgressiveAnimatedImageParser.parseMoreData(
+        new EncodedImage(
+            CloseableReference.<PooledByteBuffer>of(
+                new TrivialPooledByteBuffer(Arrays.copyOf(data, length)))));
+  }
+
+  /**
+   * Creates a GIF of 1x1 pixel frames.
+   */
+  private static byte[] createGif(int frameCount) {
+    ByteArrayOutputStream stream = new ByteArrayOutputStream();
+    write(stream, 'G', 'I', 'F', '8', '9', 'a');
+    // logical screen descriptor, with a global color table of 2 colors
+    write(stream, 1, 0, 1, 0, 0x80, 0, 0);
+    write(stream, 0, 0, 0, 0xFF, 0xFF, 0xFF);
+    for (int i = 0; i < frameCount; i++) {
+      // graphic control extension
+      write(stream, 0x21, 0xF9, 4, 0, 10, 0, 0, 0);
+      // image descriptor, the LZW minimum code size and the image data
+      write(stream, 0x2C, 0, 0, 0, 0, 1, 0, 1, 0, 0);
+      write(stream, 2, 2, 0x44, 0x01, 0);
+    }
+    write(stream, 0x3B);
+    return stream.toByteArray();
+  }
+
+  private static byte[] createAnimatedWebp(int frameCount) {
+    ByteArrayOutputStream stream = new ByteArrayOutputStream();
+    writeChunk(stream, "VP8X", 10);
+    writeChunk(stream, "ANIM", 6);
+    for (int i = 0; i < frameCount; i++) {
+      writeChunk(stream, "ANMF", 5);
+    }
+    return createRiff(stream.toByteArray());
+  }
+
+  private static byte[] createRiff(byte[] chunks) {
+    ByteArrayOutputStream stream = new ByteArrayOutputStream();
+    write(stream, 'R', 'I', 'F', 'F');
+    writeLittleEndianInt(stream, chunks.length + 4);
+    write(stream, 'W', 'E', 'B', 'P');
+    stream.write(chunks, 0, chunks.length);
+    return stream.toByteArray();
+  }
+
+  private static void writeChunk(ByteArrayOutputStream stream, String fourCc, int payloadSize) {
+    for (int i = 0; i < fourCc.length(); i++) {
+      stream.write(fourCc.charAt(i));
+    }
+    writeLittleEndianInt(stream, payloadSize);
+    int paddedSize = payloadSize + (payloadSize & 1);
+    for (int i = 0; i < paddedSize; i++) {
+      stream.write(0);
+    }
+  }
+
+  private static void writeLittleEndianInt(ByteArrayOutputStream stream, int value) {
+    write(stream, value, value >> 8, value >> 16, value >> 24);
+  }
+
+  private static void write(ByteArrayOutputStream stream, int... bytes) {
+    for (int b : bytes) {
+      stream.write(b);
+    }
+  }
+}
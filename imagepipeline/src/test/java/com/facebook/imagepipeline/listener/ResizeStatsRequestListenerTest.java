@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2015-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.imagepipeline.listener;
+
+import com.facebook.common.internal.ImmutableMap;
+import com.facebook.imagepipeline.common.ResizeOptions;
+import com.facebook.imagepipeline.producers.DecodeProducer;
+import com.facebook.imagepipeline.producers.ResizeAndRotateProducer;
+import com.facebook.imagepipeline.request.ImageRequest;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for {@link ResizeStatsRequestListener}
+ */
+@RunWith(RobolectricTestRunner.class)
+public class ResizeStatsRequestListenerTest {
+
+  private static final String REQUEST_ID = "requestId";
+
+  private ImageRequest mResizedRequest;
+  private ImageRequest mRequest;
+  private ResizeStatsRequestListener mListener;
+
+  @Before
+  public void setUp() {
+    mResizedRequest = mock(ImageRequest.class);
+    when(mResizedRequest.getResizeOptions()).thenReturn(new ResizeOptions(100, 100));
+    mRequest = mock(ImageRequest.class);
+    mListener = new ResizeStatsRequestListener();
+  }
+
+  @Test
+  public void testIgnoresRequestsWithoutResizeOptions() {
+    mListener.onRequestStart(mRequest, null, REQUEST_ID, false);
+    assertFalse(mListener.requiresExtraMap(REQUEST_ID));
+    finishDecode("400x300", "400x300");
+    assertEquals(0, mListener.getResizedImageCount());
+  }
+
+  @Test
+  public void testDownsampledDecode() {
+    mListener.onRequestStart(mResizedRequest, null, REQUEST_ID, false);
+    assertTrue(mListener.requiresExtraMap(REQUEST_ID));
+    finishDecode("200x150", "400x300");
+    mListener.onRequestSuccess(mResizedRequest, REQUEST_ID, false);
+    assertFalse(mListener.requiresExtraMap(REQUEST_ID));
+    assertEquals(1, mListener.getResizedImageCount());
+    assertEquals((400 * 300 - 200 * 150) * 4, mListener.getBytesSaved());
+  }
+
+  @Test
+  public void testTranscodedDecode() {
+    mListener.onRequestStart(mResizedRequest, null, REQUEST_ID, false);
+    mListener.onProducerStart(REQUEST_ID, ResizeAndRotateProducer.PRODUCER_NAME);
+    mListener.onProducerFinishWithSuccess(
+        REQUEST_ID,
+        ResizeAndRotateProducer.PRODUCER_NAME,
+        ImmutableMap.of(ResizeAndRotateProducer.ORIGINAL_SIZE_KEY, "800x600"));
+    finishDecode("200x150", "200x150");
+    assertEquals(1, mListener.getResizedImageCount());
+    assertEquals((800 * 600 - 200 * 150) * 4, mListener.getBytesSaved());
+  }
+
+  @Test
+  public void testIgnoresIntermediateAndNotDownsampledDecodes() {
+    mListener.onRequestStart(mResizedRequest, null, REQUEST_ID, false);
+    mListener.onProducerStart(REQUEST_ID, DecodeProducer.PRODUCER_NAME);
+    mListener.onProducerFinishWithSuccess(
+        REQUEST_ID,
+        DecodeProducer.PRODUCER_NAME,
+        ImmutableMap.of(
+            DecodeProducer.BITMAP_SIZE_KEY, "200x150",
+            DecodeProducer.ENCODED_IMAGE_SIZE_KEY, "400x300",
+            DecodeProducer.IS_FINAL_KEY, "false"));
+    finishDecode("400x300", "400x300");
+    assertEquals(0, mListener.getResizedImageCount());
+    assertEquals(0, mListener.getBytesSaved());
+  }
+
+  private void finishDecode(String bitmapSize, String encodedImageSize) {
+    mListener.onProducerStart(REQUEST_ID, DecodeProducer.PRODUCER_NAME);
+    mListener.onProducerFinishWithSuccess(
+        REQUEST_ID,
+        DecodeProducer.PRODUCER_NAME,
+        ImmutableMap.of(
+            DecodeProducer.BITMAP_SIZE_KEY, bitmapSize,
+            DecodeProducer.ENCODED_IMAGE_SIZE_KEY, encodedImageSize,
+            DecodeProducer.IS_FINAL_KEY, "true"));
+  }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2015-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.imagepipeline.memory;
+
+import com.facebook.common.memory.IncrementalMemoryTrimmable;
+import com.facebook.common.memory.MemoryTrimType;
+import com.facebook.common.memory.MemoryTrimmable;
+import com.facebook.common.util.ByteConstants;
+import com.facebook.imagepipeline.testing.FakeClock;
+import com.facebook.imagepipeline.testing.TestScheduledExecutorService;
+import org.robolectric.RobolectricTestRunner;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for {@link MemoryTrimmingCoordinator}
+ */
+@RunWith(RobolectricTestRunner.class)
+public class MemoryTrimmingCoordinatorTest {
+
+  private static final int STEP_SIZE = 256 * ByteConstants.KB;
+
+  private FakeClock mFakeClock;
+  private TestScheduledExecutorService mExecutor;
+  private IncrementalMemoryTrimmable mPool;
+  private IncrementalMemoryTrimmable mCache;
+  private MemoryTrimmable mTrimmable;
+  private long mUsedHeapBytes;
+  private MemoryTrimmingCoordinator mCoordinator;
+
+  @Before
+  public void setup() {
+    mFakeClock = new FakeClock();
+    mExecutor = new TestScheduledExecutorService(mFakeClock);
+    mPool = mockTrimmable(IncrementalMemoryTrimmable.TRIM_COST_POOLED, 3 * ByteConstants.MB);
+    mCache = mockTrimmable(IncrementalMemoryTrimmable.TRIM_COST_CACHED, ByteConstants.MB);
+    mTrimmable = mock(MemoryTrimmable.class);
+    mCoordinator = new MemoryTrimmingCoordinator(mExecutor, mFakeClock) {
+      @Override
+      long getUsedHeapBytes() {
+        return mUsedHeapBytes;
+      }
+
+      @Override
+      long getMaxHeapBytes() {
+        return 100 * ByteConstants.MB;
+      }
+    };
+    mCoordinator.registerMemoryTrimmable(mCache);
+    mCoordinator.registerMemoryTrimmable(mPool);
+    mCoordinator.registerMemoryTrimmable(mTrimmable);
+  }
+
+  @Test
+  public void testTrimInSlices() {
+    mCoordinator.trim(MemoryTrimType.OnCloseToDalvikHeapLimit);
+    // nothing is trimmed on the calling thread
+    verify(mPool, never()).trimIncrementally(anyInt());
+    verify(mTrimmable, never()).trim(any(MemoryTrimType.class));
+
+    // the first slice frees the cheapest memory only
+    mExecutor.getScheduledQueue().runUntilIdle();
+    verify(mTrimmable).trim(MemoryTrimType.OnCloseToDalvikHeapLimit);
+    verify(mPool, times(8)).trimIncrementally(STEP_SIZE);
+    verify(mCache, never()).trimIncrementally(anyInt());
+    assertEquals(2 * ByteConstants.MB, mCoordinator.getTrimmedBytes());
+
+    // the next slice frees the rest
+    mFakeClock.incrementBy(MemoryTrimmingCoordinator.DEFAULT_SLICE_INTERVAL_MS);
+    verify(mPool, times(12)).trimIncrementally(STEP_SIZE);
+    verify(mCache, times(4)).trimIncrementally(STEP_SIZE);
+    assertEquals(4 * ByteConstants.MB, mCoordinator.getTrimmedBytes());
+    assertEquals(3, mCoordinator.getSliceCount());
+    assertEquals(0, mExecutor.getScheduledQueue().getPendingCount());
+  }
+
+  @Test
+  public void testTrimAtOnceInBackground() {
+    mCoordinator.trim(MemoryTrimType.OnAppBackgrounded);
+    mExecutor.getScheduledQueue().runUntilIdle();
+    verify(mPool).trim(MemoryTrimType.OnAppBackgrounded);
+    verify(mCache).trim(MemoryTrimType.OnAppBackgrounded);
+    verify(mTrimmable).trim(MemoryTrimType.OnAppBackgrounded);
+    verify(mPool, never()).trimIncrementally(anyInt());
+    verify(mCache, never()).trimIncrementally(anyInt());
+    assertEquals(0, mExecutor.getScheduledQueue().getPendingCount());
+  }
+
+  @Test
+  public void testStopsTrimmingExhaustedTrimmables() {
+    when(mCache.trimIncrementally(anyInt())).thenReturn(0);
+    mCoordinator.unregisterMemoryTrimmable(mPool);
+    mCoordinator.trim(MemoryTrimType.OnCloseToDalvikHeapLimit);
+    mExecutor.getScheduledQueue().runUntilIdle();
+    verify(mCache, times(1)).trimIncrementally(anyInt());
+    assertEquals(0, mExecutor.getScheduledQueue().getPendingCount());
+  }
+
+  @Test
+  public void testTrimProactively() {
+    mUsedHeapBytes = 50 * ByteConstants.MB;
+    mCoordinator.startProactiveTrimming();
+    mExecutor.getScheduledQueue().runUntilIdle();
+    assertEquals(0, mCoordinator.getProactiveTrimCount());
+
+    // the heap grows too slowly to reach the high-water mark within the lookahead time
+    mUsedHeapBytes = 51 * ByteConstants.MB;
+    mFakeClock.incrementBy(500);
+    assertEquals(0, mCoordinator.getProactiveTrimCount());
+
+    // 25% of the trimmable memory is freed, the cheapest first
+    mUsedHeapBytes = 71 * ByteConstants.MB;
+    mFakeClock.incrementBy(500);
+    assertEquals(1, mCoordinator.getProactiveTrimCount());
+    verify(mPool, times(4)).trimIncrementally(STEP_SIZE);
+    verify(mCache, never()).trimIncrementally(anyInt());
+    verify(mTrimmable, never()).trim(any(MemoryTrimType.class));
+
+    mCoordinator.stopProactiveTrimming();
+    mFakeClock.incrementBy(500);
+    assertEquals(0, mExecutor.getScheduledQueue().getPendingCount());
+  }
+
+  private static IncrementalMemoryTrimmable mockTrimmable(int trimCost, int trimmableSize) {
+    IncrementalMemoryTrimmable trimmable = mock(IncrementalMemoryTrimmable.class);
+    when(trimmable.getTrimCost()).thenReturn(trimCost);
+    when(trimmable.getTrimmableSizeInBytes(any(MemoryTrimType.class))).thenReturn(trimmableSize);
+    when(trimmable.trimIncrementally(anyInt())).thenAnswer(
+        new Answer<Integer>() {
+          @Override
+          public Integer answer(InvocationOnMock invocation) throws Throwable {
+            return (Integer) invocation.getArguments()[0];
+          }
+        });
+    return trimmable;
+  }
+}
@@ -0,0 +1,276 @@
+/*
+ * Copyright (c) 2015-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.imagepipeline.producers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+
+import com.facebook.cache.common.CacheKey;
+import com.facebook.cache.common.SimpleCacheKey;
+import com.facebook.common.internal.ImmutableMap;
+import com.facebook.common.references.CloseableReference;
+import com.facebook.common.references.ResourceReleaser;
+import com.facebook.imagepipeline.animated.base.AnimatedDrawableBackend;
+import com.facebook.imagepipeline.animated.base.AnimatedDrawableFrameInfo;
+import com.facebook.imagepipeline.animated.base.AnimatedImageResult;
+import com.facebook.imagepipeline.animated.impl.AnimatedDrawableBackendProvider;
+import com.facebook.imagepipeline.bitmaps.PlatformBitmapFactory;
+import com.facebook.imagepipeline.cache.CacheKeyFactory;
+import com.facebook.imagepipeline.cache.MemoryCache;
+import com.facebook.imagepipeline.image.CloseableAnimatedImage;
+import com.facebook.imagepipeline.image.CloseableImage;
+import com.facebook.imagepipeline.image.CloseableStaticBitmap;
+import com.facebook.imagepipeline.request.ImageRequest;
+import com.facebook.imagepipeline.testing.FakeClock;
+import com.facebook.imagepipeline.testing.TestExecutorService;
+
+import org.junit.*;
+import org.junit.runner.*;
+import org.mockito.*;
+import org.mockito.invocation.*;
+import org.mockito.stubbing.*;
+import org.robolectric.*;
+import org.robolectric.annotation.*;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for {@link AnimatedFrameProducer}.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest= Config.NONE)
+public class AnimatedFrameProducerTest {
+
+  private static final int WIDTH = 40;
+  private static final int HEIGHT = 30;
+  private static final int FRAME_COUNT = 3;
+  private static final int FRAME_NUMBER = 1;
+
+  @Mock public Producer<CloseableReference<CloseableImage>> mInputProducer;
+  @Mock public Consumer<CloseableReference<CloseableImage>> mConsumer;
+  @Mock public ProducerContext mProducerContext;
+  @Mock public ProducerListener mProducerListener;
+  @Mock public ImageRequest mImageRequest;
+  @Mock public AnimatedDrawableBackendProvider mAnimatedDrawableBackendProvider;
+  @Mock public AnimatedDrawableBackend mAnimatedDrawableBackend;
+  @Mock public PlatformBitmapFactory mPlatformBitmapFactory;
+  @Mock public MemoryCache<CacheKey, CloseableImage> mMemoryCache;
+  @Mock public CacheKeyFactory mCacheKeyFactory;
+  @Mock public AnimatedImageResult mAnimatedImageResult;
+  @Mock public ResourceReleaser<Bitmap> mBitmapResourceReleaser;
+
+  private final String mRequestId = "mRequestId";
+  private TestExecutorService mTestExecutorService;
+  private AnimatedFrameProducer mAnimatedFrameProducer;
+  private CloseableReference<CloseableImage> mAnimatedImageRef;
+  private List<CloseableReference<CloseableImage>> mResults;
+
+  @Before
+  public void setUp() {
+    MockitoAnnotations.initMocks(this);
+    mTestExecutorService = new TestExecutorService(new FakeClock());
+    mAnimatedFrameProducer = new AnimatedFrameProducer(
+        mInputProducer,
+        mAnimatedDrawableBackendProvider,
+        mPlatformBitmapFactory,
+        mMemoryCache,
+        mCacheKeyFactory,
+        mTestExecutorService);
+
+    when(mProducerContext.getId()).thenReturn(mRequestId);
+    when(mProducerContext.getListener()).thenReturn(mProducerListener);
+    when(mProducerContext.getImageRequest()).thenReturn(mImageRequest);
+    when(mProducerListener.requiresExtraMap(mRequestId)).thenReturn(true);
+    when(mImageRequest.getAnimatedFrameNumber()).thenReturn(FRAME_NUMBER);
+    when(mCacheKeyFactory.getBitmapCacheKey(mImageRequest))
+        .thenReturn(new SimpleCacheKey("http://dummy.uri"));
+    mResults = new ArrayList<>();
+    doAnswer(
+        new Answer<Object>() {
+          @Override
+          public Object answer(InvocationOnMock invocation) throws Throwable {
+            mResults.add(
+                ((CloseableReference<CloseableImage>) invocation.getArguments()[0]).clone());
+            return null;
+          }
+        }
+    ).when(mConsumer).onNewResult(any(CloseableReference.class), anyBoolean());
+
+    when(mAnimatedImageResult.getRenderedWidth()).thenReturn(WIDTH);
+    when(mAnimatedImageResult.getRenderedHeight()).thenReturn(HEIGHT);
+    mAnimatedImageRef = CloseableReference.<CloseableImage>of(
+        new CloseableAnimatedImage(mAnimatedImageResult));
+    when(mAnimatedDrawableBackendProvider.get(
+        mAnimatedImageResult,
+        new Rect(0, 0, WIDTH, HEIGHT)))
+        .thenReturn(mAnimatedDrawableBackend);
+    when(mAnimatedDrawableBackend.getFrameCount()).thenReturn(FRAME_COUNT);
+    when(mAnimatedDrawableBackend.getRenderedWidth()).thenReturn(WIDTH);
+    when(mAnimatedDrawableBackend.getRenderedHeight()).thenReturn(HEIGHT);
+    for (int i = 0; i < FRAME_COUNT; i++) {
+      when(mAnimatedDrawableBackend.getFrameInfo(i)).thenReturn(
+          new AnimatedDrawableFrameInfo(
+              i,
+              0,
+              0,
+              WIDTH,
+              HEIGHT,
+              false,
+              AnimatedDrawableFrameInfo.DisposalMethod.DISPOSE_DO_NOT));
+    }
+  }
+
+  @Test
+  public void testNoAnimatedFrame() {
+    when(mImageRequest.getAnimatedFrameNumber()).thenReturn(ImageRequest.NO_ANIMATED_FRAME);
+    mAnimatedFrameProducer.produceResults(mConsumer, mProducerContext);
+    verify(mInputProducer).produceResults(mConsumer, mProducerContext);
+    verifyNoMoreInteractions(mConsumer, mProducerListener);
+  }
+
+  @Test
+  public void testNonAnimatedImageIsPassedOn() {
+    Consumer<CloseableReference<CloseableImage>> consumer = produceResults();
+    CloseableStaticBitmap staticBitmap = mock(CloseableStaticBitmap.class);
+    CloseableReference<CloseableImage> staticImageRef =
+        CloseableReference.<CloseableImage>of(staticBitmap);
+    consumer.onNewResult(staticImageRef, false);
+    consumer.onNewResult(staticImageRef, true);
+    staticImageRef.close();
+
+    verify(mConsumer).onNewResult(any(CloseableReference.class), eq(false));
+    verify(mConsumer).onNewResult(any(CloseableReference.class), eq(true));
+    assertEquals(2, mResults.size());
+    assertSame(staticBitmap, mResults.get(0).get());
+    assertSame(staticBitmap, mResults.get(1).get());
+    assertEquals(0, mTestExecutorService.getPendingCount());
+    verifyZeroInteractions(mProducerListener);
+  }
+
+  @Test
+  public void testIntermediateAnimatedImageIsNotRendered() {
+    Consumer<CloseableReference<CloseableImage>> consumer = produceResults();
+    consumer.onNewResult(mAnimatedImageRef, false);
+    mAnimatedImageRef.close();
+
+    assertEquals(0, mTestExecutorService.getPendingCount());
+    verify(mConsumer, never())
+        .onNewResult(any(CloseableReference.class), anyBoolean());
+    verify(mAnimatedImageResult).dispose();
+  }
+
+  @Test
+  public void testPreDecodedFrame() {
+    Bitmap bitmap = Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888);
+    CloseableReference<Bitmap> bitmapRef = CloseableReference.of(bitmap, mBitmapResourceReleaser);
+    when(mAnimatedDrawableBackend.getPreDecodedFrame(FRAME_NUMBER)).thenReturn(bitmapRef);
+
+    Consumer<CloseableReference<CloseableImage>> consumer = produceResults();
+    consumer.onNewResult(mAnimatedImageRef, true);
+    mAnimatedImageRef.close();
+    verify(mProducerListener).onProducerStart(mRequestId, AnimatedFrameProducer.PRODUCER_NAME);
+    // the image is kept until the frame gets rendered
+    verify(mAnimatedImageResult, never()).dispose();
+    mTestExecutorService.runUntilIdle();
+
+    verify(mConsumer).onNewResult(any(CloseableReference.class), eq(true));
+    assertEquals(1, mResults.size());
+    assertSame(bitmap, ((CloseableStaticBitmap) mResults.get(0).get()).getUnderlyingBitmap());
+    verify(mProducerListener).onProducerFinishWithSuccess(
+        mRequestId,
+        AnimatedFrameProducer.PRODUCER_NAME,
+        getExtraMap(true));
+    verify(mPlatformBitmapFactory, never()).createBitmap(anyInt(), anyInt());
+    verify(mAnimatedDrawableBackend).dropCaches();
+    verify(mAnimatedImageResult).dispose();
+  }
+
+  @Test
+  public void testRenderedFrame() {
+    Bitmap bitmap = Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888);
+    when(mPlatformBitmapFactory.createBitmap(WIDTH, HEIGHT))
+        .thenReturn(CloseableReference.of(bitmap, mBitmapResourceReleaser));
+
+    Consumer<CloseableReference<CloseableImage>> consumer = produceResults();
+    consumer.onNewResult(mAnimatedImageRef, true);
+    mAnimatedImageRef.close();
+    mTestExecutorService.runUntilIdle();
+
+    verify(mAnimatedDrawableBackend).renderFrame(eq(FRAME_NUMBER), any(Canvas.class));
+    verify(mConsumer).onNewResult(any(CloseableReference.class), eq(true));
+    assertEquals(1, mResults.size());
+    assertSame(bitmap, ((CloseableStaticBitmap) mResults.get(0).get()).getUnderlyingBitmap());
+    verify(mProducerListener).onProducerFinishWithSuccess(
+        mRequestId,
+        AnimatedFrameProducer.PRODUCER_NAME,
+        getExtraMap(false));
+    verify(mAnimatedDrawableBackend).dropCaches();
+    verify(mAnimatedImageResult).dispose();
+  }
+
+  @Test
+  public void testFrameOutOfRange() {
+    when(mImageRequest.getAnimatedFrameNumber()).thenReturn(FRAME_COUNT);
+
+    Consumer<CloseableReference<CloseableImage>> consumer = produceResults();
+    consumer.onNewResult(mAnimatedImageRef, true);
+    mAnimatedImageRef.close();
+    mTestExecutorService.runUntilIdle();
+
+    verify(mConsumer).onFailure(any(IndexOutOfBoundsException.class));
+    verify(mProducerListener).onProducerFinishWithFailure(
+        eq(mRequestId),
+        eq(AnimatedFrameProducer.PRODUCER_NAME),
+        any(IndexOutOfBoundsException.class),
+        (Map<String, String>) isNull());
+    verify(mAnimatedImageResult).dispose();
+  }
+
+  @Test
+  public void testCancellation() {
+    Consumer<CloseableReference<CloseableImage>> consumer = produceResults();
+    consumer.onNewResult(mAnimatedImageRef, true);
+    mAnimatedImageRef.close();
+
+    ArgumentCaptor<ProducerContextCallbacks> callbacksCaptor =
+        ArgumentCaptor.forClass(ProducerContextCallbacks.class);
+    verify(mProducerContext).addCallbacks(callbacksCaptor.capture());
+    callbacksCaptor.getValue().onCancellationRequested();
+    mTestExecutorService.runUntilIdle();
+
+    verify(mConsumer).onCancellation();
+    verify(mProducerListener).onProducerFinishWithCancellation(
+        mRequestId,
+        AnimatedFrameProducer.PRODUCER_NAME,
+        null);
+    verify(mAnimatedDrawableBackendProvider, never())
+        .get(any(AnimatedImageResult.class), any(Rect.class));
+    verify(mAnimatedImageResult).dispose();
+  }
+
+  private Consumer<CloseableReference<CloseableImage>> produceResults() {
+    mAnimatedFrameProducer.produceResults(mConsumer, mProducerContext);
+    ArgumentCaptor<Consumer> captor = ArgumentCaptor.forClass(Consumer.class);
+    verify(mInputProducer).produceResults(captor.capture(), eq(mProducerContext));
+    return captor.getValue();
+  }
+
+  private static Map<String, String> getExtraMap(boolean preDecoded) {
+    return ImmutableMap.of(
+        AnimatedFrameProducer.FRAME_NUMBER, String.valueOf(FRAME_NUMBER),
+        AnimatedFrameProducer.PRE_DECODED, String.valueOf(preDecoded));
+  }
+}
@@ -19,7 +19,9 @@ import android.net.Uri;
 import com.facebook.common.references.CloseableReference;
 import com.facebook.imagepipeline.common.ImageDecodeOptions;
 import com.facebook.imagepipeline.common.Priority;
+import com.facebook.imagepipeline.common.ResizeOptions;
 import com.facebook.imagepipeline.decoder.ImageDecoder;
+import com.facebook.imagepipeline.decoder.ProgressiveAnimatedImageParser;
 import com.facebook.imagepipeline.decoder.ProgressiveJpegConfig;
 import com.facebook.imagepipeline.decoder.ProgressiveJpegParser;
 import com.facebook.imagepipeline.decoder.SimpleProgressiveJpegConfig;
@@ -46,13 +48,21 @@ import static org.mockito.Mockito.*;
 @RunWith(RobolectricTestRunner.class)
 @PowerMockIgnore({ "org.mockito.*", "org.robolectric.*", "android.*" })
 @Config(manifest= Config.NONE)
-@PrepareForTest({JobScheduler.class, ProgressiveJpegParser.class, DecodeProducer.class})
+@PrepareForTest({
+    JobScheduler.class,
+    ProgressiveJpegParser.class,
+    ProgressiveAnimatedImageParser.class,
+    DecodeProducer.class})
 public class DecodeProducerTest {
 
   private static final ImageDecodeOptions IMAGE_DECODE_OPTIONS = ImageDecodeOptions.newBuilder()
       .setBackgroundColor(0)
       .setMinDecodeIntervalMs(100)
       .build();
+  private static final ImageDecodeOptions ANIMATION_DECODE_OPTIONS = ImageDecodeOptions.newBuilder()
+      .setFrom(IMAGE_DECODE_OPTIONS)
+      .setDecodeProgressiveAnimations(true)
+      .build();
   private static final int PREVIEW_SCAN = 2;
   private static final int IGNORED_SCAN = 3;
   private static final int GOOD_ENOUGH_SCAN = 5;
@@ -73,6 +83,7 @@ public class DecodeProducerTest {
   @Mock public Consumer mConsumer;
 
   @Mock public ProgressiveJpegParser mProgressiveJpegParser;
+  @Mock public ProgressiveAnimatedImageParser mProgressiveAnimatedImageParser;
   @Mock public JobScheduler mJobScheduler;
 
   private DecodeProducer mDecodeProducer;
@@ -97,6 +108,8 @@ public class DecodeProducerTest {
     PowerMockito.mockStatic(ProgressiveJpegParser.class);
     PowerMockito.whenNew(ProgressiveJpegParser.class).withAnyArguments()
         .thenReturn(mProgressiveJpegParser);
+    PowerMockito.whenNew(ProgressiveAnimatedImageParser.class).withAnyArguments()
+        .thenReturn(mProgressiveAnimatedImageParser);
     PowerMockito.mockStatic(JobScheduler.class);
     PowerMockito.whenNew(JobScheduler.class).withAnyArguments()
         .thenReturn(mJobScheduler);
@@ -266,6 +279,56 @@ public class DecodeProducerTest {
         ref5.getUnderlyingReferenceTestOnly());
   }
 
+  @Test
+  public void testNewResult_Intermediate_Animated() {
+    setupNetworkUri(ANIMATION_DECODE_OPTIONS);
+    Consumer<EncodedImage> consumer = produceResults();
+
+    when(mJobScheduler.updateJob(mEncodedImage, false)).thenReturn(true);
+    when(mProgressiveJpegParser.parseMoreData(mEncodedImage)).thenReturn(false);
+    when(mProgressiveJpegParser.isJpeg()).thenReturn(false);
+
+    // first frame; schedule
+    when(mProgressiveAnimatedImageParser.parseMoreData(mEncodedImage)).thenReturn(true);
+    when(mProgressiveAnimatedImageParser.getFrameCount()).thenReturn(1);
+    consumer.onNewResult(mEncodedImage, false);
+    verify(mJobScheduler, times(1)).scheduleJob();
+
+    // no new frame; don't schedule
+    when(mProgressiveAnimatedImageParser.parseMoreData(mEncodedImage)).thenReturn(false);
+    consumer.onNewResult(mEncodedImage, false);
+    verify(mJobScheduler, times(1)).scheduleJob();
+
+    // frames doubled; schedule
+    when(mProgressiveAnimatedImageParser.parseMoreData(mEncodedImage)).thenReturn(true);
+    when(mProgressiveAnimatedImageParser.getFrameCount()).thenReturn(2);
+    consumer.onNewResult(mEncodedImage, false);
+    verify(mJobScheduler, times(2)).scheduleJob();
+
+    // frames not doubled yet; don't schedule
+    when(mProgressiveAnimatedImageParser.getFrameCount()).thenReturn(3);
+    consumer.onNewResult(mEncodedImage, false);
+    verify(mJobScheduler, times(2)).scheduleJob();
+
+    // frames doubled; schedule
+    when(mProgressiveAnimatedImageParser.getFrameCount()).thenReturn(4);
+    consumer.onNewResult(mEncodedImage, false);
+    verify(mJobScheduler, times(3)).scheduleJob();
+  }
+
+  @Test
+  public void testNewResult_Intermediate_Animated_Disabled() {
+    setupNetworkUri();
+    Consumer<EncodedImage> consumer = produceResults();
+
+    when(mJobScheduler.updateJob(mEncodedImage, false)).thenReturn(true);
+    when(mProgressiveJpegParser.parseMoreData(mEncodedImage)).thenReturn(false);
+    consumer.onNewResult(mEncodedImage, false);
+
+    verifyZeroInteractions(mProgressiveAnimatedImageParser);
+    verify(mJobScheduler, never()).scheduleJob();
+  }
+
   @Test
   public void testFailure() {
     setupNetworkUri();
@@ -299,7 +362,8 @@ public class DecodeProducerTest {
         mEncodedImage,
         IMAGE_SIZE,
         ImmutableQualityInfo.FULL_QUALITY,
-        IMAGE_DECODE_OPTIONS);
+        IMAGE_DECODE_OPTIONS,
+        null);
     inOrder.verify(mProducerListener).onProducerFinishWithSuccess(
         eq(mRequestId),
         eq(DecodeProducer.PRODUCER_NAME),
@@ -323,7 +387,8 @@ public class DecodeProducerTest {
         mEncodedImage,
         200,
         ImmutableQualityInfo.of(PREVIEW_SCAN, false, false),
-        IMAGE_DECODE_OPTIONS);
+        IMAGE_DECODE_OPTIONS,
+        null);
     inOrder.verify(mProducerListener).onProducerFinishWithSuccess(
         eq(mRequestId),
         eq(DecodeProducer.PRODUCER_NAME),
@@ -331,6 +396,42 @@ public class DecodeProducerTest {
     inOrder.verifyNoMoreInteractions();
   }
 
+  @Test
+  public void testDecode_Intermediate_Animated() throws Exception {
+    setupNetworkUri(ANIMATION_DECODE_OPTIONS);
+    produceResults();
+    JobScheduler.JobRunnable jobRunnable = getJobRunnable();
+
+    when(mProgressiveAnimatedImageParser.isAnimatedImage()).thenReturn(true);
+    when(mProgressiveAnimatedImageParser.getFramesEndOffset()).thenReturn(300);
+    when(mProgressiveAnimatedImageParser.getFrameCount()).thenReturn(4);
+    jobRunnable.run(mEncodedImage, false);
+
+    verify(mImageDecoder).decodeImage(
+        mEncodedImage,
+        300,
+        ImmutableQualityInfo.of(4, false, false),
+        ANIMATION_DECODE_OPTIONS,
+        null);
+  }
+
+  @Test
+  public void testDecode_Animated_ResizeOptions() throws Exception {
+    ResizeOptions resizeOptions = new ResizeOptions(100, 100);
+    setupNetworkUri(ANIMATION_DECODE_OPTIONS, resizeOptions);
+    produceResults();
+    JobScheduler.JobRunnable jobRunnable = getJobRunnable();
+
+    jobRunnable.run(mEncodedImage, true);
+
+    verify(mImageDecoder).decodeImage(
+        mEncodedImage,
+        IMAGE_SIZE,
+        ImmutableQualityInfo.FULL_QUALITY,
+        ANIMATION_DECODE_OPTIONS,
+        resizeOptions);
+  }
+
   @Test
   public void testDecode_Failure() throws Exception {
     setupNetworkUri();
@@ -342,7 +443,8 @@ public class DecodeProducerTest {
         mEncodedImage,
         IMAGE_SIZE,
         ImmutableQualityInfo.FULL_QUALITY,
-        IMAGE_DECODE_OPTIONS))
+        IMAGE_DECODE_OPTIONS,
+        null))
         .thenThrow(exception);
     jobRunnable.run(mEncodedImage, true);
 
@@ -352,7 +454,8 @@ public class DecodeProducerTest {
         mEncodedImage,
         IMAGE_SIZE,
         ImmutableQualityInfo.FULL_QUALITY,
-        IMAGE_DECODE_OPTIONS);
+        IMAGE_DECODE_OPTIONS,
+        null);
     inOrder.verify(mProducerListener).onProducerFinishWithFailure(
         eq(mRequestId),
         eq(DecodeProducer.PRODUCER_NAME),
@@ -361,10 +464,21 @@ public class DecodeProducerTest {
   }
 
   private void setupNetworkUri() {
+    setupNetworkUri(IMAGE_DECODE_OPTIONS);
+  }
+
+  private void setupNetworkUri(ImageDecodeOptions imageDecodeOptions) {
+    setupNetworkUri(imageDecodeOptions, null);
+  }
+
+  private void setupNetworkUri(
+      ImageDecodeOptions imageDecodeOptions,
+      ResizeOptions resizeOptions) {
     //Uri.parse("file://path/image")
     mImageRequest = ImageRequestBuilder.newBuilderWithSource(Uri.parse("http://www.fb.com/image"))
         .setProgressiveRenderingEnabled(true)
-        .setImageDecodeOptions(IMAGE_DECODE_OPTIONS)
+        .setImageDecodeOptions(imageDecodeOptions)
+        .setResizeOptions(resizeOptions)
         .build();
     mRequestId = "networkRequest1";
     mProducerContext = new SettableProducerContext(
@@ -14,6 +14,7 @@ import java.util.Map;
 import com.facebook.cache.common.CacheKey;
 import com.facebook.cache.common.SimpleCacheKey;
 import com.facebook.common.references.CloseableReference;
+import com.facebook.imagepipeline.cache.AnimatedFrameCacheKey;
 import com.facebook.imagepipeline.cache.CacheKeyFactory;
 import com.facebook.imagepipeline.cache.MemoryCache;
 import com.facebook.imagepipeline.image.CloseableImage;
@@ -86,6 +87,7 @@ public class PostprocessedBitmapMemoryCacheProducerTest {
     when(mProducerListener.requiresExtraMap(mRequestId)).thenReturn(true);
     when(mProducerContext.getId()).thenReturn(mRequestId);
     when(mImageRequest.getPostprocessor()).thenReturn(mPostprocessor);
+    when(mImageRequest.getAnimatedFrameNumber()).thenReturn(ImageRequest.NO_ANIMATED_FRAME);
     when(mPostprocessor.getPostprocessorCacheKey()).thenReturn(mPostProcessorCacheKey);
     when(mRepeatedPostprocessor.getPostprocessorCacheKey()).thenReturn(mPostProcessorCacheKey);
     when(mCacheKeyFactory.getPostprocessedBitmapCacheKey(mImageRequest))
@@ -122,6 +124,19 @@ public class PostprocessedBitmapMemoryCacheProducerTest {
     Assert.assertFalse(mImageRef2Clone.isValid());
   }
 
+  @Test
+  public void testCacheHit_AnimatedFrame() {
+    when(mImageRequest.getAnimatedFrameNumber()).thenReturn(2);
+    when(mMemoryCache.get(new AnimatedFrameCacheKey(mPostprocessedBitmapCacheKey, 2)))
+        .thenReturn(mImageRef2Clone);
+
+    mMemoryCacheProducer.produceResults(mConsumer, mProducerContext);
+
+    verify(mMemoryCache, never()).get(mPostprocessedBitmapCacheKey);
+    verify(mInputProducer, never()).produceResults(any(Consumer.class), any(ProducerContext.class));
+    verify(mConsumer).onNewResult(mImageRef2Clone, true);
+  }
+
   @Test
   public void testCacheMiss_UnderlyingNull() {
     Consumer consumer = performCacheMiss();
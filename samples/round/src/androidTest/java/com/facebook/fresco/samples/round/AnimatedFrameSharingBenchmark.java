@@ -0,0 +1,131 @@
+/*
+ * This file provided by Facebook is for non-commercial testing and evaluation
+ * purposes only.  Facebook reserves all rights not expressly granted.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * FACEBOOK BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.facebook.samples.round;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import com.facebook.common.executors.CallerThreadExecutor;
+import com.facebook.common.executors.DefaultSerialExecutorService;
+import com.facebook.common.executors.SerialExecutorService;
+import com.facebook.common.references.CloseableReference;
+import com.facebook.common.time.RealtimeSinceBootClock;
+import com.facebook.drawee.backends.pipeline.Fresco;
+import com.facebook.imagepipeline.animated.base.AnimatedDrawableOptions;
+import com.facebook.imagepipeline.animated.base.AnimatedImageResult;
+import com.facebook.imagepipeline.animated.impl.AnimatedDrawableCachingBackendImpl;
+import com.facebook.imagepipeline.animated.impl.AnimatedFrameCache;
+import com.facebook.imagepipeline.animated.util.AnimatedDrawableUtil;
+import com.facebook.imagepipeline.core.ImagePipelineFactory;
+
+/**
+ * Measures the frames rendered and the time per frame shown for N views showing the same
+ * animation at the same size, with the rendered frames shared through the bitmap memory cache
+ * versus rendered by every view on its own.
+ *
+ * <p> The animation is synthetic, and renders each frame by computing all of its pixels, which
+ * stands in for decoding a frame of a GIF. The views advance in lockstep, and prefetches run on
+ * the calling thread.
+ *
+ * <p> Run with {@code ./gradlew :samples:round:connectedAndroidTest} and look for the
+ * {@code AnimatedFrameSharingBenchmark} tag in logcat.
+ */
+public class AnimatedFrameSharingBenchmark extends AndroidTestCase {
+
+  private static final String TAG = "AnimatedFrameSharingBenchmark";
+
+  private static final int WIDTH = 320;
+  private static final int HEIGHT = 240;
+  private static final int FRAMES = 20;
+  private static final int FRAME_DURATION_MS = 50;
+  private static final int LOOPS = 3;
+  private static final int[] VIEWS = new int[] { 1, 4, 8 };
+
+  private ImagePipelineFactory mImagePipelineFactory;
+  private ActivityManager mActivityManager;
+  private SerialExecutorService mSerialExecutorService;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    Fresco.initialize(getContext());
+    mImagePipelineFactory = Fresco.getImagePipelineFactory();
+    mActivityManager = (ActivityManager) getContext().getSystemService(Context.ACTIVITY_SERVICE);
+    mSerialExecutorService = new DefaultSerialExecutorService(CallerThreadExecutor.getInstance());
+  }
+
+  public void testViewsOfSameAnimation() {
+    // warm up both modes first, so that neither pays for class loading
+    measure(1, false);
+    measure(1, true);
+
+    for (int views : VIEWS) {
+      Log.i(TAG, views + " views, not shared: " + measure(views, false));
+      Log.i(TAG, views + " views, shared: " + measure(views, true));
+    }
+  }
+
+  private String measure(int views, boolean share) {
+    Fresco.getImagePipeline().clearMemoryCaches();
+    SyntheticAnimatedImage animatedImage =
+        new SyntheticAnimatedImage(WIDTH, HEIGHT, FRAMES, FRAME_DURATION_MS, false);
+    AnimatedImageResult animatedImageResult = AnimatedImageResult.forAnimatedImage(animatedImage);
+    AnimatedDrawableCachingBackendImpl[] backends = new AnimatedDrawableCachingBackendImpl[views];
+    for (int i = 0; i < views; i++) {
+      backends[i] = new AnimatedDrawableCachingBackendImpl(
+          mSerialExecutorService,
+          mActivityManager,
+          new AnimatedDrawableUtil(),
+          RealtimeSinceBootClock.get(),
+          mImagePipelineFactory.getAnimatedDrawableBackendProvider().get(
+              animatedImageResult,
+              new Rect(0, 0, WIDTH, HEIGHT)),
+          AnimatedDrawableOptions.DEFAULTS,
+          null,
+          share ? mImagePipelineFactory.getBitmapCountingMemoryCache() : null);
+    }
+
+    int shownFrames = 0;
+    long startNanos = System.nanoTime();
+    for (int loop = 0; loop < LOOPS; loop++) {
+      for (int frame = 0; frame < FRAMES; frame++) {
+        for (int i = 0; i < views; i++) {
+          CloseableReference<Bitmap> bitmap = backends[i].getBitmapForFrame(frame);
+          if (bitmap != null) {
+            shownFrames++;
+            bitmap.close();
+          }
+        }
+      }
+    }
+    long nanos = System.nanoTime() - startNanos;
+
+    int reusedFrames = 0;
+    for (int i = 0; i < views; i++) {
+      AnimatedFrameCache animatedFrameCache = backends[i].getAnimatedFrameCache();
+      if (animatedFrameCache != null) {
+        reusedFrames += animatedFrameCache.getHitCount();
+      }
+      backends[i].dropCaches();
+    }
+    animatedImageResult.dispose();
+    return animatedImage.getRenderedFrameCount() + " frames rendered, " +
+        reusedFrames + " reused, " +
+        shownFrames + " of " + LOOPS * FRAMES * views + " shown, " +
+        nanos / Math.max(shownFrames, 1) + " ns per frame shown";
+  }
+}
@@ -0,0 +1,79 @@
+/*
+ * This file provided by Facebook is for non-commercial testing and evaluation
+ * purposes only.  Facebook reserves all rights not expressly granted.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * FACEBOOK BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.facebook.samples.round;
+
+import android.graphics.Rect;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import com.facebook.drawee.backends.pipeline.Fresco;
+import com.facebook.imagepipeline.animated.base.AnimatedImageMetadata;
+import com.facebook.imagepipeline.animated.base.AnimatedImageResult;
+import com.facebook.imagepipeline.animated.impl.AnimatedDrawableBackendProvider;
+
+/**
+ * Measures the time to create the backends of an animation shown at different sizes, like a
+ * sticker shown in several views or in a view being resized, along with the time saved by reading
+ * the metadata of the image once instead of for every backend.
+ *
+ * <p> Run with {@code ./gradlew :samples:round:connectedAndroidTest} and look for the
+ * {@code AnimatedMetadataBenchmark} tag in logcat.
+ */
+public class AnimatedMetadataBenchmark extends AndroidTestCase {
+
+  private static final String TAG = "AnimatedMetadataBenchmark";
+
+  private static final int SIZE = 128;
+  private static final int FRAMES = 100;
+  private static final int FRAME_DURATION_MS = 40;
+  private static final int BACKENDS = 50;
+
+  private AnimatedDrawableBackendProvider mAnimatedDrawableBackendProvider;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    Fresco.initialize(getContext());
+    mAnimatedDrawableBackendProvider =
+        Fresco.getImagePipelineFactory().getAnimatedDrawableBackendProvider();
+  }
+
+  public void testMetadata() {
+    // warm up first, so that the measure does not pay for class loading
+    measure();
+
+    Log.i(TAG, measure());
+  }
+
+  private String measure() {
+    SyntheticAnimatedImage animatedImage =
+        new SyntheticAnimatedImage(SIZE, SIZE, FRAMES, FRAME_DURATION_MS, false);
+    AnimatedImageResult animatedImageResult = AnimatedImageResult.forAnimatedImage(animatedImage);
+
+    long startNanos = System.nanoTime();
+    for (int i = 0; i < BACKENDS; i++) {
+      int size = SIZE - i;
+      mAnimatedDrawableBackendProvider.get(animatedImageResult, new Rect(0, 0, size, size));
+    }
+    long createNanos = System.nanoTime() - startNanos;
+
+    int reuseCount = animatedImageResult.getMetadataReuseCount();
+    long savedNanos = animatedImageResult.getMetadataReadTimeSavedNanos();
+    AnimatedImageMetadata metadata = animatedImageResult.getMetadata();
+    String result = createNanos / BACKENDS + " ns to create a backend, " +
+        metadata.getReadTimeNanos() + " ns to read the metadata, " +
+        reuseCount + " reuses saving " + savedNanos / 1000 + " us";
+    animatedImageResult.dispose();
+    return result;
+  }
+}
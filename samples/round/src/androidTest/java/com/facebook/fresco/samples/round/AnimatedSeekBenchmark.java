@@ -0,0 +1,124 @@
+/*
+ * This file provided by Facebook is for non-commercial testing and evaluation
+ * purposes only.  Facebook reserves all rights not expressly granted.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * FACEBOOK BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.facebook.samples.round;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import com.facebook.common.executors.CallerThreadExecutor;
+import com.facebook.common.executors.DefaultSerialExecutorService;
+import com.facebook.common.executors.SerialExecutorService;
+import com.facebook.common.references.CloseableReference;
+import com.facebook.common.time.RealtimeSinceBootClock;
+import com.facebook.drawee.backends.pipeline.Fresco;
+import com.facebook.imagepipeline.animated.base.AnimatedDrawableOptions;
+import com.facebook.imagepipeline.animated.base.AnimatedDrawableOptionsBuilder;
+import com.facebook.imagepipeline.animated.base.AnimatedImageResult;
+import com.facebook.imagepipeline.animated.impl.AnimatedDrawableCachingBackendImpl;
+import com.facebook.imagepipeline.animated.util.AnimatedDrawableUtil;
+import com.facebook.imagepipeline.core.ImagePipelineFactory;
+
+/**
+ * Measures the time and the frames rendered per seek into an animation whose frames all blend
+ * over the previous one, with only a few frames kept in memory versus room for snapshot frames.
+ *
+ * <p> Without snapshots, showing a frame that is not cached means compositing every frame since
+ * the start of the animation. Prefetches run on the calling thread.
+ *
+ * <p> Run with {@code ./gradlew :samples:round:connectedAndroidTest} and look for the
+ * {@code AnimatedSeekBenchmark} tag in logcat.
+ */
+public class AnimatedSeekBenchmark extends AndroidTestCase {
+
+  private static final String TAG = "AnimatedSeekBenchmark";
+
+  private static final int WIDTH = 320;
+  private static final int HEIGHT = 240;
+  private static final int FRAMES = 120;
+  private static final int FRAME_DURATION_MS = 50;
+  private static final int FRAME_BYTES = WIDTH * HEIGHT * 4;
+  private static final int[] SEEKS = new int[] { 117, 5, 93, 41, 66, 110, 28, 80, 59, 14 };
+
+  private ImagePipelineFactory mImagePipelineFactory;
+  private ActivityManager mActivityManager;
+  private SerialExecutorService mSerialExecutorService;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    Fresco.initialize(getContext());
+    mImagePipelineFactory = Fresco.getImagePipelineFactory();
+    mActivityManager = (ActivityManager) getContext().getSystemService(Context.ACTIVITY_SERVICE);
+    mSerialExecutorService = new DefaultSerialExecutorService(CallerThreadExecutor.getInstance());
+  }
+
+  public void testSeek() {
+    // warm up both modes first, so that neither pays for class loading
+    measure(FRAME_BYTES);
+    measure(24 * FRAME_BYTES);
+
+    Log.i(TAG, "no snapshots: " + measure(FRAME_BYTES));
+    Log.i(TAG, "snapshots: " + measure(24 * FRAME_BYTES));
+  }
+
+  private String measure(int maximumBytes) {
+    SyntheticAnimatedImage animatedImage =
+        new SyntheticAnimatedImage(WIDTH, HEIGHT, FRAMES, FRAME_DURATION_MS, true);
+    AnimatedImageResult animatedImageResult = AnimatedImageResult.forAnimatedImage(animatedImage);
+    AnimatedDrawableCachingBackendImpl backend = new AnimatedDrawableCachingBackendImpl(
+        mSerialExecutorService,
+        mActivityManager,
+        new AnimatedDrawableUtil(),
+        RealtimeSinceBootClock.get(),
+        mImagePipelineFactory.getAnimatedDrawableBackendProvider().get(
+            animatedImageResult,
+            new Rect(0, 0, WIDTH, HEIGHT)),
+        new AnimatedDrawableOptionsBuilder().setMaximumBytes(maximumBytes).build());
+
+    // play one loop first, which renders the snapshot frames along the way
+    for (int frame = 0; frame < FRAMES; frame++) {
+      showFrame(backend, frame);
+    }
+
+    int renderedFrames = animatedImage.getRenderedFrameCount();
+    long totalNanos = 0;
+    long maxNanos = 0;
+    for (int frame : SEEKS) {
+      long startNanos = System.nanoTime();
+      showFrame(backend, frame);
+      long nanos = System.nanoTime() - startNanos;
+      totalNanos += nanos;
+      maxNanos = Math.max(maxNanos, nanos);
+    }
+    renderedFrames = animatedImage.getRenderedFrameCount() - renderedFrames;
+
+    backend.dropCaches();
+    animatedImageResult.dispose();
+    return renderedFrames / SEEKS.length + " frames rendered per seek, " +
+        totalNanos / SEEKS.length + " ns mean, " +
+        maxNanos + " ns max";
+  }
+
+  private static void showFrame(AnimatedDrawableCachingBackendImpl backend, int frame) {
+    CloseableReference<Bitmap> bitmap = backend.getBitmapForFrame(frame);
+    if (bitmap == null) {
+      // the frame got rendered by the prefetch that the first call scheduled
+      bitmap = backend.getBitmapForFrame(frame);
+    }
+    CloseableReference.closeSafely(bitmap);
+  }
+}
@@ -0,0 +1,117 @@
+/*
+ * This file provided by Facebook is for non-commercial testing and evaluation
+ * purposes only.  Facebook reserves all rights not expressly granted.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * FACEBOOK BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.facebook.samples.round;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import com.facebook.common.executors.CallerThreadExecutor;
+import com.facebook.common.executors.DefaultSerialExecutorService;
+import com.facebook.common.executors.SerialExecutorService;
+import com.facebook.common.references.CloseableReference;
+import com.facebook.common.time.RealtimeSinceBootClock;
+import com.facebook.common.util.ByteConstants;
+import com.facebook.drawee.backends.pipeline.Fresco;
+import com.facebook.imagepipeline.animated.base.AnimatedDrawableOptionsBuilder;
+import com.facebook.imagepipeline.animated.base.AnimatedImageResult;
+import com.facebook.imagepipeline.animated.impl.AnimatedDrawableCachingBackendImpl;
+import com.facebook.imagepipeline.animated.util.AnimatedDrawableUtil;
+import com.facebook.imagepipeline.core.ImagePipelineFactory;
+
+/**
+ * Measures the time to render a frame and the memory of the frame cache holding every frame of a
+ * large animation shown at typical thumbnail sizes, for an image that renders its frames scaled,
+ * like a WebP, and for one that renders them at full size to be scaled afterwards, like a GIF.
+ *
+ * <p> The frame cache memory includes the temporary bitmap the frames get rendered into, which is
+ * of the size of the image for GIFs.
+ *
+ * <p> Run with {@code ./gradlew :samples:round:connectedAndroidTest} and look for the
+ * {@code AnimatedThumbnailBenchmark} tag in logcat.
+ */
+public class AnimatedThumbnailBenchmark extends AndroidTestCase {
+
+  private static final String TAG = "AnimatedThumbnailBenchmark";
+
+  private static final int IMAGE_SIZE = 480;
+  private static final int[] VIEW_SIZES = new int[] { IMAGE_SIZE, 200, 100, 64 };
+  private static final int FRAMES = 20;
+  private static final int FRAME_DURATION_MS = 50;
+
+  private ImagePipelineFactory mImagePipelineFactory;
+  private ActivityManager mActivityManager;
+  private SerialExecutorService mSerialExecutorService;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    Fresco.initialize(getContext());
+    mImagePipelineFactory = Fresco.getImagePipelineFactory();
+    mActivityManager = (ActivityManager) getContext().getSystemService(Context.ACTIVITY_SERVICE);
+    mSerialExecutorService = new DefaultSerialExecutorService(CallerThreadExecutor.getInstance());
+  }
+
+  public void testThumbnails() {
+    // warm up both kinds of images first, so that neither pays for class loading
+    measure(true, VIEW_SIZES[0]);
+    measure(false, VIEW_SIZES[0]);
+
+    for (int viewSize : VIEW_SIZES) {
+      Log.i(TAG, "webp " + viewSize + "x" + viewSize + ": " + measure(true, viewSize));
+      Log.i(TAG, "gif " + viewSize + "x" + viewSize + ": " + measure(false, viewSize));
+    }
+  }
+
+  private String measure(final boolean supportsScaling, int viewSize) {
+    SyntheticAnimatedImage animatedImage =
+        new SyntheticAnimatedImage(IMAGE_SIZE, IMAGE_SIZE, FRAMES, FRAME_DURATION_MS, false) {
+          @Override
+          public boolean doesRenderSupportScaling() {
+            return supportsScaling;
+          }
+        };
+    AnimatedImageResult animatedImageResult = AnimatedImageResult.forAnimatedImage(animatedImage);
+    AnimatedDrawableCachingBackendImpl backend = new AnimatedDrawableCachingBackendImpl(
+        mSerialExecutorService,
+        mActivityManager,
+        new AnimatedDrawableUtil(),
+        RealtimeSinceBootClock.get(),
+        mImagePipelineFactory.getAnimatedDrawableBackendProvider().get(
+            animatedImageResult,
+            new Rect(0, 0, viewSize, viewSize)),
+        new AnimatedDrawableOptionsBuilder()
+            .setForceKeepAllFramesInMemory(true)
+            .build());
+
+    long startNanos = System.nanoTime();
+    for (int frame = 0; frame < FRAMES; frame++) {
+      CloseableReference<Bitmap> bitmap = backend.getBitmapForFrame(frame);
+      if (bitmap == null) {
+        // the frame got rendered by the prefetch that the first call scheduled
+        bitmap = backend.getBitmapForFrame(frame);
+      }
+      CloseableReference.closeSafely(bitmap);
+    }
+    long renderNanos = System.nanoTime() - startNanos;
+    int bytes = backend.getMemoryUsage();
+
+    backend.dropCaches();
+    animatedImageResult.dispose();
+    return renderNanos / FRAMES + " ns to render a frame, " +
+        bytes / ByteConstants.KB + " KB for " + FRAMES + " frames";
+  }
+}
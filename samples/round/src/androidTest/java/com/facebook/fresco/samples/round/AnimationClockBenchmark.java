@@ -0,0 +1,195 @@
+/*
+ * This file provided by Facebook is for non-commercial testing and evaluation
+ * purposes only.  Facebook reserves all rights not expressly granted.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * FACEBOOK BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.facebook.samples.round;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.drawable.Drawable;
+import android.os.Handler;
+import android.os.Looper;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import com.facebook.drawee.backends.pipeline.Fresco;
+import com.facebook.imagepipeline.animated.base.AnimatedDrawable;
+import com.facebook.imagepipeline.animated.base.AnimatedDrawableOptions;
+import com.facebook.imagepipeline.animated.base.AnimatedImageResult;
+import com.facebook.imagepipeline.animated.base.AnimationClock;
+import com.facebook.imagepipeline.animated.factory.AnimatedDrawableFactory;
+
+/**
+ * Measures the messages per second handled by the UI thread and the invalidations per draw pass
+ * for N animations with different frame durations running at once, advanced by the shared
+ * animation clock versus by their own messages.
+ *
+ * <p> A fake view stands in for the views showing the animations: it draws all the drawables
+ * invalidated since its last draw pass in a single message, as a view hierarchy traversal would.
+ *
+ * <p> Run with {@code ./gradlew :samples:round:connectedAndroidTest} and look for the
+ * {@code AnimationClockBenchmark} tag in logcat.
+ */
+public class AnimationClockBenchmark extends AndroidTestCase {
+
+  private static final String TAG = "AnimationClockBenchmark";
+
+  private static final int SIZE = 64;
+  private static final int FRAMES = 10;
+  private static final int ANIMATIONS = 24;
+  private static final int DURATION_MS = 3000;
+
+  private AnimatedDrawableFactory mAnimatedDrawableFactory;
+  private Handler mUiHandler;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    Fresco.initialize(getContext());
+    mAnimatedDrawableFactory = Fresco.getImagePipelineFactory().getAnimatedDrawableFactory();
+    mUiHandler = new Handler(Looper.getMainLooper());
+  }
+
+  public void testAnimationClock() throws Exception {
+    // warm up both modes first, so that neither pays for class loading
+    measure(false, DURATION_MS / 10);
+    measure(true, DURATION_MS / 10);
+
+    Log.i(TAG, "own messages: " + measure(false, DURATION_MS));
+    Log.i(TAG, "animation clock: " + measure(true, DURATION_MS));
+  }
+
+  private String measure(final boolean useAnimationClock, int durationMs) throws Exception {
+    final AnimationClock animationClock = AnimationClock.getInstance();
+    final List<AnimatedImageResult> animatedImageResults = new ArrayList<AnimatedImageResult>();
+    final List<AnimatedDrawable> drawables = new ArrayList<AnimatedDrawable>();
+    final FakeView fakeView = new FakeView();
+    final long[] clockCounts = new long[2];
+    AnimatedDrawableOptions options = AnimatedDrawableOptions.newBuilder()
+        .setUseAnimationClock(useAnimationClock)
+        .build();
+    for (int i = 0; i < ANIMATIONS; i++) {
+      // different frame durations, so that the animations do not advance in lockstep
+      AnimatedImageResult animatedImageResult = AnimatedImageResult.forAnimatedImage(
+          new SyntheticAnimatedImage(SIZE, SIZE, FRAMES, 30 + 7 * i, false));
+      animatedImageResults.add(animatedImageResult);
+      AnimatedDrawable drawable =
+          mAnimatedDrawableFactory.create(animatedImageResult, options);
+      drawable.setBounds(0, 0, SIZE, SIZE);
+      drawable.setCallback(fakeView);
+      drawables.add(drawable);
+    }
+
+    runOnUiThread(
+        new Runnable() {
+          @Override
+          public void run() {
+            clockCounts[0] = animationClock.getTickCount();
+            clockCounts[1] = animationClock.getInvalidationCount();
+            for (AnimatedDrawable drawable : drawables) {
+              drawable.start();
+            }
+          }
+        });
+    Thread.sleep(durationMs);
+    runOnUiThread(
+        new Runnable() {
+          @Override
+          public void run() {
+            for (AnimatedDrawable drawable : drawables) {
+              drawable.stop();
+              drawable.dropCaches();
+            }
+            clockCounts[0] = animationClock.getTickCount() - clockCounts[0];
+            clockCounts[1] = animationClock.getInvalidationCount() - clockCounts[1];
+          }
+        });
+
+    long messages = fakeView.mDrawPassCount + clockCounts[0];
+    for (AnimatedDrawable drawable : drawables) {
+      messages += drawable.getPostedTaskCount();
+    }
+    for (AnimatedImageResult animatedImageResult : animatedImageResults) {
+      animatedImageResult.dispose();
+    }
+    return messages * 1000 / durationMs + " messages per second, " +
+        (float) fakeView.mInvalidationCount / Math.max(fakeView.mDrawPassCount, 1) +
+        " invalidations per draw pass, " +
+        fakeView.mInvalidationCount * 1000 / durationMs + " invalidations per second" +
+        (useAnimationClock ?
+            ", " + (float) clockCounts[1] / Math.max(clockCounts[0], 1) +
+                " invalidations per tick" :
+            "");
+  }
+
+  private void runOnUiThread(final Runnable runnable) throws InterruptedException {
+    final CountDownLatch latch = new CountDownLatch(1);
+    mUiHandler.post(
+        new Runnable() {
+          @Override
+          public void run() {
+            runnable.run();
+            latch.countDown();
+          }
+        });
+    latch.await();
+  }
+
+  /**
+   * Schedules the tasks of the drawables like a view, and draws the invalidated drawables in
+   * draw passes. Used on the UI thread only.
+   */
+  private class FakeView implements Drawable.Callback {
+
+    private final Canvas mCanvas =
+        new Canvas(Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888));
+    private final Set<Drawable> mInvalidatedDrawables = new LinkedHashSet<Drawable>();
+    private long mInvalidationCount;
+    private long mDrawPassCount;
+
+    private final Runnable mDrawPassRunnable = new Runnable() {
+      @Override
+      public void run() {
+        mDrawPassCount++;
+        List<Drawable> drawables = new ArrayList<Drawable>(mInvalidatedDrawables);
+        mInvalidatedDrawables.clear();
+        for (Drawable drawable : drawables) {
+          drawable.draw(mCanvas);
+        }
+      }
+    };
+
+    @Override
+    public void invalidateDrawable(Drawable who) {
+      mInvalidationCount++;
+      if (mInvalidatedDrawables.isEmpty()) {
+        mUiHandler.post(mDrawPassRunnable);
+      }
+      mInvalidatedDrawables.add(who);
+    }
+
+    @Override
+    public void scheduleDrawable(Drawable who, Runnable what, long when) {
+      mUiHandler.postAtTime(what, who, when);
+    }
+
+    @Override
+    public void unscheduleDrawable(Drawable who, Runnable what) {
+      mUiHandler.removeCallbacks(what, who);
+    }
+  }
+}
@@ -0,0 +1,132 @@
+/*
+ * This file provided by Facebook is for non-commercial testing and evaluation
+ * purposes only.  Facebook reserves all rights not expressly granted.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * FACEBOOK BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.facebook.samples.round;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import com.facebook.common.executors.CallerThreadExecutor;
+import com.facebook.common.executors.DefaultSerialExecutorService;
+import com.facebook.common.executors.SerialExecutorService;
+import com.facebook.common.references.CloseableReference;
+import com.facebook.common.time.RealtimeSinceBootClock;
+import com.facebook.common.util.ByteConstants;
+import com.facebook.drawee.backends.pipeline.Fresco;
+import com.facebook.imagepipeline.animated.base.AnimatedDrawableOptions;
+import com.facebook.imagepipeline.animated.base.AnimatedDrawableOptionsBuilder;
+import com.facebook.imagepipeline.animated.base.AnimatedImageResult;
+import com.facebook.imagepipeline.animated.impl.AnimatedDrawableCachingBackendImpl;
+import com.facebook.imagepipeline.animated.util.AnimatedDrawableUtil;
+import com.facebook.imagepipeline.core.ImagePipelineFactory;
+
+/**
+ * Measures the frames cached per MB of an animation of GIF-like frames with each frame storage,
+ * along with the time to render and store every frame once and the time to get a cached frame for
+ * drawing, which includes expanding it for palette-indexed frames.
+ *
+ * <p> All frames are kept in memory and prefetches run on the calling thread.
+ *
+ * <p> Run with {@code ./gradlew :samples:round:connectedAndroidTest} and look for the
+ * {@code FrameStorageBenchmark} tag in logcat.
+ */
+public class FrameStorageBenchmark extends AndroidTestCase {
+
+  private static final String TAG = "FrameStorageBenchmark";
+
+  private static final int WIDTH = 320;
+  private static final int HEIGHT = 240;
+  private static final int FRAMES = 60;
+  private static final int FRAME_DURATION_MS = 50;
+  private static final int COLORS = 64;
+  private static final int LOOPS = 5;
+
+  private ImagePipelineFactory mImagePipelineFactory;
+  private ActivityManager mActivityManager;
+  private SerialExecutorService mSerialExecutorService;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    Fresco.initialize(getContext());
+    mImagePipelineFactory = Fresco.getImagePipelineFactory();
+    mActivityManager = (ActivityManager) getContext().getSystemService(Context.ACTIVITY_SERVICE);
+    mSerialExecutorService = new DefaultSerialExecutorService(CallerThreadExecutor.getInstance());
+  }
+
+  public void testFrameStorage() {
+    // warm up all storages first, so that none pays for class loading
+    for (AnimatedDrawableOptions.FrameStorage frameStorage :
+        AnimatedDrawableOptions.FrameStorage.values()) {
+      measure(frameStorage);
+    }
+
+    for (AnimatedDrawableOptions.FrameStorage frameStorage :
+        AnimatedDrawableOptions.FrameStorage.values()) {
+      Log.i(TAG, frameStorage + ": " + measure(frameStorage));
+    }
+  }
+
+  private String measure(AnimatedDrawableOptions.FrameStorage frameStorage) {
+    SyntheticAnimatedImage animatedImage =
+        new SyntheticAnimatedImage(WIDTH, HEIGHT, FRAMES, FRAME_DURATION_MS, false, COLORS);
+    AnimatedImageResult animatedImageResult = AnimatedImageResult.forAnimatedImage(animatedImage);
+    AnimatedDrawableCachingBackendImpl backend = new AnimatedDrawableCachingBackendImpl(
+        mSerialExecutorService,
+        mActivityManager,
+        new AnimatedDrawableUtil(),
+        RealtimeSinceBootClock.get(),
+        mImagePipelineFactory.getAnimatedDrawableBackendProvider().get(
+            animatedImageResult,
+            new Rect(0, 0, WIDTH, HEIGHT)),
+        new AnimatedDrawableOptionsBuilder()
+            .setForceKeepAllFramesInMemory(true)
+            .setFrameStorage(frameStorage)
+            .build());
+
+    // the first loop renders and stores every frame
+    long startNanos = System.nanoTime();
+    for (int frame = 0; frame < FRAMES; frame++) {
+      showFrame(backend, frame);
+    }
+    long storeNanos = System.nanoTime() - startNanos;
+    int bytes = backend.getMemoryUsage();
+
+    startNanos = System.nanoTime();
+    for (int loop = 0; loop < LOOPS; loop++) {
+      for (int frame = 0; frame < FRAMES; frame++) {
+        showFrame(backend, frame);
+      }
+    }
+    long drawNanos = System.nanoTime() - startNanos;
+
+    backend.dropCaches();
+    animatedImageResult.dispose();
+    return FRAMES * ByteConstants.MB / Math.max(bytes, 1) + " frames per MB, " +
+        storeNanos / FRAMES + " ns to render and store a frame, " +
+        drawNanos / (LOOPS * FRAMES) + " ns to get a cached frame, " +
+        backend.getExpandedFrameCount() + " expanded";
+  }
+
+  private static void showFrame(AnimatedDrawableCachingBackendImpl backend, int frame) {
+    CloseableReference<Bitmap> bitmap = backend.getBitmapForFrame(frame);
+    if (bitmap == null) {
+      // the frame got rendered by the prefetch that the first call scheduled
+      bitmap = backend.getBitmapForFrame(frame);
+    }
+    CloseableReference.closeSafely(bitmap);
+  }
+}
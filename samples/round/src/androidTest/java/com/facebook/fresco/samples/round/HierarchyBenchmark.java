@@ -0,0 +1,102 @@
+/*
+ * This file provided by Facebook is for non-commercial testing and evaluation
+ * purposes only.  Facebook reserves all rights not expressly granted.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * FACEBOOK BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.facebook.samples.round;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import android.os.Debug;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import com.facebook.drawee.generic.GenericDraweeHierarchy;
+import com.facebook.drawee.generic.GenericDraweeHierarchyBuilder;
+
+/**
+ * Measures the allocations and the draw time per frame of a drawee that only shows the actual
+ * image, with the lightweight hierarchy versus the full one.
+ *
+ * <p> Run with {@code ./gradlew :samples:round:connectedAndroidTest} and look for the
+ * {@code HierarchyBenchmark} tag in logcat.
+ */
+public class HierarchyBenchmark extends AndroidTestCase {
+
+  private static final String TAG = "HierarchyBenchmark";
+
+  private static final int VIEW_SIZE = 160;
+  private static final int VIEWS = 100;
+  private static final int WARMUP_FRAMES = 100;
+  private static final int FRAMES = 1000;
+
+  private Bitmap mBitmap;
+  private Canvas mCanvas;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    mBitmap = Bitmap.createBitmap(2 * VIEW_SIZE, VIEW_SIZE, Bitmap.Config.ARGB_8888);
+    mBitmap.eraseColor(Color.RED);
+    mCanvas = new Canvas(Bitmap.createBitmap(VIEW_SIZE, VIEW_SIZE, Bitmap.Config.ARGB_8888));
+  }
+
+  public void testAllocationsAndDrawTimePerView() {
+    measure("lightweight", true);
+    measure("full", false);
+  }
+
+  private void measure(String name, boolean lightweightHierarchyEnabled) {
+    GenericDraweeHierarchyBuilder builder =
+        new GenericDraweeHierarchyBuilder(getContext().getResources())
+            .setLightweightHierarchyEnabled(lightweightHierarchyEnabled);
+
+    Debug.resetThreadAllocCount();
+    Debug.startAllocCounting();
+    for (int i = 0; i < VIEWS; i++) {
+      builder.build();
+    }
+    Debug.stopAllocCounting();
+    int allocationsPerView = Debug.getThreadAllocCount() / VIEWS;
+
+    GenericDraweeHierarchy hierarchy = builder.build();
+    hierarchy.setImage(
+        new BitmapDrawable(getContext().getResources(), mBitmap),
+        1f,
+        /* immediate */ true);
+    long drawNanos = measureDrawTimePerFrame(hierarchy.getTopLevelDrawable());
+
+    Log.i(TAG, name + ": " + allocationsPerView + " allocations per view");
+    Log.i(TAG, name + ": " + drawNanos + " ns per frame");
+  }
+
+  /**
+   * Draws the drawable with bounds that change every frame, as they would while scrolling.
+   */
+  private long measureDrawTimePerFrame(Drawable drawable) {
+    for (int i = 0; i < WARMUP_FRAMES; i++) {
+      drawFrame(drawable, i);
+    }
+    long startNanos = System.nanoTime();
+    for (int i = 0; i < FRAMES; i++) {
+      drawFrame(drawable, i);
+    }
+    return (System.nanoTime() - startNanos) / FRAMES;
+  }
+
+  private void drawFrame(Drawable drawable, int frame) {
+    int offset = frame % 2;
+    drawable.setBounds(offset, 0, VIEW_SIZE - 1 + offset, VIEW_SIZE);
+    drawable.draw(mCanvas);
+  }
+}
@@ -0,0 +1,116 @@
+/*
+ * This file provided by Facebook is for non-commercial testing and evaluation
+ * purposes only.  Facebook reserves all rights not expressly granted.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * FACEBOOK BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.facebook.samples.round;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.ColorDrawable;
+import android.graphics.drawable.Drawable;
+import android.os.Debug;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import com.facebook.drawee.drawable.ScalingUtils;
+import com.facebook.drawee.generic.GenericDraweeHierarchyBuilder;
+import com.facebook.drawee.generic.RoundingParams;
+
+/**
+ * Measures the time and the allocations per hierarchy built for typical builder configurations,
+ * with the progress bar, retry and failure branches built on first use versus right away.
+ *
+ * <p> The drawables of each hierarchy are created up front, so that only building the hierarchy
+ * gets measured.
+ *
+ * <p> Run with {@code ./gradlew :samples:round:connectedAndroidTest} and look for the
+ * {@code HierarchyConstructionBenchmark} tag in logcat.
+ */
+public class HierarchyConstructionBenchmark extends AndroidTestCase {
+
+  private static final String TAG = "HierarchyConstructionBenchmark";
+
+  private static final int HIERARCHIES = 1000;
+
+  private Resources mResources;
+  private Bitmap mBitmap;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    mResources = getContext().getResources();
+    mBitmap = Bitmap.createBitmap(32, 32, Bitmap.Config.ARGB_8888);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    mBitmap.recycle();
+    super.tearDown();
+  }
+
+  public void testPlaceholderOnly() {
+    compare("placeholder only", false, false);
+  }
+
+  public void testAllBranches() {
+    compare("all branches", true, false);
+  }
+
+  public void testAllBranchesRounded() {
+    compare("all branches, rounded", true, true);
+  }
+
+  private void compare(String name, boolean allBranches, boolean rounded) {
+    // warm up both modes first, so that neither pays for class loading
+    measure(allBranches, rounded, false);
+    measure(allBranches, rounded, true);
+
+    Log.i(TAG, name + ", eager: " + measure(allBranches, rounded, false));
+    Log.i(TAG, name + ", lazy: " + measure(allBranches, rounded, true));
+  }
+
+  private String measure(boolean allBranches, boolean rounded, boolean lazy) {
+    GenericDraweeHierarchyBuilder[] builders = new GenericDraweeHierarchyBuilder[HIERARCHIES];
+    for (int i = 0; i < HIERARCHIES; i++) {
+      builders[i] = createBuilder(allBranches, rounded).setLazyLayersEnabled(lazy);
+    }
+    Debug.resetThreadAllocCount();
+    Debug.startAllocCounting();
+    long startNanos = System.nanoTime();
+    for (int i = 0; i < HIERARCHIES; i++) {
+      builders[i].build();
+    }
+    long nanos = System.nanoTime() - startNanos;
+    Debug.stopAllocCounting();
+    return nanos / HIERARCHIES + " ns and " +
+        Debug.getThreadAllocCount() / HIERARCHIES + " allocations per hierarchy";
+  }
+
+  private GenericDraweeHierarchyBuilder createBuilder(boolean allBranches, boolean rounded) {
+    GenericDraweeHierarchyBuilder builder = new GenericDraweeHierarchyBuilder(mResources)
+        .setPlaceholderImage(new ColorDrawable(0xFFDDDDDD));
+    if (allBranches) {
+      builder
+          .setProgressBarImage(createImage(), ScalingUtils.ScaleType.CENTER)
+          .setRetryImage(createImage(), ScalingUtils.ScaleType.CENTER)
+          .setFailureImage(createImage(), ScalingUtils.ScaleType.CENTER_INSIDE);
+    }
+    if (rounded) {
+      builder.setRoundingParams(RoundingParams.fromCornersRadius(8f));
+    }
+    return builder;
+  }
+
+  private Drawable createImage() {
+    return new BitmapDrawable(mResources, mBitmap);
+  }
+}
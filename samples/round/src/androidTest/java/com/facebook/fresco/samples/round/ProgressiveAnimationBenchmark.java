@@ -0,0 +1,241 @@
+/*
+ * This file provided by Facebook is for non-commercial testing and evaluation
+ * purposes only.  Facebook reserves all rights not expressly granted.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * FACEBOOK BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.facebook.samples.round;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.CountDownLatch;
+
+import android.net.Uri;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import com.facebook.common.executors.CallerThreadExecutor;
+import com.facebook.common.references.CloseableReference;
+import com.facebook.datasource.BaseDataSubscriber;
+import com.facebook.datasource.DataSource;
+import com.facebook.drawee.backends.pipeline.Fresco;
+import com.facebook.imagepipeline.common.ImageDecodeOptions;
+import com.facebook.imagepipeline.image.CloseableAnimatedImage;
+import com.facebook.imagepipeline.image.CloseableImage;
+import com.facebook.imagepipeline.request.ImageRequest;
+import com.facebook.imagepipeline.request.ImageRequestBuilder;
+
+/**
+ * Measures the time to the first frame and to the whole animation of a large GIF served by a
+ * throttled local server, with the frames received so far decoded progressively versus only once
+ * the whole GIF has been downloaded.
+ *
+ * <p> The frames of the GIF are a single pixel each, padded with comment extensions to the size
+ * of the frames of a typical large GIF, so that downloading rather than decoding dominates.
+ *
+ * <p> Run with {@code ./gradlew :samples:round:connectedAndroidTest} and look for the
+ * {@code ProgressiveAnimationBenchmark} tag in logcat.
+ */
+public class ProgressiveAnimationBenchmark extends AndroidTestCase {
+
+  private static final String TAG = "ProgressiveAnimationBenchmark";
+
+  private static final int FRAMES = 60;
+  private static final int FRAME_BYTES = 16 * 1024;
+  // about 256 KB per second
+  private static final int CHUNK_BYTES = 8 * 1024;
+  private static final int CHUNK_DELAY_MS = 32;
+  private static final int RUNS = 3;
+
+  private byte[] mGif;
+  private ServerSocket mServerSocket;
+  private Thread mServerThread;
+  private int mRequestCount;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    Fresco.initialize(getContext());
+    mGif = createGif();
+    mServerSocket = new ServerSocket(0);
+    mServerThread = new Thread(
+        new Runnable() {
+          @Override
+          public void run() {
+            serve();
+          }
+        });
+    mServerThread.start();
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    mServerSocket.close();
+    mServerThread.join();
+    super.tearDown();
+  }
+
+  public void testTimeToFirstFrame() throws Exception {
+    // warm up both modes first, so that neither pays for class loading
+    measure(false);
+    measure(true);
+
+    long[] fullNanos = new long[2];
+    long[] progressiveNanos = new long[2];
+    for (int i = 0; i < RUNS; i++) {
+      add(fullNanos, measure(false));
+      add(progressiveNanos, measure(true));
+    }
+    Log.i(TAG, "full: " + fullNanos[0] / RUNS + " ns to first frame, " +
+        fullNanos[1] / RUNS + " ns to all frames");
+    Log.i(TAG, "progressive: " + progressiveNanos[0] / RUNS + " ns to first frame, " +
+        progressiveNanos[1] / RUNS + " ns to all frames");
+  }
+
+  private static void add(long[] total, long[] nanos) {
+    total[0] += nanos[0];
+    total[1] += nanos[1];
+  }
+
+  /**
+   * @return the time to the first result and the time to the final result, in nanoseconds
+   */
+  private long[] measure(boolean progressive) throws Exception {
+    Fresco.getImagePipeline().clearCaches();
+    // a new uri for every run, so that nothing gets served from the disk cache
+    Uri uri = Uri.parse(
+        "http://127.0.0.1:" + mServerSocket.getLocalPort() + "/image.gif?run=" + mRequestCount++);
+    ImageRequest imageRequest = ImageRequestBuilder.newBuilderWithSource(uri)
+        .setProgressiveRenderingEnabled(true)
+        .setImageDecodeOptions(
+            ImageDecodeOptions.newBuilder()
+                .setDecodeProgressiveAnimations(progressive)
+                .build())
+        .build();
+
+    final long[] nanos = new long[2];
+    final int[] firstFrameCount = new int[1];
+    final CountDownLatch latch = new CountDownLatch(1);
+    final long startNanos = System.nanoTime();
+    DataSource<CloseableReference<CloseableImage>> dataSource =
+        Fresco.getImagePipeline().fetchDecodedImage(imageRequest, null);
+    dataSource.subscribe(
+        new BaseDataSubscriber<CloseableReference<CloseableImage>>() {
+          @Override
+          protected void onNewResultImpl(
+              DataSource<CloseableReference<CloseableImage>> dataSource) {
+            CloseableReference<CloseableImage> image = dataSource.getResult();
+            if (image != null) {
+              if (nanos[0] == 0) {
+                nanos[0] = System.nanoTime() - startNanos;
+                if (image.get() instanceof CloseableAnimatedImage) {
+                  firstFrameCount[0] =
+                      ((CloseableAnimatedImage) image.get()).getImage().getFrameCount();
+                }
+              }
+              image.close();
+            }
+            if (dataSource.isFinished()) {
+              nanos[1] = System.nanoTime() - startNanos;
+              latch.countDown();
+            }
+          }
+
+          @Override
+          protected void onFailureImpl(
+              DataSource<CloseableReference<CloseableImage>> dataSource) {
+            latch.countDown();
+          }
+        },
+        CallerThreadExecutor.getInstance());
+    latch.await();
+    dataSource.close();
+    assertTrue(nanos[1] > 0);
+    Log.d(TAG, (progressive ? "progressive" : "full") + ": first result had " +
+        firstFrameCount[0] + " of " + FRAMES + " frames");
+    return nanos;
+  }
+
+  private void serve() {
+    while (!mServerSocket.isClosed()) {
+      try {
+        Socket socket = mServerSocket.accept();
+        try {
+          skipRequest(socket.getInputStream());
+          OutputStream outputStream = socket.getOutputStream();
+          outputStream.write((
+              "HTTP/1.1 200 OK\r\n" +
+              "Content-Type: image/gif\r\n" +
+              "Content-Length: " + mGif.length + "\r\n" +
+              "Connection: close\r\n\r\n").getBytes("US-ASCII"));
+          for (int offset = 0; offset < mGif.length; offset += CHUNK_BYTES) {
+            outputStream.write(mGif, offset, Math.min(CHUNK_BYTES, mGif.length - offset));
+            outputStream.flush();
+            Thread.sleep(CHUNK_DELAY_MS);
+          }
+        } finally {
+          socket.close();
+        }
+      } catch (IOException ioe) {
+        // the server socket got closed
+      } catch (InterruptedException ie) {
+        return;
+      }
+    }
+  }
+
+  private static void skipRequest(InputStream inputStream) throws IOException {
+    // the request ends with an empty line
+    int lastBytes = 0;
+    int b;
+    while ((b = inputStream.read()) != -1) {
+      lastBytes = (lastBytes << 8) | b;
+      if (lastBytes == 0x0D0A0D0A) {
+        return;
+      }
+    }
+  }
+
+  private static byte[] createGif() {
+    ByteArrayOutputStream stream = new ByteArrayOutputStream();
+    write(stream, 'G', 'I', 'F', '8', '9', 'a');
+    // logical screen descriptor, with a global color table of 2 colors
+    write(stream, 1, 0, 1, 0, 0x80, 0, 0);
+    write(stream, 0, 0, 0, 0xFF, 0xFF, 0xFF);
+    // loop forever
+    write(stream, 0x21, 0xFF, 11, 'N', 'E', 'T', 'S', 'C', 'A', 'P', 'E', '2', '.', '0');
+    write(stream, 3, 1, 0, 0, 0);
+    for (int i = 0; i < FRAMES; i++) {
+      // comment extension padding the frame
+      write(stream, 0x21, 0xFE);
+      for (int padding = 0; padding < FRAME_BYTES; padding += 256) {
+        stream.write(255);
+        stream.write(new byte[255], 0, 255);
+      }
+      write(stream, 0);
+      // graphic control extension, 100 ms per frame
+      write(stream, 0x21, 0xF9, 4, 0, 10, 0, 0, 0);
+      // image descriptor, the LZW minimum code size and the image data of a single pixel
+      write(stream, 0x2C, 0, 0, 0, 0, 1, 0, 1, 0, 0);
+      write(stream, 2, 2, 0x44, 0x01, 0);
+    }
+    write(stream, 0x3B);
+    return stream.toByteArray();
+  }
+
+  private static void write(ByteArrayOutputStream stream, int... bytes) {
+    for (int b : bytes) {
+      stream.write(b);
+    }
+  }
+}
@@ -0,0 +1,104 @@
+/*
+ * This file provided by Facebook is for non-commercial testing and evaluation
+ * purposes only.  Facebook reserves all rights not expressly granted.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * FACEBOOK BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.facebook.samples.round;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.Debug;
+import android.test.InstrumentationTestCase;
+import android.test.UiThreadTest;
+import android.util.Log;
+
+import com.facebook.drawee.backends.pipeline.Fresco;
+import com.facebook.drawee.backends.pipeline.PipelineDraweeControllerBuilder;
+import com.facebook.drawee.generic.GenericDraweeHierarchy;
+import com.facebook.drawee.generic.GenericDraweeHierarchyBuilder;
+import com.facebook.drawee.view.DraweeHolder;
+
+/**
+ * Measures the allocations per bind when rebinding the cells of a list to new images, building a
+ * new hierarchy and controller per bind versus reusing them through the {@link DraweeHolder}.
+ *
+ * <p> The cells stay detached, so that no image actually gets fetched.
+ *
+ * <p> Run with {@code ./gradlew :samples:round:connectedAndroidTest} and look for the
+ * {@code RebindBenchmark} tag in logcat.
+ */
+public class RebindBenchmark extends InstrumentationTestCase {
+
+  private static final String TAG = "RebindBenchmark";
+
+  private static final int CELLS = 20;
+  private static final int BINDS = 1000;
+
+  private Context mContext;
+  private Uri[] mUris;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    mContext = getInstrumentation().getTargetContext();
+    Fresco.initialize(mContext);
+    mUris = new Uri[BINDS];
+    for (int i = 0; i < BINDS; i++) {
+      mUris[i] = Uri.parse("http://example.com/images/" + i + ".jpg");
+    }
+  }
+
+  @UiThreadTest
+  public void testAllocationsPerBind() {
+    // warm up both modes first, so that neither pays for class loading
+    bindWithNewControllers(createCells());
+    bindWithReusedControllers(createCells());
+
+    Log.i(TAG, "new: " + bindWithNewControllers(createCells()) + " allocations per bind");
+    Log.i(TAG, "reused: " + bindWithReusedControllers(createCells()) + " allocations per bind");
+  }
+
+  private DraweeHolder<GenericDraweeHierarchy>[] createCells() {
+    @SuppressWarnings("unchecked")
+    DraweeHolder<GenericDraweeHierarchy>[] cells = new DraweeHolder[CELLS];
+    for (int i = 0; i < CELLS; i++) {
+      cells[i] = DraweeHolder.create(
+          new GenericDraweeHierarchyBuilder(mContext.getResources()).build(),
+          mContext);
+    }
+    return cells;
+  }
+
+  private int bindWithNewControllers(DraweeHolder<GenericDraweeHierarchy>[] cells) {
+    Debug.resetThreadAllocCount();
+    Debug.startAllocCounting();
+    for (int i = 0; i < BINDS; i++) {
+      DraweeHolder<GenericDraweeHierarchy> cell = cells[i % CELLS];
+      cell.setHierarchy(new GenericDraweeHierarchyBuilder(mContext.getResources()).build());
+      cell.setController(
+          Fresco.newDraweeControllerBuilder()
+              .setUri(mUris[i])
+              .build());
+    }
+    Debug.stopAllocCounting();
+    return Debug.getThreadAllocCount() / BINDS;
+  }
+
+  private int bindWithReusedControllers(DraweeHolder<GenericDraweeHierarchy>[] cells) {
+    PipelineDraweeControllerBuilder builder = Fresco.newDraweeControllerBuilder();
+    Debug.resetThreadAllocCount();
+    Debug.startAllocCounting();
+    for (int i = 0; i < BINDS; i++) {
+      cells[i % CELLS].buildAndSetController(builder.setUri(mUris[i]));
+    }
+    Debug.stopAllocCounting();
+    return Debug.getThreadAllocCount() / BINDS;
+  }
+}
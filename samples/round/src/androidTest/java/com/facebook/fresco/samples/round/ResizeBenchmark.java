@@ -0,0 +1,125 @@
+/*
+ * This file provided by Facebook is for non-commercial testing and evaluation
+ * purposes only.  Facebook reserves all rights not expressly granted.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * FACEBOOK BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.facebook.samples.round;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.concurrent.CountDownLatch;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.net.Uri;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import com.facebook.common.executors.CallerThreadExecutor;
+import com.facebook.common.references.CloseableReference;
+import com.facebook.datasource.BaseDataSubscriber;
+import com.facebook.datasource.DataSource;
+import com.facebook.drawee.backends.pipeline.Fresco;
+import com.facebook.imagepipeline.common.ResizeOptions;
+import com.facebook.imagepipeline.image.CloseableImage;
+import com.facebook.imagepipeline.request.ImageRequest;
+import com.facebook.imagepipeline.request.ImageRequestBuilder;
+
+/**
+ * Measures the bitmap bytes and the decode time of a large JPEG shown in a small view, decoded
+ * at full resolution versus with the resize options derived from the view size.
+ *
+ * <p> Run with {@code ./gradlew :samples:round:connectedAndroidTest} and look for the
+ * {@code ResizeBenchmark} tag in logcat.
+ */
+public class ResizeBenchmark extends AndroidTestCase {
+
+  private static final String TAG = "ResizeBenchmark";
+
+  private static final int IMAGE_WIDTH = 2048;
+  private static final int IMAGE_HEIGHT = 1536;
+  // a 160 x 120 view, bucketed the same way as the controller builder does
+  private static final ResizeOptions VIEW_RESIZE_OPTIONS = new ResizeOptions(160, 128);
+  private static final int RUNS = 10;
+
+  private Uri mUri;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    Fresco.initialize(getContext());
+    Bitmap bitmap = Bitmap.createBitmap(IMAGE_WIDTH, IMAGE_HEIGHT, Bitmap.Config.ARGB_8888);
+    bitmap.eraseColor(Color.RED);
+    File file = new File(getContext().getCacheDir(), "resize_benchmark.jpg");
+    FileOutputStream outputStream = new FileOutputStream(file);
+    try {
+      bitmap.compress(Bitmap.CompressFormat.JPEG, 90, outputStream);
+    } finally {
+      outputStream.close();
+    }
+    bitmap.recycle();
+    mUri = Uri.fromFile(file);
+  }
+
+  public void testBytesAndDecodeTime() throws Exception {
+    measure("full", ImageRequest.fromUri(mUri));
+    measure(
+        "resized",
+        ImageRequestBuilder.newBuilderWithSource(mUri)
+            .setResizeOptions(VIEW_RESIZE_OPTIONS)
+            .build());
+  }
+
+  private void measure(String name, ImageRequest imageRequest) throws Exception {
+    long totalNanos = 0;
+    int sizeInBytes = 0;
+    for (int i = 0; i < RUNS; i++) {
+      Fresco.getImagePipeline().clearMemoryCaches();
+      long startNanos = System.nanoTime();
+      CloseableReference<CloseableImage> image = fetch(imageRequest);
+      totalNanos += System.nanoTime() - startNanos;
+      try {
+        sizeInBytes = image.get().getSizeInBytes();
+      } finally {
+        image.close();
+      }
+    }
+    Log.i(TAG, name + ": " + sizeInBytes + " bitmap bytes");
+    Log.i(TAG, name + ": " + totalNanos / RUNS + " ns to fetch and decode");
+  }
+
+  private CloseableReference<CloseableImage> fetch(ImageRequest imageRequest) throws Exception {
+    final CountDownLatch latch = new CountDownLatch(1);
+    final CloseableReference<CloseableImage>[] result = new CloseableReference[1];
+    DataSource<CloseableReference<CloseableImage>> dataSource =
+        Fresco.getImagePipeline().fetchDecodedImage(imageRequest, null);
+    dataSource.subscribe(
+        new BaseDataSubscriber<CloseableReference<CloseableImage>>() {
+          @Override
+          protected void onNewResultImpl(
+              DataSource<CloseableReference<CloseableImage>> dataSource) {
+            if (dataSource.isFinished()) {
+              result[0] = dataSource.getResult();
+              latch.countDown();
+            }
+          }
+
+          @Override
+          protected void onFailureImpl(
+              DataSource<CloseableReference<CloseableImage>> dataSource) {
+            latch.countDown();
+          }
+        },
+        CallerThreadExecutor.getInstance());
+    latch.await();
+    assertNotNull(result[0]);
+    return result[0];
+  }
+}
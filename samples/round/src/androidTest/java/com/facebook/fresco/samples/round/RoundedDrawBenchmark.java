@@ -0,0 +1,93 @@
+/*
+ * This file provided by Facebook is for non-commercial testing and evaluation
+ * purposes only.  Facebook reserves all rights not expressly granted.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * FACEBOOK BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.facebook.samples.round;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import com.facebook.drawee.backends.pipeline.RoundingPostprocessor;
+import com.facebook.drawee.drawable.RoundedBitmapDrawable;
+import com.facebook.drawee.generic.RoundingParams;
+
+/**
+ * Measures the draw time per frame of a circular avatar, rounded on every draw by a
+ * {@link RoundedBitmapDrawable} versus pre-rounded once by a {@link RoundingPostprocessor}.
+ *
+ * <p> Run with {@code ./gradlew :samples:round:connectedAndroidTest} and look for the
+ * {@code RoundedDrawBenchmark} tag in logcat.
+ */
+public class RoundedDrawBenchmark extends AndroidTestCase {
+
+  private static final String TAG = "RoundedDrawBenchmark";
+
+  private static final int AVATAR_SIZE = 160;
+  private static final int WARMUP_FRAMES = 100;
+  private static final int FRAMES = 1000;
+
+  private Bitmap mSourceBitmap;
+  private Canvas mCanvas;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    mSourceBitmap = Bitmap.createBitmap(AVATAR_SIZE, AVATAR_SIZE, Bitmap.Config.ARGB_8888);
+    mSourceBitmap.eraseColor(Color.RED);
+    mCanvas = new Canvas(
+        Bitmap.createBitmap(AVATAR_SIZE, AVATAR_SIZE, Bitmap.Config.ARGB_8888));
+  }
+
+  public void testDrawTimePerFrame() {
+    RoundingParams roundingParams = RoundingParams.asCircle().setBorder(Color.WHITE, 4);
+
+    RoundedBitmapDrawable roundedDrawable =
+        new RoundedBitmapDrawable(getContext().getResources(), mSourceBitmap);
+    roundedDrawable.setCircle(roundingParams.getRoundAsCircle());
+    roundedDrawable.setBorder(roundingParams.getBorderColor(), roundingParams.getBorderWidth());
+    long roundedNanos = measureDrawTimePerFrame(roundedDrawable);
+
+    Bitmap preRoundedBitmap =
+        Bitmap.createBitmap(AVATAR_SIZE, AVATAR_SIZE, Bitmap.Config.ARGB_8888);
+    new RoundingPostprocessor(roundingParams).process(preRoundedBitmap, mSourceBitmap);
+    BitmapDrawable preRoundedDrawable =
+        new BitmapDrawable(getContext().getResources(), preRoundedBitmap);
+    long preRoundedNanos = measureDrawTimePerFrame(preRoundedDrawable);
+
+    Log.i(TAG, "RoundedBitmapDrawable: " + roundedNanos + " ns per frame");
+    Log.i(TAG, "RoundingPostprocessor: " + preRoundedNanos + " ns per frame");
+  }
+
+  /**
+   * Draws the drawable with bounds that change every frame, as they would while scrolling.
+   */
+  private long measureDrawTimePerFrame(Drawable drawable) {
+    for (int i = 0; i < WARMUP_FRAMES; i++) {
+      drawFrame(drawable, i);
+    }
+    long startNanos = System.nanoTime();
+    for (int i = 0; i < FRAMES; i++) {
+      drawFrame(drawable, i);
+    }
+    return (System.nanoTime() - startNanos) / FRAMES;
+  }
+
+  private void drawFrame(Drawable drawable, int frame) {
+    int offset = frame % 2;
+    drawable.setBounds(offset, 0, AVATAR_SIZE - 1 + offset, AVATAR_SIZE);
+    drawable.draw(mCanvas);
+  }
+}
@@ -0,0 +1,179 @@
+/*
+ * This file provided by Facebook is for non-commercial testing and evaluation
+ * purposes only.  Facebook reserves all rights not expressly granted.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * FACEBOOK BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN
+ * ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.facebook.samples.round;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import android.graphics.Bitmap;
+
+import com.facebook.imagepipeline.animated.base.AnimatedDrawableFrameInfo;
+import com.facebook.imagepipeline.animated.base.AnimatedImage;
+import com.facebook.imagepipeline.animated.base.AnimatedImageFrame;
+
+/**
+ * Animation used by the benchmarks, which renders each frame by computing all of its pixels. That
+ * stands in for decoding a frame of a GIF.
+ *
+ * <p> If blending, every frame but the first gets drawn over the previous one, so that showing a
+ * frame needs all of the frames before it.
+ *
+ * <p> Unless a number of colors is given, frames are gradients of more colors than the frames of a
+ * GIF can have.
+ */
+class SyntheticAnimatedImage implements AnimatedImage {
+
+  private final int mWidth;
+  private final int mHeight;
+  private final int mFrameCount;
+  private final int mFrameDurationMs;
+  private final boolean mBlend;
+  private final int mColorCount;
+  private final AtomicInteger mRenderedFrameCount = new AtomicInteger();
+
+  SyntheticAnimatedImage(
+      int width,
+      int height,
+      int frameCount,
+      int frameDurationMs,
+      boolean blend) {
+    this(width, height, frameCount, frameDurationMs, blend, 0);
+  }
+
+  /**
+   * @param colorCount the number of colors of each frame, or 0 for gradients
+   */
+  SyntheticAnimatedImage(
+      int width,
+      int height,
+      int frameCount,
+      int frameDurationMs,
+      boolean blend,
+      int colorCount) {
+    mWidth = width;
+    mHeight = height;
+    mFrameCount = frameCount;
+    mFrameDurationMs = frameDurationMs;
+    mBlend = blend;
+    mColorCount = colorCount;
+  }
+
+  int getRenderedFrameCount() {
+    return mRenderedFrameCount.get();
+  }
+
+  @Override
+  public void dispose() {
+  }
+
+  @Override
+  public int getWidth() {
+    return mWidth;
+  }
+
+  @Override
+  public int getHeight() {
+    return mHeight;
+  }
+
+  @Override
+  public int getFrameCount() {
+    return mFrameCount;
+  }
+
+  @Override
+  public int getDuration() {
+    return mFrameCount * mFrameDurationMs;
+  }
+
+  @Override
+  public int[] getFrameDurations() {
+    int[] frameDurations = new int[mFrameCount];
+    for (int i = 0; i < mFrameCount; i++) {
+      frameDurations[i] = mFrameDurationMs;
+    }
+    return frameDurations;
+  }
+
+  @Override
+  public int getLoopCount() {
+    return 0;
+  }
+
+  @Override
+  public AnimatedImageFrame getFrame(final int frameNumber) {
+    return new AnimatedImageFrame() {
+      @Override
+      public void dispose() {
+      }
+
+      @Override
+      public void renderFrame(int width, int height, Bitmap bitmap) {
+        mRenderedFrameCount.incrementAndGet();
+        int[] pixels = new int[width * height];
+        for (int i = 0; i < pixels.length; i++) {
+          pixels[i] = mColorCount > 0 ?
+              0xFF000000 | ((frameNumber + i / width) % mColorCount * 0x010101) :
+              0xFF000000 | (frameNumber * 12 << 16) | (i % width << 8) | (i / width);
+        }
+        bitmap.setPixels(pixels, 0, width, 0, 0, width, height);
+      }
+
+      @Override
+      public int getDurationMs() {
+        return mFrameDurationMs;
+      }
+
+      @Override
+      public int getWidth() {
+        return mWidth;
+      }
+
+      @Override
+      public int getHeight() {
+        return mHeight;
+      }
+
+      @Override
+      public int getXOffset() {
+        return 0;
+      }
+
+      @Override
+      public int getYOffset() {
+        return 0;
+      }
+    };
+  }
+
+  @Override
+  public boolean doesRenderSupportScaling() {
+    return true;
+  }
+
+  @Override
+  public int getSizeInBytes() {
+    return 0;
+  }
+
+  @Override
+  public AnimatedDrawableFrameInfo getFrameInfo(int frameNumber) {
+    return new AnimatedDrawableFrameInfo(
+        frameNumber,
+        0,
+        0,
+        mWidth,
+        mHeight,
+        mBlend && frameNumber > 0,
+        AnimatedDrawableFrameInfo.DisposalMethod.DISPOSE_DO_NOT);
+  }
+}